@@ -0,0 +1,214 @@
+package me.ialistannen.mininbt.backend.v1_14_R1;
+
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import me.ialistannen.mininbt.NbtBackend;
+import me.ialistannen.mininbt.NbtCodec;
+import net.minecraft.server.v1_14_R1.MojangsonParser;
+import net.minecraft.server.v1_14_R1.NBTBase;
+import net.minecraft.server.v1_14_R1.NBTCompressedStreamTools;
+import net.minecraft.server.v1_14_R1.NBTNumber;
+import net.minecraft.server.v1_14_R1.NBTTagByte;
+import net.minecraft.server.v1_14_R1.NBTTagByteArray;
+import net.minecraft.server.v1_14_R1.NBTTagCompound;
+import net.minecraft.server.v1_14_R1.NBTTagDouble;
+import net.minecraft.server.v1_14_R1.NBTTagFloat;
+import net.minecraft.server.v1_14_R1.NBTTagInt;
+import net.minecraft.server.v1_14_R1.NBTTagIntArray;
+import net.minecraft.server.v1_14_R1.NBTTagList;
+import net.minecraft.server.v1_14_R1.NBTTagLong;
+import net.minecraft.server.v1_14_R1.NBTTagShort;
+import net.minecraft.server.v1_14_R1.NBTTagString;
+import org.bukkit.craftbukkit.v1_14_R1.entity.CraftEntity;
+import org.bukkit.craftbukkit.v1_14_R1.inventory.CraftItemStack;
+import org.bukkit.entity.Entity;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * A {@link NbtBackend} calling the NMS classes of {@code v1_14_R1} directly.
+ *
+ * <p>The tile entity hooks are inherited, as the snapshot of a block state is not accessible
+ * without reflection.</p>
+ */
+class V1_14_R1Backend implements NbtBackend {
+
+  @Override
+  public byte getTypeId(Object tag) {
+    if (!(tag instanceof NBTBase)) {
+      return NbtCodec.TAG_END;
+    }
+    byte typeId = ((NBTBase) tag).getTypeId();
+    // long arrays have no wrapper
+    return typeId == NbtCodec.TAG_LONG_ARRAY ? NbtCodec.TAG_END : typeId;
+  }
+
+  @Override
+  public Object createByte(byte value) {
+    return new NBTTagByte(value);
+  }
+
+  @Override
+  public byte getByte(Object tag) {
+    return ((NBTNumber) tag).asByte();
+  }
+
+  @Override
+  public Object createShort(short value) {
+    return new NBTTagShort(value);
+  }
+
+  @Override
+  public short getShort(Object tag) {
+    return ((NBTNumber) tag).asShort();
+  }
+
+  @Override
+  public Object createInt(int value) {
+    return new NBTTagInt(value);
+  }
+
+  @Override
+  public int getInt(Object tag) {
+    return ((NBTNumber) tag).asInt();
+  }
+
+  @Override
+  public Object createLong(long value) {
+    return new NBTTagLong(value);
+  }
+
+  @Override
+  public long getLong(Object tag) {
+    return ((NBTNumber) tag).asLong();
+  }
+
+  @Override
+  public Object createFloat(float value) {
+    return new NBTTagFloat(value);
+  }
+
+  @Override
+  public float getFloat(Object tag) {
+    return ((NBTNumber) tag).asFloat();
+  }
+
+  @Override
+  public Object createDouble(double value) {
+    return new NBTTagDouble(value);
+  }
+
+  @Override
+  public double getDouble(Object tag) {
+    return ((NBTNumber) tag).asDouble();
+  }
+
+  @Override
+  public Object createByteArray(byte[] value) {
+    return new NBTTagByteArray(value);
+  }
+
+  @Override
+  public byte[] getByteArray(Object tag) {
+    return ((NBTTagByteArray) tag).getBytes();
+  }
+
+  @Override
+  public Object createIntArray(int[] value) {
+    return new NBTTagIntArray(value);
+  }
+
+  @Override
+  public int[] getIntArray(Object tag) {
+    return ((NBTTagIntArray) tag).getInts();
+  }
+
+  @Override
+  public Object createString(String value) {
+    return new NBTTagString(value);
+  }
+
+  @Override
+  public String getString(Object tag) {
+    return ((NBTTagString) tag).asString();
+  }
+
+  @Override
+  public Object createCompound() {
+    return new NBTTagCompound();
+  }
+
+  @Override
+  public Collection<String> getCompoundKeys(Object compound) {
+    return new ArrayList<>(((NBTTagCompound) compound).getKeys());
+  }
+
+  @Override
+  public Object getCompoundValue(Object compound, String key) {
+    return ((NBTTagCompound) compound).get(key);
+  }
+
+  @Override
+  public void setCompoundValue(Object compound, String key, Object value) {
+    ((NBTTagCompound) compound).set(key, (NBTBase) value);
+  }
+
+  @Override
+  public Object createList(List<?> elements) {
+    NBTTagList list = new NBTTagList();
+    for (int i = 0; i < elements.size(); i++) {
+      list.add(i, (NBTBase) elements.get(i));
+    }
+    return list;
+  }
+
+  @Override
+  public List<?> getListElements(Object list) {
+    return (NBTTagList) list;
+  }
+
+  @Override
+  public Object parseCompound(String snbt) {
+    try {
+      return MojangsonParser.parse(snbt);
+    } catch (CommandSyntaxException e) {
+      throw new IllegalArgumentException(e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public Object readCompressed(InputStream inputStream) throws IOException {
+    return NBTCompressedStreamTools.a(inputStream);
+  }
+
+  @Override
+  public void writeCompressed(Object compound, OutputStream outputStream) throws IOException {
+    NBTCompressedStreamTools.a((NBTTagCompound) compound, outputStream);
+  }
+
+  @Override
+  public Object getItemTag(ItemStack itemStack) {
+    return CraftItemStack.asNMSCopy(itemStack).getTag();
+  }
+
+  @Override
+  public ItemStack setItemTag(ItemStack itemStack, Object compound) {
+    net.minecraft.server.v1_14_R1.ItemStack nmsItem = CraftItemStack.asNMSCopy(itemStack);
+    nmsItem.setTag((NBTTagCompound) compound);
+    return CraftItemStack.asBukkitCopy(nmsItem);
+  }
+
+  @Override
+  public Object saveEntity(Entity entity) {
+    return ((CraftEntity) entity).getHandle().save(new NBTTagCompound());
+  }
+
+  @Override
+  public void loadEntity(Entity entity, Object compound) {
+    ((CraftEntity) entity).getHandle().f((NBTTagCompound) compound);
+  }
+}
@@ -0,0 +1,20 @@
+package me.ialistannen.mininbt.backend.v1_14_R1;
+
+import me.ialistannen.mininbt.NbtBackend;
+import me.ialistannen.mininbt.NbtBackendProvider;
+
+/**
+ * Provides the {@link V1_14_R1Backend} on {@code v1_14_R1} servers.
+ */
+public class V1_14_R1BackendProvider implements NbtBackendProvider {
+
+  @Override
+  public boolean supports(String serverVersion) {
+    return "v1_14_R1".equals(serverVersion);
+  }
+
+  @Override
+  public NbtBackend createBackend() {
+    return new V1_14_R1Backend();
+  }
+}
@@ -0,0 +1,51 @@
+package me.ialistannen.mininbt.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The entry point of the benchmark jar.
+ *
+ * <p>Accepts the usual JMH command line, but runs with the configuration all results should be
+ * compared in: the {@link GCProfiler}, so allocations per operation ({@code gc.alloc.rate.norm})
+ * are reported next to the timings, and a fixed heap, so the garbage collector behaves the same on
+ * every run. Any of these can be overridden on the command line.</p>
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code java -jar target/benchmarks.jar ConversionBenchmark -p corpus=chunk}
+ */
+public class BenchmarkRunner {
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    if (commandLine.shouldList()) {
+      new Runner(commandLine).list();
+      return;
+    }
+
+    // options of this builder take precedence over its parent, so only fill in what is missing
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+    if (!commandLine.getForkCount().hasValue()) {
+      options.forks(2);
+    }
+    if (!commandLine.getWarmupIterations().hasValue()) {
+      options.warmupIterations(5);
+    }
+    if (!commandLine.getMeasurementIterations().hasValue()) {
+      options.measurementIterations(5);
+    }
+    if (!commandLine.getJvmArgsPrepend().hasValue()) {
+      options.jvmArgsPrepend("-Xms1g", "-Xmx1g", "-XX:+UseParallelGC");
+    }
+    if (commandLine.getProfilers().isEmpty()) {
+      options.addProfiler(GCProfiler.class);
+    }
+
+    new Runner(options.build()).run();
+  }
+}
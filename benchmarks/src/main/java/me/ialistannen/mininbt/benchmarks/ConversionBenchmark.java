@@ -0,0 +1,59 @@
+package me.ialistannen.mininbt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the conversion between the wrappers and the NMS tags, which every utility of this
+ * library performs at least once per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConversionBenchmark {
+
+  @Param({"item", "entity", "chunk"})
+  public String corpus;
+
+  @Param({"nms", "memory"})
+  public String backend;
+
+  private NBTTagCompound wrapper;
+  private Object nms;
+
+  @Setup
+  public void setup() {
+    Corpus.useBackend(backend);
+    wrapper = Corpus.load(corpus);
+    nms = wrapper.toNBT();
+  }
+
+  @Benchmark
+  public Object toNBT() {
+    return wrapper.toNBT();
+  }
+
+  @Benchmark
+  public INBTBase fromNBT() {
+    return INBTBase.fromNBT(nms);
+  }
+
+  /**
+   * A full modification cycle, as done by {@link me.ialistannen.mininbt.ItemNBTUtil}.
+   *
+   * @return the converted tag
+   */
+  @Benchmark
+  public Object roundTrip() {
+    return ((NBTTagCompound) INBTBase.fromNBT(nms)).toNBT();
+  }
+}
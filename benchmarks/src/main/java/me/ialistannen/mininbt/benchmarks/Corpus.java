@@ -0,0 +1,82 @@
+package me.ialistannen.mininbt.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import me.ialistannen.mininbt.InMemoryNbtBackend;
+import me.ialistannen.mininbt.NBTWrappers;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NbtParser;
+import me.ialistannen.mininbt.NbtParser.NbtParseException;
+
+/**
+ * The fixed set of tags all benchmarks run on. They are stored as SNBT in {@code /corpus/}, so they
+ * can be read and edited, and are parsed by the backend selected for the benchmark.
+ *
+ * <ul>
+ *   <li>{@code item}: an enchanted, renamed sword with lore and attribute modifiers</li>
+ *   <li>{@code entity}: an equipped zombie with attributes and potion effects</li>
+ *   <li>{@code chunk}: a pre-flattening chunk with two sections, a chest and an item entity</li>
+ * </ul>
+ */
+final class Corpus {
+
+  /**
+   * Selects the backend the wrappers are converted with.
+   *
+   * @param name {@code nms} for the server classes, {@code memory} for the {@link
+   *     InMemoryNbtBackend}
+   */
+  static void useBackend(String name) {
+    switch (name) {
+      case "nms":
+        NBTWrappers.setBackend(null);
+        break;
+      case "memory":
+        NBTWrappers.setBackend(new InMemoryNbtBackend());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown backend '" + name + "'");
+    }
+  }
+
+  /**
+   * Reads the SNBT of a corpus entry.
+   *
+   * @param name the name of the entry
+   * @return the SNBT of the entry
+   */
+  static String snbt(String name) {
+    String path = "/corpus/" + name + ".snbt";
+    try (InputStream inputStream = Corpus.class.getResourceAsStream(path)) {
+      if (inputStream == null) {
+        throw new IllegalArgumentException("Unknown corpus entry '" + name + "'");
+      }
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = inputStream.read(buffer)) >= 0) {
+        outputStream.write(buffer, 0, read);
+      }
+      return new String(outputStream.toByteArray(), StandardCharsets.UTF_8).trim();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read " + path, e);
+    }
+  }
+
+  /**
+   * Parses a corpus entry.
+   *
+   * @param name the name of the entry
+   * @return the parsed entry
+   */
+  static NBTTagCompound load(String name) {
+    try {
+      return NbtParser.parse(snbt(name));
+    } catch (NbtParseException e) {
+      throw new IllegalStateException("Corpus entry '" + name + "' is malformed", e);
+    }
+  }
+}
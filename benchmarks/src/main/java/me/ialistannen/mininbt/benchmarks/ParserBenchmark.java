@@ -0,0 +1,49 @@
+package me.ialistannen.mininbt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NbtLimits;
+import me.ialistannen.mininbt.NbtParser;
+import me.ialistannen.mininbt.NbtParser.NbtParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures parsing SNBT, with and without checking it against {@link NbtLimits} first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParserBenchmark {
+
+  @Param({"item", "entity", "chunk"})
+  public String corpus;
+
+  @Param({"nms", "memory"})
+  public String backend;
+
+  private String snbt;
+
+  @Setup
+  public void setup() {
+    Corpus.useBackend(backend);
+    // the server's own formatting, as it would be passed around by plugins
+    snbt = Corpus.load(corpus).toNBT().toString();
+  }
+
+  @Benchmark
+  public NBTTagCompound parse() throws NbtParseException {
+    return NbtParser.parse(snbt);
+  }
+
+  @Benchmark
+  public NBTTagCompound parseWithLimits() throws NbtParseException {
+    return NbtParser.parse(snbt, NbtLimits.UNLIMITED);
+  }
+}
@@ -0,0 +1,89 @@
+package me.ialistannen.mininbt.benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import me.ialistannen.mininbt.reflection.FluentReflection.FluentMethod;
+import net.minecraft.server.v1_14_R1.NBTTagCompound;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of a single reflective call on an NMS tag. {@link FluentMethod#invoke(Object,
+ * Object...)} is compared to a direct call, a plain {@link Method#invoke(Object, Object...)} and a
+ * {@link MethodHandle}, so the overhead of the {@link
+ * me.ialistannen.mininbt.reflection.FluentReflection.ReflectiveResult} wrapping can be told apart
+ * from the one of reflection itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReflectionBenchmark {
+
+  private static final MethodHandle STATIC_HANDLE;
+
+  static {
+    try {
+      STATIC_HANDLE = MethodHandles.publicLookup().findVirtual(
+          NBTTagCompound.class, "getString", MethodType.methodType(String.class, String.class)
+      );
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private NBTTagCompound compound;
+  private String key;
+  private Method method;
+  private MethodHandle handle;
+  private FluentMethod fluentMethod;
+
+  @Setup
+  public void setup() throws ReflectiveOperationException {
+    compound = new NBTTagCompound();
+    compound.setString("id", "minecraft:diamond_sword");
+    key = "id";
+
+    method = NBTTagCompound.class.getMethod("getString", String.class);
+    handle = MethodHandles.publicLookup().unreflect(method);
+    fluentMethod = new FluentMethod(method);
+  }
+
+  @Benchmark
+  public String direct() {
+    return compound.getString(key);
+  }
+
+  @Benchmark
+  public Object methodInvoke() throws ReflectiveOperationException {
+    return method.invoke(compound, key);
+  }
+
+  @Benchmark
+  public String methodHandle() throws Throwable {
+    return (String) handle.invokeExact(compound, key);
+  }
+
+  /**
+   * A handle in a static final field, which the JIT can inline like a direct call.
+   *
+   * @return the read string
+   * @throws Throwable never
+   */
+  @Benchmark
+  public String staticMethodHandle() throws Throwable {
+    return (String) STATIC_HANDLE.invokeExact(compound, key);
+  }
+
+  @Benchmark
+  public String fluentMethod() {
+    return fluentMethod.<String>invoke(compound, key).getOrThrow();
+  }
+}
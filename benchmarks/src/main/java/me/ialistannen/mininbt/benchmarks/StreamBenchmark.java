@@ -0,0 +1,88 @@
+package me.ialistannen.mininbt.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NbtBuffers;
+import me.ialistannen.mininbt.NbtCodec;
+import me.ialistannen.mininbt.StreamNBTUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures reading and writing gzip compressed NBT through the server ({@link StreamNBTUtil})
+ * against the pure Java codecs ({@link NbtCodec} and {@link NbtBuffers}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StreamBenchmark {
+
+  @Param({"item", "entity", "chunk"})
+  public String corpus;
+
+  @Param({"nms", "memory"})
+  public String backend;
+
+  private NBTTagCompound compound;
+  private byte[] compressed;
+  private ByteArrayOutputStream outputStream;
+  private ByteBuffer buffer;
+
+  @Setup
+  public void setup() throws IOException {
+    Corpus.useBackend(backend);
+    compound = Corpus.load(corpus);
+
+    ByteArrayOutputStream written = new ByteArrayOutputStream();
+    StreamNBTUtil.writeToStream(compound, written);
+    compressed = written.toByteArray();
+
+    outputStream = new ByteArrayOutputStream(compressed.length * 2);
+    buffer = ByteBuffer.allocate(compressed.length * 2 + 1024);
+  }
+
+  @Benchmark
+  public NBTTagCompound readStreamNbtUtil() throws IOException {
+    return StreamNBTUtil.fromStream(new ByteArrayInputStream(compressed));
+  }
+
+  @Benchmark
+  public int writeStreamNbtUtil() throws IOException {
+    outputStream.reset();
+    StreamNBTUtil.writeToStream(compound, outputStream);
+    return outputStream.size();
+  }
+
+  @Benchmark
+  public NBTTagCompound readCodec() throws IOException {
+    return NbtCodec.readCompressed(new ByteArrayInputStream(compressed));
+  }
+
+  @Benchmark
+  public int writeCodec() throws IOException {
+    outputStream.reset();
+    NbtCodec.writeCompressed(compound, outputStream);
+    return outputStream.size();
+  }
+
+  @Benchmark
+  public NBTTagCompound readBuffer() throws IOException {
+    return NbtBuffers.readCompressed(ByteBuffer.wrap(compressed));
+  }
+
+  @Benchmark
+  public int writeBuffer() throws IOException {
+    buffer.clear();
+    return NbtBuffers.writeCompressed(compound, buffer);
+  }
+}
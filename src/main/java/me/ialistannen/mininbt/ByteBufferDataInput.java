@@ -0,0 +1,122 @@
+package me.ialistannen.mininbt;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link DataInput} reading directly from a {@link ByteBuffer}, without a stream in between.
+ * Advances the position of the buffer it was given, which must use big endian byte order.
+ */
+class ByteBufferDataInput implements DataInput {
+
+  private final ByteBuffer buffer;
+
+  /**
+   * Creates a new input.
+   *
+   * @param buffer the buffer to read from
+   */
+  ByteBufferDataInput(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public void readFully(byte[] bytes) throws IOException {
+    readFully(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public void readFully(byte[] bytes, int offset, int length) throws IOException {
+    require(length);
+    buffer.get(bytes, offset, length);
+  }
+
+  @Override
+  public int skipBytes(int count) {
+    int skipped = Math.max(0, Math.min(count, buffer.remaining()));
+    buffer.position(buffer.position() + skipped);
+    return skipped;
+  }
+
+  @Override
+  public boolean readBoolean() throws IOException {
+    return readByte() != 0;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    require(1);
+    return buffer.get();
+  }
+
+  @Override
+  public int readUnsignedByte() throws IOException {
+    return readByte() & 0xFF;
+  }
+
+  @Override
+  public short readShort() throws IOException {
+    require(2);
+    return buffer.getShort();
+  }
+
+  @Override
+  public int readUnsignedShort() throws IOException {
+    return readShort() & 0xFFFF;
+  }
+
+  @Override
+  public char readChar() throws IOException {
+    require(2);
+    return buffer.getChar();
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    require(4);
+    return buffer.getInt();
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    require(8);
+    return buffer.getLong();
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    require(4);
+    return buffer.getFloat();
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    require(8);
+    return buffer.getDouble();
+  }
+
+  /**
+   * Not supported, NBT has no lines.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public String readLine() {
+    throw new UnsupportedOperationException("readLine is not supported");
+  }
+
+  @Override
+  public String readUTF() throws IOException {
+    return ModifiedUtf8.read(this);
+  }
+
+  private void require(int count) throws EOFException {
+    if (buffer.remaining() < count) {
+      throw new EOFException(
+          "Needed " + count + " bytes, but only " + buffer.remaining() + " are left"
+      );
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package me.ialistannen.mininbt;
+
+import java.io.DataOutput;
+import java.io.UTFDataFormatException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link DataOutput} writing directly into a {@link ByteBuffer}. A fixed buffer throws a
+ * {@link BufferOverflowException} once it is full, a growable one is replaced by a larger heap
+ * buffer instead.
+ */
+class ByteBufferDataOutput implements DataOutput {
+
+  private ByteBuffer buffer;
+  private final boolean growable;
+
+  /**
+   * Creates a new output.
+   *
+   * @param buffer the buffer to write to. Must use big endian byte order.
+   * @param growable whether to replace the buffer with a larger one when it is full
+   */
+  ByteBufferDataOutput(ByteBuffer buffer, boolean growable) {
+    this.buffer = buffer;
+    this.growable = growable;
+  }
+
+  /**
+   * Returns the buffer written to, which is a different one than the initial buffer if it had to
+   * grow.
+   *
+   * @return the buffer written to
+   */
+  ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  @Override
+  public void write(int value) {
+    ensureRemaining(1);
+    buffer.put((byte) value);
+  }
+
+  @Override
+  public void write(byte[] bytes) {
+    write(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    ensureRemaining(length);
+    buffer.put(bytes, offset, length);
+  }
+
+  @Override
+  public void writeBoolean(boolean value) {
+    write(value ? 1 : 0);
+  }
+
+  @Override
+  public void writeByte(int value) {
+    write(value);
+  }
+
+  @Override
+  public void writeShort(int value) {
+    ensureRemaining(2);
+    buffer.putShort((short) value);
+  }
+
+  @Override
+  public void writeChar(int value) {
+    ensureRemaining(2);
+    buffer.putChar((char) value);
+  }
+
+  @Override
+  public void writeInt(int value) {
+    ensureRemaining(4);
+    buffer.putInt(value);
+  }
+
+  @Override
+  public void writeLong(long value) {
+    ensureRemaining(8);
+    buffer.putLong(value);
+  }
+
+  @Override
+  public void writeFloat(float value) {
+    ensureRemaining(4);
+    buffer.putFloat(value);
+  }
+
+  @Override
+  public void writeDouble(double value) {
+    ensureRemaining(8);
+    buffer.putDouble(value);
+  }
+
+  @Override
+  public void writeBytes(String string) {
+    ensureRemaining(string.length());
+    for (int i = 0; i < string.length(); i++) {
+      buffer.put((byte) string.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeChars(String string) {
+    ensureRemaining(string.length() * 2);
+    for (int i = 0; i < string.length(); i++) {
+      buffer.putChar(string.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeUTF(String string) throws UTFDataFormatException {
+    int length = ModifiedUtf8.encodedLength(string);
+    if (length > ModifiedUtf8.MAX_ENCODED_LENGTH) {
+      throw new UTFDataFormatException("Encoded string too long: " + length + " bytes");
+    }
+
+    ensureRemaining(2 + length);
+    buffer.putShort((short) length);
+    if (buffer.hasArray()) {
+      int start = buffer.arrayOffset() + buffer.position();
+      ModifiedUtf8.encode(string, buffer.array(), start);
+      buffer.position(buffer.position() + length);
+    } else if (length == string.length()) {
+      for (int i = 0; i < length; i++) {
+        buffer.put((byte) string.charAt(i));
+      }
+    } else {
+      byte[] bytes = new byte[length];
+      ModifiedUtf8.encode(string, bytes, 0);
+      buffer.put(bytes);
+    }
+  }
+
+  private void ensureRemaining(int count) {
+    if (buffer.remaining() >= count) {
+      return;
+    }
+    if (!growable) {
+      throw new BufferOverflowException();
+    }
+    int capacity = Math.max(buffer.capacity() * 2, buffer.position() + count);
+    ByteBuffer grown = ByteBuffer.allocate(capacity);
+    buffer.flip();
+    grown.put(buffer);
+    buffer = grown;
+  }
+}
@@ -0,0 +1,445 @@
+package me.ialistannen.mininbt;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * A map with {@link String} keys that is optimized for the small sizes most compounds have.
+ *
+ * <p>Up to {@value #DENSE_LIMIT} entries are stored in two parallel arrays which are searched
+ * linearly. Larger maps are promoted to an open addressing hash table with linear probing. Both
+ * avoid the entry objects and the sparse table of a {@link java.util.HashMap}.</p>
+ *
+ * <p>Iteration order is insertion order while the map is small and unspecified afterwards. Null
+ * keys and values are not permitted.</p>
+ *
+ * @param <V> the type of the values
+ */
+class CompactStringMap<V> extends AbstractMap<String, V> {
+
+  /**
+   * The maximum size that is stored in the dense, linearly searched form.
+   */
+  static final int DENSE_LIMIT = 8;
+
+  private static final String[] EMPTY_KEYS = new String[0];
+  private static final Object[] EMPTY_VALUES = new Object[0];
+
+  /**
+   * Marks removed slots in the hash table. Compared by identity only.
+   */
+  @SuppressWarnings("StringOperationCanBeSimplified")
+  private static final String TOMBSTONE = new String("<removed>");
+
+  private String[] keys = EMPTY_KEYS;
+  private Object[] values = EMPTY_VALUES;
+  private int size;
+  /**
+   * The amount of occupied slots including tombstones, only used by the hash table.
+   */
+  private int usedSlots;
+  private boolean hashed;
+  private int modCount;
+
+  private Set<Entry<String, V>> entrySet;
+
+  /**
+   * Creates a new, empty map. No arrays are allocated until the first entry is added.
+   */
+  CompactStringMap() {
+  }
+
+  /**
+   * Creates a copy of another map. The keys and values themselves are shared.
+   *
+   * @param other the map to copy
+   */
+  CompactStringMap(CompactStringMap<V> other) {
+    this.keys = other.size == 0 ? EMPTY_KEYS : other.keys.clone();
+    this.values = other.size == 0 ? EMPTY_VALUES : other.values.clone();
+    this.size = other.size;
+    this.usedSlots = other.usedSlots;
+    this.hashed = other.hashed;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the length of the key and value arrays.
+   *
+   * @return the capacity of this map
+   */
+  int capacity() {
+    return keys.length;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public V get(Object key) {
+    int index = indexOf(key);
+    return index < 0 ? null : valueAt(index);
+  }
+
+  @Override
+  public V put(String key, V value) {
+    Objects.requireNonNull(key, "key can not be null!");
+    Objects.requireNonNull(value, "value can not be null!");
+
+    if (hashed) {
+      return putHashed(key, value);
+    }
+
+    int index = indexOfDense(key);
+    if (index >= 0) {
+      V old = valueAt(index);
+      values[index] = value;
+      return old;
+    }
+
+    if (size == DENSE_LIMIT) {
+      rehash(capacityFor(size + 1));
+      return putHashed(key, value);
+    }
+
+    if (size == keys.length) {
+      int newLength = Math.min(DENSE_LIMIT, Math.max(2, keys.length * 2));
+      keys = Arrays.copyOf(keys, newLength);
+      values = Arrays.copyOf(values, newLength);
+    }
+    keys[size] = key;
+    values[size] = value;
+    size++;
+    modCount++;
+    return null;
+  }
+
+  @Override
+  public V remove(Object key) {
+    int index = indexOf(key);
+    if (index < 0) {
+      return null;
+    }
+    V old = valueAt(index);
+    removeAt(index);
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    keys = EMPTY_KEYS;
+    values = EMPTY_VALUES;
+    size = 0;
+    usedSlots = 0;
+    hashed = false;
+    modCount++;
+  }
+
+  @Override
+  public void replaceAll(BiFunction<? super String, ? super V, ? extends V> function) {
+    Objects.requireNonNull(function, "function can not be null!");
+    int limit = hashed ? keys.length : size;
+    for (int i = 0; i < limit; i++) {
+      String key = keys[i];
+      if (key == null || key == TOMBSTONE) {
+        continue;
+      }
+      values[i] = Objects.requireNonNull(
+          function.apply(key, valueAt(i)), "function returned null!"
+      );
+    }
+  }
+
+  @Override
+  public Set<Entry<String, V>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V valueAt(int index) {
+    return (V) values[index];
+  }
+
+  private int indexOf(Object key) {
+    if (!(key instanceof String)) {
+      return -1;
+    }
+    return hashed ? indexOfHashed(key) : indexOfDense(key);
+  }
+
+  private int indexOfDense(Object key) {
+    for (int i = 0; i < size; i++) {
+      String candidate = keys[i];
+      if (candidate == key || candidate.equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int indexOfHashed(Object key) {
+    int mask = keys.length - 1;
+    int index = spread(key.hashCode()) & mask;
+
+    String candidate;
+    while ((candidate = keys[index]) != null) {
+      if (candidate != TOMBSTONE && (candidate == key || candidate.equals(key))) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+  private V putHashed(String key, V value) {
+    int mask = keys.length - 1;
+    int index = spread(key.hashCode()) & mask;
+    int firstTombstone = -1;
+
+    String candidate;
+    while ((candidate = keys[index]) != null) {
+      if (candidate == TOMBSTONE) {
+        if (firstTombstone < 0) {
+          firstTombstone = index;
+        }
+      } else if (candidate == key || candidate.equals(key)) {
+        V old = valueAt(index);
+        values[index] = value;
+        return old;
+      }
+      index = (index + 1) & mask;
+    }
+
+    if (firstTombstone >= 0) {
+      index = firstTombstone;
+    } else {
+      usedSlots++;
+    }
+    keys[index] = key;
+    values[index] = value;
+    size++;
+    modCount++;
+
+    if (usedSlots > maxUsedSlots(keys.length)) {
+      rehash(capacityFor(size));
+    }
+    return null;
+  }
+
+  private void removeAt(int index) {
+    if (hashed) {
+      keys[index] = TOMBSTONE;
+      values[index] = null;
+    } else {
+      int moved = size - index - 1;
+      System.arraycopy(keys, index + 1, keys, index, moved);
+      System.arraycopy(values, index + 1, values, index, moved);
+      keys[size - 1] = null;
+      values[size - 1] = null;
+    }
+    size--;
+    modCount++;
+  }
+
+  /**
+   * Moves all entries into a fresh hash table, dropping all tombstones.
+   *
+   * @param capacity the new capacity, a power of two
+   */
+  private void rehash(int capacity) {
+    String[] oldKeys = keys;
+    Object[] oldValues = values;
+    boolean wasHashed = hashed;
+
+    keys = new String[capacity];
+    values = new Object[capacity];
+    hashed = true;
+    usedSlots = size;
+    modCount++;
+
+    int mask = capacity - 1;
+    int limit = wasHashed ? oldKeys.length : size;
+    for (int i = 0; i < limit; i++) {
+      String key = oldKeys[i];
+      if (key == null || key == TOMBSTONE) {
+        continue;
+      }
+      int index = spread(key.hashCode()) & mask;
+      while (keys[index] != null) {
+        index = (index + 1) & mask;
+      }
+      keys[index] = key;
+      values[index] = oldValues[i];
+    }
+  }
+
+  private static int capacityFor(int size) {
+    int capacity = 16;
+    while (size > maxUsedSlots(capacity)) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private static int maxUsedSlots(int capacity) {
+    return capacity - (capacity >>> 2);
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private class EntrySet extends AbstractSet<Entry<String, V>> {
+
+    @Override
+    public Iterator<Entry<String, V>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void clear() {
+      CompactStringMap.this.clear();
+    }
+  }
+
+  private class EntryIterator implements Iterator<Entry<String, V>> {
+
+    private int next;
+    private int lastReturned = -1;
+    private int expectedModCount = modCount;
+
+    EntryIterator() {
+      next = advance(0);
+    }
+
+    private int advance(int index) {
+      if (!hashed) {
+        return index;
+      }
+      while (index < keys.length && (keys[index] == null || keys[index] == TOMBSTONE)) {
+        index++;
+      }
+      return index;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < (hashed ? keys.length : size);
+    }
+
+    @Override
+    public Entry<String, V> next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      lastReturned = next;
+      next = advance(next + 1);
+      return new SlotEntry(lastReturned);
+    }
+
+    @Override
+    public void remove() {
+      if (lastReturned < 0) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      removeAt(lastReturned);
+      if (!hashed) {
+        // the following entries were shifted down by one
+        next = lastReturned;
+      }
+      lastReturned = -1;
+      expectedModCount = modCount;
+    }
+  }
+
+  /**
+   * An entry that writes through to its slot in the arrays. Key and value are captured when it is
+   * created, so it stays readable after the entry was removed.
+   */
+  private class SlotEntry implements Entry<String, V> {
+
+    private final int index;
+    private final String key;
+    private V value;
+
+    SlotEntry(int index) {
+      this.index = index;
+      this.key = keys[index];
+      this.value = valueAt(index);
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public V getValue() {
+      return value;
+    }
+
+    @Override
+    public V setValue(V value) {
+      Objects.requireNonNull(value, "value can not be null!");
+      if (keys[index] != key) {
+        throw new IllegalStateException("The entry was removed");
+      }
+      V old = this.value;
+      values[index] = value;
+      this.value = value;
+      return old;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Entry<?, ?> that = (Entry<?, ?>) o;
+      return getKey().equals(that.getKey()) && getValue().equals(that.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return getKey().hashCode() ^ getValue().hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
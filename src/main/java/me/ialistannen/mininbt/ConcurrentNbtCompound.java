@@ -0,0 +1,240 @@
+package me.ialistannen.mininbt;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongUnaryOperator;
+import java.util.function.UnaryOperator;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagDouble;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagInt;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagLong;
+
+/**
+ * A compound that can be read and modified by many threads at once, without external locking.
+ *
+ * <p>It holds a {@link NBTTagCompound#freeze() frozen} compound and replaces it atomically on
+ * every modification with one derived by {@link NBTTagCompound#with(String, INBTBase)}, which
+ * shares all unchanged values. Modifications never block each other or readers, a conflicting
+ * modification is just retried. Each one copies the top level entries, so this suits compounds
+ * with up to a few hundred keys that are read more often than written.</p>
+ *
+ * <p>{@link #snapshot()} returns the current frozen compound, a consistent view of all entries
+ * that later modifications do not change. {@link #toNBT()} converts such a snapshot, so
+ * converting never sees half of a modification and never blocks writers.</p>
+ *
+ * <p>Values are frozen when they are added. Change nested compounds and lists by deriving a new
+ * value in {@link #compute(String, UnaryOperator)}.</p>
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code ConcurrentNbtCompound profile = new ConcurrentNbtCompound(loaded);}
+ * <br>{@code profile.computeInt("kills", kills -> kills + 1);}
+ * <br>{@code store.put(uuid, profile.snapshot()); // on an async worker}
+ */
+public class ConcurrentNbtCompound {
+
+  private final AtomicReference<NBTTagCompound> current;
+
+  /**
+   * Creates an empty compound.
+   */
+  public ConcurrentNbtCompound() {
+    this(new NBTTagCompound().freeze());
+  }
+
+  /**
+   * Creates a compound with the entries of another one.
+   *
+   * @param initial the initial entries. Used as is if it is frozen, copied otherwise.
+   */
+  public ConcurrentNbtCompound(NBTTagCompound initial) {
+    Objects.requireNonNull(initial, "initial can not be null!");
+    this.current = new AtomicReference<>(
+        initial.isFrozen() ? initial : initial.deepCopy().freeze()
+    );
+  }
+
+  /**
+   * Returns the current entries. The returned compound is frozen and never changes.
+   *
+   * @return the current entries
+   */
+  public NBTTagCompound snapshot() {
+    return current.get();
+  }
+
+  /**
+   * Converts the current entries to a tag of the current {@link NbtBackend}.
+   *
+   * @return the converted tag
+   * @see INBTBase#toNBT()
+   */
+  public Object toNBT() {
+    return snapshot().toNBT();
+  }
+
+  /**
+   * @param key The key
+   * @return The assigned {@link INBTBase} or null if none. Frozen.
+   */
+  public INBTBase get(String key) {
+    return snapshot().get(key);
+  }
+
+  public boolean hasKey(String key) {
+    return snapshot().hasKey(key);
+  }
+
+  /**
+   * Sets a value.
+   *
+   * @param key the key
+   * @param value the value. Will be {@link INBTBase#freeze() frozen}.
+   */
+  public void set(String key, INBTBase value) {
+    Objects.requireNonNull(key, "key can not be null!");
+    Objects.requireNonNull(value, "value can not be null!");
+    value.freeze();
+    current.updateAndGet(compound -> compound.with(key, value));
+  }
+
+  /**
+   * Removes a value.
+   *
+   * @param key the key
+   */
+  public void remove(String key) {
+    Objects.requireNonNull(key, "key can not be null!");
+    current.updateAndGet(compound -> compound.without(key));
+  }
+
+  /**
+   * Atomically replaces all entries.
+   *
+   * <p>The function gets the current frozen entries and returns the new ones, usually derived
+   * with the {@code with} and {@code without} methods. It may be called more than once if other
+   * threads modify this compound concurrently, so it should be free of side effects.</p>
+   *
+   * @param function the function computing the new entries. Its result will be {@link
+   *     INBTBase#freeze() frozen}.
+   * @return the new entries
+   */
+  public NBTTagCompound update(UnaryOperator<NBTTagCompound> function) {
+    Objects.requireNonNull(function, "function can not be null!");
+    return current.updateAndGet(
+        compound -> Objects.requireNonNull(function.apply(compound), "result can not be null!")
+            .freeze()
+    );
+  }
+
+  /**
+   * Atomically computes a new value for a key.
+   *
+   * <p>The function may be called more than once if other threads modify this compound
+   * concurrently, so it should be free of side effects.</p>
+   *
+   * @param key the key
+   * @param function the function getting the current frozen value or null and returning the new
+   *     one, or null to remove the key. Its result will be {@link INBTBase#freeze() frozen}.
+   * @return the new value or null if the key was removed
+   */
+  public INBTBase compute(String key, UnaryOperator<INBTBase> function) {
+    Objects.requireNonNull(key, "key can not be null!");
+    Objects.requireNonNull(function, "function can not be null!");
+    while (true) {
+      NBTTagCompound compound = current.get();
+      INBTBase value = function.apply(compound.get(key));
+      NBTTagCompound updated = value == null
+          ? compound.without(key)
+          : compound.with(key, value);
+      if (current.compareAndSet(compound, updated)) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Atomically sets a value if the key is absent, or combines it with the present one.
+   *
+   * @param key the key
+   * @param value the value to set if the key is absent. Will be {@link INBTBase#freeze()
+   *     frozen}.
+   * @param function the function combining the present frozen value with the given one. It
+   *     returns the new value or null to remove the key and may be called more than once.
+   * @return the new value or null if the key was removed
+   */
+  public INBTBase merge(String key, INBTBase value, BinaryOperator<INBTBase> function) {
+    Objects.requireNonNull(value, "value can not be null!");
+    Objects.requireNonNull(function, "function can not be null!");
+    value.freeze();
+    return compute(key, present -> present == null ? value : function.apply(present, value));
+  }
+
+  /**
+   * Atomically computes a new int for a key.
+   *
+   * @param key the key
+   * @param function the function getting the current number, 0 if it is missing or no int like
+   *     for {@link NBTTagCompound#getInt(String)}, and returning the new one. May be called more
+   *     than once.
+   * @return the new number
+   */
+  public int computeInt(String key, IntUnaryOperator function) {
+    Objects.requireNonNull(function, "function can not be null!");
+    return ((NBTTagInt) compute(
+        key, value -> new NBTTagInt(function.applyAsInt(asInt(value)))
+    )).getAsInt();
+  }
+
+  /**
+   * Atomically computes a new long for a key.
+   *
+   * @param key the key
+   * @param function the function getting the current number, 0 if it is missing or no long like
+   *     for {@link NBTTagCompound#getLong(String)}, and returning the new one. May be called more
+   *     than once.
+   * @return the new number
+   */
+  public long computeLong(String key, LongUnaryOperator function) {
+    Objects.requireNonNull(function, "function can not be null!");
+    return ((NBTTagLong) compute(
+        key, value -> new NBTTagLong(function.applyAsLong(asLong(value)))
+    )).getAsLong();
+  }
+
+  /**
+   * Atomically computes a new double for a key.
+   *
+   * @param key the key
+   * @param function the function getting the current number, 0 if it is missing or no double
+   *     like for {@link NBTTagCompound#getDouble(String)}, and returning the new one. May be
+   *     called more than once.
+   * @return the new number
+   */
+  public double computeDouble(String key, DoubleUnaryOperator function) {
+    Objects.requireNonNull(function, "function can not be null!");
+    return ((NBTTagDouble) compute(
+        key, value -> new NBTTagDouble(function.applyAsDouble(asDouble(value)))
+    )).getAsDouble();
+  }
+
+  private static int asInt(INBTBase value) {
+    return value instanceof NBTTagInt ? ((NBTTagInt) value).getAsInt() : 0;
+  }
+
+  private static long asLong(INBTBase value) {
+    return value instanceof NBTTagLong ? ((NBTTagLong) value).getAsLong() : 0;
+  }
+
+  private static double asDouble(INBTBase value) {
+    return value instanceof NBTTagDouble ? ((NBTTagDouble) value).getAsDouble() : 0;
+  }
+
+  @Override
+  public String toString() {
+    return "ConcurrentNbtCompound{" + snapshot() + '}';
+  }
+}
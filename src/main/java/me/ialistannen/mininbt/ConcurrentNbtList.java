@@ -0,0 +1,159 @@
+package me.ialistannen.mininbt;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+
+/**
+ * A list that can be read and modified by many threads at once, without external locking.
+ *
+ * <p>Like the {@link ConcurrentNbtCompound} it holds a {@link NBTTagList#freeze() frozen} list and
+ * atomically replaces it on every modification with one that shares all unchanged elements.
+ * {@link #snapshot()} and {@link #toNBT()} therefore always see a consistent list and never block
+ * writers.</p>
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code ConcurrentNbtList history = new ConcurrentNbtList();}
+ * <br>{@code history.add(new NBTTagString(message));}
+ * <br>{@code compound.set("History", history.snapshot());}
+ */
+public class ConcurrentNbtList {
+
+  private final AtomicReference<NBTTagList> current;
+
+  /**
+   * Creates an empty list.
+   */
+  public ConcurrentNbtList() {
+    this(new NBTTagList().freeze());
+  }
+
+  /**
+   * Creates a list with the elements of another one.
+   *
+   * @param initial the initial elements. Used as is if it is frozen, copied otherwise.
+   */
+  public ConcurrentNbtList(NBTTagList initial) {
+    Objects.requireNonNull(initial, "initial can not be null!");
+    this.current = new AtomicReference<>(
+        initial.isFrozen() ? initial : initial.deepCopy().freeze()
+    );
+  }
+
+  /**
+   * Returns the current elements. The returned list is frozen and never changes.
+   *
+   * @return the current elements
+   */
+  public NBTTagList snapshot() {
+    return current.get();
+  }
+
+  /**
+   * Converts the current elements to a tag of the current {@link NbtBackend}.
+   *
+   * @return the converted tag
+   * @see INBTBase#toNBT()
+   */
+  public Object toNBT() {
+    return snapshot().toNBT();
+  }
+
+  /**
+   * Returns the item
+   *
+   * @param index The index of the item
+   * @return The item. Frozen.
+   */
+  public INBTBase get(int index) {
+    return snapshot().get(index);
+  }
+
+  /**
+   * Returns the amount of items
+   *
+   * @return The amount of items
+   */
+  public int size() {
+    return snapshot().size();
+  }
+
+  /**
+   * Adds the {@link INBTBase}, if the type of the list is correct or the list is empty
+   *
+   * @param base The {@link INBTBase} to add. Will be {@link INBTBase#freeze() frozen}.
+   * @return True if it was added.
+   */
+  public boolean add(INBTBase base) {
+    Objects.requireNonNull(base, "base can not be null!");
+    base.freeze();
+    while (true) {
+      NBTTagList list = current.get();
+      if (!list.isType(base.getClass())) {
+        return false;
+      }
+      if (current.compareAndSet(list, list.withAdded(base))) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Removes the element at an index.
+   *
+   * @param index the index of the element to remove
+   * @throws IndexOutOfBoundsException if the index is out of bounds
+   */
+  public void remove(int index) {
+    current.updateAndGet(list -> list.without(index));
+  }
+
+  /**
+   * Atomically computes a new element for an index.
+   *
+   * <p>The function may be called more than once if other threads modify this list concurrently,
+   * so it should be free of side effects.</p>
+   *
+   * @param index the index of the element
+   * @param function the function getting the current frozen element and returning the new one.
+   *     Its result will be {@link INBTBase#freeze() frozen}.
+   * @return the new element
+   * @throws IndexOutOfBoundsException if the index is out of bounds
+   * @throws IllegalArgumentException if the new element has the wrong type
+   */
+  public INBTBase compute(int index, UnaryOperator<INBTBase> function) {
+    Objects.requireNonNull(function, "function can not be null!");
+    while (true) {
+      NBTTagList list = current.get();
+      INBTBase element = function.apply(list.get(index));
+      if (current.compareAndSet(list, list.with(index, element))) {
+        return element;
+      }
+    }
+  }
+
+  /**
+   * Atomically replaces all elements.
+   *
+   * <p>The function gets the current frozen elements and returns the new ones, usually derived
+   * with the {@code with} and {@code without} methods. It may be called more than once if other
+   * threads modify this list concurrently, so it should be free of side effects.</p>
+   *
+   * @param function the function computing the new elements. Its result will be {@link
+   *     INBTBase#freeze() frozen}.
+   * @return the new elements
+   */
+  public NBTTagList update(UnaryOperator<NBTTagList> function) {
+    Objects.requireNonNull(function, "function can not be null!");
+    return current.updateAndGet(
+        list -> Objects.requireNonNull(function.apply(list), "result can not be null!").freeze()
+    );
+  }
+
+  @Override
+  public String toString() {
+    return "ConcurrentNbtList{" + snapshot() + '}';
+  }
+}
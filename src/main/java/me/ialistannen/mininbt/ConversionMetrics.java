@@ -0,0 +1,76 @@
+package me.ialistannen.mininbt;
+
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NbtEvents.Kind;
+import me.ialistannen.mininbt.metrics.NbtMetrics;
+import me.ialistannen.mininbt.metrics.NbtMetrics.Histogram;
+
+/**
+ * Converts trees between wrappers and backend tags, recording {@link NbtMetrics} and a {@link
+ * NbtEvents flight recorder event} for each tree.
+ *
+ * <p>The nodes and bytes are computed from the wrapper tree, so they are only paid for while
+ * metrics are enabled.</p>
+ */
+class ConversionMetrics {
+
+  private static final Histogram TO_NBT_TIME = NbtMetrics.histogram("nbt.toNBT.time");
+  private static final Histogram TO_NBT_NODES = NbtMetrics.histogram("nbt.toNBT.nodes");
+  private static final Histogram TO_NBT_BYTES = NbtMetrics.histogram("nbt.toNBT.bytes");
+
+  private static final Histogram FROM_NBT_TIME = NbtMetrics.histogram("nbt.fromNBT.time");
+  private static final Histogram FROM_NBT_NODES = NbtMetrics.histogram("nbt.fromNBT.nodes");
+  private static final Histogram FROM_NBT_BYTES = NbtMetrics.histogram("nbt.fromNBT.bytes");
+
+  /**
+   * Converts a wrapper tree to the tags of a backend.
+   *
+   * @param tag the root of the tree
+   * @param backend the backend to convert with
+   * @param source what the tree belongs to, e.g. {@code "item"}
+   * @return the converted tag
+   */
+  static Object toNBT(INBTBase tag, NbtBackend backend, String source) {
+    Object event = NbtEvents.begin(Kind.TO_NBT);
+    if (!NbtMetrics.isEnabled()) {
+      Object converted = tag.toNBT(backend);
+      NbtEvents.commit(event, source, tag);
+      return converted;
+    }
+    long start = NbtMetrics.startTimer();
+    Object converted = tag.toNBT(backend);
+    TO_NBT_TIME.recordSince(start);
+    NbtEvents.commit(event, source, tag);
+
+    TO_NBT_NODES.record(NbtSizes.nodeCount(tag));
+    TO_NBT_BYTES.record(tag.serializedSize());
+    return converted;
+  }
+
+  /**
+   * Converts a tag tree of a backend to wrappers.
+   *
+   * @param nbtObject the root of the tree
+   * @param backend the backend the tag belongs to
+   * @param source what the tree belongs to, e.g. {@code "item"}
+   * @return the converted tag or null if the tag is not supported
+   */
+  static INBTBase fromNBT(Object nbtObject, NbtBackend backend, String source) {
+    Object event = NbtEvents.begin(Kind.FROM_NBT);
+    if (!NbtMetrics.isEnabled()) {
+      INBTBase converted = INBTBase.fromNBT(nbtObject, backend);
+      NbtEvents.commit(event, source, converted);
+      return converted;
+    }
+    long start = NbtMetrics.startTimer();
+    INBTBase converted = INBTBase.fromNBT(nbtObject, backend);
+    FROM_NBT_TIME.recordSince(start);
+    NbtEvents.commit(event, source, converted);
+
+    if (converted != null) {
+      FROM_NBT_NODES.record(NbtSizes.nodeCount(converted));
+      FROM_NBT_BYTES.record(converted.serializedSize());
+    }
+    return converted;
+  }
+}
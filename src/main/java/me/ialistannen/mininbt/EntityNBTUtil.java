@@ -5,6 +5,9 @@ import java.util.Objects;
 import me.ialistannen.mininbt.EntityMethodHelper.DeletableEntitySpawner;
 import me.ialistannen.mininbt.NBTWrappers.INBTBase;
 import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NbtEvents.Kind;
+import me.ialistannen.mininbt.metrics.NbtMetrics;
+import me.ialistannen.mininbt.metrics.NbtMetrics.Histogram;
 import me.ialistannen.mininbt.reflection.BukkitReflection.ClassLookup;
 import me.ialistannen.mininbt.reflection.FluentReflection.FluentMethod;
 import me.ialistannen.mininbt.reflection.FluentReflection.FluentType;
@@ -30,57 +33,8 @@ import org.bukkit.entity.EntityType;
  */
 public class EntityNBTUtil {
 
-  private static FluentMethod loadFromNbtMethod, saveToNbtMethod, getHandle;
-
-  static {
-    getHandle = ClassLookup.OBC.forName("entity.CraftEntity")
-        .getOrThrow()
-        .findMethod()
-        .withName("getHandle")
-        .findSingle()
-        .getOrThrow();
-
-    EntityMethodHelper entityHelper = new EntityMethodHelper(
-        new DeletableEntitySpawner() {
-
-          private Entity sample;
-
-          @Override
-          public Object spawn() {
-            if (Bukkit.getWorlds().isEmpty()) {
-              throw new IllegalStateException("Called me before at least one world was loaded...");
-            }
-            World world = Bukkit.getWorlds().get(0);
-            sample = world.spawnEntity(world.getSpawnLocation(), EntityType.ARMOR_STAND);
-
-            return getHandle.invoke(sample).getOrThrow();
-          }
-
-          @Override
-          public void remove() {
-            sample.remove();
-          }
-
-          @Override
-          public FluentType<?> getBaseClassForLoadAndSaveMethods() {
-            return ClassLookup.NMS.forName("Entity").getOrThrow();
-          }
-        }
-    );
-    loadFromNbtMethod = entityHelper.getLoadFromNbtMethod();
-    saveToNbtMethod = entityHelper.getSaveToNbtMethod();
-
-  }
-
-  /**
-   * Returns the NMS handle of a bukkit entity.
-   *
-   * @param entity the bukkit entity
-   * @return the NMS entity
-   */
-  private static Object toNMSEntity(Entity entity) {
-    return getHandle.invoke(entity).getOrThrow();
-  }
+  private static final Histogram GET_TAG_TIME = NbtMetrics.histogram("util.entity.getNbtTag");
+  private static final Histogram SET_TAG_TIME = NbtMetrics.histogram("util.entity.setNbtTag");
 
   /**
    * Retrieves the NBT tag of an entity.
@@ -90,21 +44,22 @@ public class EntityNBTUtil {
    * @throws NullPointerException if {@code entity} is null
    */
   public static NBTTagCompound getNbtTag(Entity entity) {
-    Objects.requireNonNull(entity, "entity can not be null");
+    long start = NbtMetrics.startTimer();
+    try {
+      Objects.requireNonNull(entity, "entity can not be null");
 
-    Object nmsEntity = toNMSEntity(entity);
-    NBTTagCompound entityNBT = new NBTTagCompound();
+      NbtBackend backend = NBTWrappers.getBackend();
 
-    Object nbtNMS = entityNBT.toNBT();
-    saveToNbtMethod.invoke(nmsEntity, nbtNMS).ensureSuccessful();
-    if (nbtNMS == null) {
-      throw new NullPointerException(
-          "SaveToNBT method set Nbt tag to null. Version incompatible?" + nmsEntity.getClass()
+      Object event = NbtEvents.begin(Kind.ENTITY_SAVE);
+      NBTTagCompound compound = (NBTTagCompound) ConversionMetrics.fromNBT(
+          backend.saveEntity(entity), backend, "entity"
       );
-    }
-    entityNBT = (NBTTagCompound) INBTBase.fromNBT(nbtNMS);
+      NbtEvents.commit(event, "entity", compound);
 
-    return entityNBT;
+      return compound;
+    } finally {
+      GET_TAG_TIME.recordSince(start);
+    }
   }
 
   /**
@@ -115,12 +70,19 @@ public class EntityNBTUtil {
    * @throws NullPointerException if {@code entity} or {@code compound} is null
    */
   public static void setNbtTag(Entity entity, NBTTagCompound compound) {
-    Objects.requireNonNull(entity, "entity can not be null");
-    Objects.requireNonNull(compound, "compound can not be null");
-
-    Object nmsEntity = toNMSEntity(entity);
-
-    loadFromNbtMethod.invoke(nmsEntity, compound.toNBT()).ensureSuccessful();
+    long start = NbtMetrics.startTimer();
+    try {
+      Objects.requireNonNull(entity, "entity can not be null");
+      Objects.requireNonNull(compound, "compound can not be null");
+
+      NbtBackend backend = NBTWrappers.getBackend();
+
+      Object event = NbtEvents.begin(Kind.ENTITY_LOAD);
+      backend.loadEntity(entity, ConversionMetrics.toNBT(compound, backend, "entity"));
+      NbtEvents.commit(event, "entity", compound);
+    } finally {
+      SET_TAG_TIME.recordSince(start);
+    }
   }
 
   /**
@@ -143,4 +105,84 @@ public class EntityNBTUtil {
 
     setNbtTag(entity, entityData);
   }
+
+  /**
+   * The reflective entity hooks of the default {@link NbtBackend}. Only initialized when they are
+   * used, so backends calling the server directly do not need to spawn a sample entity.
+   */
+  static class ReflectiveHooks {
+
+    private static FluentMethod loadFromNbtMethod, saveToNbtMethod, getHandle;
+
+    static {
+      getHandle = ClassLookup.OBC.forName("entity.CraftEntity")
+          .getOrThrow()
+          .findMethod()
+          .withName("getHandle")
+          .findSingle()
+          .getOrThrow();
+
+      EntityMethodHelper entityHelper = new EntityMethodHelper(
+          new DeletableEntitySpawner() {
+
+            private Entity sample;
+
+            @Override
+            public Object spawn() {
+              if (Bukkit.getWorlds().isEmpty()) {
+                throw new IllegalStateException(
+                    "Called me before at least one world was loaded..."
+                );
+              }
+              World world = Bukkit.getWorlds().get(0);
+              sample = world.spawnEntity(world.getSpawnLocation(), EntityType.ARMOR_STAND);
+
+              return getHandle.invoke(sample).getOrThrow();
+            }
+
+            @Override
+            public void remove() {
+              sample.remove();
+            }
+
+            @Override
+            public FluentType<?> getBaseClassForLoadAndSaveMethods() {
+              return ClassLookup.NMS.forName("Entity").getOrThrow();
+            }
+          }
+      );
+      loadFromNbtMethod = entityHelper.getLoadFromNbtMethod();
+      saveToNbtMethod = entityHelper.getSaveToNbtMethod();
+    }
+
+    /**
+     * Returns the NMS handle of a bukkit entity.
+     *
+     * @param entity the bukkit entity
+     * @return the NMS entity
+     */
+    private static Object toNMSEntity(Entity entity) {
+      return getHandle.invoke(entity).getOrThrow();
+    }
+
+    /**
+     * Saves an entity to a NMS compound.
+     *
+     * @param entity the entity to save
+     * @param nbtTag the NMS compound to save it to
+     */
+    static void save(Entity entity, Object nbtTag) {
+      saveToNbtMethod.invoke(toNMSEntity(entity), nbtTag).ensureSuccessful();
+    }
+
+    /**
+     * Loads an entity from a NMS compound.
+     *
+     * @param entity the entity to load
+     * @param nbtTag the NMS compound to load it from
+     */
+    static void load(Entity entity, Object nbtTag) {
+      loadFromNbtMethod.invoke(toNMSEntity(entity), nbtTag).ensureSuccessful();
+    }
+  }
 }
@@ -0,0 +1,828 @@
+package me.ialistannen.mininbt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.reflection.BukkitReflection.ClassLookup;
+import org.bukkit.block.BlockState;
+import org.bukkit.entity.Entity;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * A pure Java {@link NbtBackend}, converting the wrappers to the stand-in tag classes nested in
+ * this class instead of NMS tags.
+ *
+ * <p>The stand-ins are package private and have the names and the shape of the NMS classes: the
+ * same constructors, the fields and methods the reflective backend looks for, and the parser and
+ * stream utility classes. This allows testing and benchmarking conversions, {@link NbtParser},
+ * {@link StreamNBTUtil} and {@link NbtPath#getFromNms(Object)} without a server, either directly
+ * with this backend or through the reflective lookups of the default backend.</p>
+ *
+ * <p>There is no server behind this backend, so the item, entity and tile entity hooks throw an
+ * {@link UnsupportedOperationException}.</p>
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code NBTWrappers.setBackend(new InMemoryNbtBackend());}
+ * <br>{@code NBTTagCompound parsed = NbtParser.parse("{id:\"minecraft:stone\",Count:1b}");}
+ */
+public class InMemoryNbtBackend implements NbtBackend {
+
+  /**
+   * The backend the stand-in parser and stream utility classes convert with.
+   */
+  private static final InMemoryNbtBackend INSTANCE = new InMemoryNbtBackend();
+
+  /**
+   * Returns a lookup finding the stand-in classes by their NMS names, for use with the reflective
+   * backend.
+   *
+   * @return the lookup
+   */
+  static ClassLookup classLookup() {
+    return ClassLookup.of(name -> InMemoryNbtBackend.class.getName() + "$" + name);
+  }
+
+  @Override
+  public byte getTypeId(Object tag) {
+    return tag instanceof NBTBase ? ((NBTBase) tag).getTypeId() : NbtCodec.TAG_END;
+  }
+
+  @Override
+  public Object createByte(byte value) {
+    return new NBTTagByte(value);
+  }
+
+  @Override
+  public byte getByte(Object tag) {
+    return ((NBTTagByte) tag).asByte();
+  }
+
+  @Override
+  public Object createShort(short value) {
+    return new NBTTagShort(value);
+  }
+
+  @Override
+  public short getShort(Object tag) {
+    return ((NBTTagShort) tag).asShort();
+  }
+
+  @Override
+  public Object createInt(int value) {
+    return new NBTTagInt(value);
+  }
+
+  @Override
+  public int getInt(Object tag) {
+    return ((NBTTagInt) tag).asInt();
+  }
+
+  @Override
+  public Object createLong(long value) {
+    return new NBTTagLong(value);
+  }
+
+  @Override
+  public long getLong(Object tag) {
+    return ((NBTTagLong) tag).asLong();
+  }
+
+  @Override
+  public Object createFloat(float value) {
+    return new NBTTagFloat(value);
+  }
+
+  @Override
+  public float getFloat(Object tag) {
+    return ((NBTTagFloat) tag).asFloat();
+  }
+
+  @Override
+  public Object createDouble(double value) {
+    return new NBTTagDouble(value);
+  }
+
+  @Override
+  public double getDouble(Object tag) {
+    return ((NBTTagDouble) tag).asDouble();
+  }
+
+  @Override
+  public Object createByteArray(byte[] value) {
+    return new NBTTagByteArray(value);
+  }
+
+  @Override
+  public byte[] getByteArray(Object tag) {
+    return ((NBTTagByteArray) tag).getBytes();
+  }
+
+  @Override
+  public Object createIntArray(int[] value) {
+    return new NBTTagIntArray(value);
+  }
+
+  @Override
+  public int[] getIntArray(Object tag) {
+    return ((NBTTagIntArray) tag).getInts();
+  }
+
+  @Override
+  public Object createLongArray(long[] value) {
+    return new NBTTagLongArray(value);
+  }
+
+  @Override
+  public long[] getLongArray(Object tag) {
+    return ((NBTTagLongArray) tag).getLongs();
+  }
+
+  @Override
+  public Object createString(String value) {
+    return new NBTTagString(value);
+  }
+
+  @Override
+  public String getString(Object tag) {
+    return ((NBTTagString) tag).data;
+  }
+
+  @Override
+  public Object createCompound() {
+    return new NBTTagCompound();
+  }
+
+  @Override
+  public Collection<String> getCompoundKeys(Object compound) {
+    return new ArrayList<>(((NBTTagCompound) compound).map.keySet());
+  }
+
+  @Override
+  public Object getCompoundValue(Object compound, String key) {
+    return ((NBTTagCompound) compound).get(key);
+  }
+
+  @Override
+  public void setCompoundValue(Object compound, String key, Object value) {
+    ((NBTTagCompound) compound).set(key, (NBTBase) value);
+  }
+
+  @Override
+  public Object createList(List<?> elements) {
+    NBTTagList list = new NBTTagList();
+    for (int i = 0; i < elements.size(); i++) {
+      list.add(i, (NBTBase) elements.get(i));
+    }
+    return list;
+  }
+
+  @Override
+  public List<?> getListElements(Object list) {
+    return ((NBTTagList) list).list;
+  }
+
+  @Override
+  public Object parseCompound(String snbt) {
+    return MojangsonParser.parse(snbt);
+  }
+
+  @Override
+  public Object readCompressed(InputStream inputStream) throws IOException {
+    return NBTCompressedStreamTools.a(inputStream);
+  }
+
+  @Override
+  public void writeCompressed(Object compound, OutputStream outputStream) throws IOException {
+    NBTCompressedStreamTools.a((NBTTagCompound) compound, outputStream);
+  }
+
+  @Override
+  public Object getItemTag(ItemStack itemStack) {
+    throw noServer();
+  }
+
+  @Override
+  public ItemStack setItemTag(ItemStack itemStack, Object compound) {
+    throw noServer();
+  }
+
+  @Override
+  public Object saveEntity(Entity entity) {
+    throw noServer();
+  }
+
+  @Override
+  public void loadEntity(Entity entity, Object compound) {
+    throw noServer();
+  }
+
+  @Override
+  public Object saveTileEntity(BlockState blockState) {
+    throw noServer();
+  }
+
+  @Override
+  public void loadTileEntity(BlockState blockState, Object compound) {
+    throw noServer();
+  }
+
+  @Override
+  public void loadTileEntitiesInChunk(Map<BlockState, Object> compounds) {
+    throw noServer();
+  }
+
+  private static UnsupportedOperationException noServer() {
+    return new UnsupportedOperationException("The in-memory backend has no server to access");
+  }
+
+  /**
+   * The base class of all stand-in tags.
+   */
+  static abstract class NBTBase {
+
+    /**
+     * Returns the id of this tag type in the binary NBT format.
+     *
+     * @return the type id
+     */
+    public abstract byte getTypeId();
+  }
+
+  /**
+   * The base class of all numeric stand-in tags. The reflective backend finds the getter of a
+   * number tag as the one overriding a method of this class.
+   */
+  static abstract class NBTNumber extends NBTBase {
+
+    public abstract long asLong();
+
+    public abstract int asInt();
+
+    public abstract short asShort();
+
+    public abstract byte asByte();
+
+    public abstract double asDouble();
+
+    public abstract float asFloat();
+  }
+
+  /**
+   * A stand-in for the NMS NBTTagByte.
+   */
+  static class NBTTagByte extends NBTNumber {
+
+    private final byte data;
+
+    public NBTTagByte(byte data) {
+      this.data = data;
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_BYTE;
+    }
+
+    @Override
+    public long asLong() {
+      return data;
+    }
+
+    @Override
+    public int asInt() {
+      return data;
+    }
+
+    @Override
+    public short asShort() {
+      return data;
+    }
+
+    @Override
+    public byte asByte() {
+      return data;
+    }
+
+    @Override
+    public double asDouble() {
+      return data;
+    }
+
+    @Override
+    public float asFloat() {
+      return data;
+    }
+
+    @Override
+    public String toString() {
+      return data + "b";
+    }
+  }
+
+  /**
+   * A stand-in for the NMS NBTTagShort.
+   */
+  static class NBTTagShort extends NBTNumber {
+
+    private final short data;
+
+    public NBTTagShort(short data) {
+      this.data = data;
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_SHORT;
+    }
+
+    @Override
+    public long asLong() {
+      return data;
+    }
+
+    @Override
+    public int asInt() {
+      return data;
+    }
+
+    @Override
+    public short asShort() {
+      return data;
+    }
+
+    @Override
+    public byte asByte() {
+      return (byte) data;
+    }
+
+    @Override
+    public double asDouble() {
+      return data;
+    }
+
+    @Override
+    public float asFloat() {
+      return data;
+    }
+
+    @Override
+    public String toString() {
+      return data + "s";
+    }
+  }
+
+  /**
+   * A stand-in for the NMS NBTTagInt.
+   */
+  static class NBTTagInt extends NBTNumber {
+
+    private final int data;
+
+    public NBTTagInt(int data) {
+      this.data = data;
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_INT;
+    }
+
+    @Override
+    public long asLong() {
+      return data;
+    }
+
+    @Override
+    public int asInt() {
+      return data;
+    }
+
+    @Override
+    public short asShort() {
+      return (short) data;
+    }
+
+    @Override
+    public byte asByte() {
+      return (byte) data;
+    }
+
+    @Override
+    public double asDouble() {
+      return data;
+    }
+
+    @Override
+    public float asFloat() {
+      return data;
+    }
+
+    @Override
+    public String toString() {
+      return Integer.toString(data);
+    }
+  }
+
+  /**
+   * A stand-in for the NMS NBTTagLong.
+   */
+  static class NBTTagLong extends NBTNumber {
+
+    private final long data;
+
+    public NBTTagLong(long data) {
+      this.data = data;
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_LONG;
+    }
+
+    @Override
+    public long asLong() {
+      return data;
+    }
+
+    @Override
+    public int asInt() {
+      return (int) data;
+    }
+
+    @Override
+    public short asShort() {
+      return (short) data;
+    }
+
+    @Override
+    public byte asByte() {
+      return (byte) data;
+    }
+
+    @Override
+    public double asDouble() {
+      return data;
+    }
+
+    @Override
+    public float asFloat() {
+      return data;
+    }
+
+    @Override
+    public String toString() {
+      return data + "L";
+    }
+  }
+
+  /**
+   * A stand-in for the NMS NBTTagFloat.
+   */
+  static class NBTTagFloat extends NBTNumber {
+
+    private final float data;
+
+    public NBTTagFloat(float data) {
+      this.data = data;
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_FLOAT;
+    }
+
+    @Override
+    public long asLong() {
+      return (long) data;
+    }
+
+    @Override
+    public int asInt() {
+      return (int) data;
+    }
+
+    @Override
+    public short asShort() {
+      return (short) data;
+    }
+
+    @Override
+    public byte asByte() {
+      return (byte) data;
+    }
+
+    @Override
+    public double asDouble() {
+      return data;
+    }
+
+    @Override
+    public float asFloat() {
+      return data;
+    }
+
+    @Override
+    public String toString() {
+      return data + "f";
+    }
+  }
+
+  /**
+   * A stand-in for the NMS NBTTagDouble.
+   */
+  static class NBTTagDouble extends NBTNumber {
+
+    private final double data;
+
+    public NBTTagDouble(double data) {
+      this.data = data;
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_DOUBLE;
+    }
+
+    @Override
+    public long asLong() {
+      return (long) data;
+    }
+
+    @Override
+    public int asInt() {
+      return (int) data;
+    }
+
+    @Override
+    public short asShort() {
+      return (short) data;
+    }
+
+    @Override
+    public byte asByte() {
+      return (byte) data;
+    }
+
+    @Override
+    public double asDouble() {
+      return data;
+    }
+
+    @Override
+    public float asFloat() {
+      return (float) data;
+    }
+
+    @Override
+    public String toString() {
+      return data + "d";
+    }
+  }
+
+  /**
+   * A stand-in for the NMS NBTTagByteArray.
+   */
+  static class NBTTagByteArray extends NBTBase {
+
+    private final byte[] data;
+
+    public NBTTagByteArray(byte[] data) {
+      this.data = data;
+    }
+
+    public byte[] getBytes() {
+      return data;
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_BYTE_ARRAY;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder result = new StringBuilder("[B;");
+      for (int i = 0; i < data.length; i++) {
+        result.append(i == 0 ? "" : ",").append(data[i]).append('b');
+      }
+      return result.append(']').toString();
+    }
+  }
+
+  /**
+   * A stand-in for the NMS NBTTagIntArray.
+   */
+  static class NBTTagIntArray extends NBTBase {
+
+    private final int[] data;
+
+    public NBTTagIntArray(int[] data) {
+      this.data = data;
+    }
+
+    public int[] getInts() {
+      return data;
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_INT_ARRAY;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder result = new StringBuilder("[I;");
+      for (int i = 0; i < data.length; i++) {
+        result.append(i == 0 ? "" : ",").append(data[i]);
+      }
+      return result.append(']').toString();
+    }
+  }
+
+  /**
+   * A stand-in for the NMS NBTTagLongArray.
+   */
+  static class NBTTagLongArray extends NBTBase {
+
+    private final long[] data;
+
+    public NBTTagLongArray(long[] data) {
+      this.data = data;
+    }
+
+    public long[] getLongs() {
+      return data;
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_LONG_ARRAY;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder result = new StringBuilder("[L;");
+      for (int i = 0; i < data.length; i++) {
+        result.append(i == 0 ? "" : ",").append(data[i]).append('L');
+      }
+      return result.append(']').toString();
+    }
+  }
+
+  /**
+   * A stand-in for the NMS NBTTagString.
+   */
+  static class NBTTagString extends NBTBase {
+
+    private final String data;
+
+    public NBTTagString(String data) {
+      this.data = data;
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_STRING;
+    }
+
+    @Override
+    public String toString() {
+      return quote(data);
+    }
+  }
+
+  /**
+   * A stand-in for the NMS NBTTagCompound.
+   */
+  static class NBTTagCompound extends NBTBase {
+
+    private final Map<String, NBTBase> map = new LinkedHashMap<>();
+
+    public NBTTagCompound() {
+    }
+
+    public Set<String> getKeys() {
+      return map.keySet();
+    }
+
+    public void set(String key, NBTBase value) {
+      map.put(key, value);
+    }
+
+    public NBTBase get(String key) {
+      return map.get(key);
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_COMPOUND;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder result = new StringBuilder("{");
+      for (Map.Entry<String, NBTBase> entry : map.entrySet()) {
+        if (result.length() > 1) {
+          result.append(',');
+        }
+        result.append(quote(entry.getKey())).append(':').append(entry.getValue());
+      }
+      return result.append('}').toString();
+    }
+  }
+
+  /**
+   * A stand-in for the NMS NBTTagList.
+   */
+  static class NBTTagList extends NBTBase {
+
+    private final List<NBTBase> list = new ArrayList<>();
+
+    public NBTTagList() {
+    }
+
+    public void add(int index, NBTBase tag) {
+      list.add(index, tag);
+    }
+
+    public NBTBase get(int index) {
+      return list.get(index);
+    }
+
+    public int size() {
+      return list.size();
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_LIST;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder result = new StringBuilder("[");
+      for (int i = 0; i < list.size(); i++) {
+        result.append(i == 0 ? "" : ",").append(list.get(i));
+      }
+      return result.append(']').toString();
+    }
+  }
+
+  /**
+   * A stand-in for the NMS MojangsonParser, based on the {@link SnbtReader}.
+   */
+  static class MojangsonParser {
+
+    /**
+     * Parses a compound.
+     *
+     * @param snbt the SNBT to parse
+     * @return the parsed compound
+     * @throws IllegalArgumentException if the SNBT is malformed
+     */
+    public static NBTTagCompound parse(String snbt) {
+      return (NBTTagCompound) SnbtReader.parseCompound(snbt).toNBT(INSTANCE);
+    }
+  }
+
+  /**
+   * A stand-in for the NMS NBTCompressedStreamTools, based on {@link NbtCodec}.
+   */
+  static class NBTCompressedStreamTools {
+
+    /**
+     * Reads a gzip compressed root compound.
+     *
+     * @param inputStream the stream to read from
+     * @return the read compound
+     * @throws IOException if an error occurs while reading
+     */
+    public static NBTTagCompound a(InputStream inputStream) throws IOException {
+      return (NBTTagCompound) NbtCodec.readCompressed(inputStream).toNBT(INSTANCE);
+    }
+
+    /**
+     * Writes a gzip compressed root compound.
+     *
+     * @param compound the compound to write
+     * @param outputStream the stream to write to
+     * @throws IOException if an error occurs while writing
+     */
+    public static void a(NBTTagCompound compound, OutputStream outputStream) throws IOException {
+      NbtCodec.writeCompressed(
+          (NBTWrappers.NBTTagCompound) INBTBase.fromNBT(compound, INSTANCE), outputStream
+      );
+    }
+  }
+
+  private static String quote(String string) {
+    return '"' + string.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+  }
+}
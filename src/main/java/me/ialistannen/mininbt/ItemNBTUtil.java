@@ -2,6 +2,8 @@ package me.ialistannen.mininbt;
 
 import me.ialistannen.mininbt.NBTWrappers.INBTBase;
 import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.metrics.NbtMetrics;
+import me.ialistannen.mininbt.metrics.NbtMetrics.Histogram;
 import me.ialistannen.mininbt.reflection.BukkitReflection.ClassLookup;
 import me.ialistannen.mininbt.reflection.FluentReflection.FluentMethod;
 import me.ialistannen.mininbt.reflection.FluentReflection.FluentType;
@@ -17,58 +19,8 @@ import java.lang.reflect.Modifier;
  */
 public class ItemNBTUtil {
 
-  private static final FluentMethod AS_NMS_COPY = ClassLookup.OBC
-      .forName("inventory.CraftItemStack")
-      .getOrThrow()
-      .findMethod()
-      .withName("asNMSCopy")
-      .withParameters(ItemStack.class)
-      .findSingle()
-      .getOrThrow();
-  private static final FluentMethod AS_BUKKIT_COPY = ClassLookup.OBC
-      .forName("inventory.CraftItemStack")
-      .getOrThrow()
-      .findMethod()
-      .withName("asBukkitCopy")
-      .withReturnType(ItemStack.class)
-      .findSingle()
-      .getOrThrow();
-
-  private static final FluentMethod GET_TAG = ClassLookup.NMS
-      .forName("ItemStack")
-      .getOrThrow()
-      .findMethod()
-      .withName("getTag")
-      .findSingle()
-      .getOrThrow();
-  private static final FluentMethod SET_TAG = ClassLookup.NMS
-      .forName("ItemStack")
-      .getOrThrow()
-      .findMethod()
-      .withName("setTag")
-      .withModifiers(Modifier.PUBLIC)
-      .findSingle()
-      .getOrThrow();
-
-  /**
-   * Converts an {@link ItemStack} to its nms counterpart.
-   *
-   * @param itemStack the {@link ItemStack} to convert
-   * @return the NMS Item stack
-   */
-  private static Object asNMSCopy(ItemStack itemStack) {
-    return AS_NMS_COPY.invokeStatic(itemStack).getOrThrow();
-  }
-
-  /**
-   * Converts an nms ItemStack to a bukkit {@link ItemStack}.
-   *
-   * @param nmsItem the NMS item to convert
-   * @return the converted Item
-   */
-  private static ItemStack asBukkitCopy(Object nmsItem) {
-    return (ItemStack) AS_BUKKIT_COPY.invokeStatic(nmsItem).getOrThrow();
-  }
+  private static final Histogram SET_TAG_TIME = NbtMetrics.histogram("util.item.setNBTTag");
+  private static final Histogram GET_TAG_TIME = NbtMetrics.histogram("util.item.getTag");
 
   /**
    * Sets the NBT tag of an item.
@@ -78,12 +30,13 @@ public class ItemNBTUtil {
    * @return the modified item
    */
   public static ItemStack setNBTTag(NBTTagCompound tag, ItemStack itemStack) {
-    Object nbtTag = tag.toNBT();
-    Object nmsItem = asNMSCopy(itemStack);
-
-    SET_TAG.invoke(nmsItem, nbtTag).ensureSuccessful();
-
-    return asBukkitCopy(nmsItem);
+    long start = NbtMetrics.startTimer();
+    try {
+      NbtBackend backend = NBTWrappers.getBackend();
+      return backend.setItemTag(itemStack, ConversionMetrics.toNBT(tag, backend, "item"));
+    } finally {
+      SET_TAG_TIME.recordSince(start);
+    }
   }
 
   /**
@@ -94,22 +47,113 @@ public class ItemNBTUtil {
    * @throws IllegalArgumentException if the tag was no compound tag or could not be converted
    */
   public static NBTTagCompound getTag(ItemStack itemStack) {
-    Object nmsItem = asNMSCopy(itemStack);
+    long start = NbtMetrics.startTimer();
+    try {
+      NbtBackend backend = NBTWrappers.getBackend();
+      Object tag = backend.getItemTag(itemStack);
+
+      if (tag == null) {
+        return new NBTTagCompound();
+      }
+      INBTBase base = ConversionMetrics.fromNBT(tag, backend, "item");
+      if (base == null || base.getClass() != NBTTagCompound.class) {
+        throw new IllegalArgumentException("The tag I received was not valid: " + tag);
+      }
 
-    if (nmsItem == null) {
-      throw new NullPointerException("Unable to find a nms item clone for " + itemStack);
+      return (NBTTagCompound) base;
+    } finally {
+      GET_TAG_TIME.recordSince(start);
     }
+  }
+
+  /**
+   * The reflective item hooks of the default {@link NbtBackend}. Only initialized when they are
+   * used, so backends calling the server directly do not resolve them.
+   */
+  static class ReflectiveHooks {
 
-    Object tag = GET_TAG.invoke(nmsItem).getOrThrow();
+    private static final FluentMethod AS_NMS_COPY = ClassLookup.OBC
+        .forName("inventory.CraftItemStack")
+        .getOrThrow()
+        .findMethod()
+        .withName("asNMSCopy")
+        .withParameters(ItemStack.class)
+        .findSingle()
+        .getOrThrow();
+    private static final FluentMethod AS_BUKKIT_COPY = ClassLookup.OBC
+        .forName("inventory.CraftItemStack")
+        .getOrThrow()
+        .findMethod()
+        .withName("asBukkitCopy")
+        .withReturnType(ItemStack.class)
+        .findSingle()
+        .getOrThrow();
 
-    if (tag == null) {
-      return new NBTTagCompound();
+    private static final FluentMethod GET_TAG = ClassLookup.NMS
+        .forName("ItemStack")
+        .getOrThrow()
+        .findMethod()
+        .withName("getTag")
+        .findSingle()
+        .getOrThrow();
+    private static final FluentMethod SET_TAG = ClassLookup.NMS
+        .forName("ItemStack")
+        .getOrThrow()
+        .findMethod()
+        .withName("setTag")
+        .withModifiers(Modifier.PUBLIC)
+        .findSingle()
+        .getOrThrow();
+
+    /**
+     * Converts an {@link ItemStack} to its nms counterpart.
+     *
+     * @param itemStack the {@link ItemStack} to convert
+     * @return the NMS Item stack
+     */
+    private static Object asNMSCopy(ItemStack itemStack) {
+      return AS_NMS_COPY.invokeStatic(itemStack).getOrThrow();
     }
-    INBTBase base = INBTBase.fromNBT(tag);
-    if (base == null || base.getClass() != NBTTagCompound.class) {
-      throw new IllegalArgumentException("The tag I received was not valid: " + tag);
+
+    /**
+     * Converts an nms ItemStack to a bukkit {@link ItemStack}.
+     *
+     * @param nmsItem the NMS item to convert
+     * @return the converted Item
+     */
+    private static ItemStack asBukkitCopy(Object nmsItem) {
+      return (ItemStack) AS_BUKKIT_COPY.invokeStatic(nmsItem).getOrThrow();
     }
 
-    return (NBTTagCompound) base;
+    /**
+     * Returns the tag of a NMS copy of an item.
+     *
+     * @param itemStack the item
+     * @return the NMS tag or null if it has none
+     */
+    static Object getTag(ItemStack itemStack) {
+      Object nmsItem = asNMSCopy(itemStack);
+
+      if (nmsItem == null) {
+        throw new NullPointerException("Unable to find a nms item clone for " + itemStack);
+      }
+
+      return GET_TAG.invoke(nmsItem).getOrThrow();
+    }
+
+    /**
+     * Sets the tag of a NMS copy of an item.
+     *
+     * @param itemStack the item
+     * @param nbtTag the NMS tag to set
+     * @return the modified copy
+     */
+    static ItemStack setTag(ItemStack itemStack, Object nbtTag) {
+      Object nmsItem = asNMSCopy(itemStack);
+
+      SET_TAG.invoke(nmsItem, nbtTag).ensureSuccessful();
+
+      return asBukkitCopy(nmsItem);
+    }
   }
 }
@@ -0,0 +1,143 @@
+package me.ialistannen.mininbt;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+
+/**
+ * The {@link NbtEvents} backed by Java Flight Recorder events.
+ *
+ * <p>Only loaded reflectively by {@link NbtEvents}, as the {@code jdk.jfr} API is missing on older
+ * Java 8 runtimes.</p>
+ */
+class JfrNbtEvents extends NbtEvents {
+
+  @Override
+  Object beginEvent(Kind kind) {
+    NbtEvent event = create(kind);
+    if (!event.isEnabled()) {
+      return null;
+    }
+    event.begin();
+    return event;
+  }
+
+  @Override
+  void commitEvent(Object event, String source, INBTBase tag) {
+    NbtEvent nbtEvent = (NbtEvent) event;
+    nbtEvent.end();
+    if (!nbtEvent.shouldCommit()) {
+      return;
+    }
+    nbtEvent.source = source;
+    if (tag != null) {
+      nbtEvent.nodeCount = NbtSizes.nodeCount(tag);
+      nbtEvent.byteSize = tag.serializedSize();
+    }
+    nbtEvent.commit();
+  }
+
+  private static NbtEvent create(Kind kind) {
+    switch (kind) {
+      case TO_NBT:
+        return new ConversionEvent("toNBT");
+      case FROM_NBT:
+        return new ConversionEvent("fromNBT");
+      case PARSE:
+        return new ParseEvent();
+      case STREAM_READ:
+        return new StreamReadEvent();
+      case STREAM_WRITE:
+        return new StreamWriteEvent();
+      case ENTITY_LOAD:
+        return new EntityLoadEvent();
+      case ENTITY_SAVE:
+        return new EntitySaveEvent();
+      case TILE_ENTITY_LOAD:
+        return new TileEntityLoadEvent();
+      case TILE_ENTITY_SAVE:
+        return new TileEntitySaveEvent();
+      default:
+        throw new IllegalArgumentException("Unknown event kind " + kind);
+    }
+  }
+
+  /**
+   * The fields all events share. The duration is recorded by JFR itself.
+   */
+  @Category("MiniNBT")
+  abstract static class NbtEvent extends Event {
+
+    @Label("Source")
+    @Description("What the data belongs to, e.g. item, entity, tile, file or stream")
+    String source;
+
+    @Label("Node Count")
+    @Description("The amount of tags in the tree")
+    long nodeCount;
+
+    @Label("Byte Size")
+    @Description("The size of the tree in the binary NBT format")
+    @DataAmount
+    long byteSize;
+  }
+
+  @Name("mininbt.Conversion")
+  @Label("NBT Conversion")
+  @Description("A tree converted between wrappers and the tags of the backend")
+  static class ConversionEvent extends NbtEvent {
+
+    @Label("Direction")
+    String direction;
+
+    ConversionEvent(String direction) {
+      this.direction = direction;
+    }
+  }
+
+  @Name("mininbt.Parse")
+  @Label("SNBT Parse")
+  static class ParseEvent extends NbtEvent {
+
+  }
+
+  @Name("mininbt.StreamRead")
+  @Label("NBT Stream Read")
+  static class StreamReadEvent extends NbtEvent {
+
+  }
+
+  @Name("mininbt.StreamWrite")
+  @Label("NBT Stream Write")
+  static class StreamWriteEvent extends NbtEvent {
+
+  }
+
+  @Name("mininbt.EntityLoad")
+  @Label("Entity NBT Load")
+  static class EntityLoadEvent extends NbtEvent {
+
+  }
+
+  @Name("mininbt.EntitySave")
+  @Label("Entity NBT Save")
+  static class EntitySaveEvent extends NbtEvent {
+
+  }
+
+  @Name("mininbt.TileEntityLoad")
+  @Label("Tile Entity NBT Load")
+  static class TileEntityLoadEvent extends NbtEvent {
+
+  }
+
+  @Name("mininbt.TileEntitySave")
+  @Label("Tile Entity NBT Save")
+  static class TileEntitySaveEvent extends NbtEvent {
+
+  }
+}
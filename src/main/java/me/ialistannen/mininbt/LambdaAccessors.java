@@ -0,0 +1,242 @@
+package me.ialistannen.mininbt;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Function;
+import me.ialistannen.mininbt.reflection.ReflectionException;
+
+/**
+ * Turns reflectively found members into implementations of functional interfaces.
+ *
+ * <p>Methods and constructors are bound with the {@link LambdaMetafactory}, which generates a class
+ * calling the member directly, just like a method reference in source code. The JIT can inline
+ * these calls like any other, unlike calls through {@link Method#invoke(Object, Object...)}.</p>
+ *
+ * <p>Members the generated class can not access, i.e. private ones and non public ones outside of
+ * this package, are bound with a {@link MethodHandleProxies proxy} instead, which is correct but
+ * not faster than plain reflection. The interfaces nested in this class are public for that
+ * reason.</p>
+ *
+ * <p>Fields can not be bound that way. Their getters invoke a method handle, which the JIT only
+ * inlines if the handle is a constant, i.e. kept in a {@code static final} field.</p>
+ */
+class LambdaAccessors {
+
+  private static final Lookup LOOKUP = MethodHandles.lookup();
+
+  /**
+   * Implements a functional interface by calling a method or constructor.
+   *
+   * <p>The parameters of the interface method are passed on to the member, with the receiver
+   * first for instance methods. Reference parameters are cast, primitives may be widened and a
+   * returned value is dropped if the interface method returns void.</p>
+   *
+   * @param functionalInterface the interface to implement
+   * @param member the method or constructor to call
+   * @param <T> the type of the interface
+   * @return the implementation
+   * @throws ReflectionException if the member can not implement the interface
+   */
+  static <T> T implement(Class<? super T> functionalInterface, Executable member) {
+    Method interfaceMethod = findInterfaceMethod(functionalInterface);
+    MethodHandle handle = unreflect(member);
+
+    if (isDirectlyAccessible(member)) {
+      try {
+        MethodType interfaceType = MethodType.methodType(
+            interfaceMethod.getReturnType(), interfaceMethod.getParameterTypes()
+        );
+        MethodType instantiatedType = MethodType.methodType(
+            interfaceMethod.getReturnType(), handle.type().parameterArray()
+        );
+        CallSite callSite = LambdaMetafactory.metafactory(
+            LOOKUP,
+            interfaceMethod.getName(),
+            MethodType.methodType(functionalInterface),
+            interfaceType,
+            handle,
+            instantiatedType
+        );
+        @SuppressWarnings("unchecked")
+        T implementation = (T) callSite.getTarget().invoke();
+        return implementation;
+      } catch (Throwable e) {
+        throw new ReflectionException(
+            "Can not implement " + functionalInterface.getName() + " with " + member, e
+        );
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    T implementation = (T) MethodHandleProxies.asInterfaceInstance(functionalInterface, handle);
+    return implementation;
+  }
+
+  /**
+   * Creates a getter for an instance field.
+   *
+   * <p>Fields can not be bound by the {@link LambdaMetafactory}, so this invokes a method handle,
+   * which is still cheaper than {@link Field#get(Object)}. The handle is not a constant for the
+   * JIT, so the field read is not inlined. Keep the {@link #getterHandle(Field) handle} in a
+   * {@code static final} field for that.</p>
+   *
+   * @param field the field to read
+   * @param <R> the type of the field value
+   * @return the getter
+   * @throws ReflectionException if the field is not accessible
+   */
+  static <R> Function<Object, R> getter(Field field) {
+    MethodHandle handle = getterHandle(field);
+    return target -> {
+      @SuppressWarnings("unchecked")
+      R value = (R) invokeGetter(handle, target);
+      return value;
+    };
+  }
+
+  /**
+   * Creates a method handle reading an instance field, with the type {@code (Object)Object}.
+   *
+   * @param field the field to read
+   * @return the handle
+   * @throws ReflectionException if the field is not accessible
+   */
+  static MethodHandle getterHandle(Field field) {
+    try {
+      field.setAccessible(true);
+      return LOOKUP.unreflectGetter(field)
+          .asType(MethodType.methodType(Object.class, Object.class));
+    } catch (IllegalAccessException | RuntimeException e) {
+      throw new ReflectionException("Can not access " + field, e);
+    }
+  }
+
+  /**
+   * Invokes a handle created by {@link #getterHandle(Field)}.
+   *
+   * @param handle the handle
+   * @param target the object to read the field of
+   * @return the value of the field
+   * @throws ReflectionException if the handle throws a checked exception
+   */
+  static Object invokeGetter(MethodHandle handle, Object target) {
+    try {
+      return (Object) handle.invokeExact(target);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new ReflectionException("Error retrieving value", e);
+    }
+  }
+
+  private static MethodHandle unreflect(Executable member) {
+    try {
+      if (!isDirectlyAccessible(member)) {
+        member.setAccessible(true);
+      }
+      if (member instanceof Constructor) {
+        return LOOKUP.unreflectConstructor((Constructor<?>) member);
+      }
+      return LOOKUP.unreflect((Method) member);
+    } catch (IllegalAccessException | RuntimeException e) {
+      throw new ReflectionException("Can not access " + member, e);
+    }
+  }
+
+  private static boolean isDirectlyAccessible(Executable member) {
+    if (!isAccessible(member.getModifiers(), member.getDeclaringClass())) {
+      return false;
+    }
+    for (Class<?> type = member.getDeclaringClass(); type != null;
+        type = type.getDeclaringClass()) {
+      if (!isAccessible(type.getModifiers(), type)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether code in this package can access a member or class without suppressing access
+   * checks.
+   *
+   * @param modifiers the modifiers of the member or class
+   * @param declaringClass the class declaring the member, or the class itself
+   * @return true if it is public, or not private and in this package
+   */
+  private static boolean isAccessible(int modifiers, Class<?> declaringClass) {
+    if (Modifier.isPublic(modifiers)) {
+      return true;
+    }
+    return !Modifier.isPrivate(modifiers)
+        && declaringClass.getPackage() == LambdaAccessors.class.getPackage()
+        && declaringClass.getClassLoader() == LambdaAccessors.class.getClassLoader();
+  }
+
+  private static Method findInterfaceMethod(Class<?> functionalInterface) {
+    Method found = null;
+    for (Method method : functionalInterface.getMethods()) {
+      if (!Modifier.isAbstract(method.getModifiers())) {
+        continue;
+      }
+      if (found != null) {
+        throw new IllegalArgumentException(functionalInterface + " is no functional interface");
+      }
+      found = method;
+    }
+    if (found == null) {
+      throw new IllegalArgumentException(functionalInterface + " is no functional interface");
+    }
+    return found;
+  }
+
+  /**
+   * Creates a byte tag.
+   */
+  public interface ByteCreator {
+
+    Object create(byte value);
+  }
+
+  /**
+   * Creates a short tag.
+   */
+  public interface ShortCreator {
+
+    Object create(short value);
+  }
+
+  /**
+   * Creates a float tag.
+   */
+  public interface FloatCreator {
+
+    Object create(float value);
+  }
+
+  /**
+   * Sets a value of a compound.
+   */
+  public interface CompoundSetter {
+
+    void set(Object compound, String key, Object value);
+  }
+
+  /**
+   * Inserts an element into a list.
+   */
+  public interface ListInserter {
+
+    void insert(Object list, int index, Object element);
+  }
+}
@@ -0,0 +1,305 @@
+package me.ialistannen.mininbt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads and writes strings in the modified UTF-8 format of {@link DataInput#readUTF()}, which NBT
+ * uses for keys and string tags.
+ *
+ * <p>Nearly all NBT strings are pure ASCII. Those are detected with a single scan over the bytes
+ * and turned into a string without a character decoding loop, or looked up in an
+ * {@link NbtStringPool} directly from the bytes, so a pooled string costs no allocation at all.
+ * Writing computes the exact encoded length up front and emits the length prefix and all bytes
+ * with a single call to the output. The byte and char arrays needed for that are reused per
+ * thread.</p>
+ */
+class ModifiedUtf8 {
+
+  /**
+   * The maximum amount of bytes an encoded string may have.
+   */
+  static final int MAX_ENCODED_LENGTH = 0xFFFF;
+
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  /**
+   * Reads a string.
+   *
+   * @param input the input to read from
+   * @return the read string
+   * @throws IOException if an error occurs while reading or the bytes are malformed
+   */
+  static String read(DataInput input) throws IOException {
+    return read(input, null, 0);
+  }
+
+  /**
+   * Reads a compound key, pooled in the {@link NbtStringPool#getKeyPool() key pool}.
+   *
+   * @param input the input to read from
+   * @return the read key
+   * @throws IOException if an error occurs while reading or the bytes are malformed
+   */
+  static String readKey(DataInput input) throws IOException {
+    return read(input, NbtStringPool.getKeyPool(), MAX_ENCODED_LENGTH);
+  }
+
+  /**
+   * Reads a string value, pooled in the {@link NbtStringPool#getValuePool() value pool} if it is
+   * short enough and value interning is enabled.
+   *
+   * @param input the input to read from
+   * @return the read value
+   * @throws IOException if an error occurs while reading or the bytes are malformed
+   */
+  static String readValue(DataInput input) throws IOException {
+    return readValue(input, input.readUnsignedShort());
+  }
+
+  /**
+   * Reads a compound key whose length prefix was already read.
+   *
+   * @param input the input to read from
+   * @param length the encoded length
+   * @return the read key
+   * @throws IOException if an error occurs while reading or the bytes are malformed
+   * @see #readKey(DataInput)
+   */
+  static String readKey(DataInput input, int length) throws IOException {
+    return read(input, length, NbtStringPool.getKeyPool(), MAX_ENCODED_LENGTH);
+  }
+
+  /**
+   * Reads a string value whose length prefix was already read.
+   *
+   * @param input the input to read from
+   * @param length the encoded length
+   * @return the read value
+   * @throws IOException if an error occurs while reading or the bytes are malformed
+   * @see #readValue(DataInput)
+   */
+  static String readValue(DataInput input, int length) throws IOException {
+    if (!NbtStringPool.isValueInterning()) {
+      return read(input, length, null, 0);
+    }
+    return read(input, length, NbtStringPool.getValuePool(), NbtStringPool.MAX_VALUE_LENGTH);
+  }
+
+  private static String read(DataInput input, NbtStringPool pool, int maxPooledLength)
+      throws IOException {
+    return read(input, input.readUnsignedShort(), pool, maxPooledLength);
+  }
+
+  private static String read(DataInput input, int length, NbtStringPool pool,
+      int maxPooledLength) throws IOException {
+    if (length == 0) {
+      return "";
+    }
+
+    Scratch scratch = SCRATCH.get();
+    byte[] bytes = scratch.bytes(length);
+    input.readFully(bytes, 0, length);
+
+    int asciiLength = asciiPrefixLength(bytes, length);
+    if (asciiLength == length) {
+      if (pool != null && length <= maxPooledLength) {
+        return pool.internAscii(bytes, length);
+      }
+      return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    String decoded = decode(bytes, length, asciiLength, scratch.chars(length));
+    if (pool == null || decoded.length() > maxPooledLength) {
+      return decoded;
+    }
+    return pool.intern(decoded);
+  }
+
+  /**
+   * Writes a string.
+   *
+   * @param string the string to write
+   * @param output the output to write to
+   * @throws UTFDataFormatException if the encoded string is longer than
+   *     {@value #MAX_ENCODED_LENGTH} bytes
+   * @throws IOException if an error occurs while writing
+   */
+  static void write(String string, DataOutput output) throws IOException {
+    if (output instanceof ByteBufferDataOutput) {
+      // encodes straight into the buffer
+      output.writeUTF(string);
+      return;
+    }
+
+    int length = encodedLength(string);
+    if (length > MAX_ENCODED_LENGTH) {
+      throw new UTFDataFormatException("Encoded string too long: " + length + " bytes");
+    }
+
+    byte[] bytes = SCRATCH.get().bytes(length + 2);
+    bytes[0] = (byte) (length >>> 8);
+    bytes[1] = (byte) length;
+    encode(string, bytes, 2);
+    output.write(bytes, 0, length + 2);
+  }
+
+  /**
+   * Computes the amount of bytes a string has when encoded, without the length prefix.
+   *
+   * @param string the string
+   * @return the encoded length. May exceed {@value #MAX_ENCODED_LENGTH}.
+   */
+  static int encodedLength(String string) {
+    int length = string.length();
+    int i = 0;
+    while (i < length) {
+      char c = string.charAt(i);
+      if (c == 0 || c >= 0x80) {
+        break;
+      }
+      i++;
+    }
+    if (i == length) {
+      return length;
+    }
+
+    int encoded = length;
+    for (; i < length; i++) {
+      char c = string.charAt(i);
+      if (c >= 0x800) {
+        encoded += 2;
+      } else if (c == 0 || c >= 0x80) {
+        encoded++;
+      }
+    }
+    return encoded;
+  }
+
+  /**
+   * Encodes a string into an array, which must have room for its {@link #encodedLength(String)}.
+   *
+   * @param string the string to encode
+   * @param target the array to write to
+   * @param offset the index to start at
+   * @return the index after the last written byte
+   */
+  static int encode(String string, byte[] target, int offset) {
+    int length = string.length();
+    int position = offset;
+    int i = 0;
+    for (; i < length; i++) {
+      char c = string.charAt(i);
+      if (c == 0 || c >= 0x80) {
+        break;
+      }
+      target[position++] = (byte) c;
+    }
+
+    for (; i < length; i++) {
+      char c = string.charAt(i);
+      if (c != 0 && c < 0x80) {
+        target[position++] = (byte) c;
+      } else if (c < 0x800) {
+        target[position++] = (byte) (0xC0 | (c >> 6));
+        target[position++] = (byte) (0x80 | (c & 0x3F));
+      } else {
+        target[position++] = (byte) (0xE0 | (c >> 12));
+        target[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        target[position++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    return position;
+  }
+
+  private static int asciiPrefixLength(byte[] bytes, int length) {
+    for (int i = 0; i < length; i++) {
+      if (bytes[i] < 0) {
+        return i;
+      }
+    }
+    return length;
+  }
+
+  private static String decode(byte[] bytes, int length, int asciiLength, char[] chars)
+      throws UTFDataFormatException {
+    for (int i = 0; i < asciiLength; i++) {
+      chars[i] = (char) bytes[i];
+    }
+
+    int count = asciiLength;
+    int i = asciiLength;
+    while (i < length) {
+      int first = bytes[i] & 0xFF;
+      switch (first >> 4) {
+        case 0:
+        case 1:
+        case 2:
+        case 3:
+        case 4:
+        case 5:
+        case 6:
+        case 7:
+          chars[count++] = (char) first;
+          i++;
+          break;
+        case 12:
+        case 13: {
+          if (i + 2 > length) {
+            throw new UTFDataFormatException("Partial character at end of input");
+          }
+          int second = bytes[i + 1];
+          if ((second & 0xC0) != 0x80) {
+            throw new UTFDataFormatException("Malformed input around byte " + (i + 1));
+          }
+          chars[count++] = (char) (((first & 0x1F) << 6) | (second & 0x3F));
+          i += 2;
+          break;
+        }
+        case 14: {
+          if (i + 3 > length) {
+            throw new UTFDataFormatException("Partial character at end of input");
+          }
+          int second = bytes[i + 1];
+          int third = bytes[i + 2];
+          if ((second & 0xC0) != 0x80 || (third & 0xC0) != 0x80) {
+            throw new UTFDataFormatException("Malformed input around byte " + (i + 2));
+          }
+          chars[count++] = (char) (((first & 0x0F) << 12) | ((second & 0x3F) << 6)
+              | (third & 0x3F));
+          i += 3;
+          break;
+        }
+        default:
+          throw new UTFDataFormatException("Malformed input around byte " + i);
+      }
+    }
+    return new String(chars, 0, count);
+  }
+
+  /**
+   * The arrays reused by one thread. Both are bounded by the maximum encoded length.
+   */
+  private static final class Scratch {
+
+    private byte[] bytes = new byte[256];
+    private char[] chars = new char[256];
+
+    byte[] bytes(int length) {
+      if (bytes.length < length) {
+        bytes = new byte[Math.max(length, Math.min(bytes.length * 2, MAX_ENCODED_LENGTH + 2))];
+      }
+      return bytes;
+    }
+
+    char[] chars(int length) {
+      if (chars.length < length) {
+        chars = new char[Math.max(length, Math.min(chars.length * 2, MAX_ENCODED_LENGTH))];
+      }
+      return chars;
+    }
+  }
+}
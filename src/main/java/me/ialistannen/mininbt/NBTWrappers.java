@@ -1,85 +1,263 @@
 package me.ialistannen.mininbt;
 
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.ServiceLoader;
 import java.util.Set;
-import java.util.function.BiConsumer;
-
+import me.ialistannen.mininbt.reflection.BukkitReflection;
 import me.ialistannen.mininbt.reflection.BukkitReflection.ClassLookup;
-import me.ialistannen.mininbt.reflection.FluentReflection;
-import me.ialistannen.mininbt.reflection.FluentReflection.FluentConstructor;
-import me.ialistannen.mininbt.reflection.FluentReflection.FluentMethod;
 import me.ialistannen.mininbt.reflection.FluentReflection.FluentType;
-import me.ialistannen.mininbt.reflection.FluentReflection.ReflectiveResult;
 
 /**
  * Provides wrapper objects to abstract the NBT versions.
  *
- * <p><br><em>Class initialization may throw a
- * {@link me.ialistannen.mininbt.reflection.ReflectionException}</em></p>
+ * <p>The wrappers themselves can be created and used without a server. The NMS classes are only
+ * looked up the first time a tag is converted from or to NMS, which may throw a
+ * {@link me.ialistannen.mininbt.reflection.ReflectionException}.</p>
+ *
+ * <p>The conversion itself is done by a {@link NbtBackend}, which can be replaced, e.g. with an
+ * {@link InMemoryNbtBackend} to work without a server.</p>
  */
 @SuppressWarnings({"WeakerAccess", "unused"})
 public class NBTWrappers {
 
+  private static volatile NbtBackend backend;
+
+  /**
+   * Returns the backend tags are converted with. The default backend for the NMS classes of the
+   * running server is created on the first call. It is taken from the first {@link
+   * NbtBackendProvider} supporting the server, falling back to one using reflection.
+   *
+   * @return the backend in use
+   * @throws me.ialistannen.mininbt.reflection.ReflectionException if the default backend could
+   *     not find the NMS classes
+   */
+  public static NbtBackend getBackend() {
+    NbtBackend current = backend;
+    if (current == null) {
+      // racing threads may both create one, which is harmless
+      current = createDefaultBackend(
+          ServiceLoader.load(NbtBackendProvider.class, NBTWrappers.class.getClassLoader()),
+          BukkitReflection.getServerVersion()
+      );
+      backend = current;
+    }
+    return current;
+  }
+
+  /**
+   * Sets the backend tags are converted with. Tags converted before keep belonging to the old
+   * backend and can no longer be converted back.
+   *
+   * @param backend the backend to use, or null to go back to the default one
+   */
+  public static void setBackend(NbtBackend backend) {
+    NBTWrappers.backend = backend;
+  }
+
+  /**
+   * Creates the default backend for a server version.
+   *
+   * @param providers the providers to choose from
+   * @param serverVersion the version of the server
+   * @return the backend of the first provider supporting the version, or a reflective one
+   */
+  static NbtBackend createDefaultBackend(Iterable<NbtBackendProvider> providers,
+      String serverVersion) {
+    for (NbtBackendProvider provider : providers) {
+      if (provider.supports(serverVersion)) {
+        return provider.createBackend();
+      }
+    }
+    return new ReflectiveNbtBackend();
+  }
+
   /**
    * A base class for the essential methods
+   *
+   * <p>Tags are mutable and not thread safe, until they are {@link #freeze() frozen}. Frozen tags
+   * can be read concurrently without any locking once they are safely published.</p>
    */
   public static abstract class INBTBase {
 
+    private boolean frozen;
+
     public INBTBase() {
     }
 
-    abstract Object toNBT();
+    /**
+     * Makes this tag and all tags nested in it immutable. Modifying a frozen tag throws an {@link
+     * UnsupportedOperationException}.
+     *
+     * <p>Frozen tags cache their hash code permanently and can be shared between threads and
+     * other trees. Use the {@code with} methods of compounds and lists to derive changed trees
+     * that share all unchanged tags.</p>
+     *
+     * @return this tag, for chaining
+     */
+    public INBTBase freeze() {
+      frozen = true;
+      return this;
+    }
+
+    /**
+     * Returns a deep copy of this tag. The copy is never frozen, even if this tag is.
+     *
+     * @return a deep copy of this tag
+     */
+    public abstract INBTBase deepCopy();
+
+    /**
+     * Returns a copy-on-write copy of this tag. Nested tags are shared with this tag and each one
+     * is only copied once the copy hands it out for modification, e.g. from {@code get}. Reading
+     * values through the copy, e.g. with {@code getInt}, copies nothing. This tag is never
+     * changed.
+     *
+     * <p>This makes deriving many slightly different trees from a template cheap. Leaf tags are
+     * just copied.</p>
+     *
+     * <p>Nested tags the copy did not hand out yet are still shared, so modifying them through
+     * this tag changes the copy as well. {@link #freeze() Freeze} templates to rule that out, or
+     * use a {@link #deepCopy()} if this tag is modified further.</p>
+     *
+     * @return a copy of this tag
+     */
+    public INBTBase shallowCopy() {
+      return deepCopy();
+    }
+
+    /**
+     * Checks whether this tag is frozen.
+     *
+     * @return true if this tag was {@link #freeze() frozen}
+     */
+    public boolean isFrozen() {
+      return frozen;
+    }
+
+    /**
+     * Ensures this tag may be modified.
+     *
+     * @throws UnsupportedOperationException if this tag is frozen
+     */
+    void ensureMutable() {
+      if (frozen) {
+        throw new UnsupportedOperationException("This tag is frozen: " + this);
+      }
+    }
+
+    /**
+     * Converts this tag to a tag of the current {@link NbtBackend}, i.e. to a NMS tag unless a
+     * different backend was set.
+     *
+     * @return the converted tag
+     */
+    public Object toNBT() {
+      return ConversionMetrics.toNBT(this, getBackend(), "api");
+    }
+
+    /**
+     * Converts this tag to a tag of a backend.
+     *
+     * @param backend the backend to convert with
+     * @return the converted tag
+     */
+    abstract Object toNBT(NbtBackend backend);
+
+    /**
+     * Returns the id of this tag type in the binary NBT format.
+     *
+     * @return the type id, one of the {@code TAG_} constants in {@link NbtCodec}
+     */
+    public abstract byte getTypeId();
+
+    /**
+     * Computes the size of this tag in the binary NBT format, without its type id and name. A root
+     * compound written by {@link NbtCodec#writeRootCompound} takes three more bytes.
+     *
+     * <p>The size is cached for frozen compounds and lists, so asking a frozen tree again is
+     * cheap.</p>
+     *
+     * @return the size in bytes
+     */
+    public long serializedSize() {
+      return NbtSizes.serializedSize(this, Long.MAX_VALUE);
+    }
+
+    /**
+     * Computes the size of this tag in the binary NBT format like {@link #serializedSize()}, but
+     * stops as soon as the size exceeds a limit. Use this to reject oversized tags without
+     * traversing all of them.
+     *
+     * @param limit the maximum size in bytes
+     * @return the size in bytes, or some value larger than the limit if the size exceeds it
+     */
+    public long serializedSize(long limit) {
+      return NbtSizes.serializedSize(this, limit);
+    }
+
+    /**
+     * Estimates how much heap memory this tag and all tags nested in it retain, assuming a 64 bit
+     * JVM with compressed object pointers. Pooled compound keys are not counted.
+     *
+     * <p>Like the {@link #serializedSize() serialized size}, the estimate is cached for frozen
+     * compounds and lists. Both are computed in the same walk.</p>
+     *
+     * @return the estimated size in bytes
+     */
+    public long estimateHeapSize() {
+      return NbtSizes.heapSize(this);
+    }
 
     /**
      * @param nbtObject The NBT object
      * @return The correct {@link INBTBase} or null if the tag is not supported
      */
     public static INBTBase fromNBT(Object nbtObject) {
-      switch (nbtObject.getClass().getSimpleName()) {
-        case "NBTTagByte": {
-          return NBTTagByte.fromNBT(nbtObject);
-        }
-        case "NBTTagShort": {
-          return NBTTagShort.fromNBT(nbtObject);
-        }
-        case "NBTTagInt": {
-          return NBTTagInt.fromNBT(nbtObject);
-        }
-        case "NBTTagLong": {
-          return NBTTagLong.fromNBT(nbtObject);
-        }
-        case "NBTTagFloat": {
-          return NBTTagFloat.fromNBT(nbtObject);
-        }
-        case "NBTTagDouble": {
-          return NBTTagDouble.fromNBT(nbtObject);
-        }
-        case "NBTTagByteArray": {
-          return NBTTagByteArray.fromNBT(nbtObject);
-        }
-        case "NBTTagIntArray": {
-          return NBTTagIntArray.fromNBT(nbtObject);
-        }
-        case "NBTTagString": {
-          return NBTTagString.fromNBT(nbtObject);
-        }
-        case "NBTTagCompound": {
-          return NBTTagCompound.fromNBT(nbtObject);
-        }
-        case "NBTTagList": {
-          return NBTTagList.fromNBT(nbtObject);
-        }
+      return ConversionMetrics.fromNBT(nbtObject, getBackend(), "api");
+    }
+
+    /**
+     * Converts a tag of a backend to a wrapper.
+     *
+     * @param nbtObject the tag of the backend
+     * @param backend the backend the tag belongs to
+     * @return the converted tag or null if the tag is not supported
+     */
+    static INBTBase fromNBT(Object nbtObject, NbtBackend backend) {
+      switch (backend.getTypeId(nbtObject)) {
+        case NbtCodec.TAG_BYTE:
+          return new NBTTagByte(backend.getByte(nbtObject));
+        case NbtCodec.TAG_SHORT:
+          return new NBTTagShort(backend.getShort(nbtObject));
+        case NbtCodec.TAG_INT:
+          return new NBTTagInt(backend.getInt(nbtObject));
+        case NbtCodec.TAG_LONG:
+          return new NBTTagLong(backend.getLong(nbtObject));
+        case NbtCodec.TAG_FLOAT:
+          return new NBTTagFloat(backend.getFloat(nbtObject));
+        case NbtCodec.TAG_DOUBLE:
+          return new NBTTagDouble(backend.getDouble(nbtObject));
+        case NbtCodec.TAG_BYTE_ARRAY:
+          return new NBTTagByteArray(backend.getByteArray(nbtObject));
+        case NbtCodec.TAG_INT_ARRAY:
+          return new NBTTagIntArray(backend.getIntArray(nbtObject));
+        case NbtCodec.TAG_LONG_ARRAY:
+          return new NBTTagLongArray(backend.getLongArray(nbtObject));
+        case NbtCodec.TAG_STRING:
+          return new NBTTagString(NbtStringPool.internValue(backend.getString(nbtObject)));
+        case NbtCodec.TAG_COMPOUND:
+          return NBTTagCompound.fromNBT(nbtObject, backend);
+        case NbtCodec.TAG_LIST:
+          return NBTTagList.fromNBT(nbtObject, backend);
+        default:
+          return null;
       }
-      return null;
     }
   }
 
@@ -87,19 +265,6 @@ public class NBTWrappers {
    * A NBTTagString
    */
   public static class NBTTagString extends INBTBase {
-    private static final FluentType<?> NBT_TAG_STRING_CLASS = ClassLookup.NMS
-        .forName("NBTTagString").getOrThrow();
-
-    private static final FluentConstructor<?> NBT_TAG_STRING_CONSTRUCTOR = NBT_TAG_STRING_CLASS
-        .findConstructor()
-        .withParameters(String.class)
-        .findSingle().getOrThrow();
-
-    private static final FluentReflection.FluentField DATA_FIELD = NBT_TAG_STRING_CLASS
-        .findField()
-        .withName("data")
-        .findSingle().getOrThrow();
-
     private String string;
 
     /**
@@ -115,6 +280,7 @@ public class NBTWrappers {
      */
     public void setString(String string) {
       Objects.requireNonNull(string, "string can not be null!");
+      ensureMutable();
       this.string = string;
     }
 
@@ -126,14 +292,22 @@ public class NBTWrappers {
     }
 
     @Override
-    public Object toNBT() {
-      return NBT_TAG_STRING_CONSTRUCTOR.createInstance(getString()).getOrThrow();
+    public byte getTypeId() {
+      return NbtCodec.TAG_STRING;
+    }
+
+    @Override
+    public NBTTagString deepCopy() {
+      return new NBTTagString(string);
+    }
+
+    @Override
+    Object toNBT(NbtBackend backend) {
+      return backend.createString(getString());
     }
 
     public static INBTBase fromNBT(Object nbtObject) {
-      Object stringValue = DATA_FIELD
-          .getValue(nbtObject).getOrThrow();
-      return new NBTTagString((String) stringValue);
+      return new NBTTagString(NbtStringPool.internValue(getBackend().getString(nbtObject)));
     }
 
     @Override
@@ -152,12 +326,12 @@ public class NBTWrappers {
         return false;
       }
       NBTTagString that = (NBTTagString) o;
-      return Objects.equals(string, that.string);
+      return string.equals(that.string);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(string);
+      return string.hashCode();
     }
   }
 
@@ -165,85 +339,88 @@ public class NBTWrappers {
    * A NBTTagCompound
    */
   public static class NBTTagCompound extends INBTBase {
-    private static final FluentType<?> NBT_BASE = ClassLookup.NMS
-        .forName("NBTBase").getOrThrow();
-
+    /**
+     * The NMS compound class, or null if there is none, e.g. when running without a server.
+     */
     public static final FluentType<?> NBT_TAG_COMPOUND_CLASS = ClassLookup.NMS
-        .forName("NBTTagCompound").getOrThrow();
+        .forName("NBTTagCompound").orElse(null);
 
-    private static final FluentConstructor<?> NBT_TAG_COMPOUND_CONSTRUCTOR = NBT_TAG_COMPOUND_CLASS
-        .findConstructor()
-        .withParameters()
-        .findSingle().getOrThrow();
+    private final CompactStringMap<INBTBase> map;
 
-    private static final FluentMethod SET_METHOD = NBT_TAG_COMPOUND_CLASS
-        .findMethod()
-        .withName("set")
-        .withParameters(String.class, NBT_BASE.getUnderlying())
-        .findSingle().getOrThrow();
+    private HashCache hashCache;
 
-    private static final FluentMethod GET_METHOD = NBT_TAG_COMPOUND_CLASS
-        .findMethod()
-        .withName("get")
-        .withParameters(String.class)
-        .findSingle().getOrThrow();
+    /**
+     * The serialized size, only set once this compound is frozen. -1 if unknown.
+     */
+    int cachedSerializedSize = -1;
 
-    private static final FluentMethod GET_KEYSET_METHOD = NBT_TAG_COMPOUND_CLASS.findMethod()
-        .withModifiers(Modifier.PUBLIC)
-        .matchingMethod(method -> Set.class.isAssignableFrom(method.getReturnType()))
-        .findSingle().getOrThrow();
+    /**
+     * The estimated heap size, only set once this compound is frozen. -1 if unknown.
+     */
+    int cachedHeapSize = -1;
 
-    private final Map<String, INBTBase> map = new HashMap<>();
+    /**
+     * The values this compound copied or was given itself after being created by a
+     * {@link #shallowCopy()}. All other values are shared. Null if no values are shared.
+     */
+    private Set<INBTBase> ownedChildren;
+
+    public NBTTagCompound() {
+      this(new CompactStringMap<>());
+    }
+
+    private NBTTagCompound(CompactStringMap<INBTBase> map) {
+      this.map = map;
+    }
 
     public void set(String key, INBTBase value) {
       Objects.requireNonNull(key, "key can not be null!");
       Objects.requireNonNull(value, "value can not be null!");
+      ensureMutable();
       map.put(key, value);
+      if (ownedChildren != null) {
+        ownedChildren.add(value);
+      }
     }
 
     public void setByte(String key, byte value) {
-      Objects.requireNonNull(key, "key can not be null!");
-      map.put(key, new NBTTagByte(value));
+      set(key, new NBTTagByte(value));
     }
 
     public void setShort(String key, short value) {
-      Objects.requireNonNull(key, "key can not be null!");
-      map.put(key, new NBTTagShort(value));
+      set(key, new NBTTagShort(value));
     }
 
     public void setInt(String key, int value) {
-      Objects.requireNonNull(key, "key can not be null!");
-      map.put(key, new NBTTagInt(value));
+      set(key, new NBTTagInt(value));
     }
 
     public void setLong(String key, long value) {
-      Objects.requireNonNull(key, "key can not be null!");
-      map.put(key, new NBTTagLong(value));
+      set(key, new NBTTagLong(value));
     }
 
     public void setFloat(String key, float value) {
-      Objects.requireNonNull(key, "key can not be null!");
-      map.put(key, new NBTTagFloat(value));
+      set(key, new NBTTagFloat(value));
     }
 
     public void setDouble(String key, double value) {
-      Objects.requireNonNull(key, "key can not be null!");
-      map.put(key, new NBTTagDouble(value));
+      set(key, new NBTTagDouble(value));
     }
 
     public void setString(String key, String value) {
-      Objects.requireNonNull(value, "value can not be null!");
-      map.put(key, new NBTTagString(value));
+      set(key, new NBTTagString(value));
     }
 
     public void setByteArray(String key, byte[] value) {
-      Objects.requireNonNull(key, "key can not be null!");
-      map.put(key, new NBTTagByteArray(value));
+      set(key, new NBTTagByteArray(value));
     }
 
     public void setIntArray(String key, int[] value) {
-      Objects.requireNonNull(key, "key can not be null!");
-      map.put(key, new NBTTagIntArray(value));
+      set(key, new NBTTagIntArray(value));
+    }
+
+    public void setLongArray(String key, long[] value) {
+      set(key, new NBTTagLongArray(value));
     }
 
     public void setBoolean(String key, boolean value) {
@@ -256,14 +433,32 @@ public class NBTWrappers {
     }
 
     public boolean hasKeyOfType(String key, Class<? extends INBTBase> type) {
-      Objects.requireNonNull(key, "key can not be null!");
       Objects.requireNonNull(type, "type can not be null!");
-      return map.containsKey(key) && map.get(key) != null && map.get(key).getClass() == type;
+      return getOfType(key, type) != null;
+    }
+
+    /**
+     * Returns the value for a key if it has exactly the given type. Does not unshare the values of
+     * a {@link #shallowCopy()}, so the result must only be read.
+     *
+     * @param key the key
+     * @param type the type of the value
+     * @param <T> the type of the value
+     * @return the value or null if there is none or it has a different type
+     */
+    private <T extends INBTBase> T getOfType(String key, Class<T> type) {
+      Objects.requireNonNull(key, "key can not be null!");
+      INBTBase value = map.get(key);
+      return value != null && value.getClass() == type ? type.cast(value) : null;
     }
 
     public void remove(String key) {
       Objects.requireNonNull(key, "key can not be null!");
-      map.remove(key);
+      ensureMutable();
+      INBTBase removed = map.remove(key);
+      if (ownedChildren != null && removed != null) {
+        ownedChildren.remove(removed);
+      }
     }
 
     /**
@@ -272,7 +467,14 @@ public class NBTWrappers {
      */
     public INBTBase get(String key) {
       Objects.requireNonNull(key, "key can not be null!");
-      return map.get(key);
+      INBTBase value = map.get(key);
+      if (value == null || !isShared(value)) {
+        return value;
+      }
+      INBTBase copy = value.shallowCopy();
+      map.put(key, copy);
+      ownedChildren.add(copy);
+      return copy;
     }
 
     /**
@@ -280,10 +482,8 @@ public class NBTWrappers {
      * @return The number or 0 if not found.
      */
     public byte getByte(String key) {
-      if (!hasKey(key) || !hasKeyOfType(key, NBTTagByte.class)) {
-        return 0;
-      }
-      return ((NBTTagByte) get(key)).getAsByte();
+      NBTTagByte tag = getOfType(key, NBTTagByte.class);
+      return tag == null ? 0 : tag.getAsByte();
     }
 
     /**
@@ -291,10 +491,8 @@ public class NBTWrappers {
      * @return The number or 0 if not found.
      */
     public short getShort(String key) {
-      if (!hasKey(key) || !hasKeyOfType(key, NBTTagShort.class)) {
-        return 0;
-      }
-      return ((NBTTagShort) get(key)).getAsShort();
+      NBTTagShort tag = getOfType(key, NBTTagShort.class);
+      return tag == null ? 0 : tag.getAsShort();
     }
 
     /**
@@ -302,10 +500,8 @@ public class NBTWrappers {
      * @return The number or 0 if not found.
      */
     public int getInt(String key) {
-      if (!hasKey(key) || !hasKeyOfType(key, NBTTagInt.class)) {
-        return 0;
-      }
-      return ((NBTTagInt) get(key)).getAsInt();
+      NBTTagInt tag = getOfType(key, NBTTagInt.class);
+      return tag == null ? 0 : tag.getAsInt();
     }
 
     /**
@@ -313,10 +509,8 @@ public class NBTWrappers {
      * @return The number or 0 if not found.
      */
     public long getLong(String key) {
-      if (!hasKey(key) || !hasKeyOfType(key, NBTTagLong.class)) {
-        return 0;
-      }
-      return ((NBTTagLong) get(key)).getAsLong();
+      NBTTagLong tag = getOfType(key, NBTTagLong.class);
+      return tag == null ? 0 : tag.getAsLong();
     }
 
     /**
@@ -324,10 +518,8 @@ public class NBTWrappers {
      * @return The number or 0 if not found.
      */
     public float getFloat(String key) {
-      if (!hasKey(key) || !hasKeyOfType(key, NBTTagFloat.class)) {
-        return 0;
-      }
-      return ((NBTTagFloat) get(key)).getAsFloat();
+      NBTTagFloat tag = getOfType(key, NBTTagFloat.class);
+      return tag == null ? 0 : tag.getAsFloat();
     }
 
     /**
@@ -335,10 +527,8 @@ public class NBTWrappers {
      * @return The number or 0 if not found.
      */
     public double getDouble(String key) {
-      if (!hasKey(key) || !hasKeyOfType(key, NBTTagDouble.class)) {
-        return 0;
-      }
-      return ((NBTTagDouble) get(key)).getAsDouble();
+      NBTTagDouble tag = getOfType(key, NBTTagDouble.class);
+      return tag == null ? 0 : tag.getAsDouble();
     }
 
     /**
@@ -346,10 +536,8 @@ public class NBTWrappers {
      * @return The String or null if not found.
      */
     public String getString(String key) {
-      if (!hasKey(key) || !hasKeyOfType(key, NBTTagString.class)) {
-        return null;
-      }
-      return ((NBTTagString) get(key)).getString();
+      NBTTagString tag = getOfType(key, NBTTagString.class);
+      return tag == null ? null : tag.getString();
     }
 
     /**
@@ -357,10 +545,11 @@ public class NBTWrappers {
      * @return The byte array or null if not found or wrong type.
      */
     public byte[] getByteArray(String key) {
-      if (!hasKey(key) || !hasKeyOfType(key, NBTTagByteArray.class)) {
+      INBTBase tag = get(key);
+      if (tag == null || tag.getClass() != NBTTagByteArray.class) {
         return null;
       }
-      return ((NBTTagByteArray) get(key)).getValue();
+      return ((NBTTagByteArray) tag).getValue();
     }
 
     /**
@@ -368,10 +557,23 @@ public class NBTWrappers {
      * @return The byte int or null if not found or wrong type.
      */
     public int[] getIntArray(String key) {
-      if (!hasKey(key) || !hasKeyOfType(key, NBTTagIntArray.class)) {
+      INBTBase tag = get(key);
+      if (tag == null || tag.getClass() != NBTTagIntArray.class) {
         return null;
       }
-      return ((NBTTagIntArray) get(key)).getValue();
+      return ((NBTTagIntArray) tag).getValue();
+    }
+
+    /**
+     * @param key The key
+     * @return The long array or null if not found or wrong type.
+     */
+    public long[] getLongArray(String key) {
+      INBTBase tag = get(key);
+      if (tag == null || tag.getClass() != NBTTagLongArray.class) {
+        return null;
+      }
+      return ((NBTTagLongArray) tag).getValue();
     }
 
     /**
@@ -397,53 +599,206 @@ public class NBTWrappers {
      * @return A Map with all the entries. Unmodifiable.
      */
     public Map<String, INBTBase> getAllEntries() {
+      unshareChildren(false);
+      return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Returns all entries without unsharing the values of a {@link #shallowCopy()}. The values
+     * must only be read.
+     *
+     * @return A Map with all the entries. Unmodifiable.
+     */
+    Map<String, INBTBase> peekEntries() {
       return Collections.unmodifiableMap(map);
     }
 
     /**
-     * Returns a <b>reference</b> to the map
+     * @return the length of the arrays backing the map
+     */
+    int getMapCapacity() {
+      return map.capacity();
+    }
+
+    /**
+     * Returns a <b>reference</b> to the map.
      *
-     * @return The raw map. <b><i>Modify it at your own risk.</i></b>
+     * @return The raw map. <b><i>Modify it at your own risk.</i></b> Unmodifiable if this compound
+     *     is frozen.
      */
     public Map<String, INBTBase> getRawMap() {
+      if (isFrozen()) {
+        return getAllEntries();
+      }
+      unshareChildren(false);
       return map;
     }
 
     @Override
-    public Object toNBT() {
-      Object compound = NBT_TAG_COMPOUND_CONSTRUCTOR.createInstance().getOrThrow();
+    public NBTTagCompound deepCopy() {
+      CompactStringMap<INBTBase> copy = new CompactStringMap<>(map);
+      copy.replaceAll((key, value) -> value.deepCopy());
+      return new NBTTagCompound(copy);
+    }
 
-      for (Map.Entry<String, INBTBase> entry : map.entrySet()) {
-        SET_METHOD.invoke(compound, entry.getKey(), entry.getValue().toNBT())
-            .ensureSuccessful();
+    @Override
+    public NBTTagCompound shallowCopy() {
+      NBTTagCompound copy = new NBTTagCompound(new CompactStringMap<>(map));
+      copy.ownedChildren = Collections.newSetFromMap(new IdentityHashMap<>());
+      return copy;
+    }
+
+    private boolean isShared(INBTBase value) {
+      return ownedChildren != null && !ownedChildren.contains(value);
+    }
+
+    /**
+     * Replaces all values still shared after a {@link #shallowCopy()} by copies of their own.
+     *
+     * @param keepFrozen whether frozen values may stay shared
+     */
+    private void unshareChildren(boolean keepFrozen) {
+      if (ownedChildren == null) {
+        return;
       }
+      map.replaceAll((key, value) -> {
+        if (!isShared(value) || keepFrozen && value.isFrozen()) {
+          return value;
+        }
+        return value.shallowCopy();
+      });
+      ownedChildren = null;
+    }
+
+    @Override
+    public NBTTagCompound freeze() {
+      if (isFrozen()) {
+        return this;
+      }
+      unshareChildren(true);
+      for (INBTBase value : map.values()) {
+        value.freeze();
+      }
+      hashCache = null;
+      super.freeze();
+      return this;
+    }
+
+    /**
+     * Returns a frozen compound with the given key set to the value. All other entries are shared
+     * with this compound, which stays unchanged.
+     *
+     * @param key the key to set
+     * @param value the value to set it to. Will be {@link #freeze() frozen}.
+     * @return a frozen compound with the changed entry
+     * @throws IllegalStateException if this compound is not frozen
+     */
+    public NBTTagCompound with(String key, INBTBase value) {
+      Objects.requireNonNull(key, "key can not be null!");
+      Objects.requireNonNull(value, "value can not be null!");
+      NBTTagCompound copy = frozenCopy();
+      copy.map.put(key, value.freeze());
+      copy.freezeShallow();
+      return copy;
+    }
+
+    /**
+     * Returns a frozen compound without the given key. All other entries are shared with this
+     * compound, which stays unchanged.
+     *
+     * @param key the key to remove
+     * @return a frozen compound without the key
+     * @throws IllegalStateException if this compound is not frozen
+     */
+    public NBTTagCompound without(String key) {
+      Objects.requireNonNull(key, "key can not be null!");
+      if (!hasKey(key)) {
+        ensureFrozen();
+        return this;
+      }
+      NBTTagCompound copy = frozenCopy();
+      copy.map.remove(key);
+      copy.freezeShallow();
+      return copy;
+    }
+
+    private void ensureFrozen() {
+      if (!isFrozen()) {
+        throw new IllegalStateException("Only frozen compounds can be derived from");
+      }
+    }
+
+    private NBTTagCompound frozenCopy() {
+      ensureFrozen();
+      return new NBTTagCompound(new CompactStringMap<>(map));
+    }
+
+    /**
+     * Freezes only this compound, for use when all values are known to be frozen already.
+     */
+    private void freezeShallow() {
+      super.freeze();
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_COMPOUND;
+    }
+
+    @Override
+    Object toNBT(NbtBackend backend) {
+      Object compound = backend.createCompound();
+
+      appendTo(compound, backend);
 
       return compound;
     }
 
+    /**
+     * Copies all entries of this compound into an existing NMS compound, overwriting keys that are
+     * already present.
+     *
+     * @param nbtCompound the NMS compound to write into
+     */
+    void appendTo(Object nbtCompound) {
+      appendTo(nbtCompound, getBackend());
+    }
+
+    private void appendTo(Object nbtCompound, NbtBackend backend) {
+      for (Map.Entry<String, INBTBase> entry : map.entrySet()) {
+        backend.setCompoundValue(nbtCompound, entry.getKey(), entry.getValue().toNBT(backend));
+      }
+    }
+
     public static INBTBase fromNBT(Object nbtObject) {
-      Collection<String> keys = GET_KEYSET_METHOD
-          .invoke(nbtObject)
-          .mapNotNull(it -> {
-            @SuppressWarnings("unchecked")
-            Collection<String> casted = (Collection<String>) it;
-            return new HashSet<>(casted);
-          })
-          .getOrThrow();
+      return ConversionMetrics.fromNBT(nbtObject, getBackend(), "api");
+    }
 
+    static NBTTagCompound fromNBT(Object nbtObject, NbtBackend backend) {
       NBTTagCompound compound = new NBTTagCompound();
 
-      for (String key : keys) {
-        Object value = GET_METHOD.invoke(nbtObject, key).getOrThrow();
-        INBTBase base = INBTBase.fromNBT(value);
+      for (String key : backend.getCompoundKeys(nbtObject)) {
+        Object value = backend.getCompoundValue(nbtObject, key);
+        INBTBase base = INBTBase.fromNBT(value, backend);
         if (base != null) {
-          compound.set(key, base);
+          compound.set(NbtStringPool.internKey(key), base);
         }
       }
 
       return compound;
     }
 
+    /**
+     * Reads a single value of a NMS compound, without converting it.
+     *
+     * @param nbtCompound the NMS compound
+     * @param key the key
+     * @return the NMS tag or null if there is none
+     */
+    static Object getFromNms(Object nbtCompound, String key) {
+      return getBackend().getCompoundValue(nbtCompound, key);
+    }
+
     @Override
     public String toString() {
       return "NBTTagCompound{" +
@@ -460,12 +815,31 @@ public class NBTWrappers {
         return false;
       }
       NBTTagCompound compound = (NBTTagCompound) o;
-      return Objects.equals(map, compound.map);
+      if (map.size() != compound.map.size()) {
+        return false;
+      }
+      if (HashCache.provesDifference(hashCache, compound.hashCache)) {
+        return false;
+      }
+      return map.equals(compound.map);
     }
 
+    /**
+     * Returns the hash code of this compound. It is cached once this compound is frozen.
+     *
+     * @return the hash code of this compound
+     */
     @Override
     public int hashCode() {
-      return Objects.hash(map);
+      HashCache cache = hashCache;
+      if (cache != null) {
+        return cache.hash;
+      }
+      int hash = map.hashCode();
+      if (isFrozen()) {
+        hashCache = new HashCache(hash);
+      }
+      return hash;
     }
   }
 
@@ -473,52 +847,33 @@ public class NBTWrappers {
    * A NBTTagList.
    */
   public static class NBTTagList extends INBTBase {
-    private static final FluentType<?> NBT_TAG_LIST_CLASS = ClassLookup.NMS
-        .forName("NBTTagList").getOrThrow();
-
-    private static final FluentReflection.FluentField LIST_FIELD = NBT_TAG_LIST_CLASS.findField()
-        .withName("list")
-        .findSingle().getOrThrow();
+    private final List<INBTBase> list;
 
-    private static final FluentType<?> NBT_BASE_CLASS = ClassLookup.NMS
-        .forName("NBTBase").getOrThrow();
+    private HashCache hashCache;
 
-    private static final FluentConstructor<?> NBT_TAG_LIST_CONSTRUCTOR = NBT_TAG_LIST_CLASS.findConstructor()
-        .withParameters()
-        .findSingle().getOrThrow();
-
-    private static final BiConsumer<List<INBTBase>, Object> appendAll;
+    /**
+     * The serialized size, only set once this list is frozen. -1 if unknown.
+     */
+    int cachedSerializedSize = -1;
 
-    static {
-      // Up to 1.14.4 it was "add(NBTBase)"
-      ReflectiveResult<FluentMethod> addSingleParam = NBT_TAG_LIST_CLASS.findMethod()
-          .withName("add")
-          .withParameters(NBT_BASE_CLASS.getUnderlying())
-          .findSingle();
+    /**
+     * The estimated heap size, only set once this list is frozen. -1 if unknown.
+     */
+    int cachedHeapSize = -1;
 
-      if (addSingleParam.isPresent()) {
-        appendAll = (tags, nbtList) -> {
-          for (INBTBase tag : tags) {
-            addSingleParam.getOrThrow().invoke(nbtList, tag.toNBT()).ensureSuccessful();
-          }
-        };
-      } else {
-        // In 1.14.4 it is "add(int index, NBTBase)"
-        FluentMethod addMultiParam = NBT_TAG_LIST_CLASS.findMethod()
-            .withName("add")
-            .withParameters(int.class, NBT_BASE_CLASS.getUnderlying())
-            .findSingle().getOrThrow();
+    /**
+     * The elements this list copied or was given itself after being created by a
+     * {@link #shallowCopy()}. All other elements are shared. Null if no elements are shared.
+     */
+    private Set<INBTBase> ownedChildren;
 
-        appendAll = (tags, nbtList) -> {
-          for (int i = 0; i < tags.size(); i++) {
-            INBTBase tag = tags.get(i);
-            addMultiParam.invoke(nbtList, i, tag.toNBT()).ensureSuccessful();
-          }
-        };
-      }
+    public NBTTagList() {
+      this(new ArrayList<>());
     }
 
-    private final List<INBTBase> list = new ArrayList<>();
+    private NBTTagList(List<INBTBase> list) {
+      this.list = list;
+    }
 
     /**
      * Adds the {@link INBTBase}, if the type of the list is correct or the list is empty
@@ -528,7 +883,15 @@ public class NBTWrappers {
      */
     public boolean add(INBTBase base) {
       Objects.requireNonNull(base, "base can not be null!");
-      return isType(base.getClass()) && list.add(base);
+      ensureMutable();
+      if (!isType(base.getClass())) {
+        return false;
+      }
+      list.add(base);
+      if (ownedChildren != null) {
+        ownedChildren.add(base);
+      }
+      return true;
     }
 
     /**
@@ -539,7 +902,16 @@ public class NBTWrappers {
      */
     public boolean remove(INBTBase base) {
       Objects.requireNonNull(base, "base can not be null!");
-      return list.remove(base);
+      ensureMutable();
+      int index = list.indexOf(base);
+      if (index < 0) {
+        return false;
+      }
+      INBTBase removed = list.remove(index);
+      if (ownedChildren != null) {
+        ownedChildren.remove(removed);
+      }
+      return true;
     }
 
     /**
@@ -549,7 +921,14 @@ public class NBTWrappers {
      * @return The item
      */
     public INBTBase get(int index) {
-      return list.get(index);
+      INBTBase element = list.get(index);
+      if (!isShared(element)) {
+        return element;
+      }
+      INBTBase copy = element.shallowCopy();
+      list.set(index, copy);
+      ownedChildren.add(copy);
+      return copy;
     }
 
     /**
@@ -571,48 +950,198 @@ public class NBTWrappers {
     }
 
     /**
-     * Returns the list.
+     * Returns the list.
+     *
+     * @return The list of NBT elements. Unmodifiable. Use the add and remove functions.
+     */
+    public List<INBTBase> getList() {
+      unshareChildren(false);
+      return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the list without unsharing the elements of a {@link #shallowCopy()}. The elements
+     * must only be read.
+     *
+     * @return The list of NBT elements. Unmodifiable.
+     */
+    List<INBTBase> peekList() {
+      return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * A direct reference to the internal list.
+     *
+     * @return A direct reference to the internal list. Modifiable, unless this list is frozen.
+     */
+    public List<INBTBase> getRawList() {
+      if (isFrozen()) {
+        return getList();
+      }
+      unshareChildren(false);
+      return list;
+    }
+
+    @Override
+    public NBTTagList deepCopy() {
+      List<INBTBase> copy = new ArrayList<>(list.size());
+      for (INBTBase element : list) {
+        copy.add(element.deepCopy());
+      }
+      return new NBTTagList(copy);
+    }
+
+    @Override
+    public NBTTagList shallowCopy() {
+      NBTTagList copy = new NBTTagList(new ArrayList<>(list));
+      copy.ownedChildren = Collections.newSetFromMap(new IdentityHashMap<>());
+      return copy;
+    }
+
+    private boolean isShared(INBTBase element) {
+      return ownedChildren != null && !ownedChildren.contains(element);
+    }
+
+    /**
+     * Replaces all elements still shared after a {@link #shallowCopy()} by copies of their own.
+     *
+     * @param keepFrozen whether frozen elements may stay shared
+     */
+    private void unshareChildren(boolean keepFrozen) {
+      if (ownedChildren == null) {
+        return;
+      }
+      list.replaceAll(element -> {
+        if (!isShared(element) || keepFrozen && element.isFrozen()) {
+          return element;
+        }
+        return element.shallowCopy();
+      });
+      ownedChildren = null;
+    }
+
+    @Override
+    public NBTTagList freeze() {
+      if (isFrozen()) {
+        return this;
+      }
+      unshareChildren(true);
+      for (INBTBase element : list) {
+        element.freeze();
+      }
+      hashCache = null;
+      super.freeze();
+      return this;
+    }
+
+    /**
+     * Returns a frozen list with the element at the given index replaced. All other elements are
+     * shared with this list, which stays unchanged.
+     *
+     * @param index the index of the element to replace
+     * @param base the new element. Will be {@link #freeze() frozen}.
+     * @return a frozen list with the replaced element
+     * @throws IllegalStateException if this list is not frozen
+     * @throws IllegalArgumentException if the element has the wrong type
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    public NBTTagList with(int index, INBTBase base) {
+      Objects.requireNonNull(base, "base can not be null!");
+      NBTTagList copy = frozenCopy();
+      if (copy.list.size() > 1 && !copy.isType(base.getClass())) {
+        throw new IllegalArgumentException("Wrong element type: " + base.getClass());
+      }
+      copy.list.set(index, base.freeze());
+      copy.freezeShallow();
+      return copy;
+    }
+
+    /**
+     * Returns a frozen list with the element appended. All other elements are shared with this
+     * list, which stays unchanged.
      *
-     * @return The list of NBT elements. Unmodifiable. Use the add and remove functions.
+     * @param base the element to append. Will be {@link #freeze() frozen}.
+     * @return a frozen list with the appended element
+     * @throws IllegalStateException if this list is not frozen
+     * @throws IllegalArgumentException if the element has the wrong type
      */
-    public List<INBTBase> getList() {
-      return Collections.unmodifiableList(list);
+    public NBTTagList withAdded(INBTBase base) {
+      Objects.requireNonNull(base, "base can not be null!");
+      NBTTagList copy = frozenCopy();
+      if (!copy.isType(base.getClass())) {
+        throw new IllegalArgumentException("Wrong element type: " + base.getClass());
+      }
+      copy.list.add(base.freeze());
+      copy.freezeShallow();
+      return copy;
     }
 
     /**
-     * A direct reference to the internal list.
+     * Returns a frozen list without the element at the given index. All other elements are shared
+     * with this list, which stays unchanged.
      *
-     * @return A direct reference to the internal list. Modifiable
+     * @param index the index of the element to remove
+     * @return a frozen list without the element
+     * @throws IllegalStateException if this list is not frozen
+     * @throws IndexOutOfBoundsException if the index is out of bounds
      */
-    public List<INBTBase> getRawList() {
-      return list;
+    public NBTTagList without(int index) {
+      NBTTagList copy = frozenCopy();
+      copy.list.remove(index);
+      copy.freezeShallow();
+      return copy;
     }
 
-    @Override
-    public Object toNBT() {
-      Object nbtList = NBT_TAG_LIST_CONSTRUCTOR.createInstance().getOrThrow();
+    private NBTTagList frozenCopy() {
+      if (!isFrozen()) {
+        throw new IllegalStateException("Only frozen lists can be derived from");
+      }
+      return new NBTTagList(new ArrayList<>(list));
+    }
+
+    /**
+     * Freezes only this list, for use when all elements are known to be frozen already.
+     */
+    private void freezeShallow() {
+      super.freeze();
+    }
 
-      appendAll.accept(list, nbtList);
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_LIST;
+    }
 
-      return nbtList;
+    @Override
+    Object toNBT(NbtBackend backend) {
+      List<Object> elements = new ArrayList<>(list.size());
+      for (INBTBase tag : list) {
+        elements.add(tag.toNBT(backend));
+      }
+      return backend.createList(elements);
     }
 
     public static INBTBase fromNBT(Object nbtObject) {
-      NBTTagList list = new NBTTagList();
-
-      Object originalList = LIST_FIELD
-          .getValue(nbtObject).getOrThrow();
+      return ConversionMetrics.fromNBT(nbtObject, getBackend(), "api");
+    }
 
-      List<?> savedList = (List<?>) originalList;
-      if (savedList == null) {
-        return list;
-      }
-      for (Object entry : savedList) {
-        list.add(INBTBase.fromNBT(entry));
+    static NBTTagList fromNBT(Object nbtObject, NbtBackend backend) {
+      NBTTagList list = new NBTTagList();
+      for (Object entry : backend.getListElements(nbtObject)) {
+        list.add(INBTBase.fromNBT(entry, backend));
       }
       return list;
     }
 
+    /**
+     * Returns the elements of a NMS list, without converting them.
+     *
+     * @param nbtList the NMS list
+     * @return the NMS tags in the list. Must not be modified.
+     */
+    static List<?> getElementsFromNms(Object nbtList) {
+      return getBackend().getListElements(nbtList);
+    }
+
     @Override
     public String toString() {
       return "NBTTagList{" +
@@ -629,12 +1158,31 @@ public class NBTWrappers {
         return false;
       }
       NBTTagList that = (NBTTagList) o;
-      return Objects.equals(list, that.list);
+      if (list.size() != that.list.size()) {
+        return false;
+      }
+      if (HashCache.provesDifference(hashCache, that.hashCache)) {
+        return false;
+      }
+      return list.equals(that.list);
     }
 
+    /**
+     * Returns the hash code of this list. It is cached once this list is frozen.
+     *
+     * @return the hash code of this list
+     */
     @Override
     public int hashCode() {
-      return Objects.hash(list);
+      HashCache cache = hashCache;
+      if (cache != null) {
+        return cache.hash;
+      }
+      int hash = list.hashCode();
+      if (isFrozen()) {
+        hashCache = new HashCache(hash);
+      }
+      return hash;
     }
   }
 
@@ -695,17 +1243,6 @@ public class NBTWrappers {
    * A NBTTagDouble
    */
   public static class NBTTagDouble extends INBTNumber {
-    private static final FluentType<?> NBT_TAG_DOUBLE_CLASS = ClassLookup.NMS
-        .forName("NBTTagDouble").getOrThrow();
-
-    private static final FluentConstructor<?> NBT_TAG_DOUBLE_CONSTRUCTOR = ClassLookup.NMS
-        .forName("NBTTagDouble").getOrThrow()
-        .findConstructor()
-        .withParameters(double.class)
-        .findSingle().getOrThrow();
-
-    private static final FluentMethod NUMBER_GET_METHOD = findNBTNumberGetMethod(NBT_TAG_DOUBLE_CLASS, double.class);
-
     private double value;
 
     /**
@@ -721,6 +1258,7 @@ public class NBTWrappers {
     @Override
     public void set(Number value) {
       Objects.requireNonNull(value, "value can not be null!");
+      ensureMutable();
       this.value = value.doubleValue();
     }
 
@@ -733,15 +1271,22 @@ public class NBTWrappers {
     }
 
     @Override
-    public Object toNBT() {
-      return NBT_TAG_DOUBLE_CONSTRUCTOR.createInstance(getAsDouble()).getOrThrow();
+    public byte getTypeId() {
+      return NbtCodec.TAG_DOUBLE;
     }
 
-    public static INBTBase fromNBT(Object nbtObject) {
-      Object actualValue = NUMBER_GET_METHOD.invoke(nbtObject).getOrThrow();
+    @Override
+    public NBTTagDouble deepCopy() {
+      return new NBTTagDouble(value);
+    }
+
+    @Override
+    Object toNBT(NbtBackend backend) {
+      return backend.createDouble(getAsDouble());
+    }
 
-      Double value = (Double) actualValue;
-      return value == null ? new NBTTagDouble(-1) : new NBTTagDouble(value);
+    public static INBTBase fromNBT(Object nbtObject) {
+      return new NBTTagDouble(getBackend().getDouble(nbtObject));
     }
 
     @Override
@@ -765,7 +1310,7 @@ public class NBTWrappers {
 
     @Override
     public int hashCode() {
-      return Objects.hash(value);
+      return Double.hashCode(value);
     }
   }
 
@@ -773,16 +1318,6 @@ public class NBTWrappers {
    * A NBTTagInt
    */
   public static class NBTTagInt extends INBTNumber {
-    private static final FluentType<?> NBT_TAG_INT_CLASS = ClassLookup.NMS
-            .forName("NBTTagInt").getOrThrow();
-
-    private static final FluentConstructor<?> NBT_TAG_INT_CONSTRUCTOR = NBT_TAG_INT_CLASS
-        .findConstructor()
-        .withParameters(int.class)
-        .findSingle().getOrThrow();
-
-    private static final FluentMethod NUMBER_GET_METHOD = findNBTNumberGetMethod(NBT_TAG_INT_CLASS, int.class);
-
     private int value;
 
     /**
@@ -798,6 +1333,7 @@ public class NBTWrappers {
     @Override
     public void set(Number value) {
       Objects.requireNonNull(value, "value can not be null!");
+      ensureMutable();
       this.value = value.intValue();
     }
 
@@ -815,18 +1351,22 @@ public class NBTWrappers {
     }
 
     @Override
-    public Object toNBT() {
-      return NBT_TAG_INT_CONSTRUCTOR.createInstance(getAsInt()).getOrThrow();
+    public byte getTypeId() {
+      return NbtCodec.TAG_INT;
     }
 
-    public static INBTBase fromNBT(Object nbtObject) {
-      FluentMethod method = NUMBER_GET_METHOD;
-
-      Object actualValue = method.invoke(nbtObject).getOrThrow();
+    @Override
+    public NBTTagInt deepCopy() {
+      return new NBTTagInt(value);
+    }
 
-      Integer value = (Integer) actualValue;
+    @Override
+    Object toNBT(NbtBackend backend) {
+      return backend.createInt(getAsInt());
+    }
 
-      return new NBTTagInt(value == null ? 0 : value);
+    public static INBTBase fromNBT(Object nbtObject) {
+      return new NBTTagInt(getBackend().getInt(nbtObject));
     }
 
     @Override
@@ -850,7 +1390,7 @@ public class NBTWrappers {
 
     @Override
     public int hashCode() {
-      return Objects.hash(value);
+      return Integer.hashCode(value);
     }
   }
 
@@ -858,22 +1398,10 @@ public class NBTWrappers {
    * A NBTTagIntArray
    */
   public static class NBTTagIntArray extends INBTBase {
-    private static final FluentType<?> NBT_TAG_INT_ARRAY_CLASS = ClassLookup.NMS
-        .forName("NBTTagIntArray").getOrThrow();
-
-    private static final FluentConstructor<?> NBT_TAG_INT_ARRAY_CONSTRUCTOR = NBT_TAG_INT_ARRAY_CLASS
-        .findConstructor()
-        .withParameters(int[].class)
-        .findSingle().getOrThrow();
-
-    private static final FluentMethod GETTER_METHOD = NBT_TAG_INT_ARRAY_CLASS
-            .findMethod()
-            .withReturnType(int[].class)
-            .withoutModifiers(Modifier.STATIC)
-            .findSingle().getOrThrow();
-
     private int[] value;
 
+    private HashCache hashCache;
+
     public NBTTagIntArray() {
     }
 
@@ -886,21 +1414,52 @@ public class NBTWrappers {
     }
 
     /**
-     * @return The saved integer array
+     * Returns the saved integer array.
+     *
+     * <p>This is the backing array. Frozen arrays return a copy instead.</p>
+     *
+     * @return the backing array or a copy of it, if this tag is frozen
      */
     public int[] getValue() {
+      if (isFrozen()) {
+        return value == null ? null : value.clone();
+      }
+      return value;
+    }
+
+    /**
+     * Returns the backing array for reading, without copying it if this tag is frozen.
+     *
+     * @return the backing array. Must not be modified.
+     */
+    int[] peekValue() {
       return value;
     }
 
     @Override
-    public Object toNBT() {
-      return NBT_TAG_INT_ARRAY_CONSTRUCTOR.createInstance((Object) getValue()).getOrThrow();
+    public NBTTagIntArray freeze() {
+      hashCache = null;
+      super.freeze();
+      return this;
     }
 
-    public static INBTBase fromNBT(Object nbtObject) {
-      Object actualValue = GETTER_METHOD.invoke(nbtObject).getOrThrow();
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_INT_ARRAY;
+    }
+
+    @Override
+    public NBTTagIntArray deepCopy() {
+      return value == null ? new NBTTagIntArray() : new NBTTagIntArray(value.clone());
+    }
+
+    @Override
+    Object toNBT(NbtBackend backend) {
+      return backend.createIntArray(peekValue());
+    }
 
-      return new NBTTagIntArray((int[]) actualValue);
+    public static INBTBase fromNBT(Object nbtObject) {
+      return new NBTTagIntArray(getBackend().getIntArray(nbtObject));
     }
 
     @Override
@@ -919,29 +1478,160 @@ public class NBTWrappers {
         return false;
       }
       NBTTagIntArray that = (NBTTagIntArray) o;
+      if (value == null || that.value == null) {
+        return value == that.value;
+      }
+      if (value.length != that.value.length) {
+        return false;
+      }
+      if (HashCache.provesDifference(hashCache, that.hashCache)) {
+        return false;
+      }
       return Arrays.equals(value, that.value);
     }
 
+    /**
+     * Returns the hash code of this array. It is cached once this array is frozen.
+     *
+     * @return the hash code of this array
+     */
     @Override
     public int hashCode() {
-      return Arrays.hashCode(value);
+      HashCache cache = hashCache;
+      if (cache != null) {
+        return cache.hash;
+      }
+      int hash = Arrays.hashCode(value);
+      if (isFrozen()) {
+        hashCache = new HashCache(hash);
+      }
+      return hash;
     }
   }
 
   /**
-   * A NBTTagByte
+   * A NBTTagLongArray, used by chunks since Minecraft 1.13 for the block states and height maps.
    */
-  public static class NBTTagByte extends INBTNumber {
-    private static final FluentType<?> NBT_TAG_BYTE_CLASS = ClassLookup.NMS
-        .forName("NBTTagByte").getOrThrow();
+  public static class NBTTagLongArray extends INBTBase {
+    private long[] value;
+
+    private HashCache hashCache;
+
+    public NBTTagLongArray() {
+    }
+
+    /**
+     * @param value The Long value
+     */
+    public NBTTagLongArray(long[] value) {
+      Objects.requireNonNull(value, "value can not be null!");
+      this.value = value;
+    }
+
+    /**
+     * Returns the saved long array.
+     *
+     * <p>This is the backing array. Frozen arrays return a copy instead.</p>
+     *
+     * @return the backing array or a copy of it, if this tag is frozen
+     */
+    public long[] getValue() {
+      if (isFrozen()) {
+        return value == null ? null : value.clone();
+      }
+      return value;
+    }
+
+    /**
+     * Returns the backing array for reading, without copying it if this tag is frozen.
+     *
+     * @return the backing array. Must not be modified.
+     */
+    long[] peekValue() {
+      return value;
+    }
+
+    @Override
+    public NBTTagLongArray freeze() {
+      hashCache = null;
+      super.freeze();
+      return this;
+    }
+
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_LONG_ARRAY;
+    }
 
-    private static final FluentConstructor<?> NBT_TAG_BYTE_CONSTRUCTOR = NBT_TAG_BYTE_CLASS
-        .findConstructor()
-        .withParameters(byte.class)
-        .findSingle().getOrThrow();
+    @Override
+    public NBTTagLongArray deepCopy() {
+      return value == null ? new NBTTagLongArray() : new NBTTagLongArray(value.clone());
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the backend has no long arrays, e.g. a server
+     *     older than 1.13
+     */
+    @Override
+    Object toNBT(NbtBackend backend) {
+      return backend.createLongArray(peekValue());
+    }
+
+    public static INBTBase fromNBT(Object nbtObject) {
+      return new NBTTagLongArray(getBackend().getLongArray(nbtObject));
+    }
+
+    @Override
+    public String toString() {
+      return "NBTTagLongArray{" +
+          "value=" + Arrays.toString(value) +
+          '}';
+    }
 
-    private static final FluentMethod NUMBER_GET_METHOD = findNBTNumberGetMethod(NBT_TAG_BYTE_CLASS, byte.class);
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof NBTTagLongArray)) {
+        return false;
+      }
+      NBTTagLongArray that = (NBTTagLongArray) o;
+      if (value == null || that.value == null) {
+        return value == that.value;
+      }
+      if (value.length != that.value.length) {
+        return false;
+      }
+      if (HashCache.provesDifference(hashCache, that.hashCache)) {
+        return false;
+      }
+      return Arrays.equals(value, that.value);
+    }
+
+    /**
+     * Returns the hash code of this array. It is cached once this array is frozen.
+     *
+     * @return the hash code of this array
+     */
+    @Override
+    public int hashCode() {
+      HashCache cache = hashCache;
+      if (cache != null) {
+        return cache.hash;
+      }
+      int hash = Arrays.hashCode(value);
+      if (isFrozen()) {
+        hashCache = new HashCache(hash);
+      }
+      return hash;
+    }
+  }
 
+  /**
+   * A NBTTagByte
+   */
+  public static class NBTTagByte extends INBTNumber {
     private byte value;
 
     /**
@@ -957,6 +1647,7 @@ public class NBTWrappers {
     @Override
     public void set(Number value) {
       Objects.requireNonNull(value, "value can not be null!");
+      ensureMutable();
       this.value = value.byteValue();
     }
 
@@ -969,15 +1660,22 @@ public class NBTWrappers {
     }
 
     @Override
-    public Object toNBT() {
-      return NBT_TAG_BYTE_CONSTRUCTOR.createInstance(getAsByte()).getOrThrow();
+    public byte getTypeId() {
+      return NbtCodec.TAG_BYTE;
     }
 
-    public static INBTBase fromNBT(Object nbtObject) {
-      Object actualValue = NUMBER_GET_METHOD.invoke(nbtObject).getOrThrow();
+    @Override
+    public NBTTagByte deepCopy() {
+      return new NBTTagByte(value);
+    }
 
-      Byte value = (Byte) actualValue;
-      return new NBTTagByte(value == null ? 0 : value);
+    @Override
+    Object toNBT(NbtBackend backend) {
+      return backend.createByte(getAsByte());
+    }
+
+    public static INBTBase fromNBT(Object nbtObject) {
+      return new NBTTagByte(getBackend().getByte(nbtObject));
     }
 
     @Override
@@ -1001,7 +1699,7 @@ public class NBTWrappers {
 
     @Override
     public int hashCode() {
-      return Objects.hash(value);
+      return Byte.hashCode(value);
     }
   }
 
@@ -1009,21 +1707,10 @@ public class NBTWrappers {
    * A NBTTagByteArray
    */
   public static class NBTTagByteArray extends INBTBase {
-    private static final FluentType<?> NBT_TAG_BYTE_ARRAY_CLASS = ClassLookup.NMS
-        .forName("NBTTagByteArray").getOrThrow();
-
-    private static final FluentConstructor<?> NBT_TAG_BYTE_ARRAY_CONSTRUCTOR = NBT_TAG_BYTE_ARRAY_CLASS
-        .findConstructor()
-        .withParameters(byte[].class)
-        .findSingle().getOrThrow();
-
-    private static final FluentMethod GETTER_METHOD = NBT_TAG_BYTE_ARRAY_CLASS.findMethod()
-        .withReturnType(byte[].class)
-        .withoutModifiers(Modifier.STATIC)
-        .findSingle().getOrThrow();
-
     private byte[] value;
 
+    private HashCache hashCache;
+
     public NBTTagByteArray() {
     }
 
@@ -1036,21 +1723,52 @@ public class NBTWrappers {
     }
 
     /**
-     * @return The saved bytes
+     * Returns the saved bytes.
+     *
+     * <p>This is the backing array. Frozen arrays return a copy instead.</p>
+     *
+     * @return the backing array or a copy of it, if this tag is frozen
      */
     public byte[] getValue() {
+      if (isFrozen()) {
+        return value == null ? null : value.clone();
+      }
+      return value;
+    }
+
+    /**
+     * Returns the backing array for reading, without copying it if this tag is frozen.
+     *
+     * @return the backing array. Must not be modified.
+     */
+    byte[] peekValue() {
       return value;
     }
 
     @Override
-    public Object toNBT() {
-      return NBT_TAG_BYTE_ARRAY_CONSTRUCTOR.createInstance((Object) getValue()).getOrThrow();
+    public NBTTagByteArray freeze() {
+      hashCache = null;
+      super.freeze();
+      return this;
     }
 
-    public static INBTBase fromNBT(Object nbtObject) {
-      Object actualValue = GETTER_METHOD.invoke(nbtObject).getOrThrow();
+    @Override
+    public byte getTypeId() {
+      return NbtCodec.TAG_BYTE_ARRAY;
+    }
+
+    @Override
+    public NBTTagByteArray deepCopy() {
+      return value == null ? new NBTTagByteArray() : new NBTTagByteArray(value.clone());
+    }
 
-      return new NBTTagByteArray((byte[]) actualValue);
+    @Override
+    Object toNBT(NbtBackend backend) {
+      return backend.createByteArray(peekValue());
+    }
+
+    public static INBTBase fromNBT(Object nbtObject) {
+      return new NBTTagByteArray(getBackend().getByteArray(nbtObject));
     }
 
     @Override
@@ -1069,12 +1787,34 @@ public class NBTWrappers {
         return false;
       }
       NBTTagByteArray that = (NBTTagByteArray) o;
+      if (value == null || that.value == null) {
+        return value == that.value;
+      }
+      if (value.length != that.value.length) {
+        return false;
+      }
+      if (HashCache.provesDifference(hashCache, that.hashCache)) {
+        return false;
+      }
       return Arrays.equals(value, that.value);
     }
 
+    /**
+     * Returns the hash code of this array. It is cached once this array is frozen.
+     *
+     * @return the hash code of this array
+     */
     @Override
     public int hashCode() {
-      return Arrays.hashCode(value);
+      HashCache cache = hashCache;
+      if (cache != null) {
+        return cache.hash;
+      }
+      int hash = Arrays.hashCode(value);
+      if (isFrozen()) {
+        hashCache = new HashCache(hash);
+      }
+      return hash;
     }
   }
 
@@ -1082,16 +1822,6 @@ public class NBTWrappers {
    * A NBTTagShort
    */
   public static class NBTTagShort extends INBTNumber {
-    private static final FluentType<?> NBT_TAG_SHORT_CLASS = ClassLookup.NMS
-        .forName("NBTTagShort").getOrThrow();
-
-    private static final FluentConstructor<?> NBT_TAG_SHORT_CONSTRUCTOR = NBT_TAG_SHORT_CLASS
-        .findConstructor()
-        .withParameters(short.class)
-        .findSingle().getOrThrow();
-
-    private static final FluentMethod NUMBER_GET_METHOD = findNBTNumberGetMethod(NBT_TAG_SHORT_CLASS, short.class);
-
     private short value;
 
     /**
@@ -1107,6 +1837,7 @@ public class NBTWrappers {
     @Override
     public void set(Number value) {
       Objects.requireNonNull(value, "value can not be null!");
+      ensureMutable();
       this.value = value.shortValue();
     }
 
@@ -1119,15 +1850,22 @@ public class NBTWrappers {
     }
 
     @Override
-    public Object toNBT() {
-      return NBT_TAG_SHORT_CONSTRUCTOR.createInstance(getAsShort()).getOrThrow();
+    public byte getTypeId() {
+      return NbtCodec.TAG_SHORT;
     }
 
-    public static INBTBase fromNBT(Object nbtObject) {
-      Object actualValue = NUMBER_GET_METHOD.invoke(nbtObject).getOrThrow();
+    @Override
+    public NBTTagShort deepCopy() {
+      return new NBTTagShort(value);
+    }
+
+    @Override
+    Object toNBT(NbtBackend backend) {
+      return backend.createShort(getAsShort());
+    }
 
-      Short value = (Short) actualValue;
-      return new NBTTagShort(value == null ? 0 : value);
+    public static INBTBase fromNBT(Object nbtObject) {
+      return new NBTTagShort(getBackend().getShort(nbtObject));
     }
 
     @Override
@@ -1151,7 +1889,7 @@ public class NBTWrappers {
 
     @Override
     public int hashCode() {
-      return Objects.hash(value);
+      return Short.hashCode(value);
     }
   }
 
@@ -1159,16 +1897,6 @@ public class NBTWrappers {
    * A NBTTagLong
    */
   public static class NBTTagLong extends INBTNumber {
-    private static final FluentType<?> NBT_TAG_LONG_CLASS = ClassLookup.NMS
-        .forName("NBTTagLong").getOrThrow();
-
-    private static final FluentConstructor<?> NBT_TAG_LONG_CONSTRUCTOR = NBT_TAG_LONG_CLASS
-        .findConstructor()
-        .withParameters(long.class)
-        .findSingle().getOrThrow();
-
-    private static final FluentMethod NUMBER_GET_METHOD = findNBTNumberGetMethod(NBT_TAG_LONG_CLASS, long.class);
-
     private long value;
 
     /**
@@ -1184,6 +1912,7 @@ public class NBTWrappers {
     @Override
     public void set(Number value) {
       Objects.requireNonNull(value, "value can not be null!");
+      ensureMutable();
       this.value = value.longValue();
     }
 
@@ -1201,15 +1930,22 @@ public class NBTWrappers {
     }
 
     @Override
-    public Object toNBT() {
-      return NBT_TAG_LONG_CONSTRUCTOR.createInstance(getAsLong()).getOrThrow();
+    public byte getTypeId() {
+      return NbtCodec.TAG_LONG;
     }
 
-    public static INBTBase fromNBT(Object nbtObject) {
-      Object actualValue = NUMBER_GET_METHOD.invoke(nbtObject).getOrThrow();
+    @Override
+    public NBTTagLong deepCopy() {
+      return new NBTTagLong(value);
+    }
 
-      Long value = (Long) actualValue;
-      return new NBTTagLong(value == null ? 0 : value);
+    @Override
+    Object toNBT(NbtBackend backend) {
+      return backend.createLong(getAsLong());
+    }
+
+    public static INBTBase fromNBT(Object nbtObject) {
+      return new NBTTagLong(getBackend().getLong(nbtObject));
     }
 
     @Override
@@ -1233,7 +1969,7 @@ public class NBTWrappers {
 
     @Override
     public int hashCode() {
-      return Objects.hash(value);
+      return Long.hashCode(value);
     }
   }
 
@@ -1241,16 +1977,6 @@ public class NBTWrappers {
    * A NBTTagFloat
    */
   public static class NBTTagFloat extends INBTNumber {
-    private static final FluentType<?> NBT_TAG_FLOAT_CLASS = ClassLookup.NMS
-        .forName("NBTTagFloat").getOrThrow();
-
-    private static final FluentConstructor<?> NBT_TAG_FLOAT_CONSTRUCTOR = NBT_TAG_FLOAT_CLASS
-        .findConstructor()
-        .withParameters(float.class)
-        .findSingle().getOrThrow();
-
-    private static final FluentMethod NUMBER_GET_METHOD = findNBTNumberGetMethod(NBT_TAG_FLOAT_CLASS, float.class);
-
     private float value;
 
     /**
@@ -1266,6 +1992,7 @@ public class NBTWrappers {
     @Override
     public void set(Number value) {
       Objects.requireNonNull(value, "value can not be null!");
+      ensureMutable();
       this.value = value.floatValue();
     }
 
@@ -1278,15 +2005,22 @@ public class NBTWrappers {
     }
 
     @Override
-    public Object toNBT() {
-      return NBT_TAG_FLOAT_CONSTRUCTOR.createInstance(getAsFloat()).getOrThrow();
+    public byte getTypeId() {
+      return NbtCodec.TAG_FLOAT;
     }
 
-    public static INBTBase fromNBT(Object nbtObject) {
-      Object actualValue = NUMBER_GET_METHOD.invoke(nbtObject).getOrThrow();
+    @Override
+    public NBTTagFloat deepCopy() {
+      return new NBTTagFloat(value);
+    }
+
+    @Override
+    Object toNBT(NbtBackend backend) {
+      return backend.createFloat(getAsFloat());
+    }
 
-      Float value = (Float) actualValue;
-      return new NBTTagFloat(value == null ? 0 : value);
+    public static INBTBase fromNBT(Object nbtObject) {
+      return new NBTTagFloat(getBackend().getFloat(nbtObject));
     }
 
     @Override
@@ -1310,34 +2044,31 @@ public class NBTWrappers {
 
     @Override
     public int hashCode() {
-      return Objects.hash(value);
+      return Float.hashCode(value);
     }
   }
 
   /**
-   * Returns the method also existing in the Superclass
-   *
-   * @param clazz The Class to invoke it on
-   * @param returnClass The return class it should have
-   * @return The found method
+   * The hash code of a frozen tag. Mutable tags are not cached, as modifications of nested tags
+   * can not be tracked.
    */
-  private static FluentMethod findNBTNumberGetMethod(FluentType<?> clazz, Class<?> returnClass) {
-    return clazz.findMethod()
-        .withModifiers(Modifier.PUBLIC)
-        .withoutModifiers(Modifier.STATIC)
-        .withReturnType(returnClass)
-        .matchingMethod(method -> !method.getName().equals("hashCode"))
-        .matchingMethod(method -> !method.getName().equals("getTypeId"))
-        .matchingMethod(method ->
-            // method exists in superclass too, i.e. is overwritten
-            FluentType.ofUnknown(clazz.getUnderlying().getSuperclass())
-                .findMethod()
-                .withName(method.getName())
-                .withParameters(method.getParameterTypes())
-                .findSingle()
-                .isPresent()
-        )
-        .findSingle()
-        .getOrThrow();
+  private static final class HashCache {
+
+    private final int hash;
+
+    private HashCache(int hash) {
+      this.hash = hash;
+    }
+
+    /**
+     * Checks whether two cached hashes prove that their tags are different.
+     *
+     * @param first the first cache entry or null
+     * @param second the second cache entry or null
+     * @return true if both are present and differ, false if the tags may be equal
+     */
+    private static boolean provesDifference(HashCache first, HashCache second) {
+      return first != null && second != null && first.hash != second.hash;
+    }
   }
 }
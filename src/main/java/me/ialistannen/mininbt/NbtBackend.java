@@ -0,0 +1,279 @@
+package me.ialistannen.mininbt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.bukkit.block.BlockState;
+import org.bukkit.entity.Entity;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Creates and reads the tags the wrappers in {@link NBTWrappers} are converted to and from.
+ *
+ * <p>The default backend works on the NMS tags of the running server via reflection. {@link
+ * InMemoryNbtBackend} is a pure Java stand-in, so conversions can be tested and benchmarked
+ * without a server. The backend in use is set with {@link NBTWrappers#setBackend(NbtBackend)}, or
+ * chosen by a {@link NbtBackendProvider} for the running server.</p>
+ *
+ * <p>The item, entity and tile entity hooks are used by {@link ItemNBTUtil}, {@link EntityNBTUtil}
+ * and {@link TileEntityNBTUtil}. By default they access the server via reflection, passing the
+ * tags of this backend to it, so backends for a server only need to override them to avoid the
+ * reflection.</p>
+ *
+ * <p>Tags are passed as {@link Object}, as the tag classes are not known at compile time. Methods
+ * reading a tag may assume it has the right type, i.e. {@link #getTypeId(Object)} returned the
+ * matching id for it.</p>
+ *
+ * <p>Implementations must be thread safe.</p>
+ */
+public interface NbtBackend {
+
+  /**
+   * Returns the type of a tag of this backend.
+   *
+   * @param tag the tag
+   * @return the type id, one of the {@code TAG_} constants in {@link NbtCodec}, or {@link
+   *     NbtCodec#TAG_END} if the tag is not supported
+   */
+  byte getTypeId(Object tag);
+
+  Object createByte(byte value);
+
+  byte getByte(Object tag);
+
+  Object createShort(short value);
+
+  short getShort(Object tag);
+
+  Object createInt(int value);
+
+  int getInt(Object tag);
+
+  Object createLong(long value);
+
+  long getLong(Object tag);
+
+  Object createFloat(float value);
+
+  float getFloat(Object tag);
+
+  Object createDouble(double value);
+
+  double getDouble(Object tag);
+
+  /**
+   * Creates a byte array tag.
+   *
+   * @param value the array, which the tag may keep
+   * @return the created tag
+   */
+  Object createByteArray(byte[] value);
+
+  /**
+   * Returns the value of a byte array tag.
+   *
+   * @param tag the tag
+   * @return the array of the tag. Must not be modified.
+   */
+  byte[] getByteArray(Object tag);
+
+  /**
+   * Creates an int array tag.
+   *
+   * @param value the array, which the tag may keep
+   * @return the created tag
+   */
+  Object createIntArray(int[] value);
+
+  /**
+   * Returns the value of an int array tag.
+   *
+   * @param tag the tag
+   * @return the array of the tag. Must not be modified.
+   */
+  int[] getIntArray(Object tag);
+
+  /**
+   * Creates a long array tag. Long arrays were added in Minecraft 1.13, so backends for older
+   * versions do not support them.
+   *
+   * @param value the array, which the tag may keep
+   * @return the created tag
+   * @throws UnsupportedOperationException if this backend has no long arrays
+   */
+  default Object createLongArray(long[] value) {
+    throw new UnsupportedOperationException("This backend does not support long arrays");
+  }
+
+  /**
+   * Returns the value of a long array tag. Only called if {@link #getTypeId(Object)} returned
+   * {@link NbtCodec#TAG_LONG_ARRAY} for the tag.
+   *
+   * @param tag the tag
+   * @return the array of the tag. Must not be modified.
+   * @throws UnsupportedOperationException if this backend has no long arrays
+   */
+  default long[] getLongArray(Object tag) {
+    throw new UnsupportedOperationException("This backend does not support long arrays");
+  }
+
+  Object createString(String value);
+
+  String getString(Object tag);
+
+  /**
+   * Creates an empty compound.
+   *
+   * @return the created compound
+   */
+  Object createCompound();
+
+  /**
+   * Returns the keys of a compound.
+   *
+   * @param compound the compound
+   * @return a copy of the keys of the compound
+   */
+  Collection<String> getCompoundKeys(Object compound);
+
+  /**
+   * Returns a single value of a compound.
+   *
+   * @param compound the compound
+   * @param key the key
+   * @return the value or null if there is none
+   */
+  Object getCompoundValue(Object compound, String key);
+
+  /**
+   * Sets a single value of a compound, overwriting an existing one.
+   *
+   * @param compound the compound
+   * @param key the key
+   * @param value the value, a tag of this backend
+   */
+  void setCompoundValue(Object compound, String key, Object value);
+
+  /**
+   * Creates a list.
+   *
+   * @param elements the elements, tags of this backend with the same type
+   * @return the created list
+   */
+  Object createList(List<?> elements);
+
+  /**
+   * Returns the elements of a list.
+   *
+   * @param list the list
+   * @return the elements of the list. Must not be modified.
+   */
+  List<?> getListElements(Object list);
+
+  /**
+   * Parses a compound in the string format used by commands (SNBT).
+   *
+   * @param snbt the string to parse
+   * @return the parsed compound
+   * @throws IllegalArgumentException if the string is malformed
+   */
+  Object parseCompound(String snbt);
+
+  /**
+   * Reads a gzip compressed root compound.
+   *
+   * @param inputStream the stream to read from
+   * @return the read compound
+   * @throws IOException if an error occurs while reading
+   */
+  Object readCompressed(InputStream inputStream) throws IOException;
+
+  /**
+   * Writes a gzip compressed root compound.
+   *
+   * @param compound the compound to write
+   * @param outputStream the stream to write to
+   * @throws IOException if an error occurs while writing
+   */
+  void writeCompressed(Object compound, OutputStream outputStream) throws IOException;
+
+  /**
+   * Returns the tag of an item.
+   *
+   * @param itemStack the item
+   * @return the compound of the item or null if it has none
+   */
+  default Object getItemTag(ItemStack itemStack) {
+    return ItemNBTUtil.ReflectiveHooks.getTag(itemStack);
+  }
+
+  /**
+   * Sets the tag of a copy of an item.
+   *
+   * @param itemStack the item
+   * @param compound the compound to set
+   * @return the modified copy
+   */
+  default ItemStack setItemTag(ItemStack itemStack, Object compound) {
+    return ItemNBTUtil.ReflectiveHooks.setTag(itemStack, compound);
+  }
+
+  /**
+   * Saves an entity to a new compound.
+   *
+   * @param entity the entity
+   * @return the compound with the data of the entity
+   */
+  default Object saveEntity(Entity entity) {
+    Object compound = createCompound();
+    EntityNBTUtil.ReflectiveHooks.save(entity, compound);
+    return compound;
+  }
+
+  /**
+   * Loads the data of an entity from a compound.
+   *
+   * @param entity the entity
+   * @param compound the compound to load
+   */
+  default void loadEntity(Entity entity, Object compound) {
+    EntityNBTUtil.ReflectiveHooks.load(entity, compound);
+  }
+
+  /**
+   * Saves the tile entity of a block state to a new compound.
+   *
+   * @param blockState the block state, which must have a tile entity
+   * @return the compound with the data of the tile entity
+   */
+  default Object saveTileEntity(BlockState blockState) {
+    Object compound = createCompound();
+    TileEntityNBTUtil.ReflectiveHooks.save(blockState, compound);
+    return compound;
+  }
+
+  /**
+   * Loads the data of the tile entity of a block state from a compound. The block state is not
+   * updated.
+   *
+   * @param blockState the block state, which must have a tile entity
+   * @param compound the compound to load
+   */
+  default void loadTileEntity(BlockState blockState, Object compound) {
+    TileEntityNBTUtil.ReflectiveHooks.load(blockState, compound);
+  }
+
+  /**
+   * Loads the data of the tile entities in the world at the positions of the block states, which
+   * must all be in the same chunk. Afterwards the chunk is marked as changed once. The blocks are
+   * not updated and no neighbours are notified.
+   *
+   * @param compounds the compound to load for each block state
+   */
+  default void loadTileEntitiesInChunk(Map<BlockState, Object> compounds) {
+    TileEntityNBTUtil.ReflectiveHooks.loadInChunk(compounds);
+  }
+}
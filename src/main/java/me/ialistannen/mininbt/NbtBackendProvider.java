@@ -0,0 +1,30 @@
+package me.ialistannen.mininbt;
+
+/**
+ * Provides a {@link NbtBackend} for some server versions.
+ *
+ * <p>Providers are found with a {@link java.util.ServiceLoader}, i.e. they are registered in a
+ * {@code META-INF/services/me.ialistannen.mininbt.NbtBackendProvider} file. The first provider
+ * supporting the running server creates the default backend. If there is none, the reflective
+ * backend is used.</p>
+ *
+ * <p>Providers are loaded on every server, so they must not touch the classes of the versions they
+ * support before {@link #createBackend()} is called.</p>
+ */
+public interface NbtBackendProvider {
+
+  /**
+   * Checks whether this provider supports a server version.
+   *
+   * @param serverVersion the version of the server, e.g. {@code v1_14_R1}
+   * @return true if {@link #createBackend()} can be called on that version
+   */
+  boolean supports(String serverVersion);
+
+  /**
+   * Creates the backend. Only called if {@link #supports(String)} returned true.
+   *
+   * @return the created backend
+   */
+  NbtBackend createBackend();
+}
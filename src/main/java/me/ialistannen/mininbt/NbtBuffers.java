@@ -0,0 +1,405 @@
+package me.ialistannen.mininbt;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+
+/**
+ * Reads and writes binary NBT from and to {@link ByteBuffer}s, heap or direct.
+ *
+ * <p>Unlike the stream based {@link NbtCodec} methods, the buffers are accessed directly and
+ * compression reuses an {@link Inflater}, a {@link Deflater} and scratch arrays kept per thread.
+ * Writing a small compound therefore allocates next to nothing besides the output the caller
+ * provides. {@link NbtCodec#writeCompressed(NBTTagCompound, OutputStream)} compresses with the same
+ * deflater. Scratch arrays that grew beyond {@value #MAX_RETAINED_SCRATCH} bytes for a large
+ * compound are dropped again afterwards.</p>
+ *
+ * <p>All methods advance the position of the buffer they are given only if they succeed, and leave
+ * its byte order untouched.</p>
+ */
+public class NbtBuffers {
+
+  private static final int MAX_RETAINED_SCRATCH = 1024 * 1024;
+  private static final int INITIAL_SCRATCH = 8 * 1024;
+
+  private static final int GZIP_MAGIC = 0x8B1F;
+  private static final int GZIP_HEADER_SIZE = 10;
+  private static final int GZIP_TRAILER_SIZE = 8;
+  private static final int GZIP_FLAG_HEADER_CRC = 2;
+  private static final int GZIP_FLAG_EXTRA = 4;
+  private static final int GZIP_FLAG_NAME = 8;
+  private static final int GZIP_FLAG_COMMENT = 16;
+  /**
+   * Magic, deflate, no flags, no modification time, no extra flags, unknown OS.
+   */
+  private static final byte[] GZIP_HEADER = {0x1F, (byte) 0x8B, 8, 0, 0, 0, 0, 0, 0, (byte) 0xFF};
+
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  /**
+   * Reads an uncompressed root compound from the remaining bytes of a buffer.
+   *
+   * @param source the buffer to read from
+   * @return the read compound
+   * @throws IOException if the data is malformed or ends too early
+   */
+  public static NBTTagCompound read(ByteBuffer source) throws IOException {
+    return read(source, NbtLimits.UNLIMITED);
+  }
+
+  /**
+   * Reads an uncompressed root compound from an untrusted source, aborting as soon as it exceeds
+   * a limit.
+   *
+   * @param source the buffer to read from
+   * @param limits the limits to enforce
+   * @return the read compound
+   * @throws NbtLimits.LimitExceededException if the data exceeds a limit
+   * @throws IOException if the data is malformed or ends too early
+   */
+  public static NBTTagCompound read(ByteBuffer source, NbtLimits limits) throws IOException {
+    Objects.requireNonNull(source, "source can not be null!");
+
+    ByteBuffer view = source.duplicate().order(ByteOrder.BIG_ENDIAN);
+    NBTTagCompound compound = NbtCodec.readRootCompound(new ByteBufferDataInput(view), limits);
+    source.position(view.position());
+    return compound;
+  }
+
+  /**
+   * Writes an uncompressed root compound into a buffer.
+   *
+   * @param compound the compound to write
+   * @param target the buffer to write to
+   * @return the amount of written bytes
+   * @throws BufferOverflowException if the compound does not fit into the buffer. Nothing is
+   *     written in that case.
+   * @throws IOException if a string is too long to be encoded
+   */
+  public static int write(NBTTagCompound compound, ByteBuffer target) throws IOException {
+    Objects.requireNonNull(compound, "compound can not be null!");
+    Objects.requireNonNull(target, "target can not be null!");
+
+    ByteBuffer view = target.duplicate().order(ByteOrder.BIG_ENDIAN);
+    NbtCodec.writeRootCompound(compound, new ByteBufferDataOutput(view, false));
+    int written = view.position() - target.position();
+    target.position(view.position());
+    return written;
+  }
+
+  /**
+   * Reads a gzip compressed root compound, the format used by level and player files, from a
+   * buffer. Only the gzip member is consumed, bytes after it are left in the buffer.
+   *
+   * @param source the buffer to read from
+   * @return the read compound
+   * @throws IOException if the data is malformed or ends too early
+   */
+  public static NBTTagCompound readCompressed(ByteBuffer source) throws IOException {
+    return readCompressed(source, NbtLimits.UNLIMITED);
+  }
+
+  /**
+   * Reads a gzip compressed root compound from an untrusted source. The limits apply to the
+   * uncompressed data, so inflating stops as soon as it grows beyond the byte limit.
+   *
+   * @param source the buffer to read from
+   * @param limits the limits to enforce
+   * @return the read compound
+   * @throws NbtLimits.LimitExceededException if the data exceeds a limit
+   * @throws IOException if the data is malformed or ends too early
+   */
+  public static NBTTagCompound readCompressed(ByteBuffer source, NbtLimits limits)
+      throws IOException {
+    Objects.requireNonNull(source, "source can not be null!");
+    Objects.requireNonNull(limits, "limits can not be null!");
+
+    Scratch scratch = SCRATCH.get();
+    try {
+      ByteBuffer view = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      readGzipHeader(view);
+      int length = inflate(view, scratch, limits);
+
+      if (view.remaining() < GZIP_TRAILER_SIZE) {
+        throw new EOFException("Missing gzip trailer");
+      }
+      scratch.crc.reset();
+      scratch.crc.update(scratch.data, 0, length);
+      if (view.getInt() != (int) scratch.crc.getValue()) {
+        throw new IOException("Corrupt gzip data: checksum mismatch");
+      }
+      if (view.getInt() != length) {
+        throw new IOException("Corrupt gzip data: size mismatch");
+      }
+
+      NBTTagCompound compound = NbtCodec.readRootCompound(
+          new ByteBufferDataInput(ByteBuffer.wrap(scratch.data, 0, length)), limits
+      );
+      source.position(view.position());
+      return compound;
+    } finally {
+      scratch.trim();
+    }
+  }
+
+  /**
+   * Writes a gzip compressed root compound, the format used by level and player files, into a
+   * buffer.
+   *
+   * @param compound the compound to write
+   * @param target the buffer to write to
+   * @return the amount of written bytes
+   * @throws BufferOverflowException if the compressed compound does not fit into the buffer.
+   *     Nothing is written in that case.
+   * @throws IOException if a string is too long to be encoded
+   */
+  public static int writeCompressed(NBTTagCompound compound, ByteBuffer target)
+      throws IOException {
+    Objects.requireNonNull(compound, "compound can not be null!");
+    Objects.requireNonNull(target, "target can not be null!");
+
+    Scratch scratch = SCRATCH.get();
+    try {
+      int length = encode(compound, scratch);
+
+      ByteBuffer view = target.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      if (view.remaining() < GZIP_HEADER_SIZE) {
+        throw new BufferOverflowException();
+      }
+      view.put(GZIP_HEADER);
+
+      deflate(scratch, length, view);
+
+      if (view.remaining() < GZIP_TRAILER_SIZE) {
+        throw new BufferOverflowException();
+      }
+      scratch.crc.reset();
+      scratch.crc.update(scratch.data, 0, length);
+      view.putInt((int) scratch.crc.getValue()).putInt(length);
+
+      int written = view.position() - target.position();
+      target.position(view.position());
+      return written;
+    } finally {
+      scratch.trim();
+    }
+  }
+
+  /**
+   * Writes a gzip compressed root compound to a stream, backing {@link
+   * NbtCodec#writeCompressed(NBTTagCompound, OutputStream)}. Unlike a {@link
+   * java.util.zip.GZIPOutputStream} this does not create a {@link Deflater} per call, whose native
+   * memory would only be freed once it is garbage collected.
+   *
+   * @param compound the compound to write
+   * @param outputStream the stream to write to. Will not be closed.
+   * @throws IOException if an error occurs while writing
+   */
+  static void writeCompressed(NBTTagCompound compound, OutputStream outputStream)
+      throws IOException {
+    Scratch scratch = SCRATCH.get();
+    try {
+      int length = encode(compound, scratch);
+
+      outputStream.write(GZIP_HEADER);
+
+      Deflater deflater = startDeflating(scratch, length);
+      while (!deflater.finished()) {
+        int deflated = deflater.deflate(scratch.chunk);
+        outputStream.write(scratch.chunk, 0, deflated);
+      }
+
+      scratch.crc.reset();
+      scratch.crc.update(scratch.data, 0, length);
+      ByteBuffer.wrap(scratch.chunk).order(ByteOrder.LITTLE_ENDIAN)
+          .putInt((int) scratch.crc.getValue()).putInt(length);
+      outputStream.write(scratch.chunk, 0, GZIP_TRAILER_SIZE);
+    } finally {
+      scratch.trim();
+    }
+  }
+
+  /**
+   * Writes an uncompressed root compound into the scratch data array.
+   *
+   * @return the amount of written bytes
+   */
+  private static int encode(NBTTagCompound compound, Scratch scratch) throws IOException {
+    ByteBufferDataOutput output = new ByteBufferDataOutput(ByteBuffer.wrap(scratch.data), true);
+    NbtCodec.writeRootCompound(compound, output);
+    ByteBuffer encoded = output.getBuffer();
+    scratch.data = encoded.array();
+    return encoded.position();
+  }
+
+  private static void readGzipHeader(ByteBuffer source) throws IOException {
+    if (source.remaining() < GZIP_HEADER_SIZE) {
+      throw new EOFException("Missing gzip header");
+    }
+    if ((source.getShort() & 0xFFFF) != GZIP_MAGIC) {
+      throw new IOException("Not in gzip format");
+    }
+    if (source.get() != 8) {
+      throw new IOException("Unsupported gzip compression method");
+    }
+    int flags = source.get();
+    // modification time, extra flags, OS
+    source.position(source.position() + 6);
+
+    try {
+      if ((flags & GZIP_FLAG_EXTRA) != 0) {
+        int length = source.getShort() & 0xFFFF;
+        source.position(source.position() + length);
+      }
+      if ((flags & GZIP_FLAG_NAME) != 0) {
+        while (source.get() != 0) {
+          // skip the zero terminated name
+        }
+      }
+      if ((flags & GZIP_FLAG_COMMENT) != 0) {
+        while (source.get() != 0) {
+          // skip the zero terminated comment
+        }
+      }
+      if ((flags & GZIP_FLAG_HEADER_CRC) != 0) {
+        source.getShort();
+      }
+    } catch (RuntimeException e) {
+      // buffer under- or overflows of a truncated header
+      throw new EOFException("Truncated gzip header");
+    }
+  }
+
+  /**
+   * Inflates a raw deflate stream from the source into the scratch data array.
+   *
+   * @return the amount of inflated bytes
+   */
+  private static int inflate(ByteBuffer source, Scratch scratch, NbtLimits limits)
+      throws IOException {
+    Inflater inflater = scratch.inflater;
+    inflater.reset();
+
+    int length = 0;
+    try {
+      while (!inflater.finished()) {
+        if (inflater.needsInput()) {
+          if (!source.hasRemaining()) {
+            throw new EOFException("Unexpected end of gzip data");
+          }
+          setInput(inflater, source, scratch.chunk);
+        }
+        if (length == scratch.data.length) {
+          if (length > limits.getMaxBytes()) {
+            throw new NbtLimits.LimitExceededException(
+                "Data is larger than the limit of " + limits.getMaxBytes() + " bytes"
+            );
+          }
+          // one byte more than the limit is enough to detect exceeding it
+          long maximum = limits.getMaxBytes();
+          scratch.grow(length + 1, maximum == Long.MAX_VALUE ? maximum : maximum + 1);
+        }
+        int inflated = inflater.inflate(scratch.data, length, scratch.data.length - length);
+        if (inflated == 0 && inflater.needsDictionary()) {
+          throw new IOException("Corrupt gzip data: a dictionary is required");
+        }
+        length += inflated;
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt gzip data", e);
+    }
+    // hand back what the inflater read past the end of the deflate stream
+    source.position(source.position() - inflater.getRemaining());
+    return length;
+  }
+
+  /**
+   * Passes the remaining bytes of the source to the inflater, copying them into the chunk array
+   * first if the source has no accessible array.
+   */
+  private static void setInput(Inflater inflater, ByteBuffer source, byte[] chunk) {
+    if (source.hasArray()) {
+      inflater.setInput(
+          source.array(), source.arrayOffset() + source.position(), source.remaining()
+      );
+      source.position(source.limit());
+    } else {
+      int count = Math.min(chunk.length, source.remaining());
+      source.get(chunk, 0, count);
+      inflater.setInput(chunk, 0, count);
+    }
+  }
+
+  /**
+   * Deflates the scratch data array into the target as a raw deflate stream.
+   */
+  private static void deflate(Scratch scratch, int length, ByteBuffer target) {
+    Deflater deflater = startDeflating(scratch, length);
+    while (!deflater.finished()) {
+      if (!target.hasRemaining()) {
+        throw new BufferOverflowException();
+      }
+      if (target.hasArray()) {
+        int deflated = deflater.deflate(
+            target.array(), target.arrayOffset() + target.position(), target.remaining()
+        );
+        target.position(target.position() + deflated);
+      } else {
+        int count = Math.min(scratch.chunk.length, target.remaining());
+        int deflated = deflater.deflate(scratch.chunk, 0, count);
+        target.put(scratch.chunk, 0, deflated);
+      }
+    }
+  }
+
+  /**
+   * Prepares the deflater of the scratch to compress the first bytes of the data array.
+   */
+  private static Deflater startDeflating(Scratch scratch, int length) {
+    Deflater deflater = scratch.deflater;
+    deflater.reset();
+    deflater.setInput(scratch.data, 0, length);
+    deflater.finish();
+    return deflater;
+  }
+
+  /**
+   * The compression state and arrays reused by one thread.
+   */
+  private static final class Scratch {
+
+    private final Inflater inflater = new Inflater(true);
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    /**
+     * Stages input and output of direct buffers, which the Java 8 compression API can not access.
+     */
+    private final byte[] chunk = new byte[INITIAL_SCRATCH];
+    /**
+     * Holds the uncompressed data.
+     */
+    private byte[] data = new byte[INITIAL_SCRATCH];
+
+    void grow(int minimum, long maximum) {
+      long length = Math.min(Math.min(data.length * 2L, maximum), Integer.MAX_VALUE - 8);
+      byte[] grown = new byte[(int) Math.max(minimum, length)];
+      System.arraycopy(data, 0, grown, 0, data.length);
+      data = grown;
+    }
+
+    void trim() {
+      if (data.length > MAX_RETAINED_SCRATCH) {
+        data = new byte[INITIAL_SCRATCH];
+      }
+    }
+  }
+}
@@ -0,0 +1,482 @@
+package me.ialistannen.mininbt;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagByte;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagByteArray;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagDouble;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagFloat;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagInt;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagIntArray;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagLong;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagLongArray;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagShort;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import me.ialistannen.mininbt.NbtEvents.Kind;
+
+/**
+ * Reads and writes the binary NBT format directly from and to the {@link NBTWrappers}, without
+ * going through the NMS classes.
+ */
+public class NbtCodec {
+
+  public static final byte TAG_END = 0;
+  public static final byte TAG_BYTE = 1;
+  public static final byte TAG_SHORT = 2;
+  public static final byte TAG_INT = 3;
+  public static final byte TAG_LONG = 4;
+  public static final byte TAG_FLOAT = 5;
+  public static final byte TAG_DOUBLE = 6;
+  public static final byte TAG_BYTE_ARRAY = 7;
+  public static final byte TAG_STRING = 8;
+  public static final byte TAG_LIST = 9;
+  public static final byte TAG_COMPOUND = 10;
+  public static final byte TAG_INT_ARRAY = 11;
+  public static final byte TAG_LONG_ARRAY = 12;
+
+  /**
+   * Reads a gzip compressed root compound, the format used by level and player files.
+   *
+   * @param inputStream the stream to read from
+   * @return the read compound
+   * @throws IOException if an error occurs while reading or the data is malformed
+   */
+  public static NBTTagCompound readCompressed(InputStream inputStream) throws IOException {
+    return readCompressed(inputStream, NbtLimits.UNLIMITED);
+  }
+
+  /**
+   * Reads a gzip compressed root compound from an untrusted source. The limits apply to the
+   * uncompressed data, so decompression stops as soon as they are exceeded.
+   *
+   * @param inputStream the stream to read from
+   * @param limits the limits to enforce
+   * @return the read compound
+   * @throws NbtLimits.LimitExceededException if the data exceeds a limit
+   * @throws IOException if an error occurs while reading or the data is malformed
+   */
+  public static NBTTagCompound readCompressed(InputStream inputStream, NbtLimits limits)
+      throws IOException {
+    Object event = NbtEvents.begin(Kind.STREAM_READ);
+    NBTTagCompound compound = readRootCompound(
+        new DataInputStream(new GZIPInputStream(inputStream)), limits
+    );
+    NbtEvents.commit(event, "stream", compound);
+    return compound;
+  }
+
+  /**
+   * Writes a gzip compressed root compound, the format used by level and player files.
+   *
+   * <p>The compound is compressed with a {@link java.util.zip.Deflater} kept per thread, see
+   * {@link NbtBuffers}.</p>
+   *
+   * @param compound the compound to write
+   * @param outputStream the stream to write to. Will not be closed.
+   * @throws IOException if an error occurs while writing
+   */
+  public static void writeCompressed(NBTTagCompound compound, OutputStream outputStream)
+      throws IOException {
+    Object event = NbtEvents.begin(Kind.STREAM_WRITE);
+    NbtBuffers.writeCompressed(compound, outputStream);
+    NbtEvents.commit(event, "stream", compound);
+  }
+
+  /**
+   * Reads an uncompressed root compound, i.e. the type id, the (ignored) name and the payload.
+   *
+   * @param input the input to read from
+   * @return the read compound
+   * @throws IOException if an error occurs while reading or the root is no compound
+   */
+  public static NBTTagCompound readRootCompound(DataInput input) throws IOException {
+    return readRootCompound(input, NbtLimits.UNLIMITED);
+  }
+
+  /**
+   * Reads an uncompressed root compound from an untrusted source, aborting as soon as it exceeds
+   * a limit. Length prefixes are checked before anything is allocated for them.
+   *
+   * @param input the input to read from
+   * @param limits the limits to enforce
+   * @return the read compound
+   * @throws NbtLimits.LimitExceededException if the data exceeds a limit
+   * @throws IOException if an error occurs while reading or the root is no compound
+   */
+  public static NBTTagCompound readRootCompound(DataInput input, NbtLimits limits)
+      throws IOException {
+    Objects.requireNonNull(limits, "limits can not be null!");
+    NbtLimits.Budget budget = limits.newBudget();
+
+    budget.account(1);
+    byte type = input.readByte();
+    if (type != TAG_COMPOUND) {
+      throw new IOException("Root tag must be a compound, was " + type);
+    }
+    int nameLength = input.readUnsignedShort();
+    budget.account(2);
+    budget.accountString(nameLength);
+    skipFully(input, nameLength);
+
+    return readCompound(input, budget);
+  }
+
+  /**
+   * Writes an uncompressed root compound with an empty name.
+   *
+   * @param compound the compound to write
+   * @param output the output to write to
+   * @throws IOException if an error occurs while writing
+   */
+  public static void writeRootCompound(NBTTagCompound compound, DataOutput output)
+      throws IOException {
+    output.writeByte(TAG_COMPOUND);
+    ModifiedUtf8.write("", output);
+    writePayload(compound, output);
+  }
+
+  /**
+   * Reads the payload of a tag with a known type.
+   *
+   * @param type the type id of the tag
+   * @param input the input to read from
+   * @return the read tag
+   * @throws IOException if an error occurs while reading or the type is unknown
+   */
+  public static INBTBase readPayload(byte type, DataInput input) throws IOException {
+    return readPayload(type, input, NbtLimits.UNLIMITED.newBudget());
+  }
+
+  private static INBTBase readPayload(byte type, DataInput input, NbtLimits.Budget budget)
+      throws IOException {
+    switch (type) {
+      case TAG_BYTE:
+        budget.account(1);
+        return new NBTTagByte(input.readByte());
+      case TAG_SHORT:
+        budget.account(2);
+        return new NBTTagShort(input.readShort());
+      case TAG_INT:
+        budget.account(4);
+        return new NBTTagInt(input.readInt());
+      case TAG_LONG:
+        budget.account(8);
+        return new NBTTagLong(input.readLong());
+      case TAG_FLOAT:
+        budget.account(4);
+        return new NBTTagFloat(input.readFloat());
+      case TAG_DOUBLE:
+        budget.account(8);
+        return new NBTTagDouble(input.readDouble());
+      case TAG_BYTE_ARRAY: {
+        budget.account(4);
+        int length = readLength(input);
+        budget.account(length);
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new NBTTagByteArray(bytes);
+      }
+      case TAG_STRING: {
+        budget.account(2);
+        int length = input.readUnsignedShort();
+        budget.accountString(length);
+        return new NBTTagString(ModifiedUtf8.readValue(input, length));
+      }
+      case TAG_LIST:
+        return readList(input, budget);
+      case TAG_COMPOUND:
+        return readCompound(input, budget);
+      case TAG_INT_ARRAY: {
+        budget.account(4);
+        int length = readLength(input);
+        budget.account(4L * length);
+        int[] ints = new int[length];
+        for (int i = 0; i < ints.length; i++) {
+          ints[i] = input.readInt();
+        }
+        return new NBTTagIntArray(ints);
+      }
+      case TAG_LONG_ARRAY: {
+        budget.account(4);
+        int length = readLength(input);
+        budget.account(8L * length);
+        long[] longs = new long[length];
+        for (int i = 0; i < longs.length; i++) {
+          longs[i] = input.readLong();
+        }
+        return new NBTTagLongArray(longs);
+      }
+      default:
+        throw new IOException("Unknown tag type " + type);
+    }
+  }
+
+  /**
+   * Skips the payload of a tag with a known type, without creating any objects for it.
+   *
+   * @param type the type id of the tag
+   * @param input the input to read from
+   * @throws IOException if an error occurs while reading or the type is unknown
+   */
+  public static void skipPayload(byte type, DataInput input) throws IOException {
+    switch (type) {
+      case TAG_BYTE:
+        skipFully(input, 1);
+        break;
+      case TAG_SHORT:
+        skipFully(input, 2);
+        break;
+      case TAG_INT:
+      case TAG_FLOAT:
+        skipFully(input, 4);
+        break;
+      case TAG_LONG:
+      case TAG_DOUBLE:
+        skipFully(input, 8);
+        break;
+      case TAG_BYTE_ARRAY:
+        skipFully(input, input.readInt());
+        break;
+      case TAG_STRING:
+        skipFully(input, input.readUnsignedShort());
+        break;
+      case TAG_LIST: {
+        byte elementType = input.readByte();
+        int length = input.readInt();
+        int fixedSize = fixedPayloadSize(elementType);
+        if (fixedSize > 0) {
+          skipFully(input, (long) fixedSize * length);
+        } else {
+          for (int i = 0; i < length; i++) {
+            skipPayload(elementType, input);
+          }
+        }
+        break;
+      }
+      case TAG_COMPOUND: {
+        byte entryType;
+        while ((entryType = input.readByte()) != TAG_END) {
+          skipFully(input, input.readUnsignedShort());
+          skipPayload(entryType, input);
+        }
+        break;
+      }
+      case TAG_INT_ARRAY:
+        skipFully(input, 4L * input.readInt());
+        break;
+      case TAG_LONG_ARRAY:
+        skipFully(input, 8L * input.readInt());
+        break;
+      default:
+        throw new IOException("Unknown tag type " + type);
+    }
+  }
+
+  /**
+   * Returns the size of the payload of types that always have the same size.
+   *
+   * @param type the type id
+   * @return the size in bytes or -1 if it depends on the value
+   */
+  private static int fixedPayloadSize(byte type) {
+    switch (type) {
+      case TAG_BYTE:
+        return 1;
+      case TAG_SHORT:
+        return 2;
+      case TAG_INT:
+      case TAG_FLOAT:
+        return 4;
+      case TAG_LONG:
+      case TAG_DOUBLE:
+        return 8;
+      default:
+        return -1;
+    }
+  }
+
+  private static void skipFully(DataInput input, long count) throws IOException {
+    if (count < 0) {
+      throw new IOException("Negative length " + count);
+    }
+    long remaining = count;
+    while (remaining > 0) {
+      int skipped = input.skipBytes((int) Math.min(remaining, Integer.MAX_VALUE));
+      if (skipped <= 0) {
+        // skipBytes may give up early, reading a byte tells EOF apart from that
+        input.readByte();
+        skipped = 1;
+      }
+      remaining -= skipped;
+    }
+  }
+
+  private static NBTTagCompound readCompound(DataInput input, NbtLimits.Budget budget)
+      throws IOException {
+    budget.enter();
+    NBTTagCompound compound = new NBTTagCompound();
+
+    byte type;
+    while (true) {
+      budget.account(1);
+      if ((type = input.readByte()) == TAG_END) {
+        break;
+      }
+      budget.account(2);
+      int keyLength = input.readUnsignedShort();
+      budget.accountString(keyLength);
+      String key = ModifiedUtf8.readKey(input, keyLength);
+      INBTBase value = readPayload(type, input, budget);
+      if (value != null) {
+        compound.set(key, value);
+      }
+    }
+
+    budget.exit();
+    return compound;
+  }
+
+  private static NBTTagList readList(DataInput input, NbtLimits.Budget budget)
+      throws IOException {
+    budget.enter();
+    budget.account(1 + 4);
+    byte elementType = input.readByte();
+    int length = readLength(input);
+    budget.checkListLength(length);
+    // every element takes at least a few bytes, reject lengths that can not fit
+    budget.require((long) length * minimumPayloadSize(elementType));
+
+    NBTTagList list = new NBTTagList();
+    for (int i = 0; i < length; i++) {
+      INBTBase element = readPayload(elementType, input, budget);
+      if (element != null) {
+        list.add(element);
+      }
+    }
+
+    budget.exit();
+    return list;
+  }
+
+  /**
+   * Returns the smallest size the payload of a type can have.
+   *
+   * @param type the type id
+   * @return the minimum size in bytes
+   */
+  private static int minimumPayloadSize(byte type) {
+    int fixedSize = fixedPayloadSize(type);
+    if (fixedSize > 0) {
+      return fixedSize;
+    }
+    switch (type) {
+      case TAG_BYTE_ARRAY:
+      case TAG_INT_ARRAY:
+      case TAG_LONG_ARRAY:
+        return 4;
+      case TAG_STRING:
+        return 2;
+      case TAG_LIST:
+        return 5;
+      case TAG_COMPOUND:
+        return 1;
+      default:
+        return 0;
+    }
+  }
+
+  private static int readLength(DataInput input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) {
+      throw new IOException("Negative length " + length);
+    }
+    return length;
+  }
+
+  /**
+   * Writes the payload of a tag, without its type id.
+   *
+   * @param tag the tag to write
+   * @param output the output to write to
+   * @throws IOException if an error occurs while writing
+   */
+  public static void writePayload(INBTBase tag, DataOutput output) throws IOException {
+    switch (tag.getTypeId()) {
+      case TAG_BYTE:
+        output.writeByte(((NBTTagByte) tag).getAsByte());
+        break;
+      case TAG_SHORT:
+        output.writeShort(((NBTTagShort) tag).getAsShort());
+        break;
+      case TAG_INT:
+        output.writeInt(((NBTTagInt) tag).getAsInt());
+        break;
+      case TAG_LONG:
+        output.writeLong(((NBTTagLong) tag).getAsLong());
+        break;
+      case TAG_FLOAT:
+        output.writeFloat(((NBTTagFloat) tag).getAsFloat());
+        break;
+      case TAG_DOUBLE:
+        output.writeDouble(((NBTTagDouble) tag).getAsDouble());
+        break;
+      case TAG_BYTE_ARRAY: {
+        byte[] bytes = ((NBTTagByteArray) tag).peekValue();
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        break;
+      }
+      case TAG_STRING:
+        ModifiedUtf8.write(((NBTTagString) tag).getString(), output);
+        break;
+      case TAG_LIST: {
+        List<INBTBase> elements = ((NBTTagList) tag).peekList();
+        output.writeByte(elements.isEmpty() ? TAG_END : elements.get(0).getTypeId());
+        output.writeInt(elements.size());
+        for (INBTBase element : elements) {
+          writePayload(element, output);
+        }
+        break;
+      }
+      case TAG_COMPOUND: {
+        for (Map.Entry<String, INBTBase> entry : ((NBTTagCompound) tag).peekEntries()
+            .entrySet()) {
+          output.writeByte(entry.getValue().getTypeId());
+          ModifiedUtf8.write(entry.getKey(), output);
+          writePayload(entry.getValue(), output);
+        }
+        output.writeByte(TAG_END);
+        break;
+      }
+      case TAG_INT_ARRAY: {
+        int[] ints = ((NBTTagIntArray) tag).peekValue();
+        output.writeInt(ints.length);
+        for (int value : ints) {
+          output.writeInt(value);
+        }
+        break;
+      }
+      case TAG_LONG_ARRAY: {
+        long[] longs = ((NBTTagLongArray) tag).peekValue();
+        output.writeInt(longs.length);
+        for (long value : longs) {
+          output.writeLong(value);
+        }
+        break;
+      }
+      default:
+        throw new IOException("Unknown tag type " + tag.getTypeId());
+    }
+  }
+}
@@ -0,0 +1,600 @@
+package me.ialistannen.mininbt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Objects;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+
+/**
+ * Computes and applies minimal differences between two {@link NBTTagCompound}s.
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code Patch patch = NbtDiff.diff(old, changed);}
+ * <br>{@code NbtDiff.apply(copyOfOld, patch); // copyOfOld now equals changed}
+ */
+public class NbtDiff {
+
+  private static final byte FORMAT_VERSION = 1;
+
+  private static final byte PATH_KEY = 0;
+  private static final byte PATH_INDEX = 1;
+
+  /**
+   * The maximum capacity reserved up front for a count read from a patch, so a malformed count
+   * can not allocate huge lists before the data runs out.
+   */
+  private static final int MAX_PREALLOCATED = 1024;
+
+  /**
+   * Computes the patch that transforms {@code from} into {@code to}.
+   *
+   * <p>The values in the patch are <b>not</b> copied, they are references to the tags in {@code
+   * to}.</p>
+   *
+   * @param from the original compound
+   * @param to the changed compound
+   * @return the patch transforming {@code from} into {@code to}. Empty if they are equal.
+   * @throws NullPointerException if from or to is null
+   */
+  public static Patch diff(NBTTagCompound from, NBTTagCompound to) {
+    Objects.requireNonNull(from, "from can not be null!");
+    Objects.requireNonNull(to, "to can not be null!");
+
+    List<Operation> operations = new ArrayList<>();
+    diffCompound(new ArrayList<>(), from, to, operations);
+    return new Patch(operations);
+  }
+
+  private static void diffCompound(List<Object> path, NBTTagCompound from, NBTTagCompound to,
+      List<Operation> operations) {
+    for (String key : from.getAllEntries().keySet()) {
+      if (!to.hasKey(key)) {
+        operations.add(new Operation(OperationType.REMOVE, append(path, key), null, 0, 0, null));
+      }
+    }
+    for (Entry<String, INBTBase> entry : to.getAllEntries().entrySet()) {
+      INBTBase oldValue = from.get(entry.getKey());
+      if (oldValue == null) {
+        operations.add(new Operation(
+            OperationType.ADD, append(path, entry.getKey()), entry.getValue(), 0, 0, null
+        ));
+      } else {
+        diffValue(append(path, entry.getKey()), oldValue, entry.getValue(), operations);
+      }
+    }
+  }
+
+  private static void diffValue(List<Object> path, INBTBase from, INBTBase to,
+      List<Operation> operations) {
+    if (from.equals(to)) {
+      return;
+    }
+    if (from instanceof NBTTagCompound && to instanceof NBTTagCompound) {
+      diffCompound(path, (NBTTagCompound) from, (NBTTagCompound) to, operations);
+    } else if (from instanceof NBTTagList && to instanceof NBTTagList) {
+      diffList(path, (NBTTagList) from, (NBTTagList) to, operations);
+    } else {
+      operations.add(new Operation(OperationType.CHANGE, path, to, 0, 0, null));
+    }
+  }
+
+  private static void diffList(List<Object> path, NBTTagList from, NBTTagList to,
+      List<Operation> operations) {
+    int prefix = 0;
+    int maxCommon = Math.min(from.size(), to.size());
+    while (prefix < maxCommon && from.get(prefix).equals(to.get(prefix))) {
+      prefix++;
+    }
+    int suffix = 0;
+    while (suffix < maxCommon - prefix
+        && from.get(from.size() - 1 - suffix).equals(to.get(to.size() - 1 - suffix))) {
+      suffix++;
+    }
+
+    int removed = from.size() - prefix - suffix;
+    int inserted = to.size() - prefix - suffix;
+
+    if (removed == 0 && inserted == 0) {
+      return;
+    }
+
+    // Same shape: patch the elements in place, which keeps nested changes small
+    if (removed == inserted && from.get(prefix).getClass() == to.get(prefix).getClass()) {
+      for (int i = prefix; i < prefix + removed; i++) {
+        diffValue(append(path, i), from.get(i), to.get(i), operations);
+      }
+      return;
+    }
+
+    List<INBTBase> insertedElements = new ArrayList<>(
+        to.getList().subList(prefix, prefix + inserted)
+    );
+    operations.add(new Operation(
+        OperationType.SPLICE, path, null, prefix, removed, insertedElements
+    ));
+  }
+
+  private static List<Object> append(List<Object> path, Object element) {
+    List<Object> newPath = new ArrayList<>(path.size() + 1);
+    newPath.addAll(path);
+    newPath.add(element);
+    return newPath;
+  }
+
+  /**
+   * Applies a patch to a compound, modifying it.
+   *
+   * <p>The values in the patch are inserted as they are, <b>not</b> copied.</p>
+   *
+   * @param base the compound to apply the patch to
+   * @param patch the patch to apply
+   * @return the passed base compound, for chaining
+   * @throws NullPointerException if base or patch is null
+   * @throws IllegalArgumentException if the patch does not fit the structure of the compound
+   */
+  public static NBTTagCompound apply(NBTTagCompound base, Patch patch) {
+    Objects.requireNonNull(base, "base can not be null!");
+    Objects.requireNonNull(patch, "patch can not be null!");
+
+    for (Operation operation : patch.getOperations()) {
+      applyOperation(base, operation);
+    }
+
+    return base;
+  }
+
+  private static void applyOperation(NBTTagCompound base, Operation operation) {
+    List<Object> path = operation.getPath();
+
+    if (operation.getType() == OperationType.SPLICE) {
+      INBTBase target = resolve(base, path, path.size(), operation);
+      if (!(target instanceof NBTTagList)) {
+        throw mismatch(operation);
+      }
+      List<INBTBase> rawList = ((NBTTagList) target).getRawList();
+      int index = operation.getSpliceIndex();
+      int removeCount = operation.getRemoveCount();
+      if (index < 0 || removeCount < 0 || index > rawList.size()
+          || removeCount > rawList.size() - index) {
+        throw mismatch(operation);
+      }
+      checkSpliceTypes(rawList, index, removeCount, operation);
+      rawList.subList(index, index + removeCount).clear();
+      rawList.addAll(index, operation.getInserted());
+      return;
+    }
+
+    INBTBase parent = resolve(base, path, path.size() - 1, operation);
+    Object last = path.get(path.size() - 1);
+
+    if (parent instanceof NBTTagCompound && last instanceof String) {
+      NBTTagCompound compound = (NBTTagCompound) parent;
+      if (operation.getType() == OperationType.REMOVE) {
+        compound.remove((String) last);
+      } else {
+        compound.set((String) last, operation.getValue());
+      }
+    } else if (parent instanceof NBTTagList && last instanceof Integer) {
+      List<INBTBase> rawList = ((NBTTagList) parent).getRawList();
+      int index = (Integer) last;
+      if (index < 0 || index >= rawList.size()) {
+        throw mismatch(operation);
+      }
+      if (operation.getType() == OperationType.REMOVE) {
+        rawList.remove(index);
+      } else {
+        // the other elements stay, so the new one needs their type
+        if (rawList.size() > 1
+            && rawList.get(index == 0 ? 1 : 0).getClass() != operation.getValue().getClass()) {
+          throw mismatch(operation);
+        }
+        rawList.set(index, operation.getValue());
+      }
+    } else {
+      throw mismatch(operation);
+    }
+  }
+
+  /**
+   * Checks that a splice leaves a list with elements of a single type, like {@link
+   * NBTTagList#add(INBTBase)} enforces it.
+   */
+  private static void checkSpliceTypes(List<INBTBase> list, int index, int removeCount,
+      Operation operation) {
+    Class<?> type = null;
+    if (index > 0) {
+      type = list.get(0).getClass();
+    } else if (removeCount < list.size()) {
+      type = list.get(removeCount).getClass();
+    }
+    for (INBTBase element : operation.getInserted()) {
+      if (type == null) {
+        type = element.getClass();
+      } else if (element.getClass() != type) {
+        throw mismatch(operation);
+      }
+    }
+  }
+
+  private static INBTBase resolve(NBTTagCompound base, List<Object> path, int length,
+      Operation operation) {
+    INBTBase current = base;
+    for (int i = 0; i < length; i++) {
+      Object element = path.get(i);
+      if (current instanceof NBTTagCompound && element instanceof String) {
+        current = ((NBTTagCompound) current).get((String) element);
+      } else if (current instanceof NBTTagList && element instanceof Integer
+          && (Integer) element >= 0 && (Integer) element < ((NBTTagList) current).size()) {
+        current = ((NBTTagList) current).get((Integer) element);
+      } else {
+        current = null;
+      }
+      if (current == null) {
+        throw mismatch(operation);
+      }
+    }
+    return current;
+  }
+
+  private static IllegalArgumentException mismatch(Operation operation) {
+    return new IllegalArgumentException("The patch does not match the base at " + operation);
+  }
+
+  /**
+   * The type of a single patch {@link Operation}.
+   */
+  public enum OperationType {
+    /**
+     * A key was added to a compound.
+     */
+    ADD,
+    /**
+     * A key was removed from a compound.
+     */
+    REMOVE,
+    /**
+     * The value at a path was replaced.
+     */
+    CHANGE,
+    /**
+     * A range of a list was replaced by other elements.
+     */
+    SPLICE
+  }
+
+  /**
+   * A single change in a {@link Patch}.
+   */
+  public static class Operation {
+
+    private final OperationType type;
+    private final List<Object> path;
+    private final INBTBase value;
+    private final int spliceIndex;
+    private final int removeCount;
+    private final List<INBTBase> inserted;
+
+    private Operation(OperationType type, List<Object> path, INBTBase value, int spliceIndex,
+        int removeCount, List<INBTBase> inserted) {
+      this.type = type;
+      this.path = Collections.unmodifiableList(path);
+      this.value = value;
+      this.spliceIndex = spliceIndex;
+      this.removeCount = removeCount;
+      this.inserted = inserted == null ? null : Collections.unmodifiableList(inserted);
+    }
+
+    /**
+     * Returns the type of this operation.
+     *
+     * @return the type of this operation
+     */
+    public OperationType getType() {
+      return type;
+    }
+
+    /**
+     * Returns the path to the changed element. It consists of {@link String} keys for compounds
+     * and {@link Integer} indices for lists. For a {@link OperationType#SPLICE} it points to the
+     * list itself.
+     *
+     * @return the path to the changed element. Unmodifiable.
+     */
+    public List<Object> getPath() {
+      return path;
+    }
+
+    /**
+     * Returns the new value for {@link OperationType#ADD} and {@link OperationType#CHANGE}.
+     *
+     * @return the new value or null for other types
+     */
+    public INBTBase getValue() {
+      return value;
+    }
+
+    /**
+     * Returns the index of the first replaced list element for a {@link OperationType#SPLICE}.
+     *
+     * @return the index of the first replaced element
+     */
+    public int getSpliceIndex() {
+      return spliceIndex;
+    }
+
+    /**
+     * Returns the amount of list elements removed by a {@link OperationType#SPLICE}.
+     *
+     * @return the amount of removed elements
+     */
+    public int getRemoveCount() {
+      return removeCount;
+    }
+
+    /**
+     * Returns the elements inserted by a {@link OperationType#SPLICE}.
+     *
+     * @return the inserted elements or null for other types. Unmodifiable.
+     */
+    public List<INBTBase> getInserted() {
+      return inserted;
+    }
+
+    @Override
+    public String toString() {
+      switch (type) {
+        case REMOVE:
+          return "REMOVE " + path;
+        case SPLICE:
+          return "SPLICE " + path + " at " + spliceIndex + " remove " + removeCount
+              + " insert " + inserted;
+        default:
+          return type + " " + path + " = " + value;
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Operation operation = (Operation) o;
+      return removeCount == operation.removeCount &&
+          spliceIndex == operation.spliceIndex &&
+          type == operation.type &&
+          Objects.equals(path, operation.path) &&
+          Objects.equals(value, operation.value) &&
+          Objects.equals(inserted, operation.inserted);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(type, path, value, removeCount, inserted, spliceIndex);
+    }
+  }
+
+  /**
+   * A list of {@link Operation}s transforming one compound into another.
+   */
+  public static class Patch {
+
+    private final List<Operation> operations;
+
+    private Patch(List<Operation> operations) {
+      this.operations = Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * Returns all operations in the order they need to be applied in.
+     *
+     * @return all operations. Unmodifiable.
+     */
+    public List<Operation> getOperations() {
+      return operations;
+    }
+
+    /**
+     * Checks if this patch changes anything.
+     *
+     * @return true if this patch contains no operations
+     */
+    public boolean isEmpty() {
+      return operations.isEmpty();
+    }
+
+    /**
+     * Writes this patch in a compact binary format. Values are written in the binary NBT format.
+     *
+     * @param output the output to write to
+     * @throws IOException if an error occurs while writing
+     * @see #read(DataInput)
+     */
+    public void write(DataOutput output) throws IOException {
+      output.writeByte(FORMAT_VERSION);
+      writeVarInt(operations.size(), output);
+
+      for (Operation operation : operations) {
+        output.writeByte(operation.getType().ordinal());
+
+        writeVarInt(operation.getPath().size(), output);
+        for (Object element : operation.getPath()) {
+          if (element instanceof String) {
+            output.writeByte(PATH_KEY);
+            output.writeUTF((String) element);
+          } else {
+            output.writeByte(PATH_INDEX);
+            writeVarInt((Integer) element, output);
+          }
+        }
+
+        switch (operation.getType()) {
+          case ADD:
+          case CHANGE:
+            writeTag(operation.getValue(), output);
+            break;
+          case SPLICE:
+            writeVarInt(operation.getSpliceIndex(), output);
+            writeVarInt(operation.getRemoveCount(), output);
+            writeVarInt(operation.getInserted().size(), output);
+            for (INBTBase element : operation.getInserted()) {
+              writeTag(element, output);
+            }
+            break;
+          default:
+            break;
+        }
+      }
+    }
+
+    /**
+     * Reads a patch written by {@link #write(DataOutput)}.
+     *
+     * @param input the input to read from
+     * @return the read patch
+     * @throws IOException if an error occurs while reading or the data is malformed
+     */
+    public static Patch read(DataInput input) throws IOException {
+      byte version = input.readByte();
+      if (version != FORMAT_VERSION) {
+        throw new IOException("Unknown patch format version " + version);
+      }
+
+      int count = readCount(input);
+      List<Operation> operations = new ArrayList<>(Math.min(count, MAX_PREALLOCATED));
+      OperationType[] types = OperationType.values();
+
+      for (int i = 0; i < count; i++) {
+        int typeIndex = input.readUnsignedByte();
+        if (typeIndex >= types.length) {
+          throw new IOException("Unknown operation type " + typeIndex);
+        }
+        OperationType type = types[typeIndex];
+
+        int pathLength = readCount(input);
+        if (pathLength == 0) {
+          throw new IOException("Operation " + type + " has an empty path");
+        }
+        List<Object> path = new ArrayList<>(Math.min(pathLength, MAX_PREALLOCATED));
+        for (int j = 0; j < pathLength; j++) {
+          byte kind = input.readByte();
+          if (kind == PATH_KEY) {
+            path.add(NbtStringPool.internKey(input.readUTF()));
+          } else if (kind == PATH_INDEX) {
+            path.add(readCount(input));
+          } else {
+            throw new IOException("Unknown path element kind " + kind);
+          }
+        }
+
+        switch (type) {
+          case ADD:
+          case CHANGE:
+            operations.add(new Operation(type, path, readTag(input), 0, 0, null));
+            break;
+          case SPLICE: {
+            int index = readCount(input);
+            int removeCount = readCount(input);
+            if (removeCount > Integer.MAX_VALUE - index) {
+              throw new IOException("Splice range overflows: " + index + " + " + removeCount);
+            }
+            int insertCount = readCount(input);
+            List<INBTBase> inserted = new ArrayList<>(Math.min(insertCount, MAX_PREALLOCATED));
+            for (int j = 0; j < insertCount; j++) {
+              inserted.add(readTag(input));
+            }
+            operations.add(new Operation(type, path, null, index, removeCount, inserted));
+            break;
+          }
+          default:
+            operations.add(new Operation(type, path, null, 0, 0, null));
+            break;
+        }
+      }
+
+      return new Patch(operations);
+    }
+
+    private static void writeTag(INBTBase tag, DataOutput output) throws IOException {
+      output.writeByte(tag.getTypeId());
+      NbtCodec.writePayload(tag, output);
+    }
+
+    private static INBTBase readTag(DataInput input) throws IOException {
+      byte type = input.readByte();
+      INBTBase tag = NbtCodec.readPayload(type, input);
+      if (tag == null) {
+        throw new IOException("Unsupported tag type in patch: " + type);
+      }
+      return tag;
+    }
+
+    private static void writeVarInt(int value, DataOutput output) throws IOException {
+      while ((value & ~0x7F) != 0) {
+        output.writeByte((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      output.writeByte(value);
+    }
+
+    /**
+     * Reads a VarInt used as an index or a count.
+     *
+     * @param input the input to read from
+     * @return the read value, never negative
+     * @throws IOException if an error occurs while reading or the value is negative
+     */
+    private static int readCount(DataInput input) throws IOException {
+      int value = readVarInt(input);
+      if (value < 0) {
+        throw new IOException("Negative index or count in patch: " + value);
+      }
+      return value;
+    }
+
+    private static int readVarInt(DataInput input) throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        int read = input.readUnsignedByte();
+        value |= (read & 0x7F) << shift;
+        if ((read & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("VarInt too long");
+    }
+
+    @Override
+    public String toString() {
+      return "Patch{" +
+          "operations=" + operations +
+          '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Patch patch = (Patch) o;
+      return Objects.equals(operations, patch.operations);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(operations);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package me.ialistannen.mininbt;
+
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+
+/**
+ * Emits Java Flight Recorder events for the work MiniNBT does.
+ *
+ * <p>The events are defined in {@link JfrNbtEvents}, which is only loaded if the runtime has the
+ * {@code jdk.jfr} API. On other runtimes this no-op instance is used, so callers never touch a JFR
+ * class themselves.</p>
+ *
+ * <p>Every {@link Kind} is its own event type, which can be enabled and configured like any other
+ * in the recording settings, e.g. {@code mininbt.Conversion#threshold=1 ms}.</p>
+ */
+class NbtEvents {
+
+  private static final NbtEvents INSTANCE = load();
+
+  /**
+   * Starts an event.
+   *
+   * @param kind the kind of the event
+   * @return the started event, or null if it is not recorded
+   */
+  static Object begin(Kind kind) {
+    return INSTANCE.beginEvent(kind);
+  }
+
+  /**
+   * Ends and commits an event started by {@link #begin(Kind)}.
+   *
+   * @param event the event, may be null
+   * @param source what the data belongs to, e.g. {@code "item"} or {@code "file"}
+   * @param tag the handled tag, measured if the event is committed. May be null.
+   */
+  static void commit(Object event, String source, INBTBase tag) {
+    if (event != null) {
+      INSTANCE.commitEvent(event, source, tag);
+    }
+  }
+
+  Object beginEvent(Kind kind) {
+    return null;
+  }
+
+  void commitEvent(Object event, String source, INBTBase tag) {
+  }
+
+  private static NbtEvents load() {
+    try {
+      Class.forName("jdk.jfr.Event");
+      return (NbtEvents) Class.forName(NbtEvents.class.getPackage().getName() + ".JfrNbtEvents")
+          .getDeclaredConstructor()
+          .newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return new NbtEvents();
+    }
+  }
+
+  /**
+   * The kinds of events.
+   */
+  enum Kind {
+    /**
+     * A tree converted to the tags of the backend.
+     */
+    TO_NBT,
+    /**
+     * A tree converted from the tags of the backend.
+     */
+    FROM_NBT,
+    /**
+     * A compound parsed from SNBT.
+     */
+    PARSE,
+    /**
+     * A compound read from a stream or file.
+     */
+    STREAM_READ,
+    /**
+     * A compound written to a stream or file.
+     */
+    STREAM_WRITE,
+    /**
+     * An entity loaded from a compound.
+     */
+    ENTITY_LOAD,
+    /**
+     * An entity saved to a compound.
+     */
+    ENTITY_SAVE,
+    /**
+     * A tile entity loaded from a compound.
+     */
+    TILE_ENTITY_LOAD,
+    /**
+     * A tile entity saved to a compound.
+     */
+    TILE_ENTITY_SAVE
+  }
+}
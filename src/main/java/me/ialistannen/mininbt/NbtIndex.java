@@ -0,0 +1,834 @@
+package me.ialistannen.mininbt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.INBTNumber;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagByte;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagInt;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagLong;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagShort;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+
+/**
+ * Secondary indexes over a collection of {@link NBTTagCompound}s, for looking documents up by the
+ * values at some {@link NbtPath}s.
+ *
+ * <p>Every indexed field extracts the values of its path when a document is added and stores them
+ * in a hash index (equality queries) or a sorted index (equality and range queries). Numbers are
+ * kept as {@code long}s, the documents as {@code int} ids, so queries never touch the documents
+ * themselves. Updating a document only changes the entries of its old and new values.</p>
+ *
+ * <p>A path may select multiple values, e.g. {@code Items[].id}. A document matches a query if any
+ * of its values does. Tags of another type than the field are ignored.</p>
+ *
+ * <p>Instances are not thread safe.</p>
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code NbtIndex<UUID> index = NbtIndex.<UUID>builder()}
+ * <br>{@code     .hashIndex("model", "tag.CustomModelData", ValueType.INTEGER)}
+ * <br>{@code     .sortedIndex("price", "price", ValueType.DECIMAL)}
+ * <br>{@code     .build();}
+ * <br>{@code index.put(listingId, listing);}
+ * <br>{@code Set<UUID> found = index.findEqual("model", 12);}
+ *
+ * @param <K> the type of the document keys
+ */
+public class NbtIndex<K> {
+
+  private final Map<String, Field> fields;
+  private final Map<K, Integer> ids = new HashMap<>();
+  private final List<K> keys = new ArrayList<>();
+  private final IntHashSet freeIds = new IntHashSet();
+
+  private NbtIndex(Map<String, Field> fields) {
+    this.fields = fields;
+  }
+
+  /**
+   * Creates a builder for a new index.
+   *
+   * @param <K> the type of the document keys
+   * @return a new builder
+   */
+  public static <K> Builder<K> builder() {
+    return new Builder<>();
+  }
+
+  /**
+   * Adds or replaces a document. Only the extracted values are kept, the document is not
+   * referenced afterwards.
+   *
+   * @param key the key of the document
+   * @param document the document
+   */
+  public void put(K key, NBTTagCompound document) {
+    Objects.requireNonNull(key, "key can not be null!");
+    Objects.requireNonNull(document, "document can not be null!");
+
+    Integer existing = ids.get(key);
+    int id;
+    if (existing != null) {
+      id = existing;
+    } else {
+      id = allocateId();
+      ids.put(key, id);
+      keys.set(id, key);
+    }
+
+    for (Field field : fields.values()) {
+      field.update(id, document);
+    }
+  }
+
+  /**
+   * Removes a document.
+   *
+   * @param key the key of the document
+   * @return true if the document was indexed
+   */
+  public boolean remove(K key) {
+    Integer id = ids.remove(key);
+    if (id == null) {
+      return false;
+    }
+    for (Field field : fields.values()) {
+      field.remove(id);
+    }
+    keys.set(id, null);
+    freeIds.add(id);
+    return true;
+  }
+
+  /**
+   * Checks whether a document is indexed.
+   *
+   * @param key the key of the document
+   * @return true if the document is indexed
+   */
+  public boolean contains(K key) {
+    return ids.containsKey(key);
+  }
+
+  /**
+   * Returns the amount of indexed documents.
+   *
+   * @return the amount of indexed documents
+   */
+  public int size() {
+    return ids.size();
+  }
+
+  /**
+   * Finds all documents with an integral or decimal value.
+   *
+   * @param field the name of the field
+   * @param value the value
+   * @return the keys of all matching documents
+   * @throws IllegalArgumentException if the field does not exist or holds strings
+   */
+  public Set<K> findEqual(String field, long value) {
+    return collect(getField(field).findEqual(value));
+  }
+
+  /**
+   * Finds all documents with a decimal value.
+   *
+   * @param field the name of the field
+   * @param value the value
+   * @return the keys of all matching documents
+   * @throws IllegalArgumentException if the field does not exist or does not hold decimals
+   */
+  public Set<K> findEqual(String field, double value) {
+    return collect(getField(field).findEqual(value));
+  }
+
+  /**
+   * Finds all documents with a string value.
+   *
+   * @param field the name of the field
+   * @param value the value
+   * @return the keys of all matching documents
+   * @throws IllegalArgumentException if the field does not exist or does not hold strings
+   */
+  public Set<K> findEqual(String field, String value) {
+    Objects.requireNonNull(value, "value can not be null!");
+    return collect(getField(field).findEqual(value));
+  }
+
+  /**
+   * Finds all documents with an integral or decimal value in a range.
+   *
+   * @param field the name of the field
+   * @param min the minimum value, inclusive
+   * @param max the maximum value, inclusive
+   * @return the keys of all matching documents
+   * @throws IllegalArgumentException if the field does not exist, holds strings or is not sorted
+   */
+  public Set<K> findRange(String field, long min, long max) {
+    return collect(getField(field).findRange(min, max));
+  }
+
+  /**
+   * Finds all documents with a decimal value in a range.
+   *
+   * @param field the name of the field
+   * @param min the minimum value, inclusive
+   * @param max the maximum value, inclusive
+   * @return the keys of all matching documents
+   * @throws IllegalArgumentException if the field does not exist, does not hold decimals or is not
+   *     sorted
+   */
+  public Set<K> findRange(String field, double min, double max) {
+    return collect(getField(field).findRange(min, max));
+  }
+
+  /**
+   * Finds all documents with a string value in a range.
+   *
+   * @param field the name of the field
+   * @param min the minimum value, inclusive
+   * @param max the maximum value, inclusive
+   * @return the keys of all matching documents
+   * @throws IllegalArgumentException if the field does not exist, does not hold strings or is not
+   *     sorted
+   */
+  public Set<K> findRange(String field, String min, String max) {
+    Objects.requireNonNull(min, "min can not be null!");
+    Objects.requireNonNull(max, "max can not be null!");
+    return collect(getField(field).findRange(min, max));
+  }
+
+  private Field getField(String name) {
+    Objects.requireNonNull(name, "field can not be null!");
+    Field field = fields.get(name);
+    if (field == null) {
+      throw new IllegalArgumentException("Unknown field '" + name + "'");
+    }
+    return field;
+  }
+
+  private Set<K> collect(IntHashSet documents) {
+    if (documents.size() == 0) {
+      return Collections.emptySet();
+    }
+    Set<K> result = new HashSet<>(documents.size() * 4 / 3 + 1);
+    documents.forEach(id -> result.add(keys.get(id)));
+    return result;
+  }
+
+  private int allocateId() {
+    if (freeIds.size() > 0) {
+      int id = freeIds.any();
+      freeIds.remove(id);
+      return id;
+    }
+    keys.add(null);
+    return keys.size() - 1;
+  }
+
+  /**
+   * The type of the values a field holds.
+   */
+  public enum ValueType {
+    /**
+     * Bytes, shorts, ints and longs, compared as {@code long}.
+     */
+    INTEGER,
+    /**
+     * All numbers, compared as {@code double}.
+     */
+    DECIMAL,
+    /**
+     * Strings.
+     */
+    STRING
+  }
+
+  /**
+   * An indexed field.
+   */
+  private abstract static class Field {
+
+    private final NbtPath path;
+
+    Field(NbtPath path) {
+      this.path = path;
+    }
+
+    void update(int id, NBTTagCompound document) {
+      remove(id);
+      for (INBTBase value : path.getAll(document)) {
+        add(id, value);
+      }
+    }
+
+    /**
+     * Adds a single value of a document, if it has the right type.
+     */
+    abstract void add(int id, INBTBase value);
+
+    /**
+     * Removes all values of a document.
+     */
+    abstract void remove(int id);
+
+    IntHashSet findEqual(long value) {
+      throw new IllegalArgumentException("The field does not hold numbers");
+    }
+
+    IntHashSet findEqual(double value) {
+      throw new IllegalArgumentException("The field does not hold decimals");
+    }
+
+    IntHashSet findEqual(String value) {
+      throw new IllegalArgumentException("The field does not hold strings");
+    }
+
+    IntHashSet findRange(long min, long max) {
+      throw new IllegalArgumentException("The field does not hold numbers");
+    }
+
+    IntHashSet findRange(double min, double max) {
+      throw new IllegalArgumentException("The field does not hold decimals");
+    }
+
+    IntHashSet findRange(String min, String max) {
+      throw new IllegalArgumentException("The field does not hold strings");
+    }
+  }
+
+  /**
+   * A field holding numbers, stored as longs. Decimals are stored in an encoding that keeps their
+   * order when compared as signed longs.
+   */
+  private static final class NumberField extends Field {
+
+    private final boolean decimal;
+    private final LongPostings postings;
+    /**
+     * The values of each document, indexed by id. Null if a document has no values.
+     */
+    private long[][] documentValues = new long[16][];
+
+    NumberField(NbtPath path, boolean decimal, LongPostings postings) {
+      super(path);
+      this.decimal = decimal;
+      this.postings = postings;
+    }
+
+    @Override
+    void add(int id, INBTBase value) {
+      long encoded;
+      if (decimal) {
+        if (!(value instanceof INBTNumber)) {
+          return;
+        }
+        encoded = encodeDecimal(((INBTNumber) value).getAsDouble());
+      } else {
+        if (!(value instanceof NBTTagByte || value instanceof NBTTagShort
+            || value instanceof NBTTagInt || value instanceof NBTTagLong)) {
+          return;
+        }
+        encoded = ((INBTNumber) value).getAsLong();
+      }
+
+      if (id >= documentValues.length) {
+        documentValues = Arrays.copyOf(documentValues, Math.max(id + 1, documentValues.length * 2));
+      }
+      long[] values = documentValues[id];
+      if (values == null) {
+        documentValues[id] = new long[]{encoded};
+      } else {
+        for (long existing : values) {
+          if (existing == encoded) {
+            return;
+          }
+        }
+        values = Arrays.copyOf(values, values.length + 1);
+        values[values.length - 1] = encoded;
+        documentValues[id] = values;
+      }
+      postings.add(encoded, id);
+    }
+
+    @Override
+    void remove(int id) {
+      if (id >= documentValues.length || documentValues[id] == null) {
+        return;
+      }
+      for (long value : documentValues[id]) {
+        postings.remove(value, id);
+      }
+      documentValues[id] = null;
+    }
+
+    @Override
+    IntHashSet findEqual(long value) {
+      return postings.get(decimal ? encodeDecimal(value) : value);
+    }
+
+    @Override
+    IntHashSet findEqual(double value) {
+      if (!decimal) {
+        return super.findEqual(value);
+      }
+      return postings.get(encodeDecimal(value));
+    }
+
+    @Override
+    IntHashSet findRange(long min, long max) {
+      if (decimal) {
+        return postings.range(encodeDecimal(min), encodeDecimal(max));
+      }
+      return postings.range(min, max);
+    }
+
+    @Override
+    IntHashSet findRange(double min, double max) {
+      if (!decimal) {
+        return super.findRange(min, max);
+      }
+      return postings.range(encodeDecimal(min), encodeDecimal(max));
+    }
+
+    /**
+     * Encodes a double so that the signed long order matches the numeric order.
+     */
+    private static long encodeDecimal(double value) {
+      if (value == 0) {
+        // -0.0 and 0.0 are equal
+        value = 0;
+      }
+      long bits = Double.doubleToLongBits(value);
+      return bits < 0 ? bits ^ Long.MAX_VALUE : bits;
+    }
+  }
+
+  /**
+   * A field holding strings.
+   */
+  private static final class StringField extends Field {
+
+    private final Map<String, IntHashSet> postings;
+    private String[][] documentValues = new String[16][];
+
+    StringField(NbtPath path, boolean sorted) {
+      super(path);
+      this.postings = sorted ? new TreeMap<>() : new HashMap<>();
+    }
+
+    @Override
+    void add(int id, INBTBase value) {
+      if (!(value instanceof NBTTagString)) {
+        return;
+      }
+      String string = ((NBTTagString) value).getString();
+
+      if (id >= documentValues.length) {
+        documentValues = Arrays.copyOf(documentValues, Math.max(id + 1, documentValues.length * 2));
+      }
+      String[] values = documentValues[id];
+      if (values == null) {
+        documentValues[id] = new String[]{string};
+      } else {
+        if (Arrays.asList(values).contains(string)) {
+          return;
+        }
+        values = Arrays.copyOf(values, values.length + 1);
+        values[values.length - 1] = string;
+        documentValues[id] = values;
+      }
+      postings.computeIfAbsent(string, key -> new IntHashSet()).add(id);
+    }
+
+    @Override
+    void remove(int id) {
+      if (id >= documentValues.length || documentValues[id] == null) {
+        return;
+      }
+      for (String value : documentValues[id]) {
+        IntHashSet documents = postings.get(value);
+        documents.remove(id);
+        if (documents.size() == 0) {
+          postings.remove(value);
+        }
+      }
+      documentValues[id] = null;
+    }
+
+    @Override
+    IntHashSet findEqual(String value) {
+      IntHashSet documents = postings.get(value);
+      return documents == null ? IntHashSet.EMPTY : documents;
+    }
+
+    @Override
+    IntHashSet findRange(String min, String max) {
+      if (!(postings instanceof NavigableMap)) {
+        throw new IllegalArgumentException("Range queries need a sorted index");
+      }
+      IntHashSet result = new IntHashSet();
+      if (min.compareTo(max) > 0) {
+        return result;
+      }
+      for (IntHashSet documents : ((NavigableMap<String, IntHashSet>) postings)
+          .subMap(min, true, max, true).values()) {
+        documents.forEach(result::add);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Maps long values to the documents having them.
+   */
+  private interface LongPostings {
+
+    void add(long value, int id);
+
+    void remove(long value, int id);
+
+    /**
+     * @return the documents with the value. Must not be modified.
+     */
+    IntHashSet get(long value);
+
+    /**
+     * @return the documents with a value in the range, both inclusive
+     */
+    IntHashSet range(long min, long max);
+  }
+
+  /**
+   * An open addressing hash table from long values to documents.
+   */
+  private static final class HashLongPostings implements LongPostings {
+
+    private long[] values = new long[16];
+    private IntHashSet[] documents = new IntHashSet[16];
+    private int size;
+
+    @Override
+    public void add(long value, int id) {
+      int index = indexOf(value);
+      if (documents[index] == null) {
+        values[index] = value;
+        documents[index] = new IntHashSet();
+        if (++size > documents.length * 3 / 4) {
+          resize();
+        }
+        index = indexOf(value);
+      }
+      documents[index].add(id);
+    }
+
+    @Override
+    public void remove(long value, int id) {
+      int index = indexOf(value);
+      IntHashSet existing = documents[index];
+      if (existing == null) {
+        return;
+      }
+      existing.remove(id);
+      if (existing.size() == 0) {
+        deleteSlot(index);
+        size--;
+      }
+    }
+
+    @Override
+    public IntHashSet get(long value) {
+      IntHashSet existing = documents[indexOf(value)];
+      return existing == null ? IntHashSet.EMPTY : existing;
+    }
+
+    @Override
+    public IntHashSet range(long min, long max) {
+      throw new IllegalArgumentException("Range queries need a sorted index");
+    }
+
+    /**
+     * @return the slot holding the value or the empty slot it would be put in
+     */
+    private int indexOf(long value) {
+      int mask = values.length - 1;
+      int index = spread(value) & mask;
+      while (documents[index] != null && values[index] != value) {
+        index = (index + 1) & mask;
+      }
+      return index;
+    }
+
+    /**
+     * Removes a slot, shifting back following entries of the same probe sequence.
+     */
+    private void deleteSlot(int slot) {
+      int mask = values.length - 1;
+      int hole = slot;
+      int index = slot;
+      while (true) {
+        index = (index + 1) & mask;
+        if (documents[index] == null) {
+          break;
+        }
+        int home = spread(values[index]) & mask;
+        // move the entry into the hole if the hole lies on its probe sequence
+        if (((index - home) & mask) >= ((index - hole) & mask)) {
+          values[hole] = values[index];
+          documents[hole] = documents[index];
+          hole = index;
+        }
+      }
+      documents[hole] = null;
+    }
+
+    private void resize() {
+      long[] oldValues = values;
+      IntHashSet[] oldDocuments = documents;
+      values = new long[oldValues.length * 2];
+      documents = new IntHashSet[oldDocuments.length * 2];
+      for (int i = 0; i < oldValues.length; i++) {
+        if (oldDocuments[i] != null) {
+          int index = indexOf(oldValues[i]);
+          values[index] = oldValues[i];
+          documents[index] = oldDocuments[i];
+        }
+      }
+    }
+
+    private static int spread(long value) {
+      long hash = value * 0x9E3779B97F4A7C15L;
+      return (int) (hash ^ (hash >>> 32));
+    }
+  }
+
+  /**
+   * A tree of the distinct long values and their documents.
+   */
+  private static final class SortedLongPostings implements LongPostings {
+
+    private final NavigableMap<Long, IntHashSet> documents = new TreeMap<>();
+
+    @Override
+    public void add(long value, int id) {
+      documents.computeIfAbsent(value, key -> new IntHashSet()).add(id);
+    }
+
+    @Override
+    public void remove(long value, int id) {
+      IntHashSet existing = documents.get(value);
+      if (existing == null) {
+        return;
+      }
+      existing.remove(id);
+      if (existing.size() == 0) {
+        documents.remove(value);
+      }
+    }
+
+    @Override
+    public IntHashSet get(long value) {
+      return documents.getOrDefault(value, IntHashSet.EMPTY);
+    }
+
+    @Override
+    public IntHashSet range(long min, long max) {
+      IntHashSet result = new IntHashSet();
+      if (min > max) {
+        return result;
+      }
+      for (IntHashSet matching : documents.subMap(min, true, max, true).values()) {
+        matching.forEach(result::add);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * An open addressing hash set of non negative ints.
+   */
+  private static final class IntHashSet {
+
+    private static final IntHashSet EMPTY = new IntHashSet();
+    private static final int FREE = -1;
+
+    private int[] slots = new int[4];
+    private int size;
+
+    IntHashSet() {
+      Arrays.fill(slots, FREE);
+    }
+
+    int size() {
+      return size;
+    }
+
+    void add(int value) {
+      int index = indexOf(value);
+      if (slots[index] == value) {
+        return;
+      }
+      slots[index] = value;
+      if (++size > slots.length * 3 / 4) {
+        resize();
+      }
+    }
+
+    void remove(int value) {
+      int index = indexOf(value);
+      if (slots[index] != value) {
+        return;
+      }
+      size--;
+      // shift back following entries of the same probe sequence
+      int mask = slots.length - 1;
+      int hole = index;
+      while (true) {
+        index = (index + 1) & mask;
+        if (slots[index] == FREE) {
+          break;
+        }
+        int home = spread(slots[index]) & mask;
+        if (((index - home) & mask) >= ((index - hole) & mask)) {
+          slots[hole] = slots[index];
+          hole = index;
+        }
+      }
+      slots[hole] = FREE;
+    }
+
+    /**
+     * @return some value in this set
+     */
+    int any() {
+      for (int slot : slots) {
+        if (slot != FREE) {
+          return slot;
+        }
+      }
+      throw new IllegalStateException("The set is empty");
+    }
+
+    void forEach(IntConsumer action) {
+      for (int slot : slots) {
+        if (slot != FREE) {
+          action.accept(slot);
+        }
+      }
+    }
+
+    private int indexOf(int value) {
+      int mask = slots.length - 1;
+      int index = spread(value) & mask;
+      while (slots[index] != FREE && slots[index] != value) {
+        index = (index + 1) & mask;
+      }
+      return index;
+    }
+
+    private void resize() {
+      int[] old = slots;
+      slots = new int[old.length * 2];
+      Arrays.fill(slots, FREE);
+      for (int value : old) {
+        if (value != FREE) {
+          slots[indexOf(value)] = value;
+        }
+      }
+    }
+
+    private static int spread(int value) {
+      int hash = value * 0x9E3779B9;
+      return hash ^ (hash >>> 16);
+    }
+  }
+
+  /**
+   * Configures the fields of a {@link NbtIndex}.
+   *
+   * @param <K> the type of the document keys
+   */
+  public static class Builder<K> {
+
+    /**
+     * Creates the fields, so every built index gets its own.
+     */
+    private final Map<String, Supplier<Field>> fields = new LinkedHashMap<>();
+
+    private Builder() {
+    }
+
+    /**
+     * Adds a field supporting equality queries.
+     *
+     * @param name the name of the field
+     * @param path the path of the values
+     * @param type the type of the values
+     * @return this builder
+     * @throws IllegalArgumentException if the path is malformed or the name is already used
+     */
+    public Builder<K> hashIndex(String name, String path, ValueType type) {
+      return addField(name, path, type, false);
+    }
+
+    /**
+     * Adds a field supporting equality and range queries.
+     *
+     * @param name the name of the field
+     * @param path the path of the values
+     * @param type the type of the values
+     * @return this builder
+     * @throws IllegalArgumentException if the path is malformed or the name is already used
+     */
+    public Builder<K> sortedIndex(String name, String path, ValueType type) {
+      return addField(name, path, type, true);
+    }
+
+    private Builder<K> addField(String name, String path, ValueType type, boolean sorted) {
+      Objects.requireNonNull(name, "name can not be null!");
+      Objects.requireNonNull(type, "type can not be null!");
+      if (fields.containsKey(name)) {
+        throw new IllegalArgumentException("Duplicate field '" + name + "'");
+      }
+      NbtPath compiled = NbtPath.compile(path);
+
+      Supplier<Field> field;
+      if (type == ValueType.STRING) {
+        field = () -> new StringField(compiled, sorted);
+      } else {
+        field = () -> new NumberField(
+            compiled,
+            type == ValueType.DECIMAL,
+            sorted ? new SortedLongPostings() : new HashLongPostings()
+        );
+      }
+      fields.put(name, field);
+      return this;
+    }
+
+    /**
+     * Creates an empty index. Indexes built by the same builder are independent of each other.
+     *
+     * @return the created index
+     */
+    public NbtIndex<K> build() {
+      Map<String, Field> created = new LinkedHashMap<>();
+      fields.forEach((name, field) -> created.put(name, field.get()));
+      return new NbtIndex<>(created);
+    }
+  }
+}
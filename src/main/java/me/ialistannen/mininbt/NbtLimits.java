@@ -0,0 +1,316 @@
+package me.ialistannen.mininbt;
+
+import java.io.IOException;
+
+/**
+ * Limits for decoding NBT from untrusted sources, e.g. data sent by clients or typed into
+ * commands.
+ *
+ * <p>The decoders of this library check the limits while they read. A length prefix is compared to
+ * the limits before anything is allocated for it, so a malicious payload is rejected after reading
+ * a few bytes instead of filling the heap or a thread's stack first.</p>
+ *
+ * <p>Instances are immutable and thread safe.</p>
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code NbtLimits limits = NbtLimits.builder().maxDepth(64).maxBytes(64 * 1024).build();}
+ * <br>{@code NBTTagCompound tag = NbtCodec.readCompressed(inputStream, limits);}
+ *
+ * @see NbtCodec#readRootCompound(java.io.DataInput, NbtLimits)
+ * @see NbtBuffers#read(java.nio.ByteBuffer, NbtLimits)
+ * @see NbtParser#parse(String, NbtLimits)
+ */
+public final class NbtLimits {
+
+  /**
+   * No limits besides the ones of the format itself.
+   */
+  public static final NbtLimits UNLIMITED = new NbtLimits(
+      Integer.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE
+  );
+
+  /**
+   * The limits Minecraft applies to player data: a depth of 512 and 2 MiB, with lists of at most
+   * 65536 elements and strings of at most 32767 bytes.
+   */
+  public static final NbtLimits DEFAULT = new NbtLimits(512, 2 * 1024 * 1024, 65536, 32767);
+
+  private final int maxDepth;
+  private final long maxBytes;
+  private final int maxListLength;
+  private final int maxStringLength;
+
+  private NbtLimits(int maxDepth, long maxBytes, int maxListLength, int maxStringLength) {
+    this.maxDepth = maxDepth;
+    this.maxBytes = maxBytes;
+    this.maxListLength = maxListLength;
+    this.maxStringLength = maxStringLength;
+  }
+
+  /**
+   * Creates a builder starting with the {@link #DEFAULT} limits.
+   *
+   * @return a new builder
+   */
+  public static Builder builder() {
+    return new Builder(DEFAULT);
+  }
+
+  /**
+   * Returns the maximum nesting depth of compounds and lists. The root compound has depth 1.
+   *
+   * @return the maximum depth
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Returns the maximum amount of uncompressed bytes, or characters of SNBT.
+   *
+   * @return the maximum amount of bytes
+   */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Returns the maximum amount of elements of a single list.
+   *
+   * @return the maximum list length
+   */
+  public int getMaxListLength() {
+    return maxListLength;
+  }
+
+  /**
+   * Returns the maximum length of a single string or key, in encoded bytes or SNBT characters.
+   *
+   * @return the maximum string length
+   */
+  public int getMaxStringLength() {
+    return maxStringLength;
+  }
+
+  /**
+   * Creates the tracker for a single read.
+   *
+   * @return a new budget
+   */
+  Budget newBudget() {
+    return new Budget(this);
+  }
+
+  @Override
+  public String toString() {
+    return "NbtLimits{" +
+        "maxDepth=" + maxDepth +
+        ", maxBytes=" + maxBytes +
+        ", maxListLength=" + maxListLength +
+        ", maxStringLength=" + maxStringLength +
+        '}';
+  }
+
+  /**
+   * Tracks the depth and the bytes read so far while decoding a single tree.
+   */
+  static final class Budget {
+
+    private final NbtLimits limits;
+    private long remainingBytes;
+    private int depth;
+
+    private Budget(NbtLimits limits) {
+      this.limits = limits;
+      this.remainingBytes = limits.maxBytes;
+    }
+
+    /**
+     * Accounts for bytes that are about to be read.
+     *
+     * @param bytes the amount of bytes
+     * @throws LimitExceededException if the total exceeds the limit
+     */
+    void account(long bytes) throws LimitExceededException {
+      remainingBytes -= bytes;
+      if (remainingBytes < 0) {
+        throw new LimitExceededException(
+            "Data is larger than the limit of " + limits.maxBytes + " bytes"
+        );
+      }
+    }
+
+    /**
+     * Checks that at least some bytes are still available, without accounting for them.
+     *
+     * @param bytes the amount of bytes
+     * @throws LimitExceededException if fewer bytes remain
+     */
+    void require(long bytes) throws LimitExceededException {
+      if (bytes > remainingBytes) {
+        throw new LimitExceededException(
+            "Data is larger than the limit of " + limits.maxBytes + " bytes"
+        );
+      }
+    }
+
+    /**
+     * Enters a compound or list.
+     *
+     * @throws LimitExceededException if the depth exceeds the limit
+     */
+    void enter() throws LimitExceededException {
+      if (++depth > limits.maxDepth) {
+        throw new LimitExceededException("Nesting is deeper than " + limits.maxDepth);
+      }
+    }
+
+    /**
+     * Leaves a compound or list.
+     */
+    void exit() {
+      depth--;
+    }
+
+    /**
+     * Checks the length of a list.
+     *
+     * @param length the length
+     * @throws LimitExceededException if the length exceeds the limit
+     */
+    void checkListLength(int length) throws LimitExceededException {
+      if (length > limits.maxListLength) {
+        throw new LimitExceededException(
+            "List has " + length + " elements, more than the limit of " + limits.maxListLength
+        );
+      }
+    }
+
+    /**
+     * Checks and accounts for the length of a string.
+     *
+     * @param length the encoded length
+     * @throws LimitExceededException if the length exceeds the string or byte limit
+     */
+    void accountString(int length) throws LimitExceededException {
+      checkStringLength(length);
+      account(length);
+    }
+
+    /**
+     * Checks the length of a string, without accounting for it.
+     *
+     * @param length the encoded length
+     * @throws LimitExceededException if the length exceeds the limit
+     */
+    void checkStringLength(int length) throws LimitExceededException {
+      if (length > limits.maxStringLength) {
+        throw new LimitExceededException(
+            "String has " + length + " bytes, more than the limit of " + limits.maxStringLength
+        );
+      }
+    }
+  }
+
+  /**
+   * Thrown if decoded data exceeds a limit.
+   */
+  public static class LimitExceededException extends IOException {
+
+    /**
+     * Creates a new exception.
+     *
+     * @param message the detail message
+     */
+    LimitExceededException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Builds {@link NbtLimits}.
+   */
+  public static class Builder {
+
+    private int maxDepth;
+    private long maxBytes;
+    private int maxListLength;
+    private int maxStringLength;
+
+    private Builder(NbtLimits base) {
+      this.maxDepth = base.maxDepth;
+      this.maxBytes = base.maxBytes;
+      this.maxListLength = base.maxListLength;
+      this.maxStringLength = base.maxStringLength;
+    }
+
+    /**
+     * Sets the maximum nesting depth of compounds and lists. The root compound has depth 1.
+     *
+     * @param maxDepth the maximum depth
+     * @return this builder
+     * @throws IllegalArgumentException if the depth is smaller than 1
+     */
+    public Builder maxDepth(int maxDepth) {
+      if (maxDepth < 1) {
+        throw new IllegalArgumentException("Depth must be at least 1, was " + maxDepth);
+      }
+      this.maxDepth = maxDepth;
+      return this;
+    }
+
+    /**
+     * Sets the maximum amount of uncompressed bytes, or characters of SNBT.
+     *
+     * @param maxBytes the maximum amount of bytes
+     * @return this builder
+     * @throws IllegalArgumentException if the amount is negative
+     */
+    public Builder maxBytes(long maxBytes) {
+      if (maxBytes < 0) {
+        throw new IllegalArgumentException("Bytes can not be negative, was " + maxBytes);
+      }
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Sets the maximum amount of elements of a single list.
+     *
+     * @param maxListLength the maximum list length
+     * @return this builder
+     * @throws IllegalArgumentException if the length is negative
+     */
+    public Builder maxListLength(int maxListLength) {
+      if (maxListLength < 0) {
+        throw new IllegalArgumentException("Length can not be negative, was " + maxListLength);
+      }
+      this.maxListLength = maxListLength;
+      return this;
+    }
+
+    /**
+     * Sets the maximum length of a single string or key, in encoded bytes or SNBT characters.
+     *
+     * @param maxStringLength the maximum string length
+     * @return this builder
+     * @throws IllegalArgumentException if the length is negative
+     */
+    public Builder maxStringLength(int maxStringLength) {
+      if (maxStringLength < 0) {
+        throw new IllegalArgumentException("Length can not be negative, was " + maxStringLength);
+      }
+      this.maxStringLength = maxStringLength;
+      return this;
+    }
+
+    /**
+     * Creates the limits.
+     *
+     * @return the created limits
+     */
+    public NbtLimits build() {
+      return new NbtLimits(maxDepth, maxBytes, maxListLength, maxStringLength);
+    }
+  }
+}
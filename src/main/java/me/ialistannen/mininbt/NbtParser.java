@@ -1,31 +1,19 @@
 package me.ialistannen.mininbt;
 
-import java.lang.reflect.InvocationTargetException;
+import java.util.Objects;
 import me.ialistannen.mininbt.NBTWrappers.INBTBase;
 import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
-import me.ialistannen.mininbt.reflection.BukkitReflection.ClassLookup;
-import me.ialistannen.mininbt.reflection.FluentReflection.FluentMethod;
-import me.ialistannen.mininbt.reflection.FluentReflection.ReflectiveResult;
+import me.ialistannen.mininbt.NbtEvents.Kind;
 
 /**
- * A wrapper for the MojangsonParser used for parsing NBT.
+ * A wrapper for the MojangsonParser used for parsing NBT, or the parser of a different {@link
+ * NbtBackend}.
  *
  * <p><br><em>All methods in this class may throw a
  * {@link me.ialistannen.mininbt.reflection.ReflectionException}</em></p>
  */
 public class NbtParser {
 
-  private static final FluentMethod PARSE_METHOD;
-
-  static {
-    PARSE_METHOD = ClassLookup.NMS.forName("MojangsonParser").getOrThrow()
-        .findMethod()
-        .withName("parse")
-        .withParameters(String.class)
-        .findSingle()
-        .getOrThrow();
-  }
-
   /**
    * Parses a String to an {@link NBTTagCompound}.
    *
@@ -34,19 +22,43 @@ public class NbtParser {
    * @throws NbtParseException if an error occurred while parsing the NBT tag
    */
   public static NBTTagCompound parse(String nbt) throws NbtParseException {
-    ReflectiveResult<Object> result = PARSE_METHOD.invokeStatic(nbt);
-    if (result.isPresent()) {
-      return (NBTTagCompound) INBTBase.fromNBT(result.getOrThrow());
-    }
-    Throwable underlyingException = result.getError();
-    if (!(underlyingException instanceof InvocationTargetException)) {
-      throw new NbtParseException("Unknown error", null);
+    NbtBackend backend = NBTWrappers.getBackend();
+    Object event = NbtEvents.begin(Kind.PARSE);
+    Object parsed;
+    try {
+      parsed = backend.parseCompound(nbt);
+    } catch (IllegalArgumentException e) {
+      throw new NbtParseException(e.getMessage(), e.getCause());
     }
+    NBTTagCompound compound = (NBTTagCompound) ConversionMetrics.fromNBT(parsed, backend, "snbt");
+    NbtEvents.commit(event, "snbt", compound);
+    return compound;
+  }
 
-    throw new NbtParseException(
-        underlyingException.getCause().getMessage(),
-        underlyingException.getCause()
-    );
+  /**
+   * Parses a String from an untrusted source, e.g. a command argument, to an {@link
+   * NBTTagCompound}. The string is parsed by this library, not the {@link NbtBackend}, which checks
+   * the limits while reading, so oversized or deeply nested input is rejected before it is built.
+   * The characters of the string count as its bytes.
+   *
+   * @param nbt the nbt string to parse
+   * @param limits the limits to enforce
+   * @return the parsed NBTTagCompound
+   * @throws NbtParseException if the string exceeds a limit or an error occurred while parsing
+   *     the NBT tag
+   */
+  public static NBTTagCompound parse(String nbt, NbtLimits limits) throws NbtParseException {
+    Objects.requireNonNull(nbt, "nbt can not be null!");
+    Objects.requireNonNull(limits, "limits can not be null!");
+    Object event = NbtEvents.begin(Kind.PARSE);
+    NBTTagCompound compound;
+    try {
+      compound = SnbtReader.parseCompound(nbt, limits);
+    } catch (NbtLimits.LimitExceededException | IllegalArgumentException e) {
+      throw new NbtParseException(e.getMessage(), e);
+    }
+    NbtEvents.commit(event, "snbt", compound);
+    return compound;
   }
 
   /**
@@ -0,0 +1,504 @@
+package me.ialistannen.mininbt;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Objects;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+
+/**
+ * A compiled path into an NBT tree, using the syntax of the vanilla {@code /data} command.
+ *
+ * <p>A path consists of compound keys separated by dots and list selectors in brackets:</p>
+ * <ul>
+ *   <li>{@code display.Name} selects the key {@code Name} in the compound {@code display}</li>
+ *   <li>{@code "key with spaces"} selects a key that needs quoting</li>
+ *   <li>{@code Lore[0]} selects the first element of a list, {@code Lore[-1]} the last one</li>
+ *   <li>{@code Lore[]} selects all elements of a list</li>
+ *   <li>{@code Items[{Slot:3b}]} selects all compounds in a list that contain the given tags</li>
+ * </ul>
+ *
+ * <p>A path is compiled once and can then be evaluated on {@link NBTWrappers} trees, live NMS
+ * compounds and binary NBT streams. Instances are immutable and thread safe.</p>
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code NbtPath path = NbtPath.compile("Inventory[{Slot:3b}].id");}
+ * <br>{@code INBTBase id = path.get(playerCompound);}
+ */
+public final class NbtPath {
+
+  private final String source;
+  private final List<Segment> segments;
+
+  private NbtPath(String source, List<Segment> segments) {
+    this.source = source;
+    this.segments = segments;
+  }
+
+  /**
+   * Compiles a path.
+   *
+   * @param path the path. The empty path selects the root itself.
+   * @return the compiled path
+   * @throws IllegalArgumentException if the path is malformed
+   */
+  public static NbtPath compile(String path) {
+    Objects.requireNonNull(path, "path can not be null!");
+
+    return new NbtPath(path, Collections.unmodifiableList(new PathReader(path).readPath()));
+  }
+
+  /**
+   * Returns the first tag selected by this path.
+   *
+   * <p>The returned tag is part of the tree, modifying it modifies the tree.</p>
+   *
+   * @param root the root tag
+   * @return the first selected tag or null if the path selects nothing
+   */
+  public INBTBase get(INBTBase root) {
+    List<INBTBase> results = getAll(root);
+    return results.isEmpty() ? null : results.get(0);
+  }
+
+  /**
+   * Returns all tags selected by this path, in the order they appear in the tree.
+   *
+   * <p>The returned tags are part of the tree, modifying them modifies the tree.</p>
+   *
+   * @param root the root tag
+   * @return all selected tags. Empty if the path selects nothing.
+   */
+  public List<INBTBase> getAll(INBTBase root) {
+    Objects.requireNonNull(root, "root can not be null!");
+
+    List<INBTBase> results = new ArrayList<>();
+    evaluate(WrapperAccess.INSTANCE, root, 0, results);
+    return results;
+  }
+
+  /**
+   * Returns the first tag selected by this path in a NMS tag. Only the selected tag is converted,
+   * the rest of the NMS tree is just navigated.
+   *
+   * @param nmsRoot the NMS root tag
+   * @return a converted copy of the first selected tag or null if the path selects nothing
+   * @throws me.ialistannen.mininbt.reflection.ReflectionException if the NMS tag could not be read
+   */
+  public INBTBase getFromNms(Object nmsRoot) {
+    List<INBTBase> results = getAllFromNms(nmsRoot);
+    return results.isEmpty() ? null : results.get(0);
+  }
+
+  /**
+   * Returns all tags selected by this path in a NMS tag. Only the selected tags are converted, the
+   * rest of the NMS tree is just navigated.
+   *
+   * @param nmsRoot the NMS root tag
+   * @return converted copies of all selected tags. Empty if the path selects nothing.
+   * @throws me.ialistannen.mininbt.reflection.ReflectionException if the NMS tag could not be read
+   */
+  public List<INBTBase> getAllFromNms(Object nmsRoot) {
+    Objects.requireNonNull(nmsRoot, "nmsRoot can not be null!");
+
+    List<INBTBase> results = new ArrayList<>();
+    evaluate(NmsAccess.INSTANCE, nmsRoot, 0, results);
+    return results;
+  }
+
+  /**
+   * Reads the first tag selected by this path from an uncompressed binary root compound.
+   *
+   * @param input the input to read from. The whole root compound is consumed.
+   * @return the first selected tag or null if the path selects nothing
+   * @throws IOException if an error occurs while reading or the data is malformed
+   * @see #readAll(DataInput)
+   */
+  public INBTBase read(DataInput input) throws IOException {
+    List<INBTBase> results = readAll(input);
+    return results.isEmpty() ? null : results.get(0);
+  }
+
+  /**
+   * Reads all tags selected by this path from an uncompressed binary root compound.
+   *
+   * <p>Only the selected tags are decoded. All other subtrees are skipped using their length
+   * prefixes, except for the elements of lists with a compound filter, which are decoded to test
+   * them.</p>
+   *
+   * @param input the input to read from. The whole root compound is consumed.
+   * @return all selected tags. Empty if the path selects nothing.
+   * @throws IOException if an error occurs while reading or the data is malformed
+   */
+  public List<INBTBase> readAll(DataInput input) throws IOException {
+    Objects.requireNonNull(input, "input can not be null!");
+
+    byte type = input.readByte();
+    if (type != NbtCodec.TAG_COMPOUND) {
+      throw new IOException("Root tag must be a compound, was " + type);
+    }
+    ModifiedUtf8.read(input);
+
+    List<INBTBase> results = new ArrayList<>();
+    evaluateStream(type, input, 0, results);
+    return results;
+  }
+
+  /**
+   * Returns the steps of this path for a {@link NbtProjection}.
+   *
+   * @return the key of each key segment and null for each {@code []} segment
+   * @throws IllegalArgumentException if the path uses indices or filters
+   */
+  List<String> getProjectionSteps() {
+    List<String> steps = new ArrayList<>(segments.size());
+    for (Segment segment : segments) {
+      if (segment.key == null && !segment.all) {
+        throw new IllegalArgumentException(
+            "Projections only support keys and '[]', got '" + source + "'"
+        );
+      }
+      steps.add(segment.key);
+    }
+    return steps;
+  }
+
+  private <T> void evaluate(TreeAccess<T> access, T node, int segmentIndex,
+      List<INBTBase> results) {
+    if (segmentIndex == segments.size()) {
+      INBTBase result = access.toWrapper(node);
+      if (result != null) {
+        results.add(result);
+      }
+      return;
+    }
+
+    Segment segment = segments.get(segmentIndex);
+    if (segment.key != null) {
+      T child = access.getChild(node, segment.key);
+      if (child != null) {
+        evaluate(access, child, segmentIndex + 1, results);
+      }
+      return;
+    }
+
+    List<? extends T> elements = access.getElements(node);
+    if (elements == null) {
+      return;
+    }
+    if (segment.filter == null && !segment.all) {
+      int index = segment.index < 0 ? elements.size() + segment.index : segment.index;
+      if (index >= 0 && index < elements.size()) {
+        evaluate(access, elements.get(index), segmentIndex + 1, results);
+      }
+      return;
+    }
+    for (T element : elements) {
+      if (segment.filter == null || matches(access, segment.filter, element)) {
+        evaluate(access, element, segmentIndex + 1, results);
+      }
+    }
+  }
+
+  private void evaluateStream(byte type, DataInput input, int segmentIndex,
+      List<INBTBase> results) throws IOException {
+    if (segmentIndex == segments.size()) {
+      INBTBase result = NbtCodec.readPayload(type, input);
+      if (result != null) {
+        results.add(result);
+      }
+      return;
+    }
+
+    Segment segment = segments.get(segmentIndex);
+    if (segment.key != null) {
+      if (type != NbtCodec.TAG_COMPOUND) {
+        NbtCodec.skipPayload(type, input);
+        return;
+      }
+      byte entryType;
+      while ((entryType = input.readByte()) != NbtCodec.TAG_END) {
+        if (ModifiedUtf8.readKey(input).equals(segment.key)) {
+          evaluateStream(entryType, input, segmentIndex + 1, results);
+        } else {
+          NbtCodec.skipPayload(entryType, input);
+        }
+      }
+      return;
+    }
+
+    if (type != NbtCodec.TAG_LIST) {
+      NbtCodec.skipPayload(type, input);
+      return;
+    }
+    byte elementType = input.readByte();
+    int length = input.readInt();
+    int index = segment.index < 0 ? length + segment.index : segment.index;
+    for (int i = 0; i < length; i++) {
+      if (segment.filter != null) {
+        INBTBase element = NbtCodec.readPayload(elementType, input);
+        if (element != null && matches(WrapperAccess.INSTANCE, segment.filter, element)) {
+          evaluate(WrapperAccess.INSTANCE, element, segmentIndex + 1, results);
+        }
+      } else if (segment.all || i == index) {
+        evaluateStream(elementType, input, segmentIndex + 1, results);
+      } else {
+        NbtCodec.skipPayload(elementType, input);
+      }
+    }
+  }
+
+  /**
+   * Checks whether a tag contains all tags of a filter. Nested compounds are matched the same way,
+   * lists match if every filter element matches one of their elements.
+   */
+  private static <T> boolean matches(TreeAccess<T> access, NBTTagCompound filter, T node) {
+    if (!access.isCompound(node)) {
+      return false;
+    }
+    for (Entry<String, INBTBase> entry : filter.getAllEntries().entrySet()) {
+      T child = access.getChild(node, entry.getKey());
+      if (child == null) {
+        return false;
+      }
+      INBTBase expected = entry.getValue();
+      if (expected instanceof NBTTagCompound) {
+        if (!matches(access, (NBTTagCompound) expected, child)) {
+          return false;
+        }
+      } else if (!matchesTag(expected, access.toWrapper(child))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean matchesTag(INBTBase expected, INBTBase actual) {
+    if (expected instanceof NBTTagCompound) {
+      return matches(WrapperAccess.INSTANCE, (NBTTagCompound) expected, actual);
+    }
+    if (expected instanceof NBTTagList && actual instanceof NBTTagList) {
+      List<INBTBase> actualElements = ((NBTTagList) actual).getList();
+      List<INBTBase> expectedElements = ((NBTTagList) expected).getList();
+      if (expectedElements.isEmpty()) {
+        return actualElements.isEmpty();
+      }
+      for (INBTBase expectedElement : expectedElements) {
+        boolean found = false;
+        for (INBTBase actualElement : actualElements) {
+          if (matchesTag(expectedElement, actualElement)) {
+            found = true;
+            break;
+          }
+        }
+        if (!found) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return expected.equals(actual);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof NbtPath)) {
+      return false;
+    }
+    return source.equals(((NbtPath) o).source);
+  }
+
+  @Override
+  public int hashCode() {
+    return source.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return source;
+  }
+
+  /**
+   * A single step of a path. Exactly one of key, index, all or filter is used.
+   */
+  private static final class Segment {
+
+    private final String key;
+    private final int index;
+    private final boolean all;
+    private final NBTTagCompound filter;
+
+    private Segment(String key, int index, boolean all, NBTTagCompound filter) {
+      this.key = key;
+      this.index = index;
+      this.all = all;
+      this.filter = filter;
+    }
+  }
+
+  /**
+   * Navigates a tree of some representation.
+   *
+   * @param <T> the type of the nodes
+   */
+  private interface TreeAccess<T> {
+
+    /**
+     * @return the value for the key or null if the node is no compound or has no such key
+     */
+    T getChild(T node, String key);
+
+    /**
+     * @return the elements or null if the node is no list
+     */
+    List<? extends T> getElements(T node);
+
+    boolean isCompound(T node);
+
+    /**
+     * @return the node as a wrapper or null if it is not supported
+     */
+    INBTBase toWrapper(T node);
+  }
+
+  private static final class WrapperAccess implements TreeAccess<INBTBase> {
+
+    private static final WrapperAccess INSTANCE = new WrapperAccess();
+
+    @Override
+    public INBTBase getChild(INBTBase node, String key) {
+      return node instanceof NBTTagCompound ? ((NBTTagCompound) node).get(key) : null;
+    }
+
+    @Override
+    public List<INBTBase> getElements(INBTBase node) {
+      return node instanceof NBTTagList ? ((NBTTagList) node).getList() : null;
+    }
+
+    @Override
+    public boolean isCompound(INBTBase node) {
+      return node instanceof NBTTagCompound;
+    }
+
+    @Override
+    public INBTBase toWrapper(INBTBase node) {
+      return node;
+    }
+  }
+
+  private static final class NmsAccess implements TreeAccess<Object> {
+
+    private static final NmsAccess INSTANCE = new NmsAccess();
+
+    @Override
+    public Object getChild(Object node, String key) {
+      return isCompound(node) ? NBTTagCompound.getFromNms(node, key) : null;
+    }
+
+    @Override
+    public List<?> getElements(Object node) {
+      if (NBTWrappers.getBackend().getTypeId(node) != NbtCodec.TAG_LIST) {
+        return null;
+      }
+      return NBTTagList.getElementsFromNms(node);
+    }
+
+    @Override
+    public boolean isCompound(Object node) {
+      return NBTWrappers.getBackend().getTypeId(node) == NbtCodec.TAG_COMPOUND;
+    }
+
+    @Override
+    public INBTBase toWrapper(Object node) {
+      return INBTBase.fromNBT(node);
+    }
+  }
+
+  /**
+   * Parses the path syntax, reading the filters with the SNBT syntax.
+   */
+  private static final class PathReader extends SnbtReader {
+
+    PathReader(String input) {
+      super(input);
+    }
+
+    List<Segment> readPath() {
+      List<Segment> segments = new ArrayList<>();
+      if (input.isEmpty()) {
+        return segments;
+      }
+
+      if (peek() != '[') {
+        segments.add(new Segment(readKey(), 0, false, null));
+      }
+      while (position < input.length()) {
+        char next = peek();
+        if (next == '[') {
+          segments.add(readSelector());
+        } else if (next == '.') {
+          position++;
+          segments.add(new Segment(readKey(), 0, false, null));
+        } else {
+          throw error("Expected '.' or '['");
+        }
+      }
+      return segments;
+    }
+
+    private String readKey() {
+      if (position < input.length() && isQuote(peek())) {
+        return readQuoted();
+      }
+      int start = position;
+      while (position < input.length() && isKeyCharacter(input.charAt(position))) {
+        position++;
+      }
+      if (start == position) {
+        throw error("Expected a key");
+      }
+      return input.substring(start, position);
+    }
+
+    private Segment readSelector() {
+      expect('[');
+      if (peek() == ']') {
+        position++;
+        return new Segment(null, 0, true, null);
+      }
+      if (peek() == '{') {
+        NBTTagCompound filter = readCompound();
+        expect(']');
+        return new Segment(null, 0, false, filter);
+      }
+      int start = position;
+      if (peek() == '-') {
+        position++;
+      }
+      while (position < input.length() && Character.isDigit(input.charAt(position))) {
+        position++;
+      }
+      try {
+        int index = Integer.parseInt(input.substring(start, position));
+        expect(']');
+        return new Segment(null, index, false, null);
+      } catch (NumberFormatException e) {
+        throw error("Expected an index, '{' or ']'");
+      }
+    }
+
+    private static boolean isKeyCharacter(char character) {
+      return character != '.' && character != '[' && character != ']' && character != '{'
+          && character != '}' && character != '"' && character != '\''
+          && !Character.isWhitespace(character);
+    }
+  }
+}
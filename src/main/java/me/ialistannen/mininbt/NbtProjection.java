@@ -0,0 +1,198 @@
+package me.ialistannen.mininbt;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+
+/**
+ * Decodes only selected parts of binary NBT.
+ *
+ * <p>A projection is built from {@link NbtPath}s consisting of keys and {@code []} selectors. When
+ * reading, every subtree that is not on one of the paths is skipped using its length prefixes and
+ * never turned into wrapper objects. The result has the same structure as the full tree, but only
+ * contains the selected tags and the compounds and lists leading to them. Containers that do not
+ * contain anything selected are left out.</p>
+ *
+ * <p>Instances are immutable and thread safe.</p>
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code NbtProjection projection = NbtProjection.of("Pos", "Inventory[].id", "XpLevel");}
+ * <br>{@code NBTTagCompound player = projection.readCompressed(inputStream);}
+ */
+public final class NbtProjection {
+
+  private final Node root;
+
+  private NbtProjection(Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Creates a projection selecting the given paths.
+   *
+   * @param paths the paths to select
+   * @return the projection
+   * @throws IllegalArgumentException if a path is malformed or uses indices or filters
+   */
+  public static NbtProjection of(String... paths) {
+    List<NbtPath> compiled = new ArrayList<>(paths.length);
+    for (String path : paths) {
+      compiled.add(NbtPath.compile(path));
+    }
+    return of(compiled);
+  }
+
+  /**
+   * Creates a projection selecting the given paths.
+   *
+   * @param paths the paths to select
+   * @return the projection
+   * @throws IllegalArgumentException if a path uses indices or filters
+   */
+  public static NbtProjection of(Collection<NbtPath> paths) {
+    Objects.requireNonNull(paths, "paths can not be null!");
+
+    Node root = new Node();
+    for (NbtPath path : paths) {
+      Node node = root;
+      for (String step : path.getProjectionSteps()) {
+        if (node.complete) {
+          break;
+        }
+        if (step == null) {
+          if (node.elements == null) {
+            node.elements = new Node();
+          }
+          node = node.elements;
+        } else {
+          node = node.children.computeIfAbsent(step, key -> new Node());
+        }
+      }
+      node.complete = true;
+      // everything below is selected anyway
+      node.children.clear();
+      node.elements = null;
+    }
+    return new NbtProjection(root);
+  }
+
+  /**
+   * Reads the selected parts of a gzip compressed root compound, the format used by level and
+   * player files.
+   *
+   * @param inputStream the stream to read from
+   * @return a compound containing only the selected tags
+   * @throws IOException if an error occurs while reading or the data is malformed
+   */
+  public NBTTagCompound readCompressed(InputStream inputStream) throws IOException {
+    return readRootCompound(new DataInputStream(new GZIPInputStream(inputStream)));
+  }
+
+  /**
+   * Reads the selected parts of an uncompressed root compound.
+   *
+   * @param input the input to read from. The whole root compound is consumed.
+   * @return a compound containing only the selected tags
+   * @throws IOException if an error occurs while reading or the root is no compound
+   */
+  public NBTTagCompound readRootCompound(DataInput input) throws IOException {
+    byte type = input.readByte();
+    if (type != NbtCodec.TAG_COMPOUND) {
+      throw new IOException("Root tag must be a compound, was " + type);
+    }
+    ModifiedUtf8.read(input);
+
+    if (root.complete) {
+      return (NBTTagCompound) NbtCodec.readPayload(type, input);
+    }
+    return readCompound(input, root);
+  }
+
+  private static INBTBase readSelected(byte type, DataInput input, Node node) throws IOException {
+    if (node.complete) {
+      return NbtCodec.readPayload(type, input);
+    }
+    if (type == NbtCodec.TAG_COMPOUND && !node.children.isEmpty()) {
+      NBTTagCompound compound = readCompound(input, node);
+      return compound.isEmpty() ? null : compound;
+    }
+    if (type == NbtCodec.TAG_LIST && node.elements != null) {
+      byte elementType = input.readByte();
+      int length = input.readInt();
+      NBTTagList list = new NBTTagList();
+      for (int i = 0; i < length; i++) {
+        INBTBase element = readSelected(elementType, input, node.elements);
+        if (element != null) {
+          list.add(element);
+        }
+      }
+      return list.size() == 0 ? null : list;
+    }
+    NbtCodec.skipPayload(type, input);
+    return null;
+  }
+
+  private static NBTTagCompound readCompound(DataInput input, Node node) throws IOException {
+    NBTTagCompound compound = new NBTTagCompound();
+
+    byte type;
+    while ((type = input.readByte()) != NbtCodec.TAG_END) {
+      String key = ModifiedUtf8.readKey(input);
+      Node child = node.children.get(key);
+      if (child == null) {
+        NbtCodec.skipPayload(type, input);
+        continue;
+      }
+      INBTBase value = readSelected(type, input, child);
+      if (value != null) {
+        compound.set(key, value);
+      }
+    }
+
+    return compound;
+  }
+
+  @Override
+  public String toString() {
+    return "NbtProjection{" + root + '}';
+  }
+
+  /**
+   * A node in the tree of selected paths.
+   */
+  private static final class Node {
+
+    private final Map<String, Node> children = new HashMap<>();
+    private Node elements;
+    /**
+     * Whether the whole subtree is selected.
+     */
+    private boolean complete;
+
+    @Override
+    public String toString() {
+      if (complete) {
+        return "*";
+      }
+      List<String> parts = new ArrayList<>();
+      for (Map.Entry<String, Node> entry : children.entrySet()) {
+        parts.add(entry.getKey() + "=" + entry.getValue());
+      }
+      if (elements != null) {
+        parts.add("[]=" + elements);
+      }
+      return parts.toString();
+    }
+  }
+}
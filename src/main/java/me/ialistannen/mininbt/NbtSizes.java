@@ -0,0 +1,305 @@
+package me.ialistannen.mininbt;
+
+import java.util.List;
+import java.util.Map;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagByteArray;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagIntArray;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagLongArray;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+
+/**
+ * Computes the binary and heap sizes of wrapper trees, backing {@link INBTBase#serializedSize()}
+ * and {@link INBTBase#estimateHeapSize()}, and their node counts.
+ *
+ * <p>Heap sizes assume a 64 bit JVM with compressed object pointers, i.e. 12 byte object headers,
+ * 4 byte references and 8 byte alignment, and Java 8 strings backed by a {@code char[]}. Compound
+ * keys are pooled and shared between many compounds (see {@link NbtStringPool}), so only the
+ * references to them are counted.</p>
+ */
+class NbtSizes {
+
+  private static final int OBJECT_HEADER = 12;
+  private static final int ARRAY_HEADER = 16;
+  private static final int REFERENCE = 4;
+
+  /**
+   * A leaf tag: header, the frozen flag and a value of up to 8 bytes.
+   */
+  private static final int NUMBER_TAG = align(OBJECT_HEADER + 1 + 8);
+  /**
+   * A tag with the frozen flag, a value reference and a hash cache reference.
+   */
+  private static final int REFERENCE_TAG = align(OBJECT_HEADER + 1 + 2 * REFERENCE);
+  /**
+   * A container tag: the frozen flag, the two cached sizes and the references to the contents, the
+   * hash cache and the owned children.
+   */
+  private static final int CONTAINER_TAG = align(OBJECT_HEADER + 1 + 2 * 4 + 3 * REFERENCE);
+  /**
+   * A {@link CompactStringMap}: two array references, three ints, a flag and the entry set.
+   */
+  private static final int COMPACT_MAP = align(OBJECT_HEADER + 3 * REFERENCE + 3 * 4 + 1);
+  /**
+   * An {@link java.util.ArrayList}: the modification count, the size and the array reference.
+   */
+  private static final int ARRAY_LIST = align(OBJECT_HEADER + 2 * 4 + REFERENCE);
+  /**
+   * A {@link String}: the array reference and the cached hash.
+   */
+  private static final int STRING = align(OBJECT_HEADER + REFERENCE + 4);
+
+  /**
+   * Computes the size of the payload of a tag in the binary NBT format.
+   *
+   * <p>Without a limit this shares the walk of {@link #measure(INBTBase)}, so frozen containers
+   * cache their heap size along with it. With a limit the walk stops as soon as the size exceeds
+   * it, so it can not compute the heap size on the way. Frozen containers are the exception, they
+   * are measured in full once and cached.</p>
+   *
+   * @param tag the tag
+   * @param limit the size to stop counting at
+   * @return the size, or a value larger than the limit if the size exceeds it
+   */
+  static long serializedSize(INBTBase tag, long limit) {
+    if (limit == Long.MAX_VALUE) {
+      return measure(tag).serializedSize;
+    }
+    switch (tag.getTypeId()) {
+      case NbtCodec.TAG_LIST:
+        return listSize((NBTTagList) tag, limit);
+      case NbtCodec.TAG_COMPOUND:
+        return compoundSize((NBTTagCompound) tag, limit);
+      default:
+        return leafSerializedSize(tag);
+    }
+  }
+
+  private static long listSize(NBTTagList list, long limit) {
+    if (list.isFrozen()) {
+      // measured once and then cached
+      return measure(list).serializedSize;
+    }
+
+    // element type and length
+    long size = 1 + 4;
+    for (INBTBase element : list.peekList()) {
+      size += serializedSize(element, limit - size);
+      if (size > limit) {
+        return size;
+      }
+    }
+    return size;
+  }
+
+  private static long compoundSize(NBTTagCompound compound, long limit) {
+    if (compound.isFrozen()) {
+      // measured once and then cached
+      return measure(compound).serializedSize;
+    }
+
+    // end tag
+    long size = 1;
+    for (Map.Entry<String, INBTBase> entry : compound.peekEntries().entrySet()) {
+      // type id and key
+      size += 1 + 2 + ModifiedUtf8.encodedLength(entry.getKey());
+      size += serializedSize(entry.getValue(), limit - size);
+      if (size > limit) {
+        return size;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Estimates the heap memory retained by a tag and all tags nested in it.
+   *
+   * @param tag the tag
+   * @return the estimated size in bytes
+   */
+  static long heapSize(INBTBase tag) {
+    return measure(tag).heapSize;
+  }
+
+  /**
+   * Computes the serialized and the heap size of a tag in a single walk. Frozen compounds and lists
+   * cache both, so measuring a frozen tree again only looks at its root.
+   *
+   * @param tag the tag
+   * @return the sizes of the tag
+   */
+  private static Sizes measure(INBTBase tag) {
+    Sizes sizes = new Sizes();
+    measure(tag, sizes);
+    return sizes;
+  }
+
+  private static void measure(INBTBase tag, Sizes sizes) {
+    switch (tag.getTypeId()) {
+      case NbtCodec.TAG_LIST:
+        measureList((NBTTagList) tag, sizes);
+        break;
+      case NbtCodec.TAG_COMPOUND:
+        measureCompound((NBTTagCompound) tag, sizes);
+        break;
+      default:
+        sizes.serializedSize += leafSerializedSize(tag);
+        sizes.heapSize += leafHeapSize(tag);
+    }
+  }
+
+  private static void measureList(NBTTagList list, Sizes sizes) {
+    if (list.cachedSerializedSize >= 0 && list.cachedHeapSize >= 0) {
+      sizes.serializedSize += list.cachedSerializedSize;
+      sizes.heapSize += list.cachedHeapSize;
+      return;
+    }
+
+    long serializedBefore = sizes.serializedSize;
+    long heapBefore = sizes.heapSize;
+    List<INBTBase> elements = list.peekList();
+    // element type and length
+    sizes.serializedSize += 1 + 4;
+    sizes.heapSize += CONTAINER_TAG + ARRAY_LIST + arraySize(elements.size(), REFERENCE);
+    for (INBTBase element : elements) {
+      measure(element, sizes);
+    }
+
+    long serializedSize = sizes.serializedSize - serializedBefore;
+    long heapSize = sizes.heapSize - heapBefore;
+    if (list.isFrozen() && serializedSize <= Integer.MAX_VALUE && heapSize <= Integer.MAX_VALUE) {
+      list.cachedSerializedSize = (int) serializedSize;
+      list.cachedHeapSize = (int) heapSize;
+    }
+  }
+
+  private static void measureCompound(NBTTagCompound compound, Sizes sizes) {
+    if (compound.cachedSerializedSize >= 0 && compound.cachedHeapSize >= 0) {
+      sizes.serializedSize += compound.cachedSerializedSize;
+      sizes.heapSize += compound.cachedHeapSize;
+      return;
+    }
+
+    long serializedBefore = sizes.serializedSize;
+    long heapBefore = sizes.heapSize;
+    // end tag
+    sizes.serializedSize += 1;
+    // the key and value arrays
+    sizes.heapSize += CONTAINER_TAG + COMPACT_MAP
+        + 2 * arraySize(compound.getMapCapacity(), REFERENCE);
+    for (Map.Entry<String, INBTBase> entry : compound.peekEntries().entrySet()) {
+      // type id and key
+      sizes.serializedSize += 1 + 2 + ModifiedUtf8.encodedLength(entry.getKey());
+      measure(entry.getValue(), sizes);
+    }
+
+    long serializedSize = sizes.serializedSize - serializedBefore;
+    long heapSize = sizes.heapSize - heapBefore;
+    if (compound.isFrozen() && serializedSize <= Integer.MAX_VALUE
+        && heapSize <= Integer.MAX_VALUE) {
+      compound.cachedSerializedSize = (int) serializedSize;
+      compound.cachedHeapSize = (int) heapSize;
+    }
+  }
+
+  private static long leafSerializedSize(INBTBase tag) {
+    switch (tag.getTypeId()) {
+      case NbtCodec.TAG_BYTE:
+        return 1;
+      case NbtCodec.TAG_SHORT:
+        return 2;
+      case NbtCodec.TAG_INT:
+      case NbtCodec.TAG_FLOAT:
+        return 4;
+      case NbtCodec.TAG_LONG:
+      case NbtCodec.TAG_DOUBLE:
+        return 8;
+      case NbtCodec.TAG_BYTE_ARRAY:
+        return 4 + (long) ((NBTTagByteArray) tag).peekValue().length;
+      case NbtCodec.TAG_INT_ARRAY:
+        return 4 + 4L * ((NBTTagIntArray) tag).peekValue().length;
+      case NbtCodec.TAG_LONG_ARRAY:
+        return 4 + 8L * ((NBTTagLongArray) tag).peekValue().length;
+      case NbtCodec.TAG_STRING:
+        return 2 + ModifiedUtf8.encodedLength(((NBTTagString) tag).getString());
+      default:
+        throw new IllegalArgumentException("Unknown tag type " + tag.getTypeId());
+    }
+  }
+
+  private static long leafHeapSize(INBTBase tag) {
+    switch (tag.getTypeId()) {
+      case NbtCodec.TAG_BYTE:
+      case NbtCodec.TAG_SHORT:
+      case NbtCodec.TAG_INT:
+      case NbtCodec.TAG_LONG:
+      case NbtCodec.TAG_FLOAT:
+      case NbtCodec.TAG_DOUBLE:
+        return NUMBER_TAG;
+      case NbtCodec.TAG_BYTE_ARRAY:
+        return REFERENCE_TAG + arraySize(((NBTTagByteArray) tag).peekValue().length, 1);
+      case NbtCodec.TAG_INT_ARRAY:
+        return REFERENCE_TAG + arraySize(((NBTTagIntArray) tag).peekValue().length, 4);
+      case NbtCodec.TAG_LONG_ARRAY:
+        return REFERENCE_TAG + arraySize(((NBTTagLongArray) tag).peekValue().length, 8);
+      case NbtCodec.TAG_STRING:
+        return REFERENCE_TAG + stringSize(((NBTTagString) tag).getString());
+      default:
+        throw new IllegalArgumentException("Unknown tag type " + tag.getTypeId());
+    }
+  }
+
+  /**
+   * Counts a tag and all tags nested in it.
+   *
+   * @param tag the tag
+   * @return the amount of tags in the tree
+   */
+  static long nodeCount(INBTBase tag) {
+    switch (tag.getTypeId()) {
+      case NbtCodec.TAG_LIST: {
+        long count = 1;
+        for (INBTBase element : ((NBTTagList) tag).peekList()) {
+          count += nodeCount(element);
+        }
+        return count;
+      }
+      case NbtCodec.TAG_COMPOUND: {
+        long count = 1;
+        for (INBTBase value : ((NBTTagCompound) tag).peekEntries().values()) {
+          count += nodeCount(value);
+        }
+        return count;
+      }
+      default:
+        return 1;
+    }
+  }
+
+  private static long stringSize(String string) {
+    return STRING + arraySize(string.length(), 2);
+  }
+
+  private static long arraySize(long length, int elementSize) {
+    return align(ARRAY_HEADER + length * elementSize);
+  }
+
+  private static int align(int size) {
+    return (size + 7) & ~7;
+  }
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+
+  /**
+   * The sizes of a tree, summed up while walking it.
+   */
+  private static final class Sizes {
+
+    private long serializedSize;
+    private long heapSize;
+  }
+}
@@ -0,0 +1,774 @@
+package me.ialistannen.mininbt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+
+/**
+ * A store for many {@link NBTTagCompound}s in a single append-only file, keyed by strings or
+ * {@link UUID}s.
+ *
+ * <p>Every write appends a record with the key and the compound in the binary NBT format, a
+ * removal appends a tombstone. The offset of the latest record of each key is kept in memory and
+ * reads decode it from a memory mapping of the file. Each record carries its length and a CRC32,
+ * so a record torn by a crash is detected and cut off when the store is opened again, leaving all
+ * earlier records intact. A corrupt record in the middle of the file is skipped and {@link
+ * #getCorruptRecordCount() counted}, the records after it stay readable. With {@link #setSyncWrites(boolean) synced writes} a completed
+ * {@link #put(String, NBTTagCompound)} survives a crash of the machine as well.</p>
+ *
+ * <p>Overwritten records stay in the file until it is {@link #compact() compacted}, which happens
+ * automatically once they make up the {@link #setCompactionRatio(double) configured share} of it.
+ * Compaction copies the live records to a new file and atomically moves it over the old one.</p>
+ *
+ * <p>Instances are thread safe.</p>
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code NbtStore store = NbtStore.open(dataFolder.toPath().resolve("players.nbts"));}
+ * <br>{@code store.put(player.getUniqueId(), data);}
+ * <br>{@code NBTTagCompound read = store.get(player.getUniqueId());}
+ * <br>{@code store.close();}
+ */
+public class NbtStore implements Closeable, Iterable<NbtStore.Entry> {
+
+  private static final int MAGIC = 0x4D4E4253;
+  private static final int VERSION = 1;
+  private static final int FILE_HEADER_SIZE = 8;
+  /**
+   * The length of the record body and its checksum.
+   */
+  private static final int RECORD_HEADER_SIZE = 8;
+
+  private static final byte RECORD_PUT = 0;
+  private static final byte RECORD_REMOVE = 1;
+
+  private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+  /**
+   * Releases a mapping right away, null if the JVM offers no way to. Windows refuses to truncate or
+   * replace a file while a mapping of it exists, and mappings are otherwise only released once the
+   * garbage collector finds them.
+   */
+  private static final MethodHandle UNMAPPER = findUnmapper();
+
+  private final Path path;
+  private final Map<String, Long> offsets = new HashMap<>();
+  private final RecordBuffer buffer = new RecordBuffer();
+  private final CRC32 crc = new CRC32();
+
+  private FileChannel channel;
+  private MappedByteBuffer mapped;
+  private long end;
+  private long liveBytes;
+  private int generation;
+  private int corruptRecordCount;
+
+  private boolean syncWrites;
+  private double compactionRatio = 0.5;
+
+  private NbtStore(Path path, FileChannel channel) throws IOException {
+    this.path = path;
+    this.channel = channel;
+
+    if (channel.size() == 0) {
+      ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).flip();
+      writeFully(header, 0);
+      channel.force(true);
+    }
+    if (channel.size() < FILE_HEADER_SIZE) {
+      throw new IOException(path + " is no NBT store");
+    }
+    remap();
+    if (mapped.getInt(0) != MAGIC) {
+      throw new IOException(path + " is no NBT store");
+    }
+    if (mapped.getInt(4) != VERSION) {
+      throw new IOException("Unsupported NBT store version " + mapped.getInt(4) + " in " + path);
+    }
+
+    recover();
+  }
+
+  /**
+   * Opens a store, creating the file if it does not exist. A record torn by a crash at the end of
+   * the file is removed.
+   *
+   * @param path the path to the file
+   * @return the store
+   * @throws IOException if the file could not be opened or is no store
+   */
+  public static NbtStore open(Path path) throws IOException {
+    Objects.requireNonNull(path, "path can not be null!");
+
+    // left over by a compaction that did not finish
+    Files.deleteIfExists(compactionPath(path));
+
+    FileChannel channel = FileChannel.open(
+        path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE
+    );
+    try {
+      return new NbtStore(path, channel);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Sets whether every write is forced to the disk before it returns. Disabled by default.
+   *
+   * @param syncWrites whether to force writes to the disk
+   */
+  public synchronized void setSyncWrites(boolean syncWrites) {
+    this.syncWrites = syncWrites;
+  }
+
+  /**
+   * Sets the share of the file overwritten and removed records may take up before it is compacted
+   * automatically. Defaults to 0.5.
+   *
+   * @param compactionRatio the share, between 0 (exclusive) and 1. 1 disables automatic
+   *     compaction.
+   * @throws IllegalArgumentException if the ratio is out of range
+   */
+  public synchronized void setCompactionRatio(double compactionRatio) {
+    if (!(compactionRatio > 0 && compactionRatio <= 1)) {
+      throw new IllegalArgumentException("Ratio must be in (0, 1], was " + compactionRatio);
+    }
+    this.compactionRatio = compactionRatio;
+  }
+
+  /**
+   * Returns the path of the file.
+   *
+   * @return the path of the file
+   */
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * Reads a compound.
+   *
+   * @param key the key of the compound
+   * @return the compound or null if there is none for the key
+   * @throws IOException if an error occurs while reading
+   */
+  public synchronized NBTTagCompound get(String key) throws IOException {
+    Objects.requireNonNull(key, "key can not be null!");
+    ensureOpen();
+
+    Long offset = offsets.get(key);
+    return offset == null ? null : readRecord(offset).getTag();
+  }
+
+  /**
+   * Reads a compound.
+   *
+   * @param key the key of the compound
+   * @return the compound or null if there is none for the key
+   * @throws IOException if an error occurs while reading
+   */
+  public NBTTagCompound get(UUID key) throws IOException {
+    return get(key.toString());
+  }
+
+  /**
+   * Stores a compound, replacing the previous one with the same key.
+   *
+   * @param key the key of the compound
+   * @param compound the compound
+   * @throws IOException if an error occurs while writing
+   */
+  public synchronized void put(String key, NBTTagCompound compound) throws IOException {
+    Objects.requireNonNull(key, "key can not be null!");
+    Objects.requireNonNull(compound, "compound can not be null!");
+    ensureOpen();
+
+    buffer.startRecord();
+    DataOutputStream output = new DataOutputStream(buffer);
+    output.writeByte(RECORD_PUT);
+    ModifiedUtf8.write(key, output);
+    NbtCodec.writeRootCompound(compound, output);
+
+    long offset = append();
+    Long previous = offsets.put(key, offset);
+    if (previous != null) {
+      liveBytes -= recordSize(previous);
+    }
+    liveBytes += end - offset;
+    compactIfNeeded();
+  }
+
+  /**
+   * Stores a compound, replacing the previous one with the same key.
+   *
+   * @param key the key of the compound
+   * @param compound the compound
+   * @throws IOException if an error occurs while writing
+   */
+  public void put(UUID key, NBTTagCompound compound) throws IOException {
+    put(key.toString(), compound);
+  }
+
+  /**
+   * Removes a compound.
+   *
+   * @param key the key of the compound
+   * @return true if there was a compound for the key
+   * @throws IOException if an error occurs while writing
+   */
+  public synchronized boolean remove(String key) throws IOException {
+    Objects.requireNonNull(key, "key can not be null!");
+    ensureOpen();
+
+    if (!offsets.containsKey(key)) {
+      return false;
+    }
+
+    buffer.startRecord();
+    DataOutputStream output = new DataOutputStream(buffer);
+    output.writeByte(RECORD_REMOVE);
+    ModifiedUtf8.write(key, output);
+    append();
+
+    liveBytes -= recordSize(offsets.remove(key));
+    compactIfNeeded();
+    return true;
+  }
+
+  /**
+   * Removes a compound.
+   *
+   * @param key the key of the compound
+   * @return true if there was a compound for the key
+   * @throws IOException if an error occurs while writing
+   */
+  public boolean remove(UUID key) throws IOException {
+    return remove(key.toString());
+  }
+
+  /**
+   * Checks whether there is a compound for a key.
+   *
+   * @param key the key
+   * @return true if there is a compound for the key
+   */
+  public synchronized boolean contains(String key) {
+    return offsets.containsKey(key);
+  }
+
+  /**
+   * Returns the amount of stored compounds.
+   *
+   * @return the amount of stored compounds
+   */
+  public synchronized int size() {
+    return offsets.size();
+  }
+
+  /**
+   * Returns a copy of all keys.
+   *
+   * @return all keys
+   */
+  public synchronized Set<String> keys() {
+    return new HashSet<>(offsets.keySet());
+  }
+
+  /**
+   * Returns the size of the file.
+   *
+   * @return the size of the file in bytes
+   */
+  public synchronized long getFileSize() {
+    return end;
+  }
+
+  /**
+   * Returns the amount of records that failed their checksum when the store was opened. They
+   * were skipped, so their keys hold the value of an earlier record or none. Compacting the store
+   * removes them from the file.
+   *
+   * @return the amount of skipped corrupt records
+   */
+  public synchronized int getCorruptRecordCount() {
+    return corruptRecordCount;
+  }
+
+  /**
+   * Returns an iterator over all stored compounds, in file order. Compounds are decoded one at a
+   * time when the iterator reaches them, so the iterator can export stores larger than the heap.
+   *
+   * <p>The iterator sees the compounds stored when it was created. It fails with a
+   * {@link ConcurrentModificationException} if the store is compacted in the meantime and with an
+   * {@link UncheckedIOException} if a record can not be read.</p>
+   *
+   * @return an iterator over all stored compounds
+   */
+  @Override
+  public synchronized Iterator<Entry> iterator() {
+    List<Long> sortedOffsets = new ArrayList<>(offsets.values());
+    Collections.sort(sortedOffsets);
+    return new EntryIterator(sortedOffsets, generation);
+  }
+
+  /**
+   * Rewrites the file with only the latest record of each key.
+   *
+   * <p>The live records are copied into a temporary file next to the store, which is forced to
+   * the disk and then atomically moved over the old file. The directory is forced afterwards where
+   * the platform allows it, so the move survives a crash of the machine as well. A crash during
+   * compaction leaves the old file untouched.</p>
+   *
+   * @throws IOException if an error occurs while compacting. The store stays usable with the old
+   *     file in that case.
+   */
+  public synchronized void compact() throws IOException {
+    ensureOpen();
+
+    List<Map.Entry<String, Long>> records = new ArrayList<>(offsets.entrySet());
+    records.sort(Map.Entry.comparingByValue());
+
+    Path temporary = compactionPath(path);
+    Map<String, Long> newOffsets = new HashMap<>(offsets.size() * 4 / 3 + 1);
+    long position = FILE_HEADER_SIZE;
+    try (FileChannel target = FileChannel.open(
+        temporary, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING
+    )) {
+      ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).flip();
+      writeFully(target, header, 0);
+
+      for (Map.Entry<String, Long> record : records) {
+        long offset = record.getValue();
+        ByteBuffer bytes = slice(offset, recordSize(offset));
+        newOffsets.put(record.getKey(), position);
+        position += writeFully(target, bytes, position);
+      }
+      target.force(true);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temporary);
+      throw e;
+    }
+
+    unmap();
+    channel.close();
+    try {
+      Files.move(
+          temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE
+      );
+      forceDirectory(path.toAbsolutePath().getParent());
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temporary);
+      throw e;
+    } finally {
+      // reopen whichever file is there now, so the store stays usable
+      channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    offsets.clear();
+    offsets.putAll(newOffsets);
+    end = position;
+    liveBytes = position - FILE_HEADER_SIZE;
+    generation++;
+    remap();
+  }
+
+  /**
+   * Closes the file. Pending writes are forced to the disk first.
+   *
+   * @throws IOException if an error occurs while closing
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.force(true);
+    } finally {
+      unmap();
+      channel.close();
+      channel = null;
+    }
+  }
+
+  /**
+   * Scans all records, building the key index and cutting off a torn record at the end.
+   *
+   * <p>A record that is intact but fails its checksum in the middle of the file is skipped using
+   * its length, so it does not take the records after it along. Only a record reaching the end of
+   * the file is treated as torn by a crash and cut off.</p>
+   */
+  private void recover() throws IOException {
+    long size = mapped.capacity();
+    long offset = FILE_HEADER_SIZE;
+
+    while (offset + RECORD_HEADER_SIZE <= size) {
+      int length = mapped.getInt((int) offset);
+      if (offset + RECORD_HEADER_SIZE + length > size
+          || length < 3 && isZeroFilled(offset, size)) {
+        // torn by a crash, cut off below
+        break;
+      }
+      if (length < 3) {
+        throw new IOException(
+            "Corrupt record length " + length + " at " + offset + " in " + path
+                + ", the records after it can not be located"
+        );
+      }
+      long recordSize = RECORD_HEADER_SIZE + length;
+      ByteBuffer body = slice(offset + RECORD_HEADER_SIZE, length);
+      crc.reset();
+      crc.update(body.duplicate());
+      if ((int) crc.getValue() != mapped.getInt((int) offset + 4)) {
+        if (offset + recordSize == size) {
+          break;
+        }
+        corruptRecordCount++;
+        offset += recordSize;
+        continue;
+      }
+
+      byte kind = body.get();
+      String key = ModifiedUtf8.read(new ByteBufferDataInput(body));
+      Long previous;
+      if (kind == RECORD_PUT) {
+        previous = offsets.put(key, offset);
+        liveBytes += recordSize;
+      } else if (kind == RECORD_REMOVE) {
+        previous = offsets.remove(key);
+      } else {
+        throw new IOException("Unknown record type " + kind + " at " + offset + " in " + path);
+      }
+      if (previous != null) {
+        liveBytes -= recordSize(previous);
+      }
+      offset += recordSize;
+    }
+
+    end = offset;
+    if (end < size) {
+      unmap();
+      channel.truncate(end);
+      channel.force(true);
+      remap();
+    }
+  }
+
+  private boolean isZeroFilled(long from, long to) {
+    for (long i = from; i < to; i++) {
+      if (mapped.get((int) i) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Appends the record in the buffer.
+   *
+   * @return the offset of the record
+   */
+  private long append() throws IOException {
+    ByteBuffer record = buffer.finishRecord(crc);
+    if (end + record.remaining() > Integer.MAX_VALUE) {
+      throw new IOException("The store can not grow beyond 2 GiB, compact it or use another file");
+    }
+
+    long offset = end;
+    try {
+      writeFully(record, offset);
+      if (syncWrites) {
+        channel.force(false);
+      }
+    } catch (IOException e) {
+      // do not leave a partial record behind, later appends would be cut off with it
+      try {
+        unmap();
+        channel.truncate(offset);
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+    end = offset + buffer.size();
+    return offset;
+  }
+
+  private void compactIfNeeded() throws IOException {
+    if (compactionRatio >= 1 || end < MIN_COMPACTION_SIZE) {
+      return;
+    }
+    long garbage = end - FILE_HEADER_SIZE - liveBytes;
+    if (garbage > end * compactionRatio) {
+      compact();
+    }
+  }
+
+  private Entry readRecord(long offset) throws IOException {
+    int length = slice(offset, RECORD_HEADER_SIZE).getInt();
+    ByteBuffer body = slice(offset + RECORD_HEADER_SIZE, length);
+    ByteBufferDataInput input = new ByteBufferDataInput(body);
+
+    byte kind = input.readByte();
+    if (kind != RECORD_PUT) {
+      throw new IOException("Expected a put record at " + offset + " in " + path);
+    }
+    String key = ModifiedUtf8.read(input);
+    return new Entry(key, NbtCodec.readRootCompound(input));
+  }
+
+  private long recordSize(long offset) {
+    return RECORD_HEADER_SIZE + slice(offset, RECORD_HEADER_SIZE).getInt();
+  }
+
+  /**
+   * Returns a view of a part of the file.
+   *
+   * <p>The file is only mapped again once it has doubled in size since the last mapping, so
+   * appending does not pay for a new mapping every time. Records appended in the meantime are read
+   * from the channel instead.</p>
+   */
+  private ByteBuffer slice(long offset, long length) {
+    try {
+      if (mapped == null || end > 2L * mapped.capacity()) {
+        remap();
+      }
+      if (offset + length > mapped.capacity()) {
+        return read(offset, (int) length);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    ByteBuffer view = mapped.duplicate();
+    view.position((int) offset).limit((int) (offset + length));
+    return view.slice();
+  }
+
+  private ByteBuffer read(long offset, int length) throws IOException {
+    ByteBuffer data = ByteBuffer.allocate(length);
+    while (data.hasRemaining()) {
+      if (channel.read(data, offset + data.position()) < 0) {
+        throw new EOFException("Record at " + offset + " exceeds the end of " + path);
+      }
+    }
+    data.flip();
+    return data;
+  }
+
+  private void remap() throws IOException {
+    unmap();
+    mapped = channel.map(MapMode.READ_ONLY, 0, channel.size());
+  }
+
+  /**
+   * Releases the current mapping. Views of it never leave the methods holding the lock, so none is
+   * used after this.
+   */
+  private void unmap() {
+    MappedByteBuffer buffer = mapped;
+    mapped = null;
+    if (buffer == null || UNMAPPER == null) {
+      return;
+    }
+    try {
+      UNMAPPER.invokeExact((ByteBuffer) buffer);
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable e) {
+      // left to the garbage collector
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (channel == null) {
+      throw new IOException("The store is closed");
+    }
+  }
+
+  private void writeFully(ByteBuffer data, long position) throws IOException {
+    writeFully(channel, data, position);
+  }
+
+  private static int writeFully(FileChannel channel, ByteBuffer data, long position)
+      throws IOException {
+    int written = 0;
+    while (data.hasRemaining()) {
+      written += channel.write(data, position + written);
+    }
+    return written;
+  }
+
+  /**
+   * Forces a directory to the disk, so a file moved into it survives a crash of the machine. Not
+   * every platform can open a directory, Windows for one, so failing to is ignored.
+   */
+  private static void forceDirectory(Path directory) {
+    if (directory == null) {
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // not supported by this platform
+    }
+  }
+
+  private static MethodHandle findUnmapper() {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      // Java 9 and later
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field unsafe = unsafeClass.getDeclaredField("theUnsafe");
+      unsafe.setAccessible(true);
+      return lookup.findVirtual(
+          unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class)
+      ).bindTo(unsafe.get(null));
+    } catch (ReflectiveOperationException | RuntimeException ignored) {
+      // try the Java 8 way below
+    }
+    try {
+      Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+      Method clean = cleaner.getReturnType().getMethod("clean");
+      return MethodHandles.filterReturnValue(lookup.unreflect(cleaner), lookup.unreflect(clean))
+          .asType(MethodType.methodType(void.class, ByteBuffer.class));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static Path compactionPath(Path path) {
+    return path.resolveSibling(path.getFileName() + ".compact");
+  }
+
+  /**
+   * A stored compound and its key.
+   */
+  public static final class Entry {
+
+    private final String key;
+    private final NBTTagCompound tag;
+
+    private Entry(String key, NBTTagCompound tag) {
+      this.key = key;
+      this.tag = tag;
+    }
+
+    /**
+     * Returns the key.
+     *
+     * @return the key
+     */
+    public String getKey() {
+      return key;
+    }
+
+    /**
+     * Returns the compound.
+     *
+     * @return the compound
+     */
+    public NBTTagCompound getTag() {
+      return tag;
+    }
+
+    @Override
+    public String toString() {
+      return "Entry{" + key + '=' + tag + '}';
+    }
+  }
+
+  private class EntryIterator implements Iterator<Entry> {
+
+    private final List<Long> offsets;
+    private final int expectedGeneration;
+    private int index;
+
+    EntryIterator(List<Long> offsets, int expectedGeneration) {
+      this.offsets = offsets;
+      this.expectedGeneration = expectedGeneration;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return index < offsets.size();
+    }
+
+    @Override
+    public Entry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      synchronized (NbtStore.this) {
+        if (generation != expectedGeneration) {
+          throw new ConcurrentModificationException("The store was compacted");
+        }
+        try {
+          ensureOpen();
+          return readRecord(offsets.get(index++));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects a record, reserving space for its header.
+   */
+  private static class RecordBuffer extends ByteArrayOutputStream {
+
+    RecordBuffer() {
+      super(4 * 1024);
+    }
+
+    void startRecord() {
+      reset();
+      write(new byte[RECORD_HEADER_SIZE], 0, RECORD_HEADER_SIZE);
+    }
+
+    ByteBuffer finishRecord(CRC32 crc) {
+      int length = count - RECORD_HEADER_SIZE;
+      crc.reset();
+      crc.update(buf, RECORD_HEADER_SIZE, length);
+
+      ByteBuffer record = ByteBuffer.wrap(buf, 0, count);
+      record.putInt(0, length);
+      record.putInt(4, (int) crc.getValue());
+      return record;
+    }
+  }
+}
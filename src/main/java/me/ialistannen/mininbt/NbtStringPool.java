@@ -0,0 +1,246 @@
+package me.ialistannen.mininbt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool that deduplicates the strings of NBT trees.
+ *
+ * <p>Keys like {@code id}, {@code Count} or {@code display} exist in nearly every item tag. All
+ * converters and parsers of this library pass compound keys (and, if enabled, short string values)
+ * through the pools in this class, so large tag collections share a single instance of each.</p>
+ *
+ * <p>The pool is a two-way set-associative cache with a fixed amount of slots. It never grows, does
+ * not need locking and forgets rarely used strings when they collide with newer ones.</p>
+ */
+public class NbtStringPool {
+
+  /**
+   * The maximum length of string values that are interned, if value interning is enabled.
+   */
+  public static final int MAX_VALUE_LENGTH = 32;
+
+  private static final NbtStringPool KEY_POOL = new NbtStringPool(4096);
+  private static final NbtStringPool VALUE_POOL = new NbtStringPool(4096);
+
+  private static volatile boolean valueInterning = true;
+
+  private final String[] slots;
+  private final int mask;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Creates a new pool.
+   *
+   * @param capacity the maximum amount of strings to keep. Rounded up to a power of two.
+   * @throws IllegalArgumentException if the capacity is smaller than 2
+   */
+  public NbtStringPool(int capacity) {
+    if (capacity < 2) {
+      throw new IllegalArgumentException("Capacity must be at least 2, was " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity - 1) << 1;
+    this.slots = new String[size];
+    this.mask = size - 1;
+  }
+
+  /**
+   * Returns the pooled instance of a string, adding it if it is not pooled yet.
+   *
+   * @param string the string to intern
+   * @return the pooled instance equal to the string, or the string itself
+   */
+  public String intern(String string) {
+    // Strings are immutable with final fields, so the racy reads and writes are safe
+    int index = spread(string.hashCode()) & mask;
+    String primary = slots[index];
+    if (primary != null && (primary == string || primary.equals(string))) {
+      hits.increment();
+      return primary;
+    }
+    String secondary = slots[index ^ 1];
+    if (secondary != null && (secondary == string || secondary.equals(string))) {
+      return promote(index, primary, secondary);
+    }
+
+    return insert(index, primary, string);
+  }
+
+  /**
+   * Returns the pooled instance of an ASCII string given as bytes, creating and adding it only if
+   * it is not pooled yet.
+   *
+   * @param ascii the bytes, all below 0x80
+   * @param length the amount of bytes to use
+   * @return the pooled instance
+   */
+  String internAscii(byte[] ascii, int length) {
+    // same as String#hashCode, as every byte is one char
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + ascii[i];
+    }
+
+    int index = spread(hash) & mask;
+    String primary = slots[index];
+    if (primary != null && equalsAscii(primary, ascii, length)) {
+      hits.increment();
+      return primary;
+    }
+    String secondary = slots[index ^ 1];
+    if (secondary != null && equalsAscii(secondary, ascii, length)) {
+      return promote(index, primary, secondary);
+    }
+
+    return insert(index, primary, new String(ascii, 0, length, StandardCharsets.ISO_8859_1));
+  }
+
+  private String promote(int index, String primary, String secondary) {
+    hits.increment();
+    // promote it, so the older one is evicted next
+    slots[index ^ 1] = primary;
+    slots[index] = secondary;
+    return secondary;
+  }
+
+  private String insert(int index, String primary, String string) {
+    misses.increment();
+    slots[index ^ 1] = primary;
+    slots[index] = string;
+    return string;
+  }
+
+  /**
+   * Returns the maximum amount of strings this pool keeps.
+   *
+   * @return the capacity of this pool
+   */
+  public int getCapacity() {
+    return slots.length;
+  }
+
+  /**
+   * Returns how often a pooled instance was found.
+   *
+   * @return the number of hits
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns how often a string was not pooled yet.
+   *
+   * @return the number of misses
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the share of lookups that found a pooled instance.
+   *
+   * @return the hit rate between 0 and 1. 0 if nothing was looked up yet.
+   */
+  public double getHitRate() {
+    long hitCount = getHits();
+    long total = hitCount + getMisses();
+    return total == 0 ? 0 : hitCount / (double) total;
+  }
+
+  /**
+   * Resets the hit and miss counters.
+   */
+  public void resetStatistics() {
+    hits.reset();
+    misses.reset();
+  }
+
+  @Override
+  public String toString() {
+    return "NbtStringPool{" +
+        "capacity=" + getCapacity() +
+        ", hits=" + getHits() +
+        ", misses=" + getMisses() +
+        '}';
+  }
+
+  private static boolean equalsAscii(String string, byte[] ascii, int length) {
+    if (string.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (string.charAt(i) != ascii[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Returns the pool used for compound keys.
+   *
+   * @return the pool used for compound keys
+   */
+  public static NbtStringPool getKeyPool() {
+    return KEY_POOL;
+  }
+
+  /**
+   * Returns the pool used for short string values.
+   *
+   * @return the pool used for string values
+   * @see #setValueInterning(boolean)
+   */
+  public static NbtStringPool getValuePool() {
+    return VALUE_POOL;
+  }
+
+  /**
+   * Enables or disables interning string values of at most {@value #MAX_VALUE_LENGTH} characters.
+   * Enabled by default.
+   *
+   * @param enabled whether to intern short string values
+   */
+  public static void setValueInterning(boolean enabled) {
+    valueInterning = enabled;
+  }
+
+  /**
+   * Checks whether short string values are interned.
+   *
+   * @return true if short string values are interned
+   */
+  public static boolean isValueInterning() {
+    return valueInterning;
+  }
+
+  /**
+   * Interns a compound key in the {@link #getKeyPool() key pool}.
+   *
+   * @param key the key
+   * @return the pooled key
+   */
+  static String internKey(String key) {
+    return KEY_POOL.intern(key);
+  }
+
+  /**
+   * Interns a string value in the {@link #getValuePool() value pool}, if it is short enough and
+   * value interning is enabled.
+   *
+   * @param value the value
+   * @return the pooled value or the value itself
+   */
+  static String internValue(String value) {
+    if (!valueInterning || value.length() > MAX_VALUE_LENGTH) {
+      return value;
+    }
+    return VALUE_POOL.intern(value);
+  }
+}
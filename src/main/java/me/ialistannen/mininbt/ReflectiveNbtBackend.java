@@ -0,0 +1,566 @@
+package me.ialistannen.mininbt;
+
+import static me.ialistannen.mininbt.LambdaAccessors.implement;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.DoubleFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import me.ialistannen.mininbt.LambdaAccessors.ByteCreator;
+import me.ialistannen.mininbt.LambdaAccessors.CompoundSetter;
+import me.ialistannen.mininbt.LambdaAccessors.FloatCreator;
+import me.ialistannen.mininbt.LambdaAccessors.ListInserter;
+import me.ialistannen.mininbt.LambdaAccessors.ShortCreator;
+import me.ialistannen.mininbt.reflection.BukkitReflection.ClassLookup;
+import me.ialistannen.mininbt.reflection.FluentReflection.FluentMethod;
+import me.ialistannen.mininbt.reflection.FluentReflection.FluentType;
+import me.ialistannen.mininbt.reflection.FluentReflection.ReflectiveResult;
+import me.ialistannen.mininbt.reflection.ReflectionException;
+
+/**
+ * The default {@link NbtBackend}, working on the NMS tags of the running server via reflection.
+ *
+ * <p>All members of the tag classes are looked up when the backend is created and bound to
+ * functional interfaces by {@link LambdaAccessors}, so converting a tag calls them directly instead
+ * of going through {@link java.lang.reflect.Method#invoke(Object, Object...)}. The parser and the
+ * stream methods are only needed by {@link NbtParser} and {@link StreamNBTUtil}, so failing to find
+ * them only fails these calls.</p>
+ */
+class ReflectiveNbtBackend implements NbtBackend {
+
+  private final Class<?> baseClass;
+  private final ToIntFunction<Object> typeIdGetter;
+
+  private final ByteCreator byteCreator;
+  private final ToIntFunction<Object> byteGetter;
+  private final ShortCreator shortCreator;
+  private final ToIntFunction<Object> shortGetter;
+  private final IntFunction<Object> intCreator;
+  private final ToIntFunction<Object> intGetter;
+  private final LongFunction<Object> longCreator;
+  private final ToLongFunction<Object> longGetter;
+  private final FloatCreator floatCreator;
+  private final ToDoubleFunction<Object> floatGetter;
+  private final DoubleFunction<Object> doubleCreator;
+  private final ToDoubleFunction<Object> doubleGetter;
+
+  private final Function<byte[], Object> byteArrayCreator;
+  private final Function<Object, byte[]> byteArrayGetter;
+  private final Function<int[], Object> intArrayCreator;
+  private final Function<Object, int[]> intArrayGetter;
+  /**
+   * Null before 1.13, which has no long arrays.
+   */
+  private final Function<long[], Object> longArrayCreator;
+  private final Function<Object, long[]> longArrayGetter;
+
+  private final Function<String, Object> stringCreator;
+  private final Function<Object, String> stringGetter;
+
+  private final Supplier<Object> compoundCreator;
+  private final CompoundSetter compoundSetter;
+  private final BiFunction<Object, String, Object> compoundGetter;
+  private final Function<Object, Set<String>> compoundKeyGetter;
+
+  private final Supplier<Object> listCreator;
+  private final Function<Object, List<?>> listElementGetter;
+  private final BiConsumer<List<?>, Object> listAppendAll;
+
+  private final ReflectiveResult<FluentMethod> parseMethod;
+  private final ReflectiveResult<FluentMethod> readCompressedMethod;
+  private final ReflectiveResult<FluentMethod> writeCompressedMethod;
+
+  /**
+   * Creates a backend for the NMS classes of the running server.
+   *
+   * @throws ReflectionException if a tag class or member could not be found
+   */
+  ReflectiveNbtBackend() {
+    this(ClassLookup.NMS);
+  }
+
+  /**
+   * Creates a backend for the tag classes found by a lookup.
+   *
+   * @param lookup the lookup to find the tag classes with, by their NMS names
+   * @throws ReflectionException if a tag class or member could not be found
+   */
+  ReflectiveNbtBackend(ClassLookup lookup) {
+    FluentType<?> base = lookup.forName("NBTBase").getOrThrow();
+    baseClass = base.getUnderlying();
+    // older versions may lack it, the class names are used then
+    ReflectiveResult<FluentMethod> typeIdMethod = base.findMethod()
+        .withName("getTypeId")
+        .withParameters()
+        .withReturnType(byte.class)
+        .findSingle();
+    typeIdGetter = typeIdMethod.isPresent()
+        ? implement(ToIntFunction.class, typeIdMethod.getOrThrow().getUnderlying())
+        : null;
+
+    FluentType<?> byteClass = lookup.forName("NBTTagByte").getOrThrow();
+    byteCreator = implement(ByteCreator.class, findConstructor(byteClass, byte.class));
+    byteGetter = implement(ToIntFunction.class, findNumberGetMethod(byteClass, byte.class));
+
+    FluentType<?> shortClass = lookup.forName("NBTTagShort").getOrThrow();
+    shortCreator = implement(ShortCreator.class, findConstructor(shortClass, short.class));
+    shortGetter = implement(ToIntFunction.class, findNumberGetMethod(shortClass, short.class));
+
+    FluentType<?> intClass = lookup.forName("NBTTagInt").getOrThrow();
+    intCreator = implement(IntFunction.class, findConstructor(intClass, int.class));
+    intGetter = implement(ToIntFunction.class, findNumberGetMethod(intClass, int.class));
+
+    FluentType<?> longClass = lookup.forName("NBTTagLong").getOrThrow();
+    longCreator = implement(LongFunction.class, findConstructor(longClass, long.class));
+    longGetter = implement(ToLongFunction.class, findNumberGetMethod(longClass, long.class));
+
+    FluentType<?> floatClass = lookup.forName("NBTTagFloat").getOrThrow();
+    floatCreator = implement(FloatCreator.class, findConstructor(floatClass, float.class));
+    floatGetter = implement(ToDoubleFunction.class, findNumberGetMethod(floatClass, float.class));
+
+    FluentType<?> doubleClass = lookup.forName("NBTTagDouble").getOrThrow();
+    doubleCreator = implement(DoubleFunction.class, findConstructor(doubleClass, double.class));
+    doubleGetter = implement(
+        ToDoubleFunction.class, findNumberGetMethod(doubleClass, double.class)
+    );
+
+    FluentType<?> byteArrayClass = lookup.forName("NBTTagByteArray").getOrThrow();
+    byteArrayCreator = implement(Function.class, findConstructor(byteArrayClass, byte[].class));
+    byteArrayGetter = implement(Function.class, findArrayGetMethod(byteArrayClass, byte[].class));
+
+    FluentType<?> intArrayClass = lookup.forName("NBTTagIntArray").getOrThrow();
+    intArrayCreator = implement(Function.class, findConstructor(intArrayClass, int[].class));
+    intArrayGetter = implement(Function.class, findArrayGetMethod(intArrayClass, int[].class));
+
+    ReflectiveResult<? extends FluentType<?>> longArrayClass = lookup.forName("NBTTagLongArray");
+    if (longArrayClass.isPresent()) {
+      longArrayCreator = implement(
+          Function.class, findConstructor(longArrayClass.getOrThrow(), long[].class)
+      );
+      longArrayGetter = implement(
+          Function.class, findArrayGetMethod(longArrayClass.getOrThrow(), long[].class)
+      );
+    } else {
+      longArrayCreator = null;
+      longArrayGetter = null;
+    }
+
+    FluentType<?> stringClass = lookup.forName("NBTTagString").getOrThrow();
+    stringCreator = implement(Function.class, findConstructor(stringClass, String.class));
+    Field stringField = findField(stringClass, "data");
+    stringGetter = lookup == ClassLookup.NMS
+        ? NmsFields::getString
+        : LambdaAccessors.getter(stringField);
+
+    FluentType<?> compoundClass = lookup.forName("NBTTagCompound").getOrThrow();
+    compoundCreator = implement(Supplier.class, findConstructor(compoundClass));
+    compoundSetter = implement(
+        CompoundSetter.class,
+        compoundClass.findMethod()
+            .withName("set")
+            .withParameters(String.class, base.getUnderlying())
+            .findSingle().getOrThrow()
+            .getUnderlying()
+    );
+    compoundGetter = implement(
+        BiFunction.class,
+        compoundClass.findMethod()
+            .withName("get")
+            .withParameters(String.class)
+            .findSingle().getOrThrow()
+            .getUnderlying()
+    );
+    compoundKeyGetter = implement(
+        Function.class,
+        compoundClass.findMethod()
+            .withModifiers(Modifier.PUBLIC)
+            .matchingMethod(method -> Set.class.isAssignableFrom(method.getReturnType()))
+            .findSingle().getOrThrow()
+            .getUnderlying()
+    );
+
+    FluentType<?> listClass = lookup.forName("NBTTagList").getOrThrow();
+    listCreator = implement(Supplier.class, findConstructor(listClass));
+    Field listField = findField(listClass, "list");
+    listElementGetter = lookup == ClassLookup.NMS
+        ? NmsFields::getListElements
+        : LambdaAccessors.getter(listField);
+    listAppendAll = findListAppendAll(listClass, base);
+
+    parseMethod = resolveOptional(() -> lookup.forName("MojangsonParser").getOrThrow()
+        .findMethod()
+        .withName("parse")
+        .withParameters(String.class)
+        .findSingle().getOrThrow()
+    );
+    readCompressedMethod = resolveOptional(() -> lookup.forName("NBTCompressedStreamTools")
+        .getOrThrow()
+        .findMethod()
+        .withParameters(InputStream.class)
+        .withReturnType(compoundClass.getUnderlying())
+        .findFirst().getOrThrow()
+    );
+    writeCompressedMethod = resolveOptional(() -> lookup.forName("NBTCompressedStreamTools")
+        .getOrThrow()
+        .findMethod()
+        .withParameters(compoundClass.getUnderlying(), OutputStream.class)
+        .findFirst().getOrThrow()
+    );
+  }
+
+  @Override
+  public byte getTypeId(Object tag) {
+    if (typeIdGetter != null) {
+      if (!baseClass.isInstance(tag)) {
+        return NbtCodec.TAG_END;
+      }
+      return (byte) typeIdGetter.applyAsInt(tag);
+    }
+    switch (tag.getClass().getSimpleName()) {
+      case "NBTTagByte":
+        return NbtCodec.TAG_BYTE;
+      case "NBTTagShort":
+        return NbtCodec.TAG_SHORT;
+      case "NBTTagInt":
+        return NbtCodec.TAG_INT;
+      case "NBTTagLong":
+        return NbtCodec.TAG_LONG;
+      case "NBTTagFloat":
+        return NbtCodec.TAG_FLOAT;
+      case "NBTTagDouble":
+        return NbtCodec.TAG_DOUBLE;
+      case "NBTTagByteArray":
+        return NbtCodec.TAG_BYTE_ARRAY;
+      case "NBTTagString":
+        return NbtCodec.TAG_STRING;
+      case "NBTTagList":
+        return NbtCodec.TAG_LIST;
+      case "NBTTagCompound":
+        return NbtCodec.TAG_COMPOUND;
+      case "NBTTagIntArray":
+        return NbtCodec.TAG_INT_ARRAY;
+      case "NBTTagLongArray":
+        return NbtCodec.TAG_LONG_ARRAY;
+      default:
+        return NbtCodec.TAG_END;
+    }
+  }
+
+  @Override
+  public Object createByte(byte value) {
+    return byteCreator.create(value);
+  }
+
+  @Override
+  public byte getByte(Object tag) {
+    return (byte) byteGetter.applyAsInt(tag);
+  }
+
+  @Override
+  public Object createShort(short value) {
+    return shortCreator.create(value);
+  }
+
+  @Override
+  public short getShort(Object tag) {
+    return (short) shortGetter.applyAsInt(tag);
+  }
+
+  @Override
+  public Object createInt(int value) {
+    return intCreator.apply(value);
+  }
+
+  @Override
+  public int getInt(Object tag) {
+    return intGetter.applyAsInt(tag);
+  }
+
+  @Override
+  public Object createLong(long value) {
+    return longCreator.apply(value);
+  }
+
+  @Override
+  public long getLong(Object tag) {
+    return longGetter.applyAsLong(tag);
+  }
+
+  @Override
+  public Object createFloat(float value) {
+    return floatCreator.create(value);
+  }
+
+  @Override
+  public float getFloat(Object tag) {
+    return (float) floatGetter.applyAsDouble(tag);
+  }
+
+  @Override
+  public Object createDouble(double value) {
+    return doubleCreator.apply(value);
+  }
+
+  @Override
+  public double getDouble(Object tag) {
+    return doubleGetter.applyAsDouble(tag);
+  }
+
+  @Override
+  public Object createByteArray(byte[] value) {
+    return byteArrayCreator.apply(value);
+  }
+
+  @Override
+  public byte[] getByteArray(Object tag) {
+    return byteArrayGetter.apply(tag);
+  }
+
+  @Override
+  public Object createIntArray(int[] value) {
+    return intArrayCreator.apply(value);
+  }
+
+  @Override
+  public int[] getIntArray(Object tag) {
+    return intArrayGetter.apply(tag);
+  }
+
+  @Override
+  public Object createLongArray(long[] value) {
+    if (longArrayCreator == null) {
+      return NbtBackend.super.createLongArray(value);
+    }
+    return longArrayCreator.apply(value);
+  }
+
+  @Override
+  public long[] getLongArray(Object tag) {
+    if (longArrayGetter == null) {
+      return NbtBackend.super.getLongArray(tag);
+    }
+    return longArrayGetter.apply(tag);
+  }
+
+  @Override
+  public Object createString(String value) {
+    return stringCreator.apply(value);
+  }
+
+  @Override
+  public String getString(Object tag) {
+    return stringGetter.apply(tag);
+  }
+
+  @Override
+  public Object createCompound() {
+    return compoundCreator.get();
+  }
+
+  @Override
+  public Collection<String> getCompoundKeys(Object compound) {
+    return new ArrayList<>(compoundKeyGetter.apply(compound));
+  }
+
+  @Override
+  public Object getCompoundValue(Object compound, String key) {
+    return compoundGetter.apply(compound, key);
+  }
+
+  @Override
+  public void setCompoundValue(Object compound, String key, Object value) {
+    compoundSetter.set(compound, key, value);
+  }
+
+  @Override
+  public Object createList(List<?> elements) {
+    Object list = listCreator.get();
+    listAppendAll.accept(elements, list);
+    return list;
+  }
+
+  @Override
+  public List<?> getListElements(Object list) {
+    List<?> elements = listElementGetter.apply(list);
+    return elements == null ? Collections.emptyList() : elements;
+  }
+
+  @Override
+  public Object parseCompound(String snbt) {
+    ReflectiveResult<Object> result = parseMethod.getOrThrow().invokeStatic(snbt);
+    if (result.isPresent()) {
+      return result.getOrThrow();
+    }
+    Throwable underlyingException = result.getError();
+    if (!(underlyingException instanceof InvocationTargetException)) {
+      throw new IllegalArgumentException("Unknown error");
+    }
+    throw new IllegalArgumentException(
+        underlyingException.getCause().getMessage(),
+        underlyingException.getCause()
+    );
+  }
+
+  // thrown by the underlying reflected method
+  @SuppressWarnings("RedundantThrows")
+  @Override
+  public Object readCompressed(InputStream inputStream) throws IOException {
+    return readCompressedMethod.getOrThrow().invokeStatic(inputStream).getOrThrow();
+  }
+
+  // thrown by the underlying reflected method
+  @SuppressWarnings("RedundantThrows")
+  @Override
+  public void writeCompressed(Object compound, OutputStream outputStream)
+      throws IOException {
+    writeCompressedMethod.getOrThrow().invokeStatic(compound, outputStream).ensureSuccessful();
+  }
+
+  private static Field findField(FluentType<?> type, String name) {
+    return type.findField()
+        .withName(name)
+        .findSingle().getOrThrow()
+        .getUnderlying();
+  }
+
+  private static Constructor<?> findConstructor(FluentType<?> type, Class<?>... parameters) {
+    return type.findConstructor()
+        .withParameters(parameters)
+        .findSingle().getOrThrow()
+        .getUnderlying();
+  }
+
+  private static Method findArrayGetMethod(FluentType<?> type, Class<?> arrayClass) {
+    return type.findMethod()
+        .withReturnType(arrayClass)
+        .withoutModifiers(Modifier.STATIC)
+        .findSingle().getOrThrow()
+        .getUnderlying();
+  }
+
+  /**
+   * Returns the method also existing in the Superclass
+   *
+   * @param clazz The Class to invoke it on
+   * @param returnClass The return class it should have
+   * @return The found method
+   */
+  private static Method findNumberGetMethod(FluentType<?> clazz, Class<?> returnClass) {
+    return clazz.findMethod()
+        .withModifiers(Modifier.PUBLIC)
+        .withoutModifiers(Modifier.STATIC)
+        .withReturnType(returnClass)
+        .matchingMethod(method -> !method.getName().equals("hashCode"))
+        .matchingMethod(method -> !method.getName().equals("getTypeId"))
+        .matchingMethod(method ->
+            // method exists in superclass too, i.e. is overwritten
+            FluentType.ofUnknown(clazz.getUnderlying().getSuperclass())
+                .findMethod()
+                .withName(method.getName())
+                .withParameters(method.getParameterTypes())
+                .findSingle()
+                .isPresent()
+        )
+        .findSingle()
+        .getOrThrow()
+        .getUnderlying();
+  }
+
+  private static BiConsumer<List<?>, Object> findListAppendAll(FluentType<?> listClass,
+      FluentType<?> base) {
+    // Up to 1.14.4 it was "add(NBTBase)"
+    ReflectiveResult<FluentMethod> addSingleParam = listClass.findMethod()
+        .withName("add")
+        .withParameters(base.getUnderlying())
+        .findSingle();
+
+    if (addSingleParam.isPresent()) {
+      BiConsumer<Object, Object> add = implement(
+          BiConsumer.class, addSingleParam.getOrThrow().getUnderlying()
+      );
+      return (tags, nbtList) -> {
+        for (Object tag : tags) {
+          add.accept(nbtList, tag);
+        }
+      };
+    }
+
+    // In 1.14.4 it is "add(int index, NBTBase)"
+    ListInserter addMultiParam = implement(
+        ListInserter.class,
+        listClass.findMethod()
+            .withName("add")
+            .withParameters(int.class, base.getUnderlying())
+            .findSingle().getOrThrow()
+            .getUnderlying()
+    );
+
+    return (tags, nbtList) -> {
+      for (int i = 0; i < tags.size(); i++) {
+        addMultiParam.insert(nbtList, i, tags.get(i));
+      }
+    };
+  }
+
+  /**
+   * Resolves a member that is not needed for conversions, deferring the failure to its first use.
+   *
+   * @param resolver resolves the member, throwing a {@link ReflectionException} if it is missing
+   * @param <T> the type of the member
+   * @return the result of the resolution
+   */
+  private static <T> ReflectiveResult<T> resolveOptional(Supplier<T> resolver) {
+    try {
+      return ReflectiveResult.success(resolver.get());
+    } catch (ReflectionException e) {
+      return ReflectiveResult.failure(e);
+    }
+  }
+
+  /**
+   * The field getters for the {@link ClassLookup#NMS} classes, held in constants.
+   *
+   * <p>Fields can not be bound by the {@link java.lang.invoke.LambdaMetafactory}, and the JIT only
+   * inlines a method handle if it is a constant. A handle in an instance field of the backend would
+   * stay an opaque call on every string and list conversion, so the backend reads the fields of the
+   * server classes through these handles instead. The class is initialized on first use, after the
+   * backend already found the fields.</p>
+   */
+  private static final class NmsFields {
+
+    private static final MethodHandle STRING_DATA = LambdaAccessors.getterHandle(
+        findField(ClassLookup.NMS.forName("NBTTagString").getOrThrow(), "data")
+    );
+    private static final MethodHandle LIST_ELEMENTS = LambdaAccessors.getterHandle(
+        findField(ClassLookup.NMS.forName("NBTTagList").getOrThrow(), "list")
+    );
+
+    static String getString(Object tag) {
+      return (String) LambdaAccessors.invokeGetter(STRING_DATA, tag);
+    }
+
+    static List<?> getListElements(Object list) {
+      return (List<?>) LambdaAccessors.invokeGetter(LIST_ELEMENTS, list);
+    }
+  }
+}
@@ -0,0 +1,302 @@
+package me.ialistannen.mininbt;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NbtEvents.Kind;
+
+/**
+ * A read only view of an Anvil region file ({@code r.<x>.<z>.mca}), holding 32x32 chunks.
+ *
+ * <p>The file is memory mapped once and chunks are only decompressed when they are read, straight
+ * from the mapped memory into the {@link NbtCodec}. Reading does not need a server.</p>
+ *
+ * <p>Instances are thread safe, every read works on its own view of the mapped file.</p>
+ *
+ * <p>Java 8 can not unmap a file explicitly, the mapping is only released once the instance and
+ * all raw chunks returned by it are garbage collected. Until then the file must not be truncated
+ * or rewritten, e.g. by a {@link RegionFileWriter} or the server. Reading a truncated part of the
+ * mapping crashes the JVM with a {@code SIGBUS} or throws an {@link InternalError}, rewritten
+ * chunks may be read half updated.</p>
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code RegionFile region = RegionFile.open(Paths.get("world/region/r.0.0.mca"));}
+ * <br>{@code NBTTagCompound chunk = region.readChunk(3, 17);}
+ */
+public class RegionFile {
+
+  /**
+   * The size of a sector in bytes. Chunks are stored in whole sectors.
+   */
+  public static final int SECTOR_SIZE = 4096;
+
+  /**
+   * The amount of chunks along one side of a region.
+   */
+  public static final int REGION_SIZE = 32;
+
+  public static final byte COMPRESSION_GZIP = 1;
+  public static final byte COMPRESSION_ZLIB = 2;
+  public static final byte COMPRESSION_NONE = 3;
+
+  /**
+   * Set in the compression type if the chunk is stored in a separate {@code .mcc} file.
+   */
+  private static final int EXTERNAL_FLAG = 0x80;
+
+  private static final int CHUNK_COUNT = REGION_SIZE * REGION_SIZE;
+  private static final int HEADER_SIZE = 2 * SECTOR_SIZE;
+  private static final int CHUNK_HEADER_SIZE = 5;
+
+  private final Path path;
+  private final ByteBuffer data;
+  private final int[] locations = new int[CHUNK_COUNT];
+  private final int[] timestamps = new int[CHUNK_COUNT];
+
+  private RegionFile(Path path, ByteBuffer data) throws IOException {
+    this.path = path;
+    this.data = data;
+
+    if (data.capacity() == 0) {
+      // an empty file is a region without chunks
+      return;
+    }
+    if (data.capacity() < HEADER_SIZE) {
+      throw new IOException("Region file is truncated, the header is incomplete: " + path);
+    }
+    ByteBuffer header = data.duplicate();
+    for (int i = 0; i < CHUNK_COUNT; i++) {
+      locations[i] = header.getInt();
+    }
+    for (int i = 0; i < CHUNK_COUNT; i++) {
+      timestamps[i] = header.getInt();
+    }
+  }
+
+  /**
+   * Opens and memory maps a region file.
+   *
+   * <p>The mapping stays valid until the instance is garbage collected, the file is not kept
+   * open. The file must not be truncated or rewritten while the instance is used.</p>
+   *
+   * @param path the path to the region file
+   * @return the opened region file
+   * @throws IOException if the file could not be read or its header is malformed
+   */
+  public static RegionFile open(Path path) throws IOException {
+    Objects.requireNonNull(path, "path can not be null!");
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new RegionFile(path, channel.map(MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Returns the path of this region file.
+   *
+   * @return the path of this region file
+   */
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * Checks whether a chunk is stored in this region.
+   *
+   * @param x the x coordinate of the chunk inside the region, between 0 and 31
+   * @param z the z coordinate of the chunk inside the region, between 0 and 31
+   * @return true if the chunk is stored in this region
+   * @throws IllegalArgumentException if a coordinate is out of bounds
+   */
+  public boolean hasChunk(int x, int z) {
+    return locations[index(x, z)] != 0;
+  }
+
+  /**
+   * Returns the amount of chunks stored in this region.
+   *
+   * @return the amount of chunks in this region
+   */
+  public int getChunkCount() {
+    int count = 0;
+    for (int location : locations) {
+      if (location != 0) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the time a chunk was last saved.
+   *
+   * @param x the x coordinate of the chunk inside the region, between 0 and 31
+   * @param z the z coordinate of the chunk inside the region, between 0 and 31
+   * @return the last modification time in seconds since the epoch. 0 if the chunk is not stored.
+   * @throws IllegalArgumentException if a coordinate is out of bounds
+   */
+  public int getTimestamp(int x, int z) {
+    return timestamps[index(x, z)];
+  }
+
+  /**
+   * Returns the compression type of a chunk.
+   *
+   * @param x the x coordinate of the chunk inside the region, between 0 and 31
+   * @param z the z coordinate of the chunk inside the region, between 0 and 31
+   * @return one of the {@code COMPRESSION_} constants or -1 if the chunk is not stored
+   * @throws IOException if the chunk is malformed
+   * @throws IllegalArgumentException if a coordinate is out of bounds
+   */
+  public byte getCompressionType(int x, int z) throws IOException {
+    ByteBuffer chunk = findChunk(x, z);
+    return chunk == null ? -1 : chunk.get(chunk.position() - 1);
+  }
+
+  /**
+   * Returns the still compressed payload of a chunk. The returned buffer is a read only view of the
+   * mapped file, nothing is copied.
+   *
+   * @param x the x coordinate of the chunk inside the region, between 0 and 31
+   * @param z the z coordinate of the chunk inside the region, between 0 and 31
+   * @return the compressed payload or null if the chunk is not stored
+   * @throws IOException if the chunk is malformed
+   * @throws IllegalArgumentException if a coordinate is out of bounds
+   * @see #getCompressionType(int, int)
+   */
+  public ByteBuffer getRawChunk(int x, int z) throws IOException {
+    ByteBuffer chunk = findChunk(x, z);
+    return chunk == null ? null : chunk.slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Opens a stream with the decompressed payload of a chunk.
+   *
+   * @param x the x coordinate of the chunk inside the region, between 0 and 31
+   * @param z the z coordinate of the chunk inside the region, between 0 and 31
+   * @return the decompressed payload or null if the chunk is not stored
+   * @throws IOException if the chunk is malformed or uses an unsupported compression
+   * @throws IllegalArgumentException if a coordinate is out of bounds
+   */
+  public InputStream openChunk(int x, int z) throws IOException {
+    ByteBuffer chunk = findChunk(x, z);
+    if (chunk == null) {
+      return null;
+    }
+    byte compression = chunk.get(chunk.position() - 1);
+    InputStream compressed = new ByteBufferInputStream(chunk);
+
+    switch (compression) {
+      case COMPRESSION_GZIP:
+        return new GZIPInputStream(compressed);
+      case COMPRESSION_ZLIB:
+        return new InflaterInputStream(compressed);
+      case COMPRESSION_NONE:
+        return compressed;
+      default:
+        if ((compression & EXTERNAL_FLAG) != 0) {
+          throw new IOException(
+              "Chunk " + x + " " + z + " is stored in an external file, which is not supported"
+          );
+        }
+        throw new IOException("Unknown compression type " + compression + " in " + path);
+    }
+  }
+
+  /**
+   * Reads the NBT data of a chunk.
+   *
+   * @param x the x coordinate of the chunk inside the region, between 0 and 31
+   * @param z the z coordinate of the chunk inside the region, between 0 and 31
+   * @return the read chunk, with all of its tags, or null if the chunk is not stored
+   * @throws IOException if the chunk is malformed or contains an unknown tag type
+   * @throws IllegalArgumentException if a coordinate is out of bounds
+   */
+  public NBTTagCompound readChunk(int x, int z) throws IOException {
+    return readChunk(x, z, NbtLimits.UNLIMITED);
+  }
+
+  /**
+   * Reads the NBT data of a chunk, enforcing limits on the uncompressed data. Decompression stops
+   * as soon as a limit is exceeded, so a corrupt or malicious chunk can not fill the heap.
+   *
+   * @param x the x coordinate of the chunk inside the region, between 0 and 31
+   * @param z the z coordinate of the chunk inside the region, between 0 and 31
+   * @param limits the limits to enforce
+   * @return the read chunk, with all of its tags, or null if the chunk is not stored
+   * @throws NbtLimits.LimitExceededException if the chunk exceeds a limit
+   * @throws IOException if the chunk is malformed or contains an unknown tag type
+   * @throws IllegalArgumentException if a coordinate is out of bounds
+   */
+  public NBTTagCompound readChunk(int x, int z, NbtLimits limits) throws IOException {
+    Objects.requireNonNull(limits, "limits can not be null!");
+    InputStream inputStream = openChunk(x, z);
+    if (inputStream == null) {
+      return null;
+    }
+    Object event = NbtEvents.begin(Kind.STREAM_READ);
+    NBTTagCompound chunk;
+    try (DataInputStream input = new DataInputStream(inputStream)) {
+      chunk = NbtCodec.readRootCompound(input, limits);
+    }
+    NbtEvents.commit(event, "file", chunk);
+    return chunk;
+  }
+
+  /**
+   * Finds the payload of a chunk.
+   *
+   * @param x the x coordinate
+   * @param z the z coordinate
+   * @return a buffer positioned after the compression type and limited to the payload, or null if
+   *     the chunk is not stored
+   * @throws IOException if the chunk lies outside of the file or its length is invalid
+   */
+  private ByteBuffer findChunk(int x, int z) throws IOException {
+    int location = locations[index(x, z)];
+    if (location == 0) {
+      return null;
+    }
+    long start = (long) (location >>> 8) * SECTOR_SIZE;
+    long allocated = (long) (location & 0xFF) * SECTOR_SIZE;
+
+    if (start < HEADER_SIZE || start + CHUNK_HEADER_SIZE > data.capacity()) {
+      throw new IOException("Chunk " + x + " " + z + " lies outside of " + path);
+    }
+
+    ByteBuffer chunk = data.duplicate();
+    chunk.position((int) start);
+    int length = chunk.getInt();
+    if (length < 1 || length + 4L > allocated || start + 4 + length > data.capacity()) {
+      throw new IOException("Chunk " + x + " " + z + " has an invalid length of " + length);
+    }
+    chunk.limit((int) start + 4 + length);
+    chunk.get();
+
+    return chunk;
+  }
+
+  private static int index(int x, int z) {
+    if (x < 0 || x >= REGION_SIZE || z < 0 || z >= REGION_SIZE) {
+      throw new IllegalArgumentException("Coordinates out of bounds: " + x + " " + z);
+    }
+    return x + z * REGION_SIZE;
+  }
+
+  @Override
+  public String toString() {
+    return "RegionFile{" +
+        "path=" + path +
+        ", chunks=" + getChunkCount() +
+        '}';
+  }
+}
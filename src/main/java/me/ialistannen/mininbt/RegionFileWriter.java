@@ -0,0 +1,385 @@
+package me.ialistannen.mininbt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NbtEvents.Kind;
+
+/**
+ * Writes chunks into an Anvil region file, creating it if needed.
+ *
+ * <p>Chunks are compressed with zlib using a single reused {@link Deflater}. A chunk whose new
+ * payload still fits into its old sectors is rewritten in place, otherwise it moves to the first
+ * free run of sectors, reusing space freed by earlier writes before growing the file.</p>
+ *
+ * <p>The payload is always written before the header entry pointing to it, and each header entry
+ * is updated with a single aligned four byte write, so with {@link #setSyncWrites(boolean) synced
+ * writes} a crash never leaves a moved chunk pointing to partially written sectors. In place
+ * rewrites can not be protected that way, work on a copy of the file if a crash must not corrupt
+ * them.</p>
+ *
+ * <p>Instances are not thread safe. To rewrite a region, read each chunk with a {@link RegionFile}
+ * of the same file before writing it back.</p>
+ */
+public class RegionFileWriter implements Closeable {
+
+  private static final int SECTOR_SIZE = RegionFile.SECTOR_SIZE;
+  private static final int CHUNK_COUNT = RegionFile.REGION_SIZE * RegionFile.REGION_SIZE;
+  private static final int HEADER_SECTORS = 2;
+  private static final int CHUNK_HEADER_SIZE = 5;
+  private static final int MAX_SECTORS_PER_CHUNK = 255;
+
+  private static final byte[] CHUNK_HEADER_PLACEHOLDER = new byte[CHUNK_HEADER_SIZE];
+  private static final ByteBuffer ZERO_SECTOR = ByteBuffer.allocate(SECTOR_SIZE).asReadOnlyBuffer();
+
+  private final Path path;
+  private final FileChannel channel;
+  private final int[] locations = new int[CHUNK_COUNT];
+  private final int[] timestamps = new int[CHUNK_COUNT];
+  private final BitSet usedSectors = new BitSet();
+
+  private final Deflater deflater = new Deflater();
+  private final PayloadBuffer buffer = new PayloadBuffer();
+  private final ByteBuffer intBuffer = ByteBuffer.allocate(4);
+
+  private boolean syncWrites;
+
+  private RegionFileWriter(Path path, FileChannel channel) throws IOException {
+    this.path = path;
+    this.channel = channel;
+
+    usedSectors.set(0, HEADER_SECTORS);
+    if (channel.size() < HEADER_SECTORS * SECTOR_SIZE) {
+      // new or empty file
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+      writeFully(header, 0);
+      return;
+    }
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+    while (header.hasRemaining()) {
+      if (channel.read(header, header.position()) < 0) {
+        throw new IOException("Could not read the header of " + path);
+      }
+    }
+    header.flip();
+
+    long sectorsInFile = (channel.size() + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    for (int i = 0; i < CHUNK_COUNT; i++) {
+      int location = header.getInt();
+      int offset = location >>> 8;
+      int count = location & 0xFF;
+      if (location != 0 && offset >= HEADER_SECTORS && offset + count <= sectorsInFile) {
+        locations[i] = location;
+        usedSectors.set(offset, offset + count);
+      }
+    }
+    for (int i = 0; i < CHUNK_COUNT; i++) {
+      timestamps[i] = header.getInt();
+    }
+  }
+
+  /**
+   * Opens a region file for writing, creating it if it does not exist.
+   *
+   * <p>Header entries pointing outside of the file are dropped.</p>
+   *
+   * @param path the path to the region file
+   * @return the writer
+   * @throws IOException if the file could not be opened or created
+   */
+  public static RegionFileWriter open(Path path) throws IOException {
+    Objects.requireNonNull(path, "path can not be null!");
+
+    return open(path, FileChannel.open(
+        path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE
+    ));
+  }
+
+  /**
+   * Opens a region file for writing through an already opened channel.
+   *
+   * @param path the path to the region file
+   * @param channel the channel to read and write with. Closed if opening fails.
+   * @return the writer
+   * @throws IOException if the header could not be read or written
+   */
+  static RegionFileWriter open(Path path, FileChannel channel) throws IOException {
+    try {
+      return new RegionFileWriter(path, channel);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Sets whether chunk data is forced to the disk before the header entry is updated. Slower, but
+   * the header then never points to sectors that were not written yet. Disabled by default.
+   *
+   * @param syncWrites whether to force writes to the disk
+   */
+  public void setSyncWrites(boolean syncWrites) {
+    this.syncWrites = syncWrites;
+  }
+
+  /**
+   * Sets the zlib compression level.
+   *
+   * @param level the level, between 0 and 9 or {@link Deflater#DEFAULT_COMPRESSION}
+   * @throws IllegalArgumentException if the level is invalid
+   */
+  public void setCompressionLevel(int level) {
+    deflater.setLevel(level);
+  }
+
+  /**
+   * Writes a chunk, using the current time as its timestamp.
+   *
+   * @param x the x coordinate of the chunk inside the region, between 0 and 31
+   * @param z the z coordinate of the chunk inside the region, between 0 and 31
+   * @param chunk the chunk data
+   * @throws IOException if an error occurs while writing or the compressed chunk is larger than
+   *     1 MiB
+   * @throws IllegalArgumentException if a coordinate is out of bounds
+   */
+  public void writeChunk(int x, int z, NBTTagCompound chunk) throws IOException {
+    writeChunk(x, z, chunk, (int) TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+  }
+
+  /**
+   * Writes a chunk.
+   *
+   * @param x the x coordinate of the chunk inside the region, between 0 and 31
+   * @param z the z coordinate of the chunk inside the region, between 0 and 31
+   * @param chunk the chunk data
+   * @param timestamp the last modification time in seconds since the epoch
+   * @throws IOException if an error occurs while writing or the compressed chunk is larger than
+   *     1 MiB
+   * @throws IllegalArgumentException if a coordinate is out of bounds
+   */
+  public void writeChunk(int x, int z, NBTTagCompound chunk, int timestamp) throws IOException {
+    Objects.requireNonNull(chunk, "chunk can not be null!");
+    int index = index(x, z);
+
+    Object event = NbtEvents.begin(Kind.STREAM_WRITE);
+    ByteBuffer payload = compress(chunk);
+    int sectorCount = (payload.remaining() + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    if (sectorCount > MAX_SECTORS_PER_CHUNK) {
+      throw new IOException(
+          "Chunk " + x + " " + z + " needs " + sectorCount + " sectors, at most "
+              + MAX_SECTORS_PER_CHUNK + " are supported"
+      );
+    }
+
+    int oldLocation = locations[index];
+    int oldCount = oldLocation & 0xFF;
+    int offset = oldCount >= sectorCount ? oldLocation >>> 8 : allocate(sectorCount);
+    int newLocation = (offset << 8) | sectorCount;
+
+    try {
+      long position = (long) offset * SECTOR_SIZE;
+      writeFully(payload, position);
+      long padding = (long) sectorCount * SECTOR_SIZE - payload.limit();
+      if (padding > 0) {
+        ByteBuffer zeros = ZERO_SECTOR.duplicate();
+        zeros.limit((int) padding);
+        writeFully(zeros, position + payload.limit());
+      }
+      if (syncWrites) {
+        channel.force(false);
+      }
+
+      setHeaderEntry(index, newLocation, timestamp);
+    } finally {
+      // free whichever sectors the header does not point to (anymore), never the referenced ones
+      if (locations[index] == newLocation) {
+        release(oldLocation, newLocation);
+      } else {
+        release(newLocation, oldLocation);
+      }
+    }
+    NbtEvents.commit(event, "file", chunk);
+  }
+
+  /**
+   * Removes a chunk from the region. Its sectors are reused by later writes.
+   *
+   * @param x the x coordinate of the chunk inside the region, between 0 and 31
+   * @param z the z coordinate of the chunk inside the region, between 0 and 31
+   * @return true if the chunk existed
+   * @throws IOException if an error occurs while writing
+   * @throws IllegalArgumentException if a coordinate is out of bounds
+   */
+  public boolean deleteChunk(int x, int z) throws IOException {
+    int index = index(x, z);
+    int location = locations[index];
+    if (location == 0) {
+      return false;
+    }
+    setHeaderEntry(index, 0, 0);
+    usedSectors.clear(location >>> 8, (location >>> 8) + (location & 0xFF));
+    return true;
+  }
+
+  /**
+   * Returns the amount of sectors the file currently consists of, including the header and free
+   * sectors.
+   *
+   * @return the amount of sectors in the file
+   * @throws IOException if the size could not be determined
+   */
+  public long getSectorCount() throws IOException {
+    return (channel.size() + SECTOR_SIZE - 1) / SECTOR_SIZE;
+  }
+
+  /**
+   * Returns the amount of sectors not used by the header or any chunk.
+   *
+   * @return the amount of free sectors
+   * @throws IOException if the size could not be determined
+   */
+  public long getFreeSectorCount() throws IOException {
+    return getSectorCount() - usedSectors.cardinality();
+  }
+
+  /**
+   * Truncates free sectors at the end of the file and closes it.
+   *
+   * @throws IOException if an error occurs while closing
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      long usedLength = (long) usedSectors.length() * SECTOR_SIZE;
+      if (channel.size() > usedLength) {
+        channel.truncate(usedLength);
+      }
+      if (syncWrites) {
+        channel.force(true);
+      }
+    } finally {
+      deflater.end();
+      channel.close();
+    }
+  }
+
+  /**
+   * Serializes and compresses a chunk into the reused buffer.
+   *
+   * @param chunk the chunk to compress
+   * @return a buffer with the chunk header and compressed payload
+   * @throws IOException if an error occurs while serializing
+   */
+  private ByteBuffer compress(NBTTagCompound chunk) throws IOException {
+    buffer.reset();
+    // length and compression type, filled in below
+    buffer.write(CHUNK_HEADER_PLACEHOLDER, 0, CHUNK_HEADER_SIZE);
+
+    deflater.reset();
+    DeflaterOutputStream deflaterStream = new DeflaterOutputStream(buffer, deflater, 8192);
+    DataOutputStream output = new DataOutputStream(deflaterStream);
+    NbtCodec.writeRootCompound(chunk, output);
+    output.flush();
+    deflaterStream.finish();
+
+    ByteBuffer payload = buffer.asByteBuffer();
+    payload.putInt(0, payload.limit() - 4);
+    payload.put(4, RegionFile.COMPRESSION_ZLIB);
+    return payload;
+  }
+
+  /**
+   * Finds and reserves a free run of sectors for a chunk that no longer fits into its old sectors.
+   * The old sectors stay reserved until the header no longer points to them.
+   *
+   * @param sectorCount the amount of sectors needed
+   * @return the offset of the first sector
+   */
+  private int allocate(int sectorCount) {
+    int start = usedSectors.nextClearBit(HEADER_SECTORS);
+    while (true) {
+      int end = usedSectors.nextSetBit(start);
+      if (end < 0 || end - start >= sectorCount) {
+        break;
+      }
+      start = usedSectors.nextClearBit(end);
+    }
+    usedSectors.set(start, start + sectorCount);
+    return start;
+  }
+
+  /**
+   * Frees the sectors of a location, except for those of the location the header points to.
+   *
+   * @param location the location to free, may be 0
+   * @param referenced the location the header points to, may be 0
+   */
+  private void release(int location, int referenced) {
+    int offset = location >>> 8;
+    usedSectors.clear(offset, offset + (location & 0xFF));
+    int referencedOffset = referenced >>> 8;
+    usedSectors.set(referencedOffset, referencedOffset + (referenced & 0xFF));
+  }
+
+  private void setHeaderEntry(int index, int location, int timestamp) throws IOException {
+    writeInt(location, index * 4L);
+    locations[index] = location;
+    if (timestamps[index] != timestamp) {
+      writeInt(timestamp, SECTOR_SIZE + index * 4L);
+      timestamps[index] = timestamp;
+    }
+  }
+
+  private void writeInt(int value, long position) throws IOException {
+    intBuffer.clear();
+    intBuffer.putInt(value).flip();
+    writeFully(intBuffer, position);
+  }
+
+  private void writeFully(ByteBuffer data, long position) throws IOException {
+    long current = position;
+    while (data.hasRemaining()) {
+      current += channel.write(data, current);
+    }
+  }
+
+  private static int index(int x, int z) {
+    if (x < 0 || x >= RegionFile.REGION_SIZE || z < 0 || z >= RegionFile.REGION_SIZE) {
+      throw new IllegalArgumentException("Coordinates out of bounds: " + x + " " + z);
+    }
+    return x + z * RegionFile.REGION_SIZE;
+  }
+
+  @Override
+  public String toString() {
+    return "RegionFileWriter{" +
+        "path=" + path +
+        '}';
+  }
+
+  /**
+   * A byte array stream whose content can be wrapped without copying it.
+   */
+  private static class PayloadBuffer extends ByteArrayOutputStream {
+
+    PayloadBuffer() {
+      super(64 * 1024);
+    }
+
+    ByteBuffer asByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+  }
+}
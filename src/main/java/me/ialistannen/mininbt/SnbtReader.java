@@ -0,0 +1,386 @@
+package me.ialistannen.mininbt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.INBTNumber;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagByte;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagByteArray;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagDouble;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagFloat;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagInt;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagIntArray;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagLong;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagLongArray;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagShort;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import me.ialistannen.mininbt.NbtLimits.LimitExceededException;
+
+/**
+ * Reads SNBT, the string form of NBT used by commands, into {@link NBTWrappers} tags without a
+ * server.
+ *
+ * <p>It is used for the filters of a {@link NbtPath}, which extends it with the path syntax, as
+ * the parser of the {@link InMemoryNbtBackend} and by {@link NbtParser#parse(String, NbtLimits)},
+ * which enforces {@link NbtLimits} while reading.</p>
+ */
+class SnbtReader {
+
+  private static final Pattern BYTE = Pattern.compile("[-+]?(?:0|[1-9][0-9]*)b",
+      Pattern.CASE_INSENSITIVE);
+  private static final Pattern SHORT = Pattern.compile("[-+]?(?:0|[1-9][0-9]*)s",
+      Pattern.CASE_INSENSITIVE);
+  private static final Pattern INT = Pattern.compile("[-+]?(?:0|[1-9][0-9]*)");
+  private static final Pattern LONG = Pattern.compile("[-+]?(?:0|[1-9][0-9]*)l",
+      Pattern.CASE_INSENSITIVE);
+  private static final Pattern FLOAT = Pattern.compile(
+      "[-+]?(?:[0-9]+[.]?|[0-9]*[.][0-9]+)(?:e[-+]?[0-9]+)?f", Pattern.CASE_INSENSITIVE
+  );
+  private static final Pattern DOUBLE = Pattern.compile(
+      "[-+]?(?:[0-9]+[.]?|[0-9]*[.][0-9]+)(?:e[-+]?[0-9]+)?d", Pattern.CASE_INSENSITIVE
+  );
+  private static final Pattern DOUBLE_WITHOUT_SUFFIX = Pattern.compile(
+      "[-+]?(?:[0-9]+[.]|[0-9]*[.][0-9]+)(?:e[-+]?[0-9]+)?", Pattern.CASE_INSENSITIVE
+  );
+
+  final String input;
+  int position;
+  private final NbtLimits.Budget budget;
+
+  SnbtReader(String input) {
+    this(input, NbtLimits.UNLIMITED.newBudget());
+  }
+
+  private SnbtReader(String input, NbtLimits.Budget budget) {
+    this.input = Objects.requireNonNull(input, "input can not be null!");
+    this.budget = budget;
+  }
+
+  /**
+   * Parses a compound.
+   *
+   * @param snbt the SNBT
+   * @return the parsed compound
+   * @throws IllegalArgumentException if the SNBT is malformed
+   */
+  static NBTTagCompound parseCompound(String snbt) {
+    return new SnbtReader(snbt).readRootCompound();
+  }
+
+  /**
+   * Parses a compound from an untrusted source. The limits are checked while reading, so
+   * oversized or deeply nested input is rejected before it is built. The characters of the SNBT
+   * count as its bytes.
+   *
+   * @param snbt the SNBT
+   * @param limits the limits to enforce
+   * @return the parsed compound
+   * @throws LimitExceededException if the SNBT exceeds a limit
+   * @throws IllegalArgumentException if the SNBT is malformed
+   */
+  static NBTTagCompound parseCompound(String snbt, NbtLimits limits)
+      throws LimitExceededException {
+    NbtLimits.Budget budget = limits.newBudget();
+    budget.account(snbt.length());
+    try {
+      return new SnbtReader(snbt, budget).readRootCompound();
+    } catch (LimitExceededWrapper e) {
+      throw e.getCause();
+    }
+  }
+
+  NBTTagCompound readRootCompound() {
+    NBTTagCompound compound = readCompound();
+    skipWhitespace();
+    if (position < input.length()) {
+      throw error("Expected the end");
+    }
+    return compound;
+  }
+
+  private INBTBase readValue() {
+    skipWhitespace();
+    char next = peek();
+    if (next == '{') {
+      return readCompound();
+    }
+    if (next == '[') {
+      return readListOrArray();
+    }
+    if (isQuote(next)) {
+      return new NBTTagString(readQuoted());
+    }
+    return parseUnquoted(readUnquoted());
+  }
+
+  NBTTagCompound readCompound() {
+    expect('{');
+    enter();
+    NBTTagCompound compound = new NBTTagCompound();
+    skipWhitespace();
+    if (peek() == '}') {
+      position++;
+      budget.exit();
+      return compound;
+    }
+    do {
+      skipWhitespace();
+      String key = isQuote(peek()) ? readQuoted() : readUnquoted();
+      if (key.isEmpty()) {
+        throw error("Expected a key");
+      }
+      skipWhitespace();
+      expect(':');
+      compound.set(key, readValue());
+      skipWhitespace();
+    } while (tryConsume(','));
+    expect('}');
+    budget.exit();
+    return compound;
+  }
+
+  private INBTBase readListOrArray() {
+    expect('[');
+    enter();
+    try {
+      return readListOrArrayContent();
+    } finally {
+      budget.exit();
+    }
+  }
+
+  private INBTBase readListOrArrayContent() {
+    if (position + 1 < input.length() && input.charAt(position + 1) == ';') {
+      char arrayType = input.charAt(position);
+      position += 2;
+      List<INBTBase> values = new ArrayList<>();
+      skipWhitespace();
+      if (peek() != ']') {
+        do {
+          checkListLength(values.size() + 1);
+          values.add(readValue());
+          skipWhitespace();
+        } while (tryConsume(','));
+      }
+      expect(']');
+      return createArray(arrayType, values);
+    }
+
+    NBTTagList list = new NBTTagList();
+    skipWhitespace();
+    if (peek() == ']') {
+      position++;
+      return list;
+    }
+    do {
+      checkListLength(list.size() + 1);
+      if (!list.add(readValue())) {
+        throw error("Lists can only contain elements of the same type");
+      }
+      skipWhitespace();
+    } while (tryConsume(','));
+    expect(']');
+    return list;
+  }
+
+  private INBTBase createArray(char arrayType, List<INBTBase> values) {
+    switch (arrayType) {
+      case 'B': {
+        byte[] bytes = new byte[values.size()];
+        for (int i = 0; i < bytes.length; i++) {
+          bytes[i] = (byte) integralValue(values.get(i));
+        }
+        return new NBTTagByteArray(bytes);
+      }
+      case 'I': {
+        int[] ints = new int[values.size()];
+        for (int i = 0; i < ints.length; i++) {
+          ints[i] = (int) integralValue(values.get(i));
+        }
+        return new NBTTagIntArray(ints);
+      }
+      case 'L': {
+        long[] longs = new long[values.size()];
+        for (int i = 0; i < longs.length; i++) {
+          longs[i] = integralValue(values.get(i));
+        }
+        return new NBTTagLongArray(longs);
+      }
+      default:
+        throw error("Unsupported array type '" + arrayType + "'");
+    }
+  }
+
+  private long integralValue(INBTBase value) {
+    if (value instanceof NBTTagByte || value instanceof NBTTagShort
+        || value instanceof NBTTagInt || value instanceof NBTTagLong) {
+      return ((INBTNumber) value).getAsLong();
+    }
+    throw error("Arrays can only contain integral numbers");
+  }
+
+  private INBTBase parseUnquoted(String value) {
+    if (value.isEmpty()) {
+      throw error("Expected a value");
+    }
+    try {
+      if (BYTE.matcher(value).matches()) {
+        return new NBTTagByte(Byte.parseByte(withoutSuffix(value)));
+      }
+      if (SHORT.matcher(value).matches()) {
+        return new NBTTagShort(Short.parseShort(withoutSuffix(value)));
+      }
+      if (LONG.matcher(value).matches()) {
+        return new NBTTagLong(Long.parseLong(withoutSuffix(value)));
+      }
+      if (INT.matcher(value).matches()) {
+        return new NBTTagInt(Integer.parseInt(value));
+      }
+      if (FLOAT.matcher(value).matches()) {
+        return new NBTTagFloat(Float.parseFloat(withoutSuffix(value)));
+      }
+      if (DOUBLE.matcher(value).matches()) {
+        return new NBTTagDouble(Double.parseDouble(withoutSuffix(value)));
+      }
+      if (DOUBLE_WITHOUT_SUFFIX.matcher(value).matches()) {
+        return new NBTTagDouble(Double.parseDouble(value));
+      }
+    } catch (NumberFormatException e) {
+      // out of range, treated as a string like vanilla does
+      return new NBTTagString(value);
+    }
+    if (value.equalsIgnoreCase("true")) {
+      return new NBTTagByte((byte) 1);
+    }
+    if (value.equalsIgnoreCase("false")) {
+      return new NBTTagByte((byte) 0);
+    }
+    return new NBTTagString(value);
+  }
+
+  private static String withoutSuffix(String value) {
+    return value.substring(0, value.length() - 1);
+  }
+
+  private String readUnquoted() {
+    int start = position;
+    while (position < input.length() && isUnquotedCharacter(input.charAt(position))) {
+      position++;
+    }
+    checkStringLength(position - start);
+    return input.substring(start, position);
+  }
+
+  String readQuoted() {
+    char quote = input.charAt(position++);
+    StringBuilder result = new StringBuilder();
+    while (position < input.length()) {
+      char current = input.charAt(position++);
+      if (current == quote) {
+        return result.toString();
+      }
+      if (current == '\\') {
+        if (position >= input.length()) {
+          break;
+        }
+        current = input.charAt(position++);
+        if (current != quote && current != '\\') {
+          throw error("Invalid escape '\\" + current + "'");
+        }
+      }
+      checkStringLength(result.length() + 1);
+      result.append(current);
+    }
+    throw error("Unterminated string");
+  }
+
+  private boolean tryConsume(char expected) {
+    skipWhitespace();
+    if (position < input.length() && input.charAt(position) == expected) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  void expect(char expected) {
+    skipWhitespace();
+    if (position >= input.length() || input.charAt(position) != expected) {
+      throw error("Expected '" + expected + "'");
+    }
+    position++;
+  }
+
+  char peek() {
+    if (position >= input.length()) {
+      throw error("Unexpected end");
+    }
+    return input.charAt(position);
+  }
+
+  void skipWhitespace() {
+    while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+      position++;
+    }
+  }
+
+  private void enter() {
+    try {
+      budget.enter();
+    } catch (LimitExceededException e) {
+      throw new LimitExceededWrapper(e);
+    }
+  }
+
+  private void checkListLength(int length) {
+    try {
+      budget.checkListLength(length);
+    } catch (LimitExceededException e) {
+      throw new LimitExceededWrapper(e);
+    }
+  }
+
+  private void checkStringLength(int length) {
+    try {
+      budget.checkStringLength(length);
+    } catch (LimitExceededException e) {
+      throw new LimitExceededWrapper(e);
+    }
+  }
+
+  IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(
+        message + " at position " + position + " in '" + input + "'"
+    );
+  }
+
+  static boolean isQuote(char character) {
+    return character == '"' || character == '\'';
+  }
+
+  private static boolean isUnquotedCharacter(char character) {
+    return (character >= '0' && character <= '9')
+        || (character >= 'a' && character <= 'z')
+        || (character >= 'A' && character <= 'Z')
+        || character == '_' || character == '-' || character == '.' || character == '+';
+  }
+
+  /**
+   * Carries an exceeded limit out of the reader, whose methods can not throw checked exceptions.
+   */
+  private static final class LimitExceededWrapper extends RuntimeException {
+
+    LimitExceededWrapper(LimitExceededException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized LimitExceededException getCause() {
+      return (LimitExceededException) super.getCause();
+    }
+  }
+}
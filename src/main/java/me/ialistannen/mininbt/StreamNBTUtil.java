@@ -1,45 +1,47 @@
 package me.ialistannen.mininbt;
 
 import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
-import me.ialistannen.mininbt.reflection.BukkitReflection;
-import me.ialistannen.mininbt.reflection.FluentReflection;
+import me.ialistannen.mininbt.NbtEvents.Kind;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Objects;
 
 public class StreamNBTUtil {
-  private static final FluentReflection.FluentType<?> NBT_COMPRESSED_STREAM_TOOLS = BukkitReflection.ClassLookup.NMS
-      .forName("NBTCompressedStreamTools")
-      .getOrThrow();
 
-  private static final FluentReflection.FluentMethod FROM_STREAM = NBT_COMPRESSED_STREAM_TOOLS
-      .findMethod()
-      .withParameters(InputStream.class)
-      .withReturnType(NBTTagCompound.NBT_TAG_COMPOUND_CLASS.getUnderlying())
-      .findFirst()
-      .getOrThrow();
-
-  private static final FluentReflection.FluentMethod WRITE_STREAM = NBT_COMPRESSED_STREAM_TOOLS
-      .findMethod()
-      .withParameters(
-          NBTTagCompound.NBT_TAG_COMPOUND_CLASS.getUnderlying(),
-          OutputStream.class
-      )
-      .findFirst()
-      .getOrThrow();
-
-  // thrown by the underlying reflected method
-  @SuppressWarnings("RedundantThrows")
   public static NBTTagCompound fromStream(InputStream inputStream) throws IOException {
-    Object nbtObject = FROM_STREAM.invokeStatic(inputStream).getOrThrow();
+    NbtBackend backend = NBTWrappers.getBackend();
+    Object event = NbtEvents.begin(Kind.STREAM_READ);
+    NBTTagCompound compound = (NBTTagCompound) ConversionMetrics.fromNBT(
+        backend.readCompressed(inputStream), backend, "stream"
+    );
+    NbtEvents.commit(event, "stream", compound);
+    return compound;
+  }
 
-    return (NBTTagCompound) NBTTagCompound.fromNBT(nbtObject);
+  /**
+   * Reads a gzip compressed compound from an untrusted source. It is decoded by {@link NbtCodec}
+   * instead of the {@link NbtBackend}, which checks the limits while reading the uncompressed
+   * data.
+   *
+   * @param inputStream the stream to read from
+   * @param limits the limits to enforce
+   * @return the read compound
+   * @throws NbtLimits.LimitExceededException if the data exceeds a limit
+   * @throws IOException if an error occurs while reading or the data is malformed
+   */
+  public static NBTTagCompound fromStream(InputStream inputStream, NbtLimits limits)
+      throws IOException {
+    Objects.requireNonNull(inputStream, "inputStream can not be null!");
+    Objects.requireNonNull(limits, "limits can not be null!");
+    return NbtCodec.readCompressed(inputStream, limits);
   }
 
-  // thrown by the underlying reflected method
-  @SuppressWarnings("RedundantThrows")
   public static void writeToStream(NBTTagCompound compound, OutputStream outputStream) throws IOException {
-    WRITE_STREAM.invokeStatic(compound.toNBT(), outputStream);
+    NbtBackend backend = NBTWrappers.getBackend();
+    Object event = NbtEvents.begin(Kind.STREAM_WRITE);
+    backend.writeCompressed(ConversionMetrics.toNBT(compound, backend, "stream"), outputStream);
+    NbtEvents.commit(event, "stream", compound);
   }
 }
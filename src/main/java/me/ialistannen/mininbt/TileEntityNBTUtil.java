@@ -1,11 +1,21 @@
 package me.ialistannen.mininbt;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import me.ialistannen.mininbt.EntityMethodHelper.DeletableEntitySpawner;
 import me.ialistannen.mininbt.NBTWrappers.INBTBase;
 import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NbtEvents.Kind;
+import me.ialistannen.mininbt.metrics.NbtMetrics;
+import me.ialistannen.mininbt.metrics.NbtMetrics.Histogram;
 import me.ialistannen.mininbt.reflection.BukkitReflection.ClassLookup;
+import me.ialistannen.mininbt.reflection.FluentReflection.FluentConstructor;
 import me.ialistannen.mininbt.reflection.FluentReflection.FluentMethod;
 import me.ialistannen.mininbt.reflection.FluentReflection.FluentType;
 import me.ialistannen.mininbt.reflection.FluentReflection.ReflectiveResult;
@@ -31,85 +41,14 @@ import org.bukkit.block.BlockState;
  */
 public class TileEntityNBTUtil {
 
-  private static FluentMethod loadFromNBT, saveToNBT, getTileEntity;
+  private static final Histogram GET_TAG_TIME = NbtMetrics.histogram("util.tile.getNbtTag");
+  private static final Histogram SET_TAG_TIME = NbtMetrics.histogram("util.tile.setNbtTag");
+  private static final Histogram BATCH_TIME = NbtMetrics.histogram("util.tile.batch");
 
-  private static Class<?> CRAFT_BLOCK_STATE_CLASS;
-
-  static {
-    CRAFT_BLOCK_STATE_CLASS = ClassLookup.OBC.forName("block.CraftBlockState").getOrThrow()
-        .getUnderlying();
-
-    FluentType<?> TILE_CRAFT_BLOCK_STATE_CLASS = ClassLookup.OBC.forName("block.CraftBlockState")
-        .getOrThrow();
-
-    ReflectiveResult<FluentMethod> tileEntityOld = TILE_CRAFT_BLOCK_STATE_CLASS.findMethod()
-        .withName("getTileEntity")
-        .withParameters()
-        .findSingle();
-    if (tileEntityOld.isPresent()) {
-      getTileEntity = tileEntityOld.getOrThrow();
-    } else {
-      TILE_CRAFT_BLOCK_STATE_CLASS = ClassLookup.OBC.forName("block.CraftBlockEntityState")
-          .getOrThrow();
-
-      // Modify the snapshot so BlockState#update does the physics and update work for us!
-      getTileEntity = TILE_CRAFT_BLOCK_STATE_CLASS.findMethod()
-          .withName("getSnapshot")
-          .withParameters()
-          .findSingle().getOrThrow();
-    }
-
-    EntityMethodHelper entityHelper = new EntityMethodHelper(
-        new DeletableEntitySpawner() {
-
-          private BlockState oldState;
-          private FluentType<?> baseClass;
-
-          @Override
-          public Object spawn() {
-            if (Bukkit.getWorlds().isEmpty()) {
-              throw new IllegalStateException("Called me before at least one world was loaded...");
-            }
-            World world = Bukkit.getWorlds().get(0);
-            Block block = world.getBlockAt(world.getSpawnLocation());
-
-            // Save old state to later restore it
-            oldState = block.getState();
-
-            block.setType(Material.CHEST);
-
-            BlockState chestState = block.getState();
-
-            Object nmsSample = getTileEntity.invoke(chestState).getOrThrow();
-            baseClass = FluentType.ofUnknown(nmsSample.getClass());
-            return nmsSample;
-          }
-
-          @Override
-          public void remove() {
-            oldState.update(true);
-          }
-
-          @Override
-          public FluentType<?> getBaseClassForLoadAndSaveMethods() {
-            return baseClass;
-          }
-        }
-    );
-
-    loadFromNBT = entityHelper.getLoadFromNbtMethod();
-    saveToNBT = entityHelper.getSaveToNbtMethod();
-  }
-
-  /**
-   * Retrieves the NMS handle of a bukkit entity.
-   *
-   * @param blockState the Bukkit {@link BlockState}
-   * @return the NMS tile entity
-   */
-  private static Object toTileEntity(BlockState blockState) {
-    return getTileEntity.invoke(blockState).getOrThrow();
-  }
+  private static final Class<?> CRAFT_BLOCK_STATE_CLASS = ClassLookup.OBC
+      .forName("block.CraftBlockState")
+      .getOrThrow()
+      .getUnderlying();
 
   /**
    * Returns the {@link NBTTagCompound} of a {@link BlockState}.
@@ -118,17 +57,23 @@ public class TileEntityNBTUtil {
    * @return the {@link NBTTagCompound} of the {@link BlockState}
    */
   public static NBTTagCompound getNbtTag(BlockState blockState) {
-    Objects.requireNonNull(blockState, "blockState can not be null");
-    ensureCorrectClass(blockState);
+    long start = NbtMetrics.startTimer();
+    try {
+      Objects.requireNonNull(blockState, "blockState can not be null");
+      ensureCorrectClass(blockState);
 
-    Object tileEntity = toTileEntity(blockState);
+      NbtBackend backend = NBTWrappers.getBackend();
 
-    Object nbtTag = new NBTTagCompound().toNBT();
-
-    // populate it
-    saveToNBT.invoke(tileEntity, nbtTag).ensureSuccessful();
+      Object event = NbtEvents.begin(Kind.TILE_ENTITY_SAVE);
+      NBTTagCompound compound = (NBTTagCompound) ConversionMetrics.fromNBT(
+          backend.saveTileEntity(blockState), backend, "tile"
+      );
+      NbtEvents.commit(event, "tile", compound);
 
-    return (NBTTagCompound) INBTBase.fromNBT(nbtTag);
+      return compound;
+    } finally {
+      GET_TAG_TIME.recordSince(start);
+    }
   }
 
   /**
@@ -141,16 +86,23 @@ public class TileEntityNBTUtil {
    * @throws IllegalArgumentException if {@link #isValidClass(BlockState)} returns false
    */
   public static void setNbtTag(BlockState blockState, NBTTagCompound compound) {
-    Objects.requireNonNull(blockState, "blockState can not be null");
-    Objects.requireNonNull(compound, "compound can not be null");
-    ensureCorrectClass(blockState);
-
-    Object tileEntity = toTileEntity(blockState);
-
-    // store it
-    loadFromNBT.invoke(tileEntity, compound.toNBT()).ensureSuccessful();
-
-    blockState.update();
+    long start = NbtMetrics.startTimer();
+    try {
+      Objects.requireNonNull(blockState, "blockState can not be null");
+      Objects.requireNonNull(compound, "compound can not be null");
+      ensureCorrectClass(blockState);
+
+      NbtBackend backend = NBTWrappers.getBackend();
+
+      // store it
+      Object event = NbtEvents.begin(Kind.TILE_ENTITY_LOAD);
+      backend.loadTileEntity(blockState, ConversionMetrics.toNBT(compound, backend, "tile"));
+      NbtEvents.commit(event, "tile", compound);
+
+      blockState.update();
+    } finally {
+      SET_TAG_TIME.recordSince(start);
+    }
   }
 
   /**
@@ -175,6 +127,121 @@ public class TileEntityNBTUtil {
     setNbtTag(blockState, tileNBT);
   }
 
+  /**
+   * Returns the {@link NBTTagCompound}s of many {@link BlockState}s at once.
+   *
+   * @param blockStates the Bukkit {@link BlockState}s to get the {@link NBTTagCompound}s for
+   * @return the {@link NBTTagCompound} of each {@link BlockState}, in iteration order
+   * @throws NullPointerException if blockStates or any of its elements is null
+   * @throws IllegalArgumentException if {@link #isValidClass(BlockState)} returns false for any
+   *     of them
+   */
+  public static Map<BlockState, NBTTagCompound> getNbtTags(Collection<BlockState> blockStates) {
+    Objects.requireNonNull(blockStates, "blockStates can not be null");
+    for (BlockState blockState : blockStates) {
+      Objects.requireNonNull(blockState, "blockState can not be null");
+      ensureCorrectClass(blockState);
+    }
+
+    Map<BlockState, NBTTagCompound> result = new LinkedHashMap<>();
+    for (BlockState blockState : blockStates) {
+      result.put(blockState, getNbtTag(blockState));
+    }
+    return result;
+  }
+
+  /**
+   * Sets the {@link NBTTagCompound}s of many {@link BlockState}s at once.
+   *
+   * <p>This is the bulk version of {@link #setNbtTag(BlockState, NBTTagCompound)}. The states are
+   * grouped by chunk and the tile entities of a chunk are loaded straight into the world. Then the
+   * chunk is marked as changed and sent to the players once. No block is updated and no
+   * neighbour is notified, so restoring thousands of tile entities costs one update per chunk
+   * instead of one per block.</p>
+   *
+   * <p>Only the tile entity data is written, other changes made to the states are not applied.
+   * States whose block changed its type since they were captured are skipped and counted as
+   * failed. All states are validated before any of them is modified.</p>
+   *
+   * @param tags the {@link NBTTagCompound} to set for each {@link BlockState}
+   * @return statistics about the performed batch
+   * @throws NullPointerException if tags or any key or value in it is null
+   * @throws IllegalArgumentException if {@link #isValidClass(BlockState)} returns false for any
+   *     of the states
+   */
+  public static BatchStatistics setNbtTags(Map<BlockState, NBTTagCompound> tags) {
+    return applyBatch(tags, false);
+  }
+
+  /**
+   * Appends the {@link NBTTagCompound}s to the Nbt tags of many {@link BlockState}s at once.
+   *
+   * <p>This is the bulk version of {@link #appendNbtTag(BlockState, NBTTagCompound)} and follows
+   * the same rules as {@link #setNbtTags(Map)}. The entries are merged directly into the
+   * tile entity's own tag, so the existing data does not need to be converted.</p>
+   *
+   * @param tags the {@link NBTTagCompound} to append for each {@link BlockState}
+   * @return statistics about the performed batch
+   * @throws NullPointerException if tags or any key or value in it is null
+   * @throws IllegalArgumentException if {@link #isValidClass(BlockState)} returns false for any
+   *     of the states
+   */
+  public static BatchStatistics appendNbtTags(Map<BlockState, NBTTagCompound> tags) {
+    return applyBatch(tags, true);
+  }
+
+  private static BatchStatistics applyBatch(Map<BlockState, NBTTagCompound> tags,
+      boolean append) {
+    Objects.requireNonNull(tags, "tags can not be null");
+
+    long start = System.nanoTime();
+
+    Map<ChunkPosition, List<Entry<BlockState, NBTTagCompound>>> byChunk = new LinkedHashMap<>();
+    for (Entry<BlockState, NBTTagCompound> entry : tags.entrySet()) {
+      Objects.requireNonNull(entry.getKey(), "blockState can not be null");
+      Objects.requireNonNull(entry.getValue(), "compound can not be null");
+      ensureCorrectClass(entry.getKey());
+
+      byChunk.computeIfAbsent(new ChunkPosition(entry.getKey()), key -> new ArrayList<>())
+          .add(entry);
+    }
+
+    NbtBackend backend = NBTWrappers.getBackend();
+    int failed = 0;
+    for (Entry<ChunkPosition, List<Entry<BlockState, NBTTagCompound>>> chunk
+        : byChunk.entrySet()) {
+      Map<BlockState, Object> nbtTags = new LinkedHashMap<>();
+      for (Entry<BlockState, NBTTagCompound> entry : chunk.getValue()) {
+        BlockState blockState = entry.getKey();
+        if (blockState.getBlock().getType() != blockState.getType()) {
+          failed++;
+          continue;
+        }
+
+        Object event = NbtEvents.begin(Kind.TILE_ENTITY_LOAD);
+        Object nbtTag;
+        if (append) {
+          nbtTag = backend.saveTileEntity(blockState);
+          entry.getValue().appendTo(nbtTag);
+        } else {
+          nbtTag = ConversionMetrics.toNBT(entry.getValue(), backend, "tile");
+        }
+        nbtTags.put(blockState, nbtTag);
+        NbtEvents.commit(event, "tile", entry.getValue());
+      }
+
+      if (!nbtTags.isEmpty()) {
+        backend.loadTileEntitiesInChunk(nbtTags);
+        chunk.getKey().world.refreshChunk(chunk.getKey().x, chunk.getKey().z);
+      }
+    }
+
+    long elapsedNanos = System.nanoTime() - start;
+    BATCH_TIME.record(elapsedNanos);
+
+    return new BatchStatistics(tags.size(), failed, byChunk.size(), elapsedNanos);
+  }
+
   /**
    * Checks whether you can pass the {@link BlockState} to the {@link #setNbtTag(BlockState,
    * NBTTagCompound)} or {@link #getNbtTag(BlockState)} methods.
@@ -202,4 +269,298 @@ public class TileEntityNBTUtil {
       );
     }
   }
+
+  /**
+   * The position of the chunk a {@link BlockState} is in.
+   */
+  private static class ChunkPosition {
+
+    private final World world;
+    private final int x;
+    private final int z;
+
+    ChunkPosition(BlockState state) {
+      this.world = state.getWorld();
+      this.x = state.getX() >> 4;
+      this.z = state.getZ() >> 4;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ChunkPosition that = (ChunkPosition) o;
+      return x == that.x && z == that.z && Objects.equals(world, that.world);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(world, x, z);
+    }
+  }
+
+  /**
+   * Statistics about a batch applied with {@link #setNbtTags(Map)} or {@link
+   * #appendNbtTags(Map)}.
+   */
+  public static class BatchStatistics {
+
+    private final int blockCount;
+    private final int failedUpdateCount;
+    private final int chunkCount;
+    private final long elapsedNanos;
+
+    private BatchStatistics(int blockCount, int failedUpdateCount, int chunkCount,
+        long elapsedNanos) {
+      this.blockCount = blockCount;
+      this.failedUpdateCount = failedUpdateCount;
+      this.chunkCount = chunkCount;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the amount of block states in the batch.
+     *
+     * @return the amount of block states in the batch
+     */
+    public int getBlockCount() {
+      return blockCount;
+    }
+
+    /**
+     * Returns the amount of block states that were skipped because the block type changed since
+     * the state was captured.
+     *
+     * @return the amount of failed updates
+     */
+    public int getFailedUpdateCount() {
+      return failedUpdateCount;
+    }
+
+    /**
+     * Returns the amount of distinct chunks the batch touched.
+     *
+     * @return the amount of chunks
+     */
+    public int getChunkCount() {
+      return chunkCount;
+    }
+
+    /**
+     * Returns the time the batch took.
+     *
+     * @param unit the unit to return it in
+     * @return the elapsed time in the given unit
+     */
+    public long getElapsed(TimeUnit unit) {
+      return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the throughput of the batch.
+     *
+     * @return the processed block states per second
+     */
+    public double getBlocksPerSecond() {
+      if (elapsedNanos == 0) {
+        return 0;
+      }
+      return blockCount / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    @Override
+    public String toString() {
+      return "BatchStatistics{" +
+          "blockCount=" + blockCount +
+          ", failedUpdateCount=" + failedUpdateCount +
+          ", chunkCount=" + chunkCount +
+          ", elapsedNanos=" + elapsedNanos +
+          ", blocksPerSecond=" + getBlocksPerSecond() +
+          '}';
+    }
+  }
+
+  /**
+   * The reflective tile entity hooks of the default {@link NbtBackend}. Only initialized when they
+   * are used, so backends calling the server directly do not need to place a sample chest.
+   */
+  static class ReflectiveHooks {
+
+    private static FluentMethod loadFromNBT, saveToNBT, getTileEntity;
+    private static FluentMethod getWorldHandle, getWorldTileEntity, getChunkAt, markChunkDirty;
+    private static FluentMethod updateTileEntity;
+    private static FluentConstructor<?> newBlockPosition;
+
+    static {
+      FluentType<?> TILE_CRAFT_BLOCK_STATE_CLASS = ClassLookup.OBC.forName("block.CraftBlockState")
+          .getOrThrow();
+
+      ReflectiveResult<FluentMethod> tileEntityOld = TILE_CRAFT_BLOCK_STATE_CLASS.findMethod()
+          .withName("getTileEntity")
+          .withParameters()
+          .findSingle();
+      if (tileEntityOld.isPresent()) {
+        getTileEntity = tileEntityOld.getOrThrow();
+      } else {
+        TILE_CRAFT_BLOCK_STATE_CLASS = ClassLookup.OBC.forName("block.CraftBlockEntityState")
+            .getOrThrow();
+
+        // Modify the snapshot so BlockState#update does the physics and update work for us!
+        getTileEntity = TILE_CRAFT_BLOCK_STATE_CLASS.findMethod()
+            .withName("getSnapshot")
+            .withParameters()
+            .findSingle().getOrThrow();
+      }
+
+      EntityMethodHelper entityHelper = new EntityMethodHelper(
+          new DeletableEntitySpawner() {
+
+            private BlockState oldState;
+            private FluentType<?> baseClass;
+
+            @Override
+            public Object spawn() {
+              if (Bukkit.getWorlds().isEmpty()) {
+                throw new IllegalStateException(
+                    "Called me before at least one world was loaded..."
+                );
+              }
+              World world = Bukkit.getWorlds().get(0);
+              Block block = world.getBlockAt(world.getSpawnLocation());
+
+              // Save old state to later restore it
+              oldState = block.getState();
+
+              block.setType(Material.CHEST);
+
+              BlockState chestState = block.getState();
+
+              Object nmsSample = getTileEntity.invoke(chestState).getOrThrow();
+              baseClass = FluentType.ofUnknown(nmsSample.getClass());
+              return nmsSample;
+            }
+
+            @Override
+            public void remove() {
+              oldState.update(true);
+            }
+
+            @Override
+            public FluentType<?> getBaseClassForLoadAndSaveMethods() {
+              return baseClass;
+            }
+          }
+      );
+
+      loadFromNBT = entityHelper.getLoadFromNbtMethod();
+      saveToNBT = entityHelper.getSaveToNbtMethod();
+
+      FluentType<?> blockPosition = ClassLookup.NMS.forName("BlockPosition").getOrThrow();
+      newBlockPosition = blockPosition.findConstructor()
+          .withParameters(int.class, int.class, int.class)
+          .findSingle().getOrThrow();
+
+      getWorldHandle = ClassLookup.OBC.forName("CraftWorld").getOrThrow()
+          .findMethod()
+          .withName("getHandle")
+          .withParameters()
+          .findSingle().getOrThrow();
+
+      FluentType<?> nmsWorld = ClassLookup.NMS.forName("World").getOrThrow();
+      getWorldTileEntity = nmsWorld.findMethod()
+          .withName("getTileEntity")
+          .withParameters(blockPosition.getUnderlying())
+          .findSingle().getOrThrow();
+      getChunkAt = nmsWorld.findMethod()
+          .withName("getChunkAt")
+          .withParameters(int.class, int.class)
+          .findSingle().getOrThrow();
+
+      // Older versions have no way to mark the chunk itself, updating a tile entity marks it too
+      ReflectiveResult<FluentMethod> markDirty = ClassLookup.NMS.forName("Chunk").getOrThrow()
+          .findMethod()
+          .withName("markDirty")
+          .withParameters()
+          .findSingle();
+      if (markDirty.isPresent()) {
+        markChunkDirty = markDirty.getOrThrow();
+      } else {
+        updateTileEntity = ClassLookup.NMS.forName("TileEntity").getOrThrow()
+            .findMethod()
+            .withName("update")
+            .withParameters()
+            .findSingle().getOrThrow();
+      }
+    }
+
+    /**
+     * Retrieves the NMS tile entity of a block state.
+     *
+     * @param blockState the Bukkit {@link BlockState}
+     * @return the NMS tile entity
+     */
+    private static Object toTileEntity(BlockState blockState) {
+      return getTileEntity.invoke(blockState).getOrThrow();
+    }
+
+    /**
+     * Saves the tile entity of a block state to a NMS compound.
+     *
+     * @param blockState the block state with a tile entity
+     * @param nbtTag the NMS compound to save it to
+     */
+    static void save(BlockState blockState, Object nbtTag) {
+      saveToNBT.invoke(toTileEntity(blockState), nbtTag).ensureSuccessful();
+    }
+
+    /**
+     * Loads the tile entity of a block state from a NMS compound.
+     *
+     * @param blockState the block state with a tile entity
+     * @param nbtTag the NMS compound to load it from
+     */
+    static void load(BlockState blockState, Object nbtTag) {
+      loadFromNBT.invoke(toTileEntity(blockState), nbtTag).ensureSuccessful();
+    }
+
+    /**
+     * Loads the tile entities in the world at the positions of block states, which are all in the
+     * same chunk, and marks the chunk as changed once.
+     *
+     * @param nbtTags the NMS compound to load for each block state
+     */
+    static void loadInChunk(Map<BlockState, Object> nbtTags) {
+      if (nbtTags.isEmpty()) {
+        return;
+      }
+      BlockState anyState = nbtTags.keySet().iterator().next();
+      Object world = getWorldHandle.invoke(anyState.getWorld()).getOrThrow();
+
+      Object lastTileEntity = null;
+      for (Entry<BlockState, Object> entry : nbtTags.entrySet()) {
+        BlockState blockState = entry.getKey();
+        Object position = newBlockPosition
+            .createInstance(blockState.getX(), blockState.getY(), blockState.getZ())
+            .getOrThrow();
+
+        Object tileEntity = getWorldTileEntity.invoke(world, position).getOrThrow();
+        if (tileEntity != null) {
+          loadFromNBT.invoke(tileEntity, entry.getValue()).ensureSuccessful();
+          lastTileEntity = tileEntity;
+        }
+      }
+
+      if (markChunkDirty != null) {
+        Object chunk = getChunkAt.invoke(world, anyState.getX() >> 4, anyState.getZ() >> 4)
+            .getOrThrow();
+        markChunkDirty.invoke(chunk).ensureSuccessful();
+      } else if (lastTileEntity != null) {
+        updateTileEntity.invoke(lastTileEntity).ensureSuccessful();
+      }
+    }
+  }
 }
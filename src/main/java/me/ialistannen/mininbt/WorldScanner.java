@@ -0,0 +1,525 @@
+package me.ialistannen.mininbt;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+
+/**
+ * Scans all chunks of the region files in a directory in parallel.
+ *
+ * <p>Every region file is split into ranges of chunks that are decoded by the threads of a {@link
+ * ForkJoinPool}. Matching chunks are handed to the sink on the thread that called {@link
+ * #scan(Path, Predicate, Consumer)}, through a bounded queue: if the sink is slower than the
+ * decoding, the workers wait instead of piling up decoded chunks.</p>
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code WorldScanner scanner = WorldScanner.builder().parallelism(8).build();}
+ * <br>{@code scanner.scan(regionFolder, chunk -> containsBedrock(chunk.getTag()), found::add);}
+ */
+public class WorldScanner {
+
+  private static final Pattern REGION_FILE_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+
+  /**
+   * The amount of chunks a single task decodes before it splits.
+   */
+  private static final int CHUNKS_PER_TASK = 64;
+
+  /**
+   * Tells the consumer that all tasks are done.
+   */
+  private static final ScannedChunk END = new ScannedChunk(null, 0, 0, null);
+
+  private final int parallelism;
+  private final int queueCapacity;
+  private final Consumer<IOException> errorHandler;
+  private final NbtLimits limits;
+
+  private WorldScanner(Builder builder) {
+    this.parallelism = builder.parallelism;
+    this.queueCapacity = builder.queueCapacity;
+    this.errorHandler = builder.errorHandler;
+    this.limits = builder.limits;
+  }
+
+  /**
+   * Creates a new builder with the default settings.
+   *
+   * @return a new builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Scans all region files ({@code r.<x>.<z>.mca}) in a directory.
+   *
+   * <p>The filter is called concurrently on the worker threads, the sink only on the calling
+   * thread. Chunks that can not be read or exceed the {@link Builder#limits(NbtLimits) limits} are
+   * skipped and reported to the error handler.</p>
+   *
+   * @param regionDirectory the directory containing the region files, e.g. {@code world/region}
+   * @param filter the filter selecting the chunks to pass to the sink
+   * @param sink the sink receiving the matching chunks
+   * @return statistics about the scan
+   * @throws IOException if the directory can not be listed
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public ScanStatistics scan(Path regionDirectory, Predicate<ScannedChunk> filter,
+      Consumer<ScannedChunk> sink) throws IOException, InterruptedException {
+    Objects.requireNonNull(regionDirectory, "regionDirectory can not be null!");
+    Objects.requireNonNull(filter, "filter can not be null!");
+    Objects.requireNonNull(sink, "sink can not be null!");
+
+    List<Path> regionFiles = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(regionDirectory, "r.*.*.mca")) {
+      for (Path path : stream) {
+        if (REGION_FILE_NAME.matcher(path.getFileName().toString()).matches()) {
+          regionFiles.add(path);
+        }
+      }
+    }
+
+    Scan scan = new Scan(filter);
+    long start = System.nanoTime();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      ForkJoinTask<Void> root = pool.submit(new ScanAllTask(scan, regionFiles));
+
+      ScannedChunk chunk;
+      while ((chunk = scan.queue.take()) != END) {
+        try {
+          sink.accept(chunk);
+        } catch (RuntimeException | Error e) {
+          scan.cancelled = true;
+          throw e;
+        }
+      }
+
+      try {
+        root.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException("Scan failed", cause);
+      }
+    } finally {
+      scan.cancelled = true;
+      pool.shutdownNow();
+    }
+
+    return new ScanStatistics(
+        regionFiles.size(),
+        scan.chunks.sum(),
+        scan.matches.sum(),
+        scan.failures.sum(),
+        System.nanoTime() - start
+    );
+  }
+
+  /**
+   * The state shared by all tasks of a single scan.
+   */
+  private class Scan {
+
+    private final Predicate<ScannedChunk> filter;
+    private final NbtLimits limits = WorldScanner.this.limits;
+    private final BlockingQueue<ScannedChunk> queue = new ArrayBlockingQueue<>(queueCapacity);
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile boolean cancelled;
+
+    Scan(Predicate<ScannedChunk> filter) {
+      this.filter = filter;
+    }
+
+    /**
+     * Hands a chunk to the consumer, waiting while the queue is full.
+     *
+     * @param chunk the chunk
+     * @throws CancellationException if the scan was cancelled while waiting
+     */
+    void publish(ScannedChunk chunk) {
+      try {
+        while (!queue.offer(chunk, 50, TimeUnit.MILLISECONDS)) {
+          if (cancelled) {
+            throw new CancellationException("The scan was cancelled");
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CancellationException("Interrupted while waiting for the sink");
+      }
+    }
+
+    void reportFailure(IOException exception) {
+      failures.increment();
+      if (errorHandler != null) {
+        errorHandler.accept(exception);
+      }
+    }
+  }
+
+  private static class ScanAllTask extends RecursiveAction {
+
+    private final Scan scan;
+    private final List<Path> regionFiles;
+
+    ScanAllTask(Scan scan, List<Path> regionFiles) {
+      this.scan = scan;
+      this.regionFiles = regionFiles;
+    }
+
+    @Override
+    protected void compute() {
+      try {
+        List<RegionTask> tasks = new ArrayList<>(regionFiles.size());
+        for (Path path : regionFiles) {
+          tasks.add(new RegionTask(scan, path));
+        }
+        invokeAll(tasks);
+      } finally {
+        // always wake up the consumer, even if a task failed
+        if (!scan.cancelled) {
+          scan.publish(END);
+        }
+      }
+    }
+  }
+
+  private static class RegionTask extends RecursiveAction {
+
+    private final Scan scan;
+    private final Path path;
+
+    RegionTask(Scan scan, Path path) {
+      this.scan = scan;
+      this.path = path;
+    }
+
+    @Override
+    protected void compute() {
+      Matcher matcher = REGION_FILE_NAME.matcher(path.getFileName().toString());
+      if (!matcher.matches()) {
+        return;
+      }
+      RegionFile regionFile;
+      try {
+        regionFile = RegionFile.open(path);
+      } catch (IOException e) {
+        scan.reportFailure(e);
+        return;
+      }
+      int regionX = Integer.parseInt(matcher.group(1));
+      int regionZ = Integer.parseInt(matcher.group(2));
+
+      int chunkCount = RegionFile.REGION_SIZE * RegionFile.REGION_SIZE;
+      new ChunkRangeTask(scan, regionFile, regionX, regionZ, 0, chunkCount).invoke();
+    }
+  }
+
+  private static class ChunkRangeTask extends RecursiveAction {
+
+    private final Scan scan;
+    private final RegionFile regionFile;
+    private final int regionX;
+    private final int regionZ;
+    private final int from;
+    private final int to;
+
+    ChunkRangeTask(Scan scan, RegionFile regionFile, int regionX, int regionZ, int from, int to) {
+      this.scan = scan;
+      this.regionFile = regionFile;
+      this.regionX = regionX;
+      this.regionZ = regionZ;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > CHUNKS_PER_TASK) {
+        int middle = (from + to) >>> 1;
+        invokeAll(
+            new ChunkRangeTask(scan, regionFile, regionX, regionZ, from, middle),
+            new ChunkRangeTask(scan, regionFile, regionX, regionZ, middle, to)
+        );
+        return;
+      }
+
+      for (int index = from; index < to && !scan.cancelled; index++) {
+        int x = index % RegionFile.REGION_SIZE;
+        int z = index / RegionFile.REGION_SIZE;
+        if (!regionFile.hasChunk(x, z)) {
+          continue;
+        }
+
+        NBTTagCompound tag;
+        try {
+          tag = regionFile.readChunk(x, z, scan.limits);
+        } catch (IOException e) {
+          scan.reportFailure(new IOException(
+              "Could not read chunk " + x + " " + z + " of " + regionFile.getPath(), e
+          ));
+          continue;
+        }
+        scan.chunks.increment();
+
+        ScannedChunk chunk = new ScannedChunk(
+            regionFile.getPath(),
+            regionX * RegionFile.REGION_SIZE + x,
+            regionZ * RegionFile.REGION_SIZE + z,
+            tag
+        );
+        if (scan.filter.test(chunk)) {
+          scan.matches.increment();
+          scan.publish(chunk);
+        }
+      }
+    }
+  }
+
+  /**
+   * A chunk found by the scanner.
+   */
+  public static class ScannedChunk {
+
+    private final Path regionFile;
+    private final int chunkX;
+    private final int chunkZ;
+    private final NBTTagCompound tag;
+
+    private ScannedChunk(Path regionFile, int chunkX, int chunkZ, NBTTagCompound tag) {
+      this.regionFile = regionFile;
+      this.chunkX = chunkX;
+      this.chunkZ = chunkZ;
+      this.tag = tag;
+    }
+
+    /**
+     * Returns the region file the chunk was read from.
+     *
+     * @return the region file
+     */
+    public Path getRegionFile() {
+      return regionFile;
+    }
+
+    /**
+     * Returns the x coordinate of the chunk in the world.
+     *
+     * @return the chunk x coordinate
+     */
+    public int getChunkX() {
+      return chunkX;
+    }
+
+    /**
+     * Returns the z coordinate of the chunk in the world.
+     *
+     * @return the chunk z coordinate
+     */
+    public int getChunkZ() {
+      return chunkZ;
+    }
+
+    /**
+     * Returns the NBT data of the chunk.
+     *
+     * @return the chunk data
+     */
+    public NBTTagCompound getTag() {
+      return tag;
+    }
+
+    @Override
+    public String toString() {
+      return "ScannedChunk{" +
+          "chunkX=" + chunkX +
+          ", chunkZ=" + chunkZ +
+          ", regionFile=" + regionFile +
+          '}';
+    }
+  }
+
+  /**
+   * Statistics about a finished scan.
+   */
+  public static class ScanStatistics {
+
+    private final int regionCount;
+    private final long chunkCount;
+    private final long matchCount;
+    private final long failedCount;
+    private final long elapsedNanos;
+
+    private ScanStatistics(int regionCount, long chunkCount, long matchCount, long failedCount,
+        long elapsedNanos) {
+      this.regionCount = regionCount;
+      this.chunkCount = chunkCount;
+      this.matchCount = matchCount;
+      this.failedCount = failedCount;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the amount of scanned region files
+     */
+    public int getRegionCount() {
+      return regionCount;
+    }
+
+    /**
+     * @return the amount of chunks that were read successfully
+     */
+    public long getChunkCount() {
+      return chunkCount;
+    }
+
+    /**
+     * @return the amount of chunks passed to the sink
+     */
+    public long getMatchCount() {
+      return matchCount;
+    }
+
+    /**
+     * @return the amount of chunks and region files that could not be read
+     */
+    public long getFailedCount() {
+      return failedCount;
+    }
+
+    /**
+     * @param unit the unit to return the time in
+     * @return the time the scan took
+     */
+    public long getElapsed(TimeUnit unit) {
+      return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the amount of chunks read per second
+     */
+    public double getChunksPerSecond() {
+      if (elapsedNanos == 0) {
+        return 0;
+      }
+      return chunkCount / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+      return "ScanStatistics{" +
+          "regionCount=" + regionCount +
+          ", chunkCount=" + chunkCount +
+          ", matchCount=" + matchCount +
+          ", failedCount=" + failedCount +
+          ", elapsedMillis=" + getElapsed(TimeUnit.MILLISECONDS) +
+          '}';
+    }
+  }
+
+  /**
+   * Configures a {@link WorldScanner}.
+   */
+  public static class Builder {
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = 256;
+    private Consumer<IOException> errorHandler;
+    private NbtLimits limits = NbtLimits.DEFAULT;
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the amount of threads decoding chunks. Defaults to the amount of processors.
+     *
+     * @param parallelism the amount of threads
+     * @return this builder
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public Builder parallelism(int parallelism) {
+      if (parallelism < 1) {
+        throw new IllegalArgumentException("Parallelism must be positive, was " + parallelism);
+      }
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Sets the amount of matching chunks that may wait for the sink before the workers pause.
+     * Defaults to 256.
+     *
+     * @param queueCapacity the maximum amount of waiting chunks
+     * @return this builder
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public Builder queueCapacity(int queueCapacity) {
+      if (queueCapacity < 1) {
+        throw new IllegalArgumentException("Capacity must be positive, was " + queueCapacity);
+      }
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Sets the handler for chunks and region files that can not be read. It is called on the worker
+     * threads and must be thread safe. Failures are only counted by default.
+     *
+     * @param errorHandler the error handler
+     * @return this builder
+     */
+    public Builder errorHandler(Consumer<IOException> errorHandler) {
+      this.errorHandler = Objects.requireNonNull(errorHandler, "errorHandler can not be null!");
+      return this;
+    }
+
+    /**
+     * Sets the limits every chunk is decoded with. Chunks exceeding them are reported to the error
+     * handler as failures, instead of filling the heap of the scan. Defaults to {@link
+     * NbtLimits#DEFAULT}.
+     *
+     * @param limits the limits
+     * @return this builder
+     */
+    public Builder limits(NbtLimits limits) {
+      this.limits = Objects.requireNonNull(limits, "limits can not be null!");
+      return this;
+    }
+
+    /**
+     * Creates the scanner.
+     *
+     * @return the created scanner
+     */
+    public WorldScanner build() {
+      return new WorldScanner(this);
+    }
+  }
+}
@@ -0,0 +1,295 @@
+package me.ialistannen.mininbt.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An opt-in registry of metrics about the work MiniNBT does.
+ *
+ * <p>Recording is disabled by default. While it is, every instrumented call only checks a single
+ * flag. Enable it with {@link #setEnabled(boolean)} and read the values with {@link
+ * #snapshot()}.</p>
+ *
+ * <p>Every metric is a {@link Histogram}. The library records</p>
+ * <ul>
+ *   <li>{@code reflection.invoke.<Class>#<method>(<parameters>)}: the nanoseconds of each call
+ *   through a {@link me.ialistannen.mininbt.reflection.FluentReflection.FluentMethod}</li>
+ *   <li>{@code nbt.toNBT.*} and {@code nbt.fromNBT.*}: the nanoseconds, tag nodes and serialized
+ *   bytes of each tree converted to or from the tags of the backend</li>
+ *   <li>{@code util.item.*}, {@code util.entity.*} and {@code util.tile.*}: the nanoseconds of each
+ *   call to the item, entity and tile entity utilities</li>
+ * </ul>
+ *
+ * <p><br><b>Example:</b>
+ * <br>{@code NbtMetrics.setEnabled(true);}
+ * <br>{@code ...}
+ * <br>{@code NbtMetrics.snapshot().forEach((name, it) -> log.info(name + ": " + it));}
+ */
+public class NbtMetrics {
+
+  /**
+   * The start time returned by {@link #startTimer()} while recording is disabled.
+   */
+  private static final long NOT_STARTED = Long.MIN_VALUE;
+
+  private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+  private static volatile boolean enabled;
+
+  /**
+   * Checks whether metrics are recorded.
+   *
+   * @return true if metrics are recorded
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Enables or disables recording. The recorded values are kept while it is disabled.
+   *
+   * @param enabled whether to record metrics
+   */
+  public static void setEnabled(boolean enabled) {
+    NbtMetrics.enabled = enabled;
+  }
+
+  /**
+   * Returns the histogram with a name, registering it if it does not exist yet.
+   *
+   * @param name the name of the histogram
+   * @return the histogram
+   * @throws NullPointerException if name is null
+   */
+  public static Histogram histogram(String name) {
+    Objects.requireNonNull(name, "name can not be null!");
+    return HISTOGRAMS.computeIfAbsent(name, Histogram::new);
+  }
+
+  /**
+   * Returns the current time for {@link Histogram#recordSince(long)}, if recording is enabled.
+   *
+   * @return the current time in nanoseconds or a marker if recording is disabled
+   */
+  public static long startTimer() {
+    return enabled ? System.nanoTime() : NOT_STARTED;
+  }
+
+  /**
+   * Returns the values of all registered histograms. Values recorded concurrently may be only
+   * partially included.
+   *
+   * @return the snapshot of each histogram, sorted by name
+   */
+  public static Map<String, HistogramSnapshot> snapshot() {
+    Map<String, HistogramSnapshot> snapshot = new TreeMap<>();
+    for (Histogram histogram : HISTOGRAMS.values()) {
+      snapshot.put(histogram.getName(), histogram.snapshot());
+    }
+    return Collections.unmodifiableMap(snapshot);
+  }
+
+  /**
+   * Resets all registered histograms. The histograms stay registered.
+   */
+  public static void reset() {
+    for (Histogram histogram : HISTOGRAMS.values()) {
+      histogram.reset();
+    }
+  }
+
+  /**
+   * A lock free histogram of non negative values.
+   *
+   * <p>Values are counted in buckets with power of two bounds, so percentiles are accurate up to a
+   * factor of two, while recording costs a few uncontended additions.</p>
+   */
+  public static class Histogram {
+
+    /**
+     * Bucket {@code i} counts values below {@code 2^i}, that are not counted by a smaller one.
+     */
+    private static final int BUCKET_COUNT = 64;
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+
+    private Histogram(String name) {
+      this.name = name;
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    /**
+     * Returns the name of this histogram.
+     *
+     * @return the name
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Records a value, if recording is enabled. Negative values are recorded as zero.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+      if (enabled) {
+        recordAlways(value);
+      }
+    }
+
+    /**
+     * Records the nanoseconds passed since a start time.
+     *
+     * @param startNanos the start time returned by {@link NbtMetrics#startTimer()}. Nothing is
+     *     recorded if recording was disabled when it was taken.
+     */
+    public void recordSince(long startNanos) {
+      if (startNanos != NOT_STARTED) {
+        recordAlways(System.nanoTime() - startNanos);
+      }
+    }
+
+    private void recordAlways(long value) {
+      long clamped = Math.max(0, value);
+      count.increment();
+      sum.add(clamped);
+      max.accumulate(clamped);
+      buckets[Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(clamped))].increment();
+    }
+
+    private void reset() {
+      count.reset();
+      sum.reset();
+      max.reset();
+      for (LongAdder bucket : buckets) {
+        bucket.reset();
+      }
+    }
+
+    private HistogramSnapshot snapshot() {
+      long[] bucketCounts = new long[buckets.length];
+      for (int i = 0; i < buckets.length; i++) {
+        bucketCounts[i] = buckets[i].sum();
+      }
+      return new HistogramSnapshot(count.sum(), sum.sum(), max.get(), bucketCounts);
+    }
+  }
+
+  /**
+   * The values of a {@link Histogram} at one point in time.
+   */
+  public static class HistogramSnapshot {
+
+    private final long count;
+    private final long sum;
+    private final long max;
+    private final long[] buckets;
+
+    private HistogramSnapshot(long count, long sum, long max, long[] buckets) {
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+      this.buckets = buckets;
+    }
+
+    /**
+     * Returns the amount of recorded values.
+     *
+     * @return the amount of recorded values
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     *
+     * @return the sum of all recorded values
+     */
+    public long getSum() {
+      return sum;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return the largest recorded value or 0 if there is none
+     */
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * Returns the average of the recorded values.
+     *
+     * @return the average or 0 if there is none
+     */
+    public double getMean() {
+      return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns an upper bound for a percentile of the recorded values. It is less than twice the
+     * actual percentile and never larger than {@link #getMax()}.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound or 0 if there are no values
+     * @throws IllegalArgumentException if the percentile is out of range
+     */
+    public long getPercentile(double percentile) {
+      if (percentile < 0 || percentile > 100) {
+        throw new IllegalArgumentException("Percentile out of range: " + percentile);
+      }
+      long total = 0;
+      for (long bucket : buckets) {
+        total += bucket;
+      }
+      long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+
+      long seen = 0;
+      for (int i = 0; i < buckets.length; i++) {
+        seen += buckets[i];
+        if (seen >= rank) {
+          long upperBound = i == 0 ? 0 : (1L << i) - 1;
+          return Math.min(upperBound, max);
+        }
+      }
+      return 0;
+    }
+
+    /**
+     * Interprets the sum as nanoseconds and returns it in another unit.
+     *
+     * @param unit the unit to convert to
+     * @return the sum in the given unit
+     */
+    public long getSum(TimeUnit unit) {
+      return unit.convert(sum, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+      return "HistogramSnapshot{" +
+          "count=" + count +
+          ", sum=" + sum +
+          ", mean=" + getMean() +
+          ", p50=" + getPercentile(50) +
+          ", p99=" + getPercentile(99) +
+          ", max=" + max +
+          '}';
+    }
+  }
+}
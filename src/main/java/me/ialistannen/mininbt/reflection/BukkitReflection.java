@@ -34,6 +34,15 @@ public class BukkitReflection {
   // <editor-fold desc="Version Validation Methods">
   // ==== VERSION VALIDATION METHODS ===
 
+  /**
+   * Returns the version of the server's implementation package, e.g. {@code v1_14_R1}
+   *
+   * @return The version of the server's implementation package
+   */
+  public static String getServerVersion() {
+    return SERVER_VERSION;
+  }
+
   /**
    * Returns the major version of the server
    *
@@ -99,6 +108,17 @@ public class BukkitReflection {
       this.nameResolver = nameResolver;
     }
 
+    /**
+     * Creates a lookup resolving names with a custom function, e.g. to look up stand-ins for the
+     * NMS classes.
+     *
+     * @param nameResolver converts a simple name to the fully qualified name of a class
+     * @return the created lookup
+     */
+    public static ClassLookup of(Function<String, String> nameResolver) {
+      return new ClassLookup(nameResolver);
+    }
+
     /**
      * Returns a class with the given mame.
      *
@@ -9,6 +9,8 @@ import java.lang.reflect.Method;
 import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import me.ialistannen.mininbt.metrics.NbtMetrics;
+import me.ialistannen.mininbt.metrics.NbtMetrics.Histogram;
 import me.ialistannen.mininbt.reflection.seeking.ConstructorSeeker;
 import me.ialistannen.mininbt.reflection.seeking.FieldSeeker;
 import me.ialistannen.mininbt.reflection.seeking.MethodSeeker;
@@ -185,6 +187,11 @@ public abstract class FluentReflection<T extends FluentReflection<T>> {
    */
   public static class FluentMethod extends FluentInvokable<FluentMethod> {
 
+    /**
+     * The histogram of the invocation times, created on the first invocation with metrics enabled.
+     */
+    private volatile Histogram invocationTimes;
+
     /**
      * Creates a new fluent method.
      *
@@ -213,14 +220,42 @@ public abstract class FluentReflection<T extends FluentReflection<T>> {
      * @return the return value
      */
     public <R> ReflectiveResult<R> invoke(Object handle, Object... arguments) {
-      return execute(() -> {
-        Method underlying = getUnderlying();
-        underlying.setAccessible(true);
+      long start = NbtMetrics.startTimer();
+      try {
+        return execute(() -> {
+          Method underlying = getUnderlying();
+          underlying.setAccessible(true);
+
+          @SuppressWarnings("unchecked")
+          R r = (R) underlying.invoke(handle, arguments);
+          return r;
+        });
+      } finally {
+        if (NbtMetrics.isEnabled()) {
+          getInvocationTimes().recordSince(start);
+        }
+      }
+    }
 
-        @SuppressWarnings("unchecked")
-        R r = (R) underlying.invoke(handle, arguments);
-        return r;
-      });
+    private Histogram getInvocationTimes() {
+      Histogram histogram = invocationTimes;
+      if (histogram == null) {
+        StringBuilder name = new StringBuilder("reflection.invoke.")
+            .append(getUnderlying().getDeclaringClass().getSimpleName())
+            .append('#')
+            .append(getName())
+            .append('(');
+        Class<?>[] parameterTypes = getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+          if (i > 0) {
+            name.append(',');
+          }
+          name.append(parameterTypes[i].getSimpleName());
+        }
+        histogram = NbtMetrics.histogram(name.append(')').toString());
+        invocationTimes = histogram;
+      }
+      return histogram;
     }
 
     /**
@@ -0,0 +1,86 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class CompactStringMapTest {
+
+  @Test
+  public void behavesLikeHashMap() {
+    Random random = new Random(42);
+    CompactStringMap<Integer> compact = new CompactStringMap<>();
+    Map<String, Integer> reference = new HashMap<>();
+
+    for (int i = 0; i < 20_000; i++) {
+      // a small key space keeps the map oscillating around the promotion threshold
+      String key = "key" + random.nextInt(i < 10_000 ? 12 : 200);
+      switch (random.nextInt(3)) {
+        case 0:
+        case 1:
+          assertEquals(reference.put(key, i), compact.put(key, i));
+          break;
+        default:
+          assertEquals(reference.remove(key), compact.remove(key));
+          break;
+      }
+      assertEquals(reference.size(), compact.size());
+    }
+
+    assertEquals(reference, compact);
+    assertEquals(compact, reference);
+    assertEquals(reference.hashCode(), compact.hashCode());
+  }
+
+  @Test
+  public void iteratorRemovesInBothForms() {
+    for (int size : new int[]{CompactStringMap.DENSE_LIMIT, 100}) {
+      CompactStringMap<Integer> compact = new CompactStringMap<>();
+      Map<String, Integer> reference = new HashMap<>();
+      for (int i = 0; i < size; i++) {
+        compact.put("key" + i, i);
+        reference.put("key" + i, i);
+      }
+
+      Iterator<Entry<String, Integer>> iterator = compact.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Entry<String, Integer> entry = iterator.next();
+        if (entry.getValue() % 2 == 0) {
+          iterator.remove();
+          reference.remove(entry.getKey());
+        } else {
+          int negated = -entry.getValue();
+          entry.setValue(negated);
+          reference.put(entry.getKey(), negated);
+        }
+      }
+
+      assertEquals(reference, compact);
+    }
+  }
+
+  @Test
+  public void copyIsIndependent() {
+    CompactStringMap<Integer> original = new CompactStringMap<>();
+    original.put("a", 1);
+    CompactStringMap<Integer> copy = new CompactStringMap<>(original);
+    copy.put("b", 2);
+
+    assertFalse(original.containsKey("b"));
+    assertEquals(2, copy.size());
+  }
+
+  @Test
+  public void rejectsNulls() {
+    CompactStringMap<Integer> compact = new CompactStringMap<>();
+    assertThrows(NullPointerException.class, () -> compact.put(null, 1));
+    assertThrows(NullPointerException.class, () -> compact.put("a", null));
+  }
+}
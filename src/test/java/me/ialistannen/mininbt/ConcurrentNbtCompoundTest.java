@@ -0,0 +1,139 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagInt;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import org.junit.jupiter.api.Test;
+
+class ConcurrentNbtCompoundTest {
+
+  @Test
+  public void copiesAndFreezesTheInitialCompound() {
+    NBTTagCompound initial = new NBTTagCompound();
+    initial.setString("name", "Steve");
+
+    ConcurrentNbtCompound compound = new ConcurrentNbtCompound(initial);
+    initial.setString("name", "Alex");
+
+    assertTrue(compound.snapshot().isFrozen());
+    assertEquals("Steve", compound.snapshot().getString("name"));
+  }
+
+  @Test
+  public void snapshotsStayUnchanged() {
+    ConcurrentNbtCompound compound = new ConcurrentNbtCompound();
+    compound.set("a", new NBTTagInt(1));
+
+    NBTTagCompound snapshot = compound.snapshot();
+    compound.set("b", new NBTTagInt(2));
+    compound.remove("a");
+
+    assertEquals(1, snapshot.getInt("a"));
+    assertFalse(snapshot.hasKey("b"));
+    assertFalse(compound.hasKey("a"));
+    assertEquals(2, compound.snapshot().getInt("b"));
+  }
+
+  @Test
+  public void computesAndMerges() {
+    ConcurrentNbtCompound compound = new ConcurrentNbtCompound();
+
+    assertEquals(1, compound.computeInt("kills", kills -> kills + 1));
+    assertEquals(2, compound.computeInt("kills", kills -> kills + 1));
+    assertEquals(5L, compound.computeLong("time", time -> time + 5));
+    assertEquals(0.5, compound.computeDouble("health", health -> health + 0.5));
+
+    INBTBase merged = compound.merge(
+        "name", new NBTTagString("a"),
+        (present, value) -> new NBTTagString(
+            ((NBTTagString) present).getString() + ((NBTTagString) value).getString()
+        )
+    );
+    assertEquals("a", ((NBTTagString) merged).getString());
+    compound.merge(
+        "name", new NBTTagString("b"),
+        (present, value) -> new NBTTagString(
+            ((NBTTagString) present).getString() + ((NBTTagString) value).getString()
+        )
+    );
+    assertEquals("ab", compound.snapshot().getString("name"));
+
+    assertNull(compound.compute("name", value -> null));
+    assertFalse(compound.hasKey("name"));
+  }
+
+  @Test
+  public void updatesSeveralKeysAtOnce() {
+    ConcurrentNbtCompound compound = new ConcurrentNbtCompound();
+
+    NBTTagCompound updated = compound.update(
+        it -> it.with("x", new NBTTagInt(1)).with("z", new NBTTagInt(2))
+    );
+
+    assertTrue(updated.isFrozen());
+    assertEquals(updated, compound.snapshot());
+    assertEquals(2, compound.snapshot().getInt("z"));
+  }
+
+  @Test
+  public void convertsSnapshots() {
+    NBTWrappers.setBackend(new InMemoryNbtBackend());
+    try {
+      ConcurrentNbtCompound compound = new ConcurrentNbtCompound();
+      compound.set("a", new NBTTagInt(1));
+
+      assertEquals(compound.snapshot(), INBTBase.fromNBT(compound.toNBT()));
+    } finally {
+      NBTWrappers.setBackend(null);
+    }
+  }
+
+  @Test
+  public void keepsAllConcurrentUpdates() throws Exception {
+    ConcurrentNbtCompound compound = new ConcurrentNbtCompound();
+    int threads = 4;
+    int increments = 2000;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        String ownKey = "thread-" + i;
+        futures.add(executor.submit(() -> {
+          start.await();
+          for (int j = 0; j < increments; j++) {
+            compound.computeInt("shared", value -> value + 1);
+            compound.computeInt(ownKey, value -> value + 1);
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    NBTTagCompound snapshot = compound.snapshot();
+    assertEquals(threads * increments, snapshot.getInt("shared"));
+    for (int i = 0; i < threads; i++) {
+      assertEquals(increments, snapshot.getInt("thread-" + i));
+    }
+  }
+}
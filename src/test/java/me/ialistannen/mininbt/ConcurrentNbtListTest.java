@@ -0,0 +1,58 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import me.ialistannen.mininbt.NBTWrappers.NBTTagInt;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import org.junit.jupiter.api.Test;
+
+class ConcurrentNbtListTest {
+
+  @Test
+  public void addsOnlyMatchingTypes() {
+    ConcurrentNbtList list = new ConcurrentNbtList();
+
+    assertTrue(list.add(new NBTTagString("a")));
+    assertFalse(list.add(new NBTTagInt(1)));
+    assertTrue(list.add(new NBTTagString("b")));
+
+    assertEquals(2, list.size());
+    assertTrue(list.get(0).isFrozen());
+  }
+
+  @Test
+  public void snapshotsStayUnchanged() {
+    NBTTagList initial = new NBTTagList();
+    initial.add(new NBTTagInt(1));
+    ConcurrentNbtList list = new ConcurrentNbtList(initial);
+
+    NBTTagList snapshot = list.snapshot();
+    list.add(new NBTTagInt(2));
+    list.remove(0);
+
+    assertEquals(1, snapshot.size());
+    assertEquals(new NBTTagInt(1), snapshot.get(0));
+    assertEquals(new NBTTagInt(2), list.get(0));
+  }
+
+  @Test
+  public void computesElements() {
+    ConcurrentNbtList list = new ConcurrentNbtList();
+    list.add(new NBTTagInt(1));
+    list.add(new NBTTagInt(2));
+
+    list.compute(1, value -> new NBTTagInt(((NBTTagInt) value).getAsInt() * 10));
+    NBTTagList updated = list.update(it -> it.withAdded(new NBTTagInt(3)));
+
+    assertEquals(new NBTTagInt(20), list.get(1));
+    assertEquals(3, updated.size());
+    assertThrows(
+        IllegalArgumentException.class, () -> list.compute(0, value -> new NBTTagString(""))
+    );
+    assertThrows(IndexOutOfBoundsException.class, () -> list.compute(5, value -> value));
+  }
+}
@@ -0,0 +1,152 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagInt;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import me.ialistannen.mininbt.NbtParser.NbtParseException;
+import org.junit.jupiter.api.Test;
+
+class InMemoryNbtBackendTest {
+
+  @Test
+  public void convertsAllTagTypes() {
+    NBTTagCompound compound = createCompound();
+    NbtBackend backend = new InMemoryNbtBackend();
+
+    Object converted = compound.toNBT(backend);
+
+    assertEquals(InMemoryNbtBackend.NBTTagCompound.class, converted.getClass());
+    assertEquals(compound, INBTBase.fromNBT(converted, backend));
+  }
+
+  @Test
+  public void convertsThroughTheReflectiveLookups() {
+    NBTTagCompound compound = createCompound();
+    NbtBackend backend = new ReflectiveNbtBackend(InMemoryNbtBackend.classLookup());
+
+    Object converted = compound.toNBT(backend);
+
+    assertEquals(InMemoryNbtBackend.NBTTagCompound.class, converted.getClass());
+    assertEquals(compound, INBTBase.fromNBT(converted, backend));
+  }
+
+  @Test
+  public void usesTheBackendThatIsSet() {
+    NBTWrappers.setBackend(new InMemoryNbtBackend());
+    try {
+      NBTTagCompound compound = createCompound();
+
+      assertEquals(compound, INBTBase.fromNBT(compound.toNBT()));
+    } finally {
+      NBTWrappers.setBackend(null);
+    }
+  }
+
+  @Test
+  public void parsesWithoutAServer() throws NbtParseException {
+    NbtBackend[] backends = {
+        new InMemoryNbtBackend(), new ReflectiveNbtBackend(InMemoryNbtBackend.classLookup())
+    };
+    for (NbtBackend backend : backends) {
+      NBTWrappers.setBackend(backend);
+      try {
+        NBTTagCompound compound = createCompound();
+
+        assertEquals(compound, NbtParser.parse(compound.toNBT().toString()));
+        assertThrows(NbtParseException.class, () -> NbtParser.parse("{unclosed:1"));
+      } finally {
+        NBTWrappers.setBackend(null);
+      }
+    }
+  }
+
+  @Test
+  public void streamsWithoutAServer() throws IOException {
+    NbtBackend[] backends = {
+        new InMemoryNbtBackend(), new ReflectiveNbtBackend(InMemoryNbtBackend.classLookup())
+    };
+    for (NbtBackend backend : backends) {
+      NBTWrappers.setBackend(backend);
+      try {
+        NBTTagCompound compound = createCompound();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        StreamNBTUtil.writeToStream(compound, outputStream);
+        byte[] written = outputStream.toByteArray();
+
+        assertEquals(compound, StreamNBTUtil.fromStream(new ByteArrayInputStream(written)));
+        assertEquals(compound, NbtCodec.readCompressed(new ByteArrayInputStream(written)));
+      } finally {
+        NBTWrappers.setBackend(null);
+      }
+    }
+  }
+
+  @Test
+  public void navigatesPathsWithoutAServer() {
+    NBTWrappers.setBackend(new InMemoryNbtBackend());
+    try {
+      Object root = createCompound().toNBT();
+
+      assertEquals(
+          new NBTTagString("minecraft:sharpness"),
+          NbtPath.compile("tag.Enchantments[{lvl:5s}].id").getFromNms(root)
+      );
+      assertNull(NbtPath.compile("tag.missing").getFromNms(root));
+    } finally {
+      NBTWrappers.setBackend(null);
+    }
+  }
+
+  @Test
+  public void dropsUnsupportedTags() {
+    assertNull(INBTBase.fromNBT("not a tag", new InMemoryNbtBackend()));
+  }
+
+  private static NBTTagCompound createCompound() {
+    NBTTagCompound enchantment = new NBTTagCompound();
+    enchantment.setString("id", "minecraft:sharpness");
+    enchantment.setShort("lvl", (short) 5);
+    NBTTagList enchantments = new NBTTagList();
+    enchantments.add(enchantment);
+
+    NBTTagList lore = new NBTTagList();
+    lore.add(new NBTTagString("A \"quoted\" line"));
+    lore.add(new NBTTagString("C:\\path, with a comma"));
+
+    NBTTagCompound display = new NBTTagCompound();
+    display.set("Lore", lore);
+
+    NBTTagCompound tag = new NBTTagCompound();
+    tag.set("Enchantments", enchantments);
+    tag.set("display", display);
+    tag.set("empty", new NBTTagList());
+    tag.setInt("Damage", 117);
+    tag.setLong("created", 1571487013000L);
+    tag.setFloat("chance", 0.085f);
+    tag.setDouble("amount", -2.4000000953674316);
+    tag.setByteArray("bytes", new byte[]{1, -2, 3});
+    tag.setIntArray("ints", new int[]{Integer.MIN_VALUE, 0, Integer.MAX_VALUE});
+    tag.setLongArray("longs", new long[]{Long.MIN_VALUE, 0, Long.MAX_VALUE});
+
+    NBTTagList numbers = new NBTTagList();
+    numbers.add(new NBTTagInt(1));
+    numbers.add(new NBTTagInt(-1));
+
+    NBTTagCompound compound = new NBTTagCompound();
+    compound.setString("id", "minecraft:diamond_sword");
+    compound.setByte("Count", (byte) 1);
+    compound.set("tag", tag);
+    compound.set("numbers", numbers);
+    return compound;
+  }
+}
@@ -0,0 +1,83 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import me.ialistannen.mininbt.NbtEvents.Kind;
+import org.junit.jupiter.api.Test;
+
+class JfrNbtEventsTest {
+
+  @Test
+  public void startsNoEventsWithoutARecording() {
+    assertNull(NbtEvents.begin(Kind.PARSE));
+  }
+
+  @Test
+  public void recordsConversionsAndStreams() throws IOException {
+    NBTWrappers.setBackend(new InMemoryNbtBackend());
+    Path file = Files.createTempFile("mininbt", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("mininbt.Conversion").withoutThreshold();
+      recording.enable("mininbt.StreamRead").withoutThreshold();
+      recording.enable("mininbt.StreamWrite").withoutThreshold();
+      recording.start();
+
+      NBTTagList list = new NBTTagList();
+      list.add(new NBTTagString("a"));
+      NBTTagCompound compound = new NBTTagCompound();
+      compound.set("list", list);
+      compound.setInt("int", 1);
+
+      compound.toNBT();
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      NbtCodec.writeCompressed(compound, outputStream);
+      NbtCodec.readCompressed(new ByteArrayInputStream(outputStream.toByteArray()));
+
+      recording.stop();
+      recording.dump(file);
+
+      List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+          .filter(it -> it.getEventType().getName().startsWith("mininbt."))
+          .collect(Collectors.toList());
+      assertEquals(3, events.size());
+
+      RecordedEvent conversion = find(events, "mininbt.Conversion");
+      assertEquals("toNBT", conversion.getString("direction"));
+      assertEquals("api", conversion.getString("source"));
+      assertEquals(4, conversion.getLong("nodeCount"));
+      assertEquals(compound.serializedSize(), conversion.getLong("byteSize"));
+
+      RecordedEvent read = find(events, "mininbt.StreamRead");
+      assertEquals("stream", read.getString("source"));
+      assertEquals(4, read.getLong("nodeCount"));
+      assertTrue(read.getDuration().toNanos() >= 0);
+
+      assertEquals("stream", find(events, "mininbt.StreamWrite").getString("source"));
+    } finally {
+      Files.deleteIfExists(file);
+      NBTWrappers.setBackend(null);
+    }
+  }
+
+  private static RecordedEvent find(List<RecordedEvent> events, String name) {
+    return events.stream()
+        .filter(it -> it.getEventType().getName().equals(name))
+        .findFirst()
+        .orElseThrow(() -> new AssertionError("No " + name + " event"));
+  }
+}
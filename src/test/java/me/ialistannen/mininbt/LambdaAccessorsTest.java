@@ -0,0 +1,92 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import me.ialistannen.mininbt.InMemoryNbtBackend.NBTTagByte;
+import me.ialistannen.mininbt.InMemoryNbtBackend.NBTTagCompound;
+import me.ialistannen.mininbt.InMemoryNbtBackend.NBTTagFloat;
+import me.ialistannen.mininbt.InMemoryNbtBackend.NBTTagString;
+import me.ialistannen.mininbt.LambdaAccessors.ByteCreator;
+import me.ialistannen.mininbt.LambdaAccessors.CompoundSetter;
+import me.ialistannen.mininbt.reflection.ReflectionException;
+import org.junit.jupiter.api.Test;
+
+class LambdaAccessorsTest {
+
+  @Test
+  public void bindsPublicMembersDirectly() throws NoSuchMethodException {
+    ByteCreator creator = LambdaAccessors.implement(
+        ByteCreator.class, NBTTagByte.class.getConstructor(byte.class)
+    );
+    ToIntFunction<Object> getter = LambdaAccessors.implement(
+        ToIntFunction.class, NBTTagByte.class.getMethod("asByte")
+    );
+
+    assertFalse(Proxy.isProxyClass(creator.getClass()));
+    assertFalse(Proxy.isProxyClass(getter.getClass()));
+    assertEquals(-7, getter.applyAsInt(creator.create((byte) -7)));
+  }
+
+  @Test
+  public void widensAndDropsReturnValues() throws NoSuchMethodException {
+    ToDoubleFunction<Object> getter = LambdaAccessors.implement(
+        ToDoubleFunction.class, NBTTagFloat.class.getMethod("asFloat")
+    );
+    CompoundSetter setter = LambdaAccessors.implement(
+        CompoundSetter.class,
+        NBTTagCompound.class.getMethod("set", String.class, InMemoryNbtBackend.NBTBase.class)
+    );
+    Supplier<Object> compoundCreator = LambdaAccessors.implement(
+        Supplier.class, NBTTagCompound.class.getConstructor()
+    );
+
+    NBTTagCompound compound = (NBTTagCompound) compoundCreator.get();
+    setter.set(compound, "chance", new NBTTagFloat(0.1f));
+
+    assertEquals(0.1f, (float) getter.applyAsDouble(compound.get("chance")));
+  }
+
+  @Test
+  public void bindsNonPublicMembersThroughAProxy() throws NoSuchMethodException {
+    Function<Object, String> function = LambdaAccessors.implement(
+        Function.class, Hidden.class.getDeclaredMethod("describe")
+    );
+
+    assertTrue(Proxy.isProxyClass(function.getClass()));
+    assertEquals("hidden", function.apply(new Hidden()));
+  }
+
+  @Test
+  public void readsPrivateFields() throws NoSuchFieldException {
+    Function<Object, String> getter = LambdaAccessors.getter(
+        NBTTagString.class.getDeclaredField("data")
+    );
+
+    assertEquals("value", getter.apply(new NBTTagString("value")));
+  }
+
+  @Test
+  public void rejectsMismatchingMembers() throws NoSuchMethodException {
+    assertThrows(
+        ReflectionException.class,
+        () -> LambdaAccessors.implement(
+            ByteCreator.class, NBTTagString.class.getConstructor(String.class)
+        )
+    );
+  }
+
+  private static class Hidden {
+
+    private String describe() {
+      return "hidden";
+    }
+  }
+}
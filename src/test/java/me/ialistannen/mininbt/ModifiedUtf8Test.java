@@ -0,0 +1,60 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class ModifiedUtf8Test {
+
+  @Test
+  public void matchesTheJdkEncoding() throws IOException {
+    for (String string : Arrays.asList(
+        "", "minecraft:diamond_sword", "nul\u0000char", "\u00e4\u00f6\u00fc", "\u20ac 5",
+        "\ud83d\ude00 emoji", "mixed ascii and \u00df at the end\u00df"
+    )) {
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      new DataOutputStream(expected).writeUTF(string);
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      ModifiedUtf8.write(string, new DataOutputStream(actual));
+
+      assertArrayEquals(expected.toByteArray(), actual.toByteArray(), string);
+      assertEquals(expected.size() - 2, ModifiedUtf8.encodedLength(string), string);
+      assertEquals(string, ModifiedUtf8.read(input(expected.toByteArray())), string);
+    }
+  }
+
+  @Test
+  public void poolsKeysWithoutDecodingThemAgain() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new DataOutputStream(bytes).writeUTF("CustomModelData");
+
+    String first = ModifiedUtf8.readKey(input(bytes.toByteArray()));
+    String second = ModifiedUtf8.readKey(input(bytes.toByteArray()));
+
+    assertEquals("CustomModelData", first);
+    assertSame(first, second);
+  }
+
+  @Test
+  public void rejectsMalformedInput() {
+    byte[] truncated = {0, 2, (byte) 0xE2, (byte) 0x82};
+    byte[] badContinuation = {0, 2, (byte) 0xC3, 0x41};
+
+    assertThrows(UTFDataFormatException.class, () -> ModifiedUtf8.read(input(truncated)));
+    assertThrows(UTFDataFormatException.class, () -> ModifiedUtf8.read(input(badContinuation)));
+  }
+
+  private static DataInputStream input(byte[] bytes) {
+    return new DataInputStream(new ByteArrayInputStream(bytes));
+  }
+}
@@ -1,10 +1,18 @@
 package me.ialistannen.mininbt;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Map;
 import me.ialistannen.mininbt.NBTWrappers.INBTBase;
 import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
 import me.ialistannen.mininbt.NBTWrappers.NBTTagInt;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagIntArray;
 import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
 import me.ialistannen.mininbt.NBTWrappers.NBTTagLong;
 import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
@@ -40,4 +48,226 @@ class NBTWrappersTest {
         deserialized
     );
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testCompoundRoundTripInMemory() {
+    NBTWrappers.setBackend(new InMemoryNbtBackend());
+    try {
+      NBTTagCompound compound = new NBTTagCompound();
+      compound.setString("Hey", "You");
+      compound.setShort("Byte", (short) 50);
+      compound.setInt("int", -2000);
+      compound.setLong("long", 5009999998L);
+      compound.setFloat("float", (float) 1.43);
+      compound.setDouble("double", 1.535);
+      compound.setIntArray("int array", new int[]{2, -200, 50, 2});
+      compound.setByteArray("byte array", new byte[]{20, -5, 127});
+      compound.setLongArray("long array", new long[]{Long.MIN_VALUE, 0, Long.MAX_VALUE});
+      NBTTagList list = new NBTTagList();
+      list.add(new NBTTagString("A string"));
+      list.add(new NBTTagInt(200));
+      list.add(new NBTTagLong(-200000009999L));
+      compound.set("list", list);
+
+      Object serialized = compound.toNBT();
+      INBTBase deserialized = NBTTagCompound.fromNBT(serialized);
+
+      assertEquals(
+          compound,
+          deserialized
+      );
+    } finally {
+      NBTWrappers.setBackend(null);
+    }
+  }
+
+  @Test
+  public void cachedHashFollowsNestedModifications() {
+    NBTTagCompound inner = new NBTTagCompound();
+    inner.setString("Name", "First");
+    NBTTagCompound outer = new NBTTagCompound();
+    outer.set("display", inner);
+
+    NBTTagCompound other = new NBTTagCompound();
+    NBTTagCompound otherInner = new NBTTagCompound();
+    otherInner.setString("Name", "First");
+    other.set("display", otherInner);
+
+    assertEquals(other.hashCode(), outer.hashCode());
+    assertEquals(other, outer);
+
+    inner.setString("Name", "Second");
+    assertNotEquals(other.hashCode(), outer.hashCode());
+    assertNotEquals(other, outer);
+
+    ((NBTTagString) inner.get("Name")).setString("First");
+    assertEquals(other.hashCode(), outer.hashCode());
+    assertEquals(other, outer);
+
+    NBTTagIntArray array = new NBTTagIntArray(new int[]{1, 2, 3});
+    outer.set("array", array);
+    other.set("array", new NBTTagIntArray(new int[]{1, 2, 3}));
+    assertEquals(other.hashCode(), outer.hashCode());
+
+    array.getValue()[0] = 20;
+    assertNotEquals(other.hashCode(), outer.hashCode());
+    assertNotEquals(other, outer);
+
+    // edits through a raw map handed out earlier are seen as well
+    Map<String, INBTBase> rawMap = other.getRawMap();
+    other.hashCode();
+    rawMap.put("array", new NBTTagIntArray(new int[]{20, 2, 3}));
+    assertEquals(other.hashCode(), outer.hashCode());
+    assertEquals(other, outer);
+  }
+
+  @Test
+  public void frozenTreesShareUnchangedTags() {
+    NBTTagCompound display = new NBTTagCompound();
+    display.setString("Name", "Template");
+    NBTTagList lore = new NBTTagList();
+    lore.add(new NBTTagString("Line"));
+    display.set("Lore", lore);
+    NBTTagCompound template = new NBTTagCompound();
+    template.set("display", display);
+    template.setInt("CustomModelData", 1);
+    template.freeze();
+
+    assertTrue(lore.isFrozen());
+    assertThrows(UnsupportedOperationException.class, () -> display.setString("Name", "Other"));
+    assertThrows(UnsupportedOperationException.class, () -> lore.getRawList().clear());
+    assertThrows(IllegalStateException.class, () -> new NBTTagCompound().with("a", lore));
+
+    NBTTagCompound variant = template.with("CustomModelData", new NBTTagInt(2));
+
+    assertEquals(1, template.getInt("CustomModelData"));
+    assertEquals(2, variant.getInt("CustomModelData"));
+    assertSame(template.get("display"), variant.get("display"));
+
+    NBTTagList longerLore = lore.withAdded(new NBTTagString("Second"));
+    assertEquals(1, lore.size());
+    assertEquals(2, longerLore.size());
+    assertSame(lore.get(0), longerLore.get(0));
+  }
+
+  @Test
+  public void freezingDropsOutdatedHashes() {
+    NBTTagCompound compound = new NBTTagCompound();
+    compound.setInt("a", 1);
+    NBTTagList list = new NBTTagList();
+    list.add(new NBTTagInt(1));
+    NBTTagIntArray array = new NBTTagIntArray(new int[]{1});
+    compound.hashCode();
+    list.hashCode();
+    array.hashCode();
+
+    compound.setInt("a", 2);
+    list.add(new NBTTagInt(2));
+    array.getValue()[0] = 2;
+    compound.freeze();
+    list.freeze();
+    array.freeze();
+
+    NBTTagCompound expectedCompound = new NBTTagCompound();
+    expectedCompound.setInt("a", 2);
+    NBTTagList expectedList = new NBTTagList();
+    expectedList.add(new NBTTagInt(1));
+    expectedList.add(new NBTTagInt(2));
+    NBTTagIntArray expectedArray = new NBTTagIntArray(new int[]{2});
+    expectedCompound.freeze();
+    expectedList.freeze();
+    expectedArray.freeze();
+
+    assertEquals(expectedCompound.hashCode(), compound.hashCode());
+    assertEquals(expectedCompound, compound);
+    assertEquals(expectedList.hashCode(), list.hashCode());
+    assertEquals(expectedList, list);
+    assertEquals(expectedArray.hashCode(), array.hashCode());
+    assertEquals(expectedArray, array);
+  }
+
+  @Test
+  public void shallowCopiesLeaveTheSourceUnchanged() {
+    NBTTagCompound original = new NBTTagCompound();
+    NBTTagCompound display = new NBTTagCompound();
+    display.setString("Name", "Original");
+    original.set("display", display);
+    NBTTagList lore = new NBTTagList();
+    lore.add(new NBTTagString("Line"));
+    original.set("Lore", lore);
+
+    NBTTagCompound shallow = original.shallowCopy();
+    assertEquals("Original", ((NBTTagCompound) original.get("display")).getString("Name"));
+    original.getAllEntries();
+    original.freeze();
+
+    assertSame(display, original.get("display"));
+    assertSame(lore, original.get("Lore"));
+    assertFalse(shallow.isFrozen());
+
+    ((NBTTagCompound) shallow.get("display")).setString("Name", "Shallow");
+    assertEquals("Original", display.getString("Name"));
+    assertEquals("Shallow", ((NBTTagCompound) shallow.get("display")).getString("Name"));
+  }
+
+  @Test
+  public void shallowCopiesOnlyCopyTheTagsTheyHandOut() {
+    NBTTagCompound original = new NBTTagCompound();
+    NBTTagCompound display = new NBTTagCompound();
+    display.setString("Name", "Original");
+    original.set("display", display);
+    NBTTagList lore = new NBTTagList();
+    lore.add(new NBTTagString("Line"));
+    original.set("Lore", lore);
+
+    NBTTagCompound shallow = original.shallowCopy();
+    NBTTagCompound copiedDisplay = (NBTTagCompound) shallow.get("display");
+    assertNotSame(display, copiedDisplay);
+    assertSame(copiedDisplay, shallow.get("display"));
+    assertSame(lore, shallow.peekEntries().get("Lore"));
+
+    NBTTagCompound replacement = new NBTTagCompound();
+    shallow.set("display", replacement);
+    assertSame(replacement, shallow.get("display"));
+
+    NBTTagList copiedLore = (NBTTagList) shallow.get("Lore");
+    assertNotSame(lore, copiedLore);
+    assertNotSame(lore.get(0), copiedLore.get(0));
+    assertSame(copiedLore.get(0), copiedLore.get(0));
+  }
+
+  @Test
+  public void copiesAreIndependent() {
+    NBTTagCompound original = new NBTTagCompound();
+    NBTTagCompound display = new NBTTagCompound();
+    display.setString("Name", "Original");
+    original.set("display", display);
+    original.setIntArray("Colors", new int[]{1, 2});
+    NBTTagList lore = new NBTTagList();
+    lore.add(new NBTTagString("Line"));
+    original.set("Lore", lore);
+
+    NBTTagCompound deep = original.deepCopy();
+    NBTTagCompound shallow = original.shallowCopy();
+    assertEquals(original, deep);
+    assertEquals(original, shallow);
+
+    ((NBTTagCompound) shallow.get("display")).setString("Name", "Shallow");
+    shallow.getIntArray("Colors")[0] = 5;
+    ((NBTTagList) shallow.get("Lore")).add(new NBTTagString("Shallow"));
+    deep.getIntArray("Colors")[1] = 7;
+
+    assertEquals("Original", ((NBTTagCompound) original.get("display")).getString("Name"));
+    assertEquals("Shallow", ((NBTTagCompound) shallow.get("display")).getString("Name"));
+    assertEquals("Original", ((NBTTagCompound) deep.get("display")).getString("Name"));
+    assertEquals(1, original.getIntArray("Colors")[0]);
+    assertEquals(2, original.getIntArray("Colors")[1]);
+    assertEquals(1, ((NBTTagList) original.get("Lore")).size());
+    assertEquals(2, ((NBTTagList) shallow.get("Lore")).size());
+
+    original.freeze();
+    NBTTagCompound thawed = original.shallowCopy();
+    ((NBTTagCompound) thawed.get("display")).setString("Name", "Thawed");
+    assertEquals("Original", ((NBTTagCompound) original.get("display")).getString("Name"));
+  }
+}
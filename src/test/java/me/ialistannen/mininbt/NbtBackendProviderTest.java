@@ -0,0 +1,81 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import org.junit.jupiter.api.Test;
+
+class NbtBackendProviderTest {
+
+  @Test
+  public void usesTheFirstSupportingProvider() {
+    NbtBackend first = new InMemoryNbtBackend();
+    NbtBackend second = new InMemoryNbtBackend();
+
+    NbtBackend chosen = NBTWrappers.createDefaultBackend(
+        Arrays.asList(
+            new FixedProvider("v1_13_R2", null),
+            new FixedProvider("v1_14_R1", first),
+            new FixedProvider("v1_14_R1", second)
+        ),
+        "v1_14_R1"
+    );
+
+    assertSame(first, chosen);
+  }
+
+  @Test
+  public void fallsBackToReflection() {
+    NMSPrecenseAssumption.assumeSpigotIsAvailable();
+
+    NbtBackend chosen = NBTWrappers.createDefaultBackend(
+        Collections.singletonList(new FixedProvider("v1_13_R2", null)),
+        "v1_14_R1"
+    );
+
+    assertEquals(ReflectiveNbtBackend.class, chosen.getClass());
+  }
+
+  @Test
+  public void inMemoryBackendHasNoServerHooks() {
+    NbtBackend backend = new InMemoryNbtBackend();
+    Object compound = new NBTTagCompound().toNBT(backend);
+
+    assertThrows(UnsupportedOperationException.class, () -> backend.getItemTag(null));
+    assertThrows(UnsupportedOperationException.class, () -> backend.setItemTag(null, compound));
+    assertThrows(UnsupportedOperationException.class, () -> backend.saveEntity(null));
+    assertThrows(UnsupportedOperationException.class, () -> backend.loadEntity(null, compound));
+    assertThrows(UnsupportedOperationException.class, () -> backend.saveTileEntity(null));
+    assertThrows(
+        UnsupportedOperationException.class, () -> backend.loadTileEntity(null, compound)
+    );
+  }
+
+  private static class FixedProvider implements NbtBackendProvider {
+
+    private final String version;
+    private final NbtBackend backend;
+
+    FixedProvider(String version, NbtBackend backend) {
+      this.version = version;
+      this.backend = backend;
+    }
+
+    @Override
+    public boolean supports(String serverVersion) {
+      return version.equals(serverVersion);
+    }
+
+    @Override
+    public NbtBackend createBackend() {
+      if (backend == null) {
+        throw new AssertionError("Created a backend for an unsupported version");
+      }
+      return backend;
+    }
+  }
+}
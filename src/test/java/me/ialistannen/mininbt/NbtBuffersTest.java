@@ -0,0 +1,106 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import org.junit.jupiter.api.Test;
+
+class NbtBuffersTest {
+
+  @Test
+  public void roundtripsThroughHeapAndDirectBuffers() throws IOException {
+    NBTTagCompound item = createItem();
+
+    for (ByteBuffer buffer : new ByteBuffer[]{
+        ByteBuffer.allocate(4096), ByteBuffer.allocateDirect(4096).order(ByteOrder.LITTLE_ENDIAN)
+    }) {
+      ByteOrder order = buffer.order();
+      buffer.put((byte) 42);
+      int written = NbtBuffers.write(item, buffer);
+      int compressed = NbtBuffers.writeCompressed(item, buffer);
+      assertEquals(1 + written + compressed, buffer.position());
+
+      buffer.flip();
+      buffer.get();
+      assertEquals(item, NbtBuffers.read(buffer));
+      assertEquals(item, NbtBuffers.readCompressed(buffer));
+      assertEquals(0, buffer.remaining());
+      assertEquals(order, buffer.order());
+    }
+  }
+
+  @Test
+  public void isCompatibleWithTheStreamCodec() throws IOException {
+    NBTTagCompound item = createItem();
+
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    NbtCodec.writeCompressed(item, stream);
+    assertEquals(item, NbtBuffers.readCompressed(ByteBuffer.wrap(stream.toByteArray())));
+
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    NbtBuffers.writeCompressed(item, buffer);
+    assertEquals(
+        item,
+        NbtCodec.readCompressed(new ByteArrayInputStream(buffer.array(), 0, buffer.position()))
+    );
+  }
+
+  @Test
+  public void writesStreamsLargerThanTheScratchChunk() throws IOException {
+    byte[] noise = new byte[64 * 1024];
+    new Random(42).nextBytes(noise);
+    NBTTagCompound compound = createItem();
+    compound.setByteArray("noise", noise);
+
+    for (int i = 0; i < 2; i++) {
+      ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      NbtCodec.writeCompressed(compound, stream);
+      assertEquals(
+          compound, NbtCodec.readCompressed(new ByteArrayInputStream(stream.toByteArray()))
+      );
+    }
+  }
+
+  @Test
+  public void leavesFullBuffersUntouched() {
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+
+    assertThrows(BufferOverflowException.class, () -> NbtBuffers.write(createItem(), buffer));
+    assertThrows(
+        BufferOverflowException.class, () -> NbtBuffers.writeCompressed(createItem(), buffer)
+    );
+    assertEquals(0, buffer.position());
+
+    ByteBuffer truncated = ByteBuffer.wrap(new byte[]{10, 0, 0, 1});
+    assertThrows(IOException.class, () -> NbtBuffers.read(truncated));
+    assertEquals(0, truncated.position());
+  }
+
+  private static NBTTagCompound createItem() {
+    NBTTagCompound display = new NBTTagCompound();
+    display.setString("Name", "{\"text\":\"Schwert \u00e4\u20ac\"}");
+    NBTTagList lore = new NBTTagList();
+    for (int i = 0; i < 20; i++) {
+      lore.add(new NBTTagString("Line number " + i));
+    }
+    display.set("Lore", lore);
+    NBTTagCompound tag = new NBTTagCompound();
+    tag.set("display", display);
+    tag.setIntArray("data", new int[]{1, 2, 3});
+    NBTTagCompound item = new NBTTagCompound();
+    item.setString("id", "minecraft:diamond_sword");
+    item.setByte("Count", (byte) 1);
+    item.set("tag", tag);
+    return item;
+  }
+}
@@ -0,0 +1,161 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagInt;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import me.ialistannen.mininbt.NbtDiff.OperationType;
+import me.ialistannen.mininbt.NbtDiff.Patch;
+import org.junit.jupiter.api.Test;
+
+class NbtDiffTest {
+
+  @Test
+  public void equalCompoundsHaveEmptyPatch() {
+    assertTrue(NbtDiff.diff(createItem(), createItem()).isEmpty());
+  }
+
+  @Test
+  public void patchTransformsCompound() {
+    NBTTagCompound changed = createItem();
+    changed.remove("Count");
+    changed.setString("id", "minecraft:diamond_axe");
+    changed.setInt("Damage", 12);
+    ((NBTTagCompound) changed.get("display")).setString("Name", "Renamed");
+    NBTTagList lore = (NBTTagList) ((NBTTagCompound) changed.get("display")).get("Lore");
+    lore.add(new NBTTagString("Third line"));
+
+    Patch patch = NbtDiff.diff(createItem(), changed);
+
+    assertEquals(5, patch.getOperations().size());
+    assertEquals(changed, NbtDiff.apply(createItem(), patch));
+  }
+
+  @Test
+  public void listOfCompoundsIsPatchedInPlace() {
+    NBTTagCompound changed = createItem();
+    NBTTagList enchantments = (NBTTagList) changed.get("Enchantments");
+    ((NBTTagCompound) enchantments.get(1)).setShort("lvl", (short) 5);
+
+    Patch patch = NbtDiff.diff(createItem(), changed);
+
+    assertEquals(1, patch.getOperations().size());
+    assertEquals(OperationType.CHANGE, patch.getOperations().get(0).getType());
+    assertEquals(changed, NbtDiff.apply(createItem(), patch));
+  }
+
+  @Test
+  public void binaryRoundTrip() throws IOException {
+    NBTTagCompound changed = createItem();
+    NBTTagList lore = (NBTTagList) ((NBTTagCompound) changed.get("display")).get("Lore");
+    lore.getRawList().add(0, new NBTTagString("New first line"));
+    changed.set("Tags", new NBTTagList());
+    ((NBTTagList) changed.get("Tags")).add(new NBTTagInt(4));
+
+    Patch patch = NbtDiff.diff(createItem(), changed);
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    patch.write(new DataOutputStream(outputStream));
+    Patch read = Patch.read(
+        new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()))
+    );
+
+    assertEquals(patch, read);
+    assertEquals(changed, NbtDiff.apply(createItem(), read));
+  }
+
+  @Test
+  public void mismatchingBaseIsRejected() {
+    NBTTagCompound changed = createItem();
+    ((NBTTagCompound) changed.get("display")).setString("Name", "Renamed");
+
+    Patch patch = NbtDiff.diff(createItem(), changed);
+
+    assertThrows(IllegalArgumentException.class, () -> NbtDiff.apply(new NBTTagCompound(), patch));
+  }
+
+  @Test
+  public void malformedIndicesAreRejected() {
+    // a splice at index -1 of the list "Lore"
+    byte[] negativeIndex = {
+        1, 1, (byte) OperationType.SPLICE.ordinal(), 1, 0, 0, 4, 'L', 'o', 'r', 'e',
+        (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 0, 0
+    };
+    assertThrows(IOException.class, () -> read(negativeIndex));
+
+    // a removal without a path
+    byte[] emptyPath = {1, 1, (byte) OperationType.REMOVE.ordinal(), 0};
+    assertThrows(IOException.class, () -> read(emptyPath));
+
+    // a splice removing more elements than the list has
+    NBTTagCompound changed = createItem();
+    ((NBTTagCompound) changed.get("display")).set("Lore", new NBTTagList());
+    Patch patch = NbtDiff.diff(createItem(), changed);
+    NBTTagCompound shorter = createItem();
+    ((NBTTagList) ((NBTTagCompound) shorter.get("display")).get("Lore")).getRawList().remove(0);
+    assertThrows(IllegalArgumentException.class, () -> NbtDiff.apply(shorter, patch));
+  }
+
+  @Test
+  public void mismatchingElementTypesAreRejected() {
+    NBTTagCompound inserted = createItem();
+    ((NBTTagList) ((NBTTagCompound) inserted.get("display")).get("Lore")).getRawList()
+        .add(0, new NBTTagString("New first line"));
+    Patch splice = NbtDiff.diff(createItem(), inserted);
+
+    NBTTagCompound changed = createItem();
+    ((NBTTagList) ((NBTTagCompound) changed.get("display")).get("Lore")).getRawList()
+        .set(1, new NBTTagString("Other line"));
+    Patch change = NbtDiff.diff(createItem(), changed);
+
+    NBTTagCompound numbers = createItem();
+    NBTTagList lore = new NBTTagList();
+    lore.add(new NBTTagInt(1));
+    lore.add(new NBTTagInt(2));
+    ((NBTTagCompound) numbers.get("display")).set("Lore", lore);
+
+    assertThrows(IllegalArgumentException.class, () -> NbtDiff.apply(numbers, splice));
+    assertThrows(IllegalArgumentException.class, () -> NbtDiff.apply(numbers, change));
+    assertEquals(new NBTTagInt(1), lore.get(0));
+    assertEquals(new NBTTagInt(2), lore.get(1));
+    assertEquals(2, lore.size());
+  }
+
+  private static Patch read(byte[] data) throws IOException {
+    return Patch.read(new DataInputStream(new ByteArrayInputStream(data)));
+  }
+
+  private static NBTTagCompound createItem() {
+    NBTTagCompound item = new NBTTagCompound();
+    item.setString("id", "minecraft:golden_axe");
+    item.setByte("Count", (byte) 1);
+
+    NBTTagCompound display = new NBTTagCompound();
+    display.setString("Name", "Axe");
+    NBTTagList lore = new NBTTagList();
+    lore.add(new NBTTagString("First line"));
+    lore.add(new NBTTagString("Second line"));
+    display.set("Lore", lore);
+    item.set("display", display);
+
+    NBTTagList enchantments = new NBTTagList();
+    for (String id : new String[]{"sharpness", "unbreaking"}) {
+      NBTTagCompound enchantment = new NBTTagCompound();
+      enchantment.setString("id", "minecraft:" + id);
+      enchantment.setShort("lvl", (short) 2);
+      enchantments.add(enchantment);
+    }
+    item.set("Enchantments", enchantments);
+
+    return item;
+  }
+}
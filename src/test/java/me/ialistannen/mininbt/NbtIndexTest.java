@@ -0,0 +1,123 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import me.ialistannen.mininbt.NbtIndex.ValueType;
+import org.junit.jupiter.api.Test;
+
+class NbtIndexTest {
+
+  @Test
+  public void answersEqualityAndRangeQueries() {
+    NbtIndex<String> index = createIndex();
+    for (int i = 0; i < 100; i++) {
+      index.put("item" + i, createItem(i % 10, i * 0.5, i % 2 == 0 ? "even" : "odd"));
+    }
+
+    assertEquals(10, index.findEqual("model", 3).size());
+    assertTrue(index.findEqual("model", 3).contains("item13"));
+    assertEquals(Collections.singleton("item7"), index.findEqual("price", 3.5));
+    assertEquals(set("item0", "item1", "item2"), index.findRange("price", -10.0, 1.0));
+    assertEquals(50, index.findEqual("parity", "odd").size());
+    assertEquals(set("item98", "item99"), index.findRange("price", 49, 100));
+    assertEquals(Collections.emptySet(), index.findEqual("model", 42));
+  }
+
+  @Test
+  public void updatesIncrementally() {
+    NbtIndex<String> index = createIndex();
+    index.put("a", createItem(1, 10, "odd"));
+    index.put("b", createItem(1, 20, "odd"));
+
+    index.put("a", createItem(2, -5, "even"));
+    assertEquals(Collections.singleton("b"), index.findEqual("model", 1));
+    assertEquals(Collections.singleton("a"), index.findEqual("model", 2));
+    assertEquals(Collections.singleton("a"), index.findRange("price", -5.0, 0.0));
+
+    assertTrue(index.remove("b"));
+    assertFalse(index.remove("b"));
+    assertEquals(Collections.emptySet(), index.findEqual("parity", "odd"));
+    assertEquals(1, index.size());
+
+    index.put("c", createItem(2, 0, "odd"));
+    assertEquals(set("a", "c"), index.findEqual("model", 2));
+  }
+
+  @Test
+  public void indexesEveryValueOfAPath() {
+    NbtIndex<Integer> index = NbtIndex.<Integer>builder()
+        .hashIndex("tags", "Tags[]", ValueType.STRING)
+        .build();
+
+    NBTTagCompound first = new NBTTagCompound();
+    NBTTagList tags = new NBTTagList();
+    tags.add(new NBTTagString("red"));
+    tags.add(new NBTTagString("blue"));
+    first.set("Tags", tags);
+    index.put(1, first);
+
+    assertEquals(Collections.singleton(1), index.findEqual("tags", "red"));
+    assertEquals(Collections.singleton(1), index.findEqual("tags", "blue"));
+  }
+
+  @Test
+  public void buildsIndependentIndexes() {
+    NbtIndex.Builder<Integer> builder = NbtIndex.<Integer>builder()
+        .sortedIndex("model", "tag.CustomModelData", ValueType.INTEGER);
+    NbtIndex<Integer> first = builder.build();
+    NbtIndex<Integer> second = builder.build();
+
+    first.put(1, createItem(5, 0, "odd"));
+
+    assertEquals(Collections.singleton(1), first.findEqual("model", 5L));
+    assertEquals(Collections.emptySet(), second.findEqual("model", 5L));
+    assertFalse(second.contains(1));
+  }
+
+  @Test
+  public void rejectsUnsupportedQueries() {
+    NbtIndex<String> index = createIndex();
+
+    assertThrows(IllegalArgumentException.class, () -> index.findRange("model", 0, 1));
+    assertThrows(IllegalArgumentException.class, () -> index.findEqual("model", "1"));
+    assertThrows(IllegalArgumentException.class, () -> index.findEqual("missing", 1));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> NbtIndex.builder().hashIndex("a", "x", ValueType.STRING)
+            .hashIndex("a", "y", ValueType.STRING)
+    );
+  }
+
+  private static NbtIndex<String> createIndex() {
+    return NbtIndex.<String>builder()
+        .hashIndex("model", "tag.CustomModelData", ValueType.INTEGER)
+        .sortedIndex("price", "price", ValueType.DECIMAL)
+        .hashIndex("parity", "tag.parity", ValueType.STRING)
+        .build();
+  }
+
+  private static NBTTagCompound createItem(int model, double price, String parity) {
+    NBTTagCompound tag = new NBTTagCompound();
+    tag.setInt("CustomModelData", model);
+    tag.setString("parity", parity);
+    NBTTagCompound item = new NBTTagCompound();
+    item.set("tag", tag);
+    item.setDouble("price", price);
+    return item;
+  }
+
+  @SafeVarargs
+  private static <T> Set<T> set(T... elements) {
+    return new HashSet<>(Arrays.asList(elements));
+  }
+}
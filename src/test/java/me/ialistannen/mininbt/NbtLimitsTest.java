@@ -0,0 +1,147 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NbtLimits.LimitExceededException;
+import me.ialistannen.mininbt.NbtParser.NbtParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+class NbtLimitsTest {
+
+  @Test
+  public void acceptsDataWithinTheLimits() throws IOException {
+    NBTTagCompound compound = new NBTTagCompound();
+    compound.setString("id", "minecraft:stone");
+    compound.setIntArray("data", new int[100]);
+
+    assertEquals(compound, NbtCodec.readRootCompound(input(encode(compound)), NbtLimits.DEFAULT));
+  }
+
+  @Test
+  public void rejectsDeepNesting() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.writeByte(NbtCodec.TAG_COMPOUND);
+    output.writeUTF("");
+    for (int i = 0; i < 10_000; i++) {
+      output.writeByte(NbtCodec.TAG_COMPOUND);
+      output.writeUTF("a");
+    }
+
+    assertThrows(
+        LimitExceededException.class,
+        () -> NbtCodec.readRootCompound(input(bytes.toByteArray()), NbtLimits.DEFAULT)
+    );
+  }
+
+  @Test
+  public void rejectsLengthPrefixesBeforeAllocating() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.writeByte(NbtCodec.TAG_COMPOUND);
+    output.writeUTF("");
+    output.writeByte(NbtCodec.TAG_INT_ARRAY);
+    output.writeUTF("huge");
+    output.writeInt(Integer.MAX_VALUE - 8);
+
+    assertThrows(
+        LimitExceededException.class,
+        () -> NbtCodec.readRootCompound(input(bytes.toByteArray()), NbtLimits.DEFAULT)
+    );
+
+    NBTTagCompound compound = new NBTTagCompound();
+    compound.setString("text", "0123456789");
+    NbtLimits shortStrings = NbtLimits.builder().maxStringLength(5).build();
+    assertThrows(
+        LimitExceededException.class,
+        () -> NbtBuffers.read(ByteBuffer.wrap(encode(compound)), shortStrings)
+    );
+  }
+
+  @Test
+  public void stopsInflatingAtTheByteLimit() throws IOException {
+    NBTTagCompound compound = new NBTTagCompound();
+    compound.setByteArray("zeros", new byte[1024 * 1024]);
+    ByteBuffer compressed = ByteBuffer.allocate(64 * 1024);
+    NbtBuffers.writeCompressed(compound, compressed);
+    compressed.flip();
+
+    NbtLimits limits = NbtLimits.builder().maxBytes(4096).build();
+    assertThrows(LimitExceededException.class, () -> NbtBuffers.readCompressed(compressed, limits));
+    assertThrows(
+        LimitExceededException.class,
+        () -> NbtCodec.readCompressed(
+            new ByteArrayInputStream(compressed.array(), 0, compressed.limit()), limits
+        )
+    );
+  }
+
+  @Test
+  public void parsesSnbtWithinTheLimits() throws NbtParseException {
+    NbtLimits limits = NbtLimits.builder()
+        .maxDepth(3)
+        .maxListLength(3)
+        .maxStringLength(8)
+        .build();
+
+    NBTTagCompound parsed = NbtParser.parse("{a:{b:[1,2,3]},c:\"[[[[,,,,\"}", limits);
+    assertEquals("[[[[,,,,", parsed.getString("c"));
+
+    assertLimitExceeded(() -> NbtParser.parse("{a:{b:{c:{}}}}", limits));
+    assertLimitExceeded(() -> NbtParser.parse("{a:[1,2,3,4]}", limits));
+    assertLimitExceeded(() -> NbtParser.parse("{a:[I;1,2,3,4]}", limits));
+    assertLimitExceeded(() -> NbtParser.parse("{a:\"123456789\"}", limits));
+    assertLimitExceeded(() -> NbtParser.parse("{longerkey:1}", limits));
+    assertLimitExceeded(
+        () -> NbtParser.parse("{a:1}", NbtLimits.builder().maxBytes(4).build())
+    );
+    assertThrows(NbtParseException.class, () -> NbtParser.parse("{a:", limits));
+  }
+
+  @Test
+  public void readsStreamsWithinTheLimits() throws IOException {
+    NBTTagCompound compound = new NBTTagCompound();
+    compound.setString("key", "a longer value");
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    NbtCodec.writeCompressed(compound, compressed);
+
+    assertEquals(
+        compound,
+        StreamNBTUtil.fromStream(
+            new ByteArrayInputStream(compressed.toByteArray()), NbtLimits.DEFAULT
+        )
+    );
+    assertThrows(
+        LimitExceededException.class,
+        () -> StreamNBTUtil.fromStream(
+            new ByteArrayInputStream(compressed.toByteArray()),
+            NbtLimits.builder().maxStringLength(8).build()
+        )
+    );
+  }
+
+  private static void assertLimitExceeded(Executable executable) {
+    NbtParseException exception = assertThrows(NbtParseException.class, executable);
+    assertTrue(exception.getCause() instanceof LimitExceededException);
+  }
+
+  private static byte[] encode(NBTTagCompound compound) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    NbtCodec.writeRootCompound(compound, new DataOutputStream(bytes));
+    return bytes.toByteArray();
+  }
+
+  private static DataInputStream input(byte[] bytes) {
+    return new DataInputStream(new ByteArrayInputStream(bytes));
+  }
+}
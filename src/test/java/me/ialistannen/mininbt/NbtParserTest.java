@@ -32,4 +32,30 @@ class NbtParserTest {
         NbtParser.parse(asString)
     );
   }
-}
\ No newline at end of file
+
+  @Test
+  public void roundtripSimpleCompoundInMemory() throws NbtParseException {
+    NBTWrappers.setBackend(new InMemoryNbtBackend());
+    try {
+      NBTTagCompound compound = new NBTTagCompound();
+      compound.setString("hello", "World");
+      compound.setBoolean("you", true);
+      compound.setByte("byte", (byte) 20);
+      compound.setDouble("double", 1.245);
+      compound.setIntArray("ints", new int[]{1, 5, 1, -20});
+      NBTTagList list = new NBTTagList();
+      list.add(new NBTTagString("MyList"));
+      list.add(new NBTTagString("There"));
+      compound.set("list", list);
+
+      String asString = compound.toNBT().toString();
+
+      assertEquals(
+          compound,
+          NbtParser.parse(asString)
+      );
+    } finally {
+      NBTWrappers.setBackend(null);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import org.junit.jupiter.api.Test;
+
+class NbtPathTest {
+
+  @Test
+  public void selectsKeysIndicesAndFilters() {
+    NBTTagCompound player = createPlayer();
+
+    assertEquals(new NBTTagString("First"), NbtPath.compile("tag.display.Lore[0]").get(player));
+    assertEquals(new NBTTagString("Second"), NbtPath.compile("tag.display.Lore[-1]").get(player));
+    assertEquals(
+        new NBTTagString("minecraft:stone"), NbtPath.compile("Items[{Slot:3b}].id").get(player)
+    );
+    assertEquals(3, NbtPath.compile("Items[].id").getAll(player).size());
+    assertEquals(
+        new NBTTagString("with space"), NbtPath.compile("tag.\"odd key\"").get(player)
+    );
+    assertEquals(player, NbtPath.compile("").get(player));
+
+    assertNull(NbtPath.compile("tag.display.Lore[2]").get(player));
+    assertNull(NbtPath.compile("Items[{Slot:9b}].id").get(player));
+    assertNull(NbtPath.compile("tag.display.Name.Missing").get(player));
+  }
+
+  @Test
+  public void nestedFiltersMatchSubsets() {
+    NBTTagCompound player = createPlayer();
+
+    List<INBTBase> enchanted = NbtPath.compile("Items[{tag:{Enchanted:1b}}].Slot")
+        .getAll(player);
+
+    assertEquals(2, enchanted.size());
+  }
+
+  @Test
+  public void streamEvaluationMatchesTreeEvaluation() throws IOException {
+    NBTTagCompound player = createPlayer();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    NbtCodec.writeRootCompound(player, new DataOutputStream(bytes));
+
+    for (String path : Arrays.asList(
+        "tag.display.Lore[0]", "Items[{Slot:3b}].id", "Items[].Count", "Items[-1]", "tag", ""
+    )) {
+      NbtPath compiled = NbtPath.compile(path);
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+      assertEquals(compiled.getAll(player), compiled.readAll(input), path);
+      assertEquals(0, input.available(), path);
+    }
+  }
+
+  @Test
+  public void evaluatesNmsCompounds() {
+    NBTWrappers.setBackend(new InMemoryNbtBackend());
+    try {
+      NBTTagCompound player = createPlayer();
+      Object nmsPlayer = player.toNBT();
+
+      for (String path : Arrays.asList("tag.display.Lore[1]", "Items[{Slot:3b}].id", "Items[]")) {
+        NbtPath compiled = NbtPath.compile(path);
+        assertEquals(compiled.getAll(player), compiled.getAllFromNms(nmsPlayer), path);
+      }
+    } finally {
+      NBTWrappers.setBackend(null);
+    }
+  }
+
+  @Test
+  public void rejectsMalformedPaths() {
+    for (String path : Arrays.asList("a.", "a[", "a[x]", "a[{Slot:}]", "a]", ".a", "a[{b:\"c}]")) {
+      IllegalArgumentException exception = assertThrows(
+          IllegalArgumentException.class, () -> NbtPath.compile(path), path
+      );
+      assertTrue(exception.getMessage().contains("position"), path);
+    }
+  }
+
+  private static NBTTagCompound createPlayer() {
+    NBTTagCompound display = new NBTTagCompound();
+    NBTTagList lore = new NBTTagList();
+    lore.add(new NBTTagString("First"));
+    lore.add(new NBTTagString("Second"));
+    display.set("Lore", lore);
+    display.setString("Name", "Sword");
+    NBTTagCompound tag = new NBTTagCompound();
+    tag.set("display", display);
+    tag.setString("odd key", "with space");
+
+    NBTTagList items = new NBTTagList();
+    for (int slot = 1; slot <= 3; slot++) {
+      NBTTagCompound item = new NBTTagCompound();
+      item.setByte("Slot", (byte) slot);
+      item.setString("id", slot == 3 ? "minecraft:stone" : "minecraft:dirt");
+      item.setByte("Count", (byte) (slot * 10));
+      NBTTagCompound itemTag = new NBTTagCompound();
+      itemTag.setBoolean("Enchanted", slot != 2);
+      itemTag.setInt("Damage", slot);
+      item.set("tag", itemTag);
+      items.add(item);
+    }
+
+    NBTTagCompound player = new NBTTagCompound();
+    player.set("tag", tag);
+    player.set("Items", items);
+    return player;
+  }
+}
@@ -0,0 +1,90 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagDouble;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import org.junit.jupiter.api.Test;
+
+class NbtProjectionTest {
+
+  @Test
+  public void readsOnlySelectedPaths() throws IOException {
+    NbtProjection projection = NbtProjection.of(
+        "Pos", "Inventory[].id", "abilities.flying", "Missing.key", "XpLevel"
+    );
+
+    NBTTagCompound expected = new NBTTagCompound();
+    expected.set("Pos", createPlayer().get("Pos"));
+    NBTTagList inventory = new NBTTagList();
+    for (String id : new String[]{"minecraft:dirt", "minecraft:stone"}) {
+      NBTTagCompound item = new NBTTagCompound();
+      item.setString("id", id);
+      inventory.add(item);
+    }
+    expected.set("Inventory", inventory);
+    NBTTagCompound abilities = new NBTTagCompound();
+    abilities.setBoolean("flying", true);
+    expected.set("abilities", abilities);
+    expected.setInt("XpLevel", 30);
+
+    assertEquals(expected, projection.readCompressed(compress(createPlayer())));
+  }
+
+  @Test
+  public void wholeSubtreeWinsOverNestedPaths() throws IOException {
+    NbtProjection projection = NbtProjection.of("abilities.flying", "abilities");
+
+    NBTTagCompound expected = new NBTTagCompound();
+    expected.set("abilities", createPlayer().get("abilities"));
+
+    assertEquals(expected, projection.readCompressed(compress(createPlayer())));
+  }
+
+  @Test
+  public void rejectsIndicesAndFilters() {
+    assertThrows(IllegalArgumentException.class, () -> NbtProjection.of("Inventory[0]"));
+    assertThrows(IllegalArgumentException.class, () -> NbtProjection.of("Inventory[{Slot:1b}]"));
+  }
+
+  private static ByteArrayInputStream compress(NBTTagCompound compound) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    NbtCodec.writeCompressed(compound, bytes);
+    return new ByteArrayInputStream(bytes.toByteArray());
+  }
+
+  private static NBTTagCompound createPlayer() {
+    NBTTagCompound player = new NBTTagCompound();
+    NBTTagList position = new NBTTagList();
+    position.add(new NBTTagDouble(1.5));
+    position.add(new NBTTagDouble(64));
+    position.add(new NBTTagDouble(-3));
+    player.set("Pos", position);
+    player.setInt("XpLevel", 30);
+    player.setIntArray("UUID", new int[]{1, 2, 3, 4});
+
+    NBTTagList inventory = new NBTTagList();
+    int slot = 0;
+    for (String id : new String[]{"minecraft:dirt", "minecraft:stone"}) {
+      NBTTagCompound item = new NBTTagCompound();
+      item.setString("id", id);
+      item.setByte("Slot", (byte) slot++);
+      NBTTagCompound tag = new NBTTagCompound();
+      tag.setInt("Damage", 3);
+      item.set("tag", tag);
+      inventory.add(item);
+    }
+    player.set("Inventory", inventory);
+
+    NBTTagCompound abilities = new NBTTagCompound();
+    abilities.setBoolean("flying", true);
+    abilities.setFloat("walkSpeed", 0.1f);
+    player.set("abilities", abilities);
+    return player;
+  }
+}
@@ -0,0 +1,80 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import org.junit.jupiter.api.Test;
+
+class NbtSizesTest {
+
+  @Test
+  public void serializedSizeMatchesTheCodec() throws IOException {
+    NBTTagCompound book = createBook(20);
+
+    assertEquals(encodedLength(book) - 3, book.serializedSize());
+    book.freeze();
+    assertEquals(encodedLength(book) - 3, book.serializedSize());
+    // served from the cache
+    assertEquals(encodedLength(book) - 3, book.serializedSize());
+  }
+
+  @Test
+  public void stopsOnceTheLimitIsExceeded() {
+    NBTTagCompound book = createBook(1000);
+    long size = book.serializedSize();
+
+    assertEquals(size, book.serializedSize(size));
+    long limited = book.serializedSize(1000);
+    assertTrue(limited > 1000);
+    assertTrue(limited < size);
+  }
+
+  @Test
+  public void heapSizeGrowsWithContent() {
+    long small = createBook(1).estimateHeapSize();
+    long large = createBook(100).estimateHeapSize();
+
+    assertTrue(small > 0);
+    assertTrue(large > small + 99 * createBook(1).serializedSize() / 2);
+  }
+
+  @Test
+  public void frozenTreesCacheBothSizes() throws IOException {
+    NBTTagCompound book = createBook(20);
+    long heapSize = book.estimateHeapSize();
+
+    book.freeze();
+    assertEquals(heapSize, book.estimateHeapSize());
+    assertEquals(encodedLength(book) - 3, book.cachedSerializedSize);
+    assertEquals(heapSize, book.cachedHeapSize);
+    assertEquals(encodedLength(book) - 3, book.serializedSize(10));
+  }
+
+  private static long encodedLength(NBTTagCompound compound) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    NbtCodec.writeRootCompound(compound, new DataOutputStream(bytes));
+    return bytes.size();
+  }
+
+  private static NBTTagCompound createBook(int pageCount) {
+    NBTTagList pages = new NBTTagList();
+    for (int i = 0; i < pageCount; i++) {
+      pages.add(new NBTTagString("{\"text\":\"Page " + i + " \u00fcber \u20ac\"}"));
+    }
+    NBTTagCompound tag = new NBTTagCompound();
+    tag.set("pages", pages);
+    tag.setString("author", "Notch");
+    tag.setIntArray("data", new int[]{1, 2, 3});
+    NBTTagCompound book = new NBTTagCompound();
+    book.setString("id", "minecraft:written_book");
+    book.setByte("Count", (byte) 1);
+    book.set("tag", tag);
+    return book;
+  }
+}
@@ -0,0 +1,179 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import org.junit.jupiter.api.Test;
+
+class NbtStoreTest {
+
+  @Test
+  public void readsWhatWasWrittenAfterReopening() throws IOException {
+    Path file = Files.createTempFile("store", ".nbts");
+    UUID player = UUID.randomUUID();
+    try {
+      try (NbtStore store = NbtStore.open(file)) {
+        store.put(player, createData(1));
+        store.put("spawn", createData(2));
+        store.put(player, createData(3));
+        store.put("removed", createData(4));
+        assertTrue(store.remove("removed"));
+        assertFalse(store.remove("removed"));
+
+        assertEquals(createData(3), store.get(player));
+      }
+
+      try (NbtStore store = NbtStore.open(file)) {
+        assertEquals(2, store.size());
+        assertEquals(createData(3), store.get(player));
+        assertEquals(createData(2), store.get("spawn"));
+        assertNull(store.get("removed"));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void cutsOffTornRecords() throws IOException {
+    Path file = Files.createTempFile("store", ".nbts");
+    try {
+      long sizeBefore;
+      try (NbtStore store = NbtStore.open(file)) {
+        store.put("kept", createData(1));
+        sizeBefore = store.getFileSize();
+        store.put("torn", createData(2));
+      }
+      // simulate a crash in the middle of the last append
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.truncate(channel.size() - 5);
+      }
+
+      try (NbtStore store = NbtStore.open(file)) {
+        assertEquals(createData(1), store.get("kept"));
+        assertFalse(store.contains("torn"));
+        assertEquals(sizeBefore, store.getFileSize());
+
+        store.put("after", createData(3));
+      }
+      try (NbtStore store = NbtStore.open(file)) {
+        assertEquals(createData(3), store.get("after"));
+      }
+
+      // a corrupted byte is caught by the checksum
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.write(ByteBuffer.wrap(new byte[]{42}), Files.size(file) - 3);
+      }
+      try (NbtStore store = NbtStore.open(file)) {
+        assertFalse(store.contains("after"));
+        assertTrue(store.contains("kept"));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void skipsCorruptRecordsInTheMiddle() throws IOException {
+    Path file = Files.createTempFile("store", ".nbts");
+    try {
+      try (NbtStore store = NbtStore.open(file)) {
+        store.put("first", createData(1));
+        store.put("second", createData(2));
+        store.put("third", createData(3));
+      }
+      // flip a bit in the body of the first record
+      try (FileChannel channel = FileChannel.open(
+          file, StandardOpenOption.READ, StandardOpenOption.WRITE
+      )) {
+        ByteBuffer data = ByteBuffer.allocate(1);
+        channel.read(data, 30);
+        data.put(0, (byte) (data.get(0) ^ 1)).rewind();
+        channel.write(data, 30);
+      }
+      long size = Files.size(file);
+
+      try (NbtStore store = NbtStore.open(file)) {
+        assertEquals(1, store.getCorruptRecordCount());
+        assertFalse(store.contains("first"));
+        assertEquals(createData(2), store.get("second"));
+        assertEquals(createData(3), store.get("third"));
+        assertEquals(size, store.getFileSize());
+      }
+
+      // a corrupt length can not be skipped
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.write(ByteBuffer.allocate(4).putInt(0, 1), 8);
+      }
+      assertThrows(IOException.class, () -> NbtStore.open(file).close());
+      assertEquals(size, Files.size(file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void readsRecordsAppendedAfterMapping() throws IOException {
+    Path file = Files.createTempFile("store", ".nbts");
+    try (NbtStore store = NbtStore.open(file)) {
+      store.setCompactionRatio(1);
+      for (int i = 0; i < 500; i++) {
+        store.put("key" + i, createData(i));
+        assertEquals(createData(i), store.get("key" + i));
+      }
+      for (int i = 0; i < 500; i++) {
+        assertEquals(createData(i), store.get("key" + i));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void compactsAndIterates() throws IOException {
+    Path file = Files.createTempFile("store", ".nbts");
+    try (NbtStore store = NbtStore.open(file)) {
+      store.setCompactionRatio(1);
+      for (int round = 0; round < 10; round++) {
+        for (int i = 0; i < 50; i++) {
+          store.put("key" + i, createData(round * 100 + i));
+        }
+      }
+      long sizeBefore = store.getFileSize();
+
+      store.compact();
+
+      assertTrue(store.getFileSize() * 5 < sizeBefore);
+      Map<String, NBTTagCompound> exported = new HashMap<>();
+      for (NbtStore.Entry entry : store) {
+        exported.put(entry.getKey(), entry.getTag());
+      }
+      assertEquals(50, exported.size());
+      assertEquals(createData(949), exported.get("key49"));
+      assertEquals(createData(910), store.get("key10"));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static NBTTagCompound createData(int value) {
+    NBTTagCompound compound = new NBTTagCompound();
+    compound.setInt("value", value);
+    compound.setString("name", "entry " + value);
+    compound.setIntArray("padding", new int[32]);
+    return compound;
+  }
+}
@@ -0,0 +1,44 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class NbtStringPoolTest {
+
+  @Test
+  public void deduplicatesEqualStrings() {
+    NbtStringPool pool = new NbtStringPool(16);
+
+    String first = pool.intern(new String("display"));
+    String second = pool.intern(new String("display"));
+
+    assertSame(first, second);
+    assertEquals(1, pool.getHits());
+    assertEquals(1, pool.getMisses());
+    assertEquals(0.5, pool.getHitRate());
+  }
+
+  @Test
+  public void staysBounded() {
+    NbtStringPool pool = new NbtStringPool(10);
+    assertEquals(16, pool.getCapacity());
+
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("key" + i, pool.intern("key" + i));
+    }
+    assertEquals(1000, pool.getMisses());
+
+    // recently used strings survive
+    String recent = pool.intern(new String("key999"));
+    assertTrue(pool.getHits() == 1 && recent.equals("key999"));
+  }
+
+  @Test
+  public void rejectsTinyCapacity() {
+    assertThrows(IllegalArgumentException.class, () -> new NbtStringPool(1));
+  }
+}
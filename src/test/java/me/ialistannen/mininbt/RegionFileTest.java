@@ -0,0 +1,150 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import org.junit.jupiter.api.Test;
+
+class RegionFileTest {
+
+  @Test
+  public void readsChunksWithAllCompressions() throws IOException {
+    ByteBuffer region = ByteBuffer.allocate(6 * RegionFile.SECTOR_SIZE);
+    writeChunk(region, 0, 0, 2, RegionFile.COMPRESSION_ZLIB, createChunk(0, 0));
+    writeChunk(region, 5, 7, 3, RegionFile.COMPRESSION_GZIP, createChunk(5, 7));
+    writeChunk(region, 31, 31, 4, RegionFile.COMPRESSION_NONE, createChunk(31, 31));
+
+    Path path = Files.createTempFile("r.0.0", ".mca");
+    try {
+      Files.write(path, region.array());
+      RegionFile regionFile = RegionFile.open(path);
+
+      assertEquals(3, regionFile.getChunkCount());
+      assertFalse(regionFile.hasChunk(1, 0));
+      assertNull(regionFile.readChunk(1, 0));
+      assertEquals(1234, regionFile.getTimestamp(5, 7));
+      assertEquals(RegionFile.COMPRESSION_GZIP, regionFile.getCompressionType(5, 7));
+
+      for (int[] position : new int[][]{{0, 0}, {5, 7}, {31, 31}}) {
+        assertTrue(regionFile.hasChunk(position[0], position[1]));
+        assertEquals(
+            createChunk(position[0], position[1]),
+            regionFile.readChunk(position[0], position[1])
+        );
+      }
+
+      assertThrows(IllegalArgumentException.class, () -> regionFile.hasChunk(32, 0));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void rejectsChunksOutsideOfFile() throws IOException {
+    ByteBuffer region = ByteBuffer.allocate(2 * RegionFile.SECTOR_SIZE);
+    region.putInt(0, (9 << 8) | 1);
+
+    Path path = Files.createTempFile("r.0.0", ".mca");
+    try {
+      Files.write(path, region.array());
+      RegionFile regionFile = RegionFile.open(path);
+
+      assertThrows(IOException.class, () -> regionFile.readChunk(0, 0));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void readsLongArraysAndRejectsUnknownTags() throws IOException {
+    ByteBuffer region = ByteBuffer.allocate(4 * RegionFile.SECTOR_SIZE);
+    writeRawChunk(region, 0, 2, NbtCodec.TAG_LONG_ARRAY);
+    writeRawChunk(region, 1, 3, (byte) 13);
+
+    Path path = Files.createTempFile("r.0.0", ".mca");
+    try {
+      Files.write(path, region.array());
+      RegionFile regionFile = RegionFile.open(path);
+
+      NBTTagCompound expected = new NBTTagCompound();
+      expected.setLongArray("BlockStates", new long[]{Long.MIN_VALUE, 42});
+      assertEquals(expected, regionFile.readChunk(0, 0));
+
+      assertThrows(IOException.class, () -> regionFile.readChunk(1, 0));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  /**
+   * Writes an uncompressed chunk holding a single array of two longs, encoded by hand.
+   */
+  private static void writeRawChunk(ByteBuffer region, int x, int sector, byte arrayType)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      output.writeByte(NbtCodec.TAG_COMPOUND);
+      output.writeUTF("");
+      output.writeByte(arrayType);
+      output.writeUTF("BlockStates");
+      output.writeInt(2);
+      output.writeLong(Long.MIN_VALUE);
+      output.writeLong(42);
+      output.writeByte(NbtCodec.TAG_END);
+    }
+    byte[] payload = bytes.toByteArray();
+
+    region.putInt(x * 4, (sector << 8) | 1);
+    region.position(sector * RegionFile.SECTOR_SIZE);
+    region.putInt(payload.length + 1);
+    region.put(RegionFile.COMPRESSION_NONE);
+    region.put(payload);
+  }
+
+  private static NBTTagCompound createChunk(int x, int z) {
+    NBTTagCompound level = new NBTTagCompound();
+    level.setInt("xPos", x);
+    level.setInt("zPos", z);
+    level.setString("Status", "full");
+    NBTTagCompound chunk = new NBTTagCompound();
+    chunk.setInt("DataVersion", 1976);
+    chunk.set("Level", level);
+    return chunk;
+  }
+
+  static void writeChunk(ByteBuffer region, int x, int z, int sector, byte compression,
+      NBTTagCompound chunk) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    OutputStream stream = bytes;
+    if (compression == RegionFile.COMPRESSION_GZIP) {
+      stream = new GZIPOutputStream(bytes);
+    } else if (compression == RegionFile.COMPRESSION_ZLIB) {
+      stream = new DeflaterOutputStream(bytes);
+    }
+    try (DataOutputStream output = new DataOutputStream(stream)) {
+      NbtCodec.writeRootCompound(chunk, output);
+    }
+    byte[] payload = bytes.toByteArray();
+
+    int index = x + z * RegionFile.REGION_SIZE;
+    region.putInt(index * 4, (sector << 8) | 1);
+    region.putInt(RegionFile.SECTOR_SIZE + index * 4, 1234);
+    region.position(sector * RegionFile.SECTOR_SIZE);
+    region.putInt(payload.length + 1);
+    region.put(compression);
+    region.put(payload);
+  }
+}
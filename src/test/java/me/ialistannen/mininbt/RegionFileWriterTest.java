@@ -0,0 +1,259 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import org.junit.jupiter.api.Test;
+
+class RegionFileWriterTest {
+
+  @Test
+  public void writtenChunksCanBeRead() throws IOException {
+    Path path = Files.createTempFile("r.0.0", ".mca");
+    try {
+      try (RegionFileWriter writer = RegionFileWriter.open(path)) {
+        writer.writeChunk(0, 0, createChunk(10, 1), 100);
+        writer.writeChunk(31, 2, createChunk(20, 2), 200);
+      }
+
+      RegionFile regionFile = RegionFile.open(path);
+      assertEquals(2, regionFile.getChunkCount());
+      assertEquals(createChunk(10, 1), regionFile.readChunk(0, 0));
+      assertEquals(createChunk(20, 2), regionFile.readChunk(31, 2));
+      assertEquals(200, regionFile.getTimestamp(31, 2));
+      assertEquals(0, Files.size(path) % RegionFile.SECTOR_SIZE);
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void sectorsAreReused() throws IOException {
+    Path path = Files.createTempFile("r.0.0", ".mca");
+    try {
+      try (RegionFileWriter writer = RegionFileWriter.open(path)) {
+        writer.writeChunk(0, 0, createChunk(2_000, 3));
+        writer.writeChunk(1, 0, createChunk(10, 4));
+        long sectors = writer.getSectorCount();
+
+        // smaller, rewritten in place and the tail sectors are freed
+        writer.writeChunk(0, 0, createChunk(10, 5));
+        assertEquals(sectors, writer.getSectorCount());
+        assertTrue(writer.getFreeSectorCount() > 0);
+
+        // a new chunk fits into the freed sectors
+        writer.writeChunk(2, 0, createChunk(500, 6));
+        assertEquals(sectors, writer.getSectorCount());
+
+        assertTrue(writer.deleteChunk(1, 0));
+        assertFalse(writer.deleteChunk(1, 0));
+      }
+
+      RegionFile regionFile = RegionFile.open(path);
+      assertEquals(createChunk(10, 5), regionFile.readChunk(0, 0));
+      assertFalse(regionFile.hasChunk(1, 0));
+      assertEquals(createChunk(500, 6), regionFile.readChunk(2, 0));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void failedWritesKeepTheOldSectors() throws IOException {
+    Path path = Files.createTempFile("r.0.0", ".mca");
+    try {
+      FailingChannel channel = new FailingChannel(
+          FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+      );
+      try (RegionFileWriter writer = RegionFileWriter.open(path, channel)) {
+        writer.writeChunk(0, 0, createChunk(10, 1));
+
+        // fits into the old sectors, so it is written over them and fails halfway
+        channel.failing = true;
+        assertThrows(IOException.class, () -> writer.writeChunk(0, 0, createChunk(10, 2)));
+        // needs new sectors, which are released again after the failure
+        assertThrows(IOException.class, () -> writer.writeChunk(0, 0, createChunk(2_000, 3)));
+        channel.failing = false;
+        long sectors = writer.getSectorCount();
+
+        // must not be placed in the sectors the header still points to
+        writer.writeChunk(1, 0, createChunk(10, 4));
+        assertEquals(sectors + 1, writer.getSectorCount());
+      }
+
+      RegionFile regionFile = RegionFile.open(path);
+      assertEquals(createChunk(10, 4), regionFile.readChunk(1, 0));
+      assertTrue(regionFile.hasChunk(0, 0));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void longArraysSurviveRewriting() throws IOException {
+    NBTTagCompound section = new NBTTagCompound();
+    section.setByte("Y", (byte) 0);
+    section.setLongArray("BlockStates", new long[]{0x1111_2222_3333_4444L, -1, 0, Long.MIN_VALUE});
+    NBTTagList sections = new NBTTagList();
+    sections.add(section);
+    NBTTagCompound heightmaps = new NBTTagCompound();
+    heightmaps.setLongArray("MOTION_BLOCKING", new long[37]);
+    NBTTagCompound level = new NBTTagCompound();
+    level.set("Sections", sections);
+    level.set("Heightmaps", heightmaps);
+    NBTTagCompound chunk = new NBTTagCompound();
+    chunk.setInt("DataVersion", 1976);
+    chunk.set("Level", level);
+
+    Path path = Files.createTempFile("r.0.0", ".mca");
+    try {
+      try (RegionFileWriter writer = RegionFileWriter.open(path)) {
+        writer.writeChunk(0, 0, chunk);
+      }
+      // read and write back, like a migration does
+      NBTTagCompound read = RegionFile.open(path).readChunk(0, 0);
+      try (RegionFileWriter writer = RegionFileWriter.open(path)) {
+        writer.writeChunk(0, 0, read);
+      }
+
+      assertEquals(chunk, RegionFile.open(path).readChunk(0, 0));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  private static NBTTagCompound createChunk(int size, long seed) {
+    // random values do not compress, so the size controls the sector count
+    Random random = new Random(seed);
+    int[] blocks = new int[size];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = random.nextInt();
+    }
+    NBTTagCompound chunk = new NBTTagCompound();
+    chunk.setIntArray("Blocks", blocks);
+    chunk.setLong("Seed", seed);
+    return chunk;
+  }
+
+  /**
+   * A channel failing every write after the header while {@link #failing} is set.
+   */
+  private static class FailingChannel extends FileChannel {
+
+    private final FileChannel delegate;
+    private boolean failing;
+
+    private FailingChannel(FileChannel delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+      if (failing && position >= 2 * RegionFile.SECTOR_SIZE) {
+        // write a part, like a full disk would
+        src.position(src.position() + Math.min(src.remaining(), 10));
+        throw new IOException("No space left on device");
+      }
+      return delegate.write(src, position);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      return delegate.read(dst);
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+      return delegate.read(dsts, offset, length);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      return delegate.write(src);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+      return delegate.write(srcs, offset, length);
+    }
+
+    @Override
+    public long position() throws IOException {
+      return delegate.position();
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+      delegate.position(newPosition);
+      return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+      return delegate.size();
+    }
+
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+      delegate.truncate(size);
+      return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+      delegate.force(metaData);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target)
+        throws IOException {
+      return delegate.transferTo(position, count, target);
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count)
+        throws IOException {
+      return delegate.transferFrom(src, position, count);
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+      return delegate.read(dst, position);
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+      return delegate.map(mode, position, size);
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+      return delegate.lock(position, size, shared);
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+      return delegate.tryLock(position, size, shared);
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+      delegate.close();
+    }
+  }
+}
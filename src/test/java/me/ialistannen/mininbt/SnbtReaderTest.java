@@ -0,0 +1,52 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import org.junit.jupiter.api.Test;
+
+class SnbtReaderTest {
+
+  @Test
+  public void readsAllTagTypes() {
+    NBTTagCompound expected = new NBTTagCompound();
+    expected.setByte("byte", (byte) 1);
+    expected.setShort("short", (short) -2);
+    expected.setInt("int", 3);
+    expected.setLong("long", 4L);
+    expected.setFloat("float", 5.5f);
+    expected.setDouble("double", 6.5);
+    expected.setString("string", "it's \"quoted\"");
+    expected.setByteArray("bytes", new byte[]{1, 2});
+    expected.setIntArray("ints", new int[]{3});
+    expected.setLongArray("longs", new long[0]);
+    NBTTagList list = new NBTTagList();
+    list.add(new NBTTagString("a"));
+    list.add(new NBTTagString("b"));
+    expected.set("list", list);
+    NBTTagCompound nested = new NBTTagCompound();
+    nested.setBoolean("flag", true);
+    expected.set("nested key", nested);
+
+    NBTTagCompound parsed = SnbtReader.parseCompound(
+        "{byte:1b, short:-2s, int:3, long:4L, float:5.5f, double:6.5,"
+            + " string:'it\\'s \"quoted\"', bytes:[B;1b,2b], ints:[I;3], longs:[L;],"
+            + " list:[a, \"b\"], 'nested key':{flag:true}}"
+    );
+
+    assertEquals(expected, parsed);
+  }
+
+  @Test
+  public void rejectsMalformedInput() {
+    assertThrows(IllegalArgumentException.class, () -> SnbtReader.parseCompound("{a:1"));
+    assertThrows(IllegalArgumentException.class, () -> SnbtReader.parseCompound("{a:1} b"));
+    assertThrows(IllegalArgumentException.class, () -> SnbtReader.parseCompound("{:1}"));
+    assertThrows(IllegalArgumentException.class, () -> SnbtReader.parseCompound("{a:[1, b]}"));
+    assertThrows(IllegalArgumentException.class, () -> SnbtReader.parseCompound("{a:[B;1.5]}"));
+    assertThrows(IllegalArgumentException.class, () -> SnbtReader.parseCompound("{a:'open}"));
+  }
+}
@@ -0,0 +1,115 @@
+package me.ialistannen.mininbt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NbtLimits.LimitExceededException;
+import me.ialistannen.mininbt.WorldScanner.ScanStatistics;
+import me.ialistannen.mininbt.WorldScanner.ScannedChunk;
+import org.junit.jupiter.api.Test;
+
+class WorldScannerTest {
+
+  @Test
+  public void findsMatchingChunksInAllRegions() throws IOException, InterruptedException {
+    Path directory = createWorld();
+    try {
+      List<ScannedChunk> found = new ArrayList<>();
+      ScanStatistics statistics = WorldScanner.builder()
+          .parallelism(4)
+          .queueCapacity(1)
+          .build()
+          .scan(directory, chunk -> chunk.getTag().getBoolean("Marked"), found::add);
+
+      assertEquals(2, statistics.getRegionCount());
+      assertEquals(2 * 40, statistics.getChunkCount());
+      assertEquals(2 * 10, statistics.getMatchCount());
+      assertEquals(2, statistics.getFailedCount());
+      assertEquals(20, found.size());
+      for (ScannedChunk chunk : found) {
+        assertEquals(chunk.getChunkX(), chunk.getTag().getInt("xPos"));
+        assertEquals(chunk.getChunkZ(), chunk.getTag().getInt("zPos"));
+      }
+    } finally {
+      deleteRecursively(directory);
+    }
+  }
+
+  @Test
+  public void sinkExceptionStopsScan() throws IOException {
+    Path directory = createWorld();
+    try {
+      WorldScanner scanner = WorldScanner.builder().queueCapacity(1).build();
+
+      assertThrows(IllegalStateException.class, () -> scanner.scan(directory, chunk -> true,
+          chunk -> {
+            throw new IllegalStateException("Sink failed");
+          }
+      ));
+    } finally {
+      deleteRecursively(directory);
+    }
+  }
+
+  @Test
+  public void chunksExceedingTheLimitsAreReportedAsFailures()
+      throws IOException, InterruptedException {
+    Path directory = createWorld();
+    try {
+      List<IOException> errors = Collections.synchronizedList(new ArrayList<>());
+      ScanStatistics statistics = WorldScanner.builder()
+          .limits(NbtLimits.builder().maxStringLength(4).build())
+          .errorHandler(errors::add)
+          .build()
+          .scan(directory, chunk -> true, chunk -> {
+          });
+
+      assertEquals(0, statistics.getChunkCount());
+      assertEquals(2 * 40 + 2, statistics.getFailedCount());
+      assertEquals(2 * 40, errors.stream()
+          .filter(error -> error.getCause() instanceof LimitExceededException)
+          .count());
+    } finally {
+      deleteRecursively(directory);
+    }
+  }
+
+  private static Path createWorld() throws IOException {
+    Path directory = Files.createTempDirectory("region");
+    for (int regionX : new int[]{-1, 0}) {
+      ByteBuffer region = ByteBuffer.allocate(43 * RegionFile.SECTOR_SIZE);
+      for (int i = 0; i < 40; i++) {
+        int x = i % RegionFile.REGION_SIZE;
+        int z = i / RegionFile.REGION_SIZE;
+        NBTTagCompound chunk = new NBTTagCompound();
+        chunk.setInt("xPos", regionX * RegionFile.REGION_SIZE + x);
+        chunk.setInt("zPos", z);
+        chunk.setBoolean("Marked", i % 4 == 0);
+        RegionFileTest.writeChunk(region, x, z, 2 + i, RegionFile.COMPRESSION_ZLIB, chunk);
+      }
+      // a chunk pointing outside of the file
+      region.putInt(4 * 100, (500 << 8) | 1);
+      Files.write(directory.resolve("r." + regionX + ".0.mca"), region.array());
+    }
+    Files.write(directory.resolve("notes.txt"), new byte[]{1, 2, 3});
+    return directory;
+  }
+
+  private static void deleteRecursively(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+}
@@ -0,0 +1,131 @@
+package me.ialistannen.mininbt.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import me.ialistannen.mininbt.InMemoryNbtBackend;
+import me.ialistannen.mininbt.NBTWrappers;
+import me.ialistannen.mininbt.NBTWrappers.INBTBase;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagCompound;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagList;
+import me.ialistannen.mininbt.NBTWrappers.NBTTagString;
+import me.ialistannen.mininbt.metrics.NbtMetrics.Histogram;
+import me.ialistannen.mininbt.metrics.NbtMetrics.HistogramSnapshot;
+import me.ialistannen.mininbt.reflection.FluentReflection.FluentMethod;
+import me.ialistannen.mininbt.reflection.FluentReflection.FluentType;
+import org.junit.jupiter.api.Test;
+
+class NbtMetricsTest {
+
+  @Test
+  public void recordsNothingWhileDisabled() {
+    Histogram histogram = NbtMetrics.histogram("test.disabled");
+
+    histogram.record(5);
+    histogram.recordSince(NbtMetrics.startTimer());
+
+    assertEquals(0, NbtMetrics.snapshot().get("test.disabled").getCount());
+  }
+
+  @Test
+  public void computesHistogramValues() {
+    NbtMetrics.setEnabled(true);
+    try {
+      Histogram histogram = NbtMetrics.histogram("test.values");
+      assertSame(histogram, NbtMetrics.histogram("test.values"));
+
+      for (int i = 1; i <= 100; i++) {
+        histogram.record(i);
+      }
+
+      HistogramSnapshot snapshot = NbtMetrics.snapshot().get("test.values");
+      assertEquals(100, snapshot.getCount());
+      assertEquals(5050, snapshot.getSum());
+      assertEquals(100, snapshot.getMax());
+      assertEquals(50.5, snapshot.getMean());
+      // within a factor of two of the exact values
+      assertEquals(63, snapshot.getPercentile(50));
+      assertEquals(100, snapshot.getPercentile(99));
+      assertEquals(1, snapshot.getPercentile(0));
+      assertThrows(IllegalArgumentException.class, () -> snapshot.getPercentile(101));
+    } finally {
+      NbtMetrics.setEnabled(false);
+      NbtMetrics.reset();
+    }
+  }
+
+  @Test
+  public void resetKeepsHistograms() {
+    NbtMetrics.setEnabled(true);
+    try {
+      NbtMetrics.histogram("test.reset").record(3);
+      NbtMetrics.reset();
+
+      HistogramSnapshot snapshot = NbtMetrics.snapshot().get("test.reset");
+      assertNotNull(snapshot);
+      assertEquals(0, snapshot.getCount());
+      assertEquals(0, snapshot.getPercentile(50));
+    } finally {
+      NbtMetrics.setEnabled(false);
+    }
+  }
+
+  @Test
+  public void recordsConversions() {
+    NBTWrappers.setBackend(new InMemoryNbtBackend());
+    NbtMetrics.setEnabled(true);
+    try {
+      NbtMetrics.reset();
+
+      NBTTagList list = new NBTTagList();
+      list.add(new NBTTagString("a"));
+      NBTTagCompound compound = new NBTTagCompound();
+      compound.set("list", list);
+      compound.setInt("int", 1);
+
+      Object converted = compound.toNBT();
+      INBTBase.fromNBT(converted);
+
+      Map<String, HistogramSnapshot> snapshot = NbtMetrics.snapshot();
+      assertEquals(1, snapshot.get("nbt.toNBT.time").getCount());
+      assertEquals(4, snapshot.get("nbt.toNBT.nodes").getSum());
+      assertEquals(compound.serializedSize(), snapshot.get("nbt.toNBT.bytes").getSum());
+      assertEquals(1, snapshot.get("nbt.fromNBT.time").getCount());
+      assertEquals(4, snapshot.get("nbt.fromNBT.nodes").getSum());
+    } finally {
+      NbtMetrics.setEnabled(false);
+      NbtMetrics.reset();
+      NBTWrappers.setBackend(null);
+    }
+  }
+
+  @Test
+  public void recordsReflectiveInvocations() {
+    FluentMethod method = new FluentType<>(String.class).findMethod()
+        .withName("concat")
+        .findSingle()
+        .getOrThrow();
+
+    method.invoke("a", "b").ensureSuccessful();
+    assertFalse(NbtMetrics.snapshot().containsKey("reflection.invoke.String#concat(String)"));
+
+    NbtMetrics.setEnabled(true);
+    try {
+      method.invoke("a", "b").ensureSuccessful();
+      method.invoke("a", "b").ensureSuccessful();
+
+      HistogramSnapshot snapshot = NbtMetrics.snapshot()
+          .get("reflection.invoke.String#concat(String)");
+      assertEquals(2, snapshot.getCount());
+      assertTrue(snapshot.getSum() >= 0);
+    } finally {
+      NbtMetrics.setEnabled(false);
+      NbtMetrics.reset();
+    }
+  }
+}